@@ -0,0 +1,48 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.anomaly;
+
+import com.metricstracker.model.MetricType;
+
+/**
+ * A significant shift detected in a pod or StatefulSet series.
+ *
+ * @param scope           Whether the series belongs to a single pod or a whole StatefulSet
+ * @param name            Pod name, or the StatefulSet name for StatefulSet series
+ * @param statefulSetName StatefulSet the series belongs to
+ * @param metric          Metric the shift was detected in
+ * @param direction       Whether the series moved up or down
+ * @param value           Sample that completed the shift
+ * @param baseline        Baseline mean before the shift
+ * @param score           Accumulated deviation in standard deviations
+ * @param timestamp       Timestamp of the sample
+ */
+public record Anomaly(Scope scope, String name, String statefulSetName, MetricType metric, Direction direction,
+                      double value, double baseline, double score, String timestamp) {
+
+    public enum Scope {
+        POD,
+        STATEFUL_SET
+    }
+
+    public enum Direction {
+        UP,
+        DOWN
+    }
+}
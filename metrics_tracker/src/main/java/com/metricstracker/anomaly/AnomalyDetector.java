@@ -0,0 +1,225 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.anomaly;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.service.MetricsListener;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Runs a {@link ChangePointDetector} on every pod series and on the total of
+ * each StatefulSet, and publishes the shifts they signal to subscribers as soon
+ * as the scrape that completes them arrives.
+ *
+ * StatefulSets are tracked by the sum over their pods, which follows the load
+ * the StatefulSet receives independently of how many replicas share it. Only
+ * the scraper thread updates the detectors; subscribers are called on it too.
+ */
+public class AnomalyDetector implements MetricsListener {
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetector.class);
+
+    // Series missing from this many consecutive scrapes are dropped
+    private static final int MAX_MISSED_SCRAPES = 20;
+
+    private final WorkloadResolver workloads;
+    private final Set<MetricType> metrics;
+    private final double alpha;
+    private final double drift;
+    private final double threshold;
+    private final int warmup;
+    private final double minRelativeDeviation;
+
+    private final Map<MetricType, Map<String, ChangePointDetector>> pods = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Map<String, ChangePointDetector>> statefulSets = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Long> scrapes = new EnumMap<>(MetricType.class);
+    private final List<Consumer<Anomaly>> subscribers = new CopyOnWriteArrayList<>();
+
+    private AnomalyDetector(Builder builder) {
+        this.workloads = builder.workloadResolver;
+        this.metrics = EnumSet.copyOf(builder.metrics);
+        this.alpha = builder.alpha;
+        this.drift = builder.drift;
+        this.threshold = builder.threshold;
+        this.warmup = builder.warmup;
+        this.minRelativeDeviation = builder.minRelativeDeviation;
+        for (MetricType type : metrics) {
+            pods.put(type, new HashMap<>());
+            statefulSets.put(type, new HashMap<>());
+            scrapes.put(type, 0L);
+        }
+    }
+
+    /**
+     * Registers a subscriber for every detected shift.
+     *
+     * @return Handle that removes the subscriber when closed
+     */
+    public AutoCloseable subscribe(Consumer<Anomaly> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void onPodMetrics(MetricType type, PodMetricBatch samples) {
+        if (!metrics.contains(type)) {
+            return;
+        }
+        long scrape = scrapes.merge(type, 1L, Long::sum);
+        Map<String, ChangePointDetector> podSeries = pods.get(type);
+        Map<String, Total> totals = new HashMap<>();
+
+        for (int i = 0; i < samples.size(); i++) {
+            String podName = samples.podName(i);
+            double value = samples.value(i);
+            String owner = workloads.workloadOf(podName);
+            totals.computeIfAbsent(owner, name -> new Total()).add(value, samples.timestamp(i));
+
+            ChangePointDetector detector = podSeries.computeIfAbsent(podName, name -> newDetector());
+            detector.lastScrape = scrape;
+            int shift = detector.update(value);
+            if (shift != 0) {
+                publish(detector, Anomaly.Scope.POD, podName, owner, type, shift, value, samples.timestamp(i));
+            }
+        }
+
+        Map<String, ChangePointDetector> statefulSetSeries = statefulSets.get(type);
+        for (Map.Entry<String, Total> total : totals.entrySet()) {
+            ChangePointDetector detector = statefulSetSeries.computeIfAbsent(total.getKey(), name -> newDetector());
+            detector.lastScrape = scrape;
+            Total value = total.getValue();
+            int shift = detector.update(value.sum);
+            if (shift != 0) {
+                publish(detector, Anomaly.Scope.STATEFUL_SET, total.getKey(), total.getKey(), type, shift,
+                    value.sum, value.timestamp);
+            }
+        }
+
+        podSeries.values().removeIf(detector -> scrape - detector.lastScrape > MAX_MISSED_SCRAPES);
+        statefulSetSeries.values().removeIf(detector -> scrape - detector.lastScrape > MAX_MISSED_SCRAPES);
+    }
+
+    private ChangePointDetector newDetector() {
+        return new ChangePointDetector(alpha, drift, threshold, warmup, minRelativeDeviation);
+    }
+
+    private void publish(ChangePointDetector detector, Anomaly.Scope scope, String name, String statefulSetName,
+                         MetricType type, int shift, double value, String timestamp) {
+        Anomaly anomaly = new Anomaly(scope, name, statefulSetName, type,
+            shift > 0 ? Anomaly.Direction.UP : Anomaly.Direction.DOWN,
+            value, detector.getLastBaseline(), detector.getLastScore(), timestamp);
+        for (Consumer<Anomaly> subscriber : subscribers) {
+            try {
+                subscriber.accept(anomaly);
+            } catch (RuntimeException e) {
+                logger.warn("Anomaly subscriber failed", e);
+            }
+        }
+    }
+
+    private static final class Total {
+        private double sum;
+        private String timestamp;
+
+        void add(double value, String sampleTimestamp) {
+            if (Double.isFinite(value)) {
+                sum += value;
+            }
+            // Samples of one instant query share the evaluation timestamp
+            if (timestamp == null) {
+                timestamp = sampleTimestamp;
+            }
+        }
+    }
+
+    /**
+     * Builder pattern for detector configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private WorkloadResolver workloadResolver = WorkloadResolver.byNamePrefix();
+        private Set<MetricType> metrics = EnumSet.of(MetricType.CPU, MetricType.HITS);
+        private double alpha = 0.1;
+        private double drift = 0.5;
+        private double threshold = 5.0;
+        private int warmup = 10;
+        private double minRelativeDeviation = 0.05;
+
+        public Builder workloadResolver(WorkloadResolver workloadResolver) {
+            this.workloadResolver = workloadResolver;
+            return this;
+        }
+
+        public Builder metrics(Set<MetricType> metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder alpha(double alpha) {
+            this.alpha = alpha;
+            return this;
+        }
+
+        public Builder drift(double drift) {
+            this.drift = drift;
+            return this;
+        }
+
+        public Builder threshold(double threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        public Builder warmup(int warmup) {
+            this.warmup = warmup;
+            return this;
+        }
+
+        public Builder minRelativeDeviation(double minRelativeDeviation) {
+            this.minRelativeDeviation = minRelativeDeviation;
+            return this;
+        }
+
+        public AnomalyDetector build() {
+            if (workloadResolver == null) {
+                throw new IllegalStateException("WorkloadResolver is required");
+            }
+            if (metrics == null || metrics.isEmpty()) {
+                throw new IllegalStateException("At least one metric is required");
+            }
+            // Fail fast on invalid detector settings
+            new ChangePointDetector(alpha, drift, threshold, warmup, minRelativeDeviation);
+            return new AnomalyDetector(this);
+        }
+    }
+}
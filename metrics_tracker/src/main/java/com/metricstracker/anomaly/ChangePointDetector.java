@@ -0,0 +1,138 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.anomaly;
+
+/**
+ * Two-sided CUSUM over samples standardized by an exponentially weighted mean
+ * and variance.
+ *
+ * The state is a handful of doubles, so a detector per series costs constant
+ * memory and every sample is folded in with O(1) work. Each sample adds its
+ * deviation in standard deviations, less the drift allowance, to the upper and
+ * lower sums; a sum crossing the threshold signals a shift. A step of
+ * threshold + drift standard deviations is reported by the first sample after
+ * it, smaller persistent shifts after a few samples. After a signal the sums are
+ * reset and the baseline restarts from the new level.
+ */
+public final class ChangePointDetector {
+    private final double alpha;
+    private final double drift;
+    private final double threshold;
+    private final int warmup;
+    private final double minRelativeDeviation;
+
+    private double mean;
+    private double variance;
+    private double upper;
+    private double lower;
+    private long samples;
+    private double lastBaseline;
+    private double lastScore;
+
+    // Scrape counter of the last update, maintained by AnomalyDetector
+    long lastScrape;
+
+    /**
+     * @param alpha                Weight of a new sample in the baseline mean and variance, in (0, 1]
+     * @param drift                Deviation in standard deviations that is tolerated per sample
+     * @param threshold            Accumulated deviation in standard deviations that signals a shift
+     * @param warmup               Samples used to establish the baseline before signalling
+     * @param minRelativeDeviation Lower bound on the standard deviation as a fraction of the
+     *                             mean, so flat series do not flag tiny changes
+     */
+    public ChangePointDetector(double alpha, double drift, double threshold, int warmup, double minRelativeDeviation) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Alpha must be in (0, 1]");
+        }
+        if (drift < 0 || threshold <= 0 || warmup < 1 || minRelativeDeviation < 0) {
+            throw new IllegalArgumentException("Drift, threshold, warmup and deviation floor must be positive");
+        }
+        this.alpha = alpha;
+        this.drift = drift;
+        this.threshold = threshold;
+        this.warmup = warmup;
+        this.minRelativeDeviation = minRelativeDeviation;
+    }
+
+    /**
+     * Folds in a sample.
+     *
+     * @return 1 when the sample completes an upward shift, -1 for a downward
+     *         shift, 0 otherwise
+     */
+    public int update(double value) {
+        if (!Double.isFinite(value)) {
+            return 0;
+        }
+        samples++;
+        if (samples == 1) {
+            mean = value;
+            return 0;
+        }
+
+        double deviation = value - mean;
+        if (samples > warmup) {
+            double sigma = Math.max(Math.sqrt(variance), Math.max(minRelativeDeviation * Math.abs(mean), Double.MIN_NORMAL));
+            double z = deviation / sigma;
+            upper = Math.max(0, upper + z - drift);
+            lower = Math.max(0, lower - z - drift);
+            if (upper > threshold || lower > threshold) {
+                int direction = upper > threshold ? 1 : -1;
+                lastBaseline = mean;
+                lastScore = Math.max(upper, lower);
+                upper = 0;
+                lower = 0;
+                mean = value;
+                return direction;
+            }
+        }
+
+        // Welford style exponentially weighted update
+        double increment = alpha * deviation;
+        mean += increment;
+        variance = (1 - alpha) * (variance + deviation * increment);
+        return 0;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Baseline mean before the last signalled shift.
+     */
+    public double getLastBaseline() {
+        return lastBaseline;
+    }
+
+    /**
+     * Accumulated deviation, in standard deviations, of the last signalled shift.
+     */
+    public double getLastScore() {
+        return lastScore;
+    }
+}
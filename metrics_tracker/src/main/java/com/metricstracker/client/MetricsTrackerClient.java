@@ -1,91 +1,432 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
 package com.metricstracker.client;
 
+import com.metricstracker.model.CallPriority;
+import com.metricstracker.model.QueryCaller;
 import com.metricstracker.proto.*;
+import com.metricstracker.trace.TracingClientInterceptor;
 import io.grpc.Channel;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.StatusRuntimeException;
+import io.grpc.Metadata;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
 
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
-public class MetricsTrackerClient {
-    private final MetricsTrackerGrpc.MetricsTrackerBlockingStub blockingStub;
+/**
+ * Asynchronous client of the metrics tracker. Every call returns a
+ * {@link CompletableFuture}, carries a deadline and is multiplexed over one
+ * channel that balances calls round robin over the tracker replicas and
+ * retries those failing with UNAVAILABLE, or rejected by an overloaded
+ * tracker with RESOURCE_EXHAUSTED after the delay the tracker asks for.
+ *
+ * <p>Snapshot reads (utilizations, percentiles and forecasts) can be served
+ * from a short-lived cache; concurrent identical reads then share one call.
+ * Failed futures complete with a {@link io.grpc.StatusRuntimeException},
+ * wrapped in a {@link java.util.concurrent.CompletionException} for cached
+ * reads and snapshots.
+ */
+public class MetricsTrackerClient implements AutoCloseable {
+    private static final String SERVICE_NAME = "metricstracker.MetricsTracker";
+    private static final int MAX_CACHE_ENTRIES = 1024;
+    private static final Metadata.Key<String> PRIORITY_KEY =
+        Metadata.Key.of(CallPriority.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> CALLER_KEY =
+        Metadata.Key.of(QueryCaller.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+    private final ManagedChannel ownedChannel;
+    private final MetricsTrackerGrpc.MetricsTrackerStub stub;
+    private final Duration deadline;
+    private final ResponseCache cache;
+
+    @FunctionalInterface
+    private interface AsyncCall<ReqT, RespT> {
+        void start(MetricsTrackerGrpc.MetricsTrackerStub stub, ReqT request, StreamObserver<RespT> observer);
+    }
 
+    /**
+     * Client over a caller-managed channel, with the default deadline and no cache.
+     */
     public MetricsTrackerClient(Channel channel) {
-        blockingStub = MetricsTrackerGrpc.newBlockingStub(channel);
+        this(channel, null, Duration.ofSeconds(5), null, null, null);
     }
 
-    public void getAllMetrics() {
-        MetricsRequest request = MetricsRequest.newBuilder().build();
-        
-        try {
-        
-            System.out.println("Requesting Pod CPU Metrics...");
-            PodMetricsResponse podCPUResponse = blockingStub.getPodsCPUUtilization(request);
-            System.out.println("Pod CPU Metrics: " + podCPUResponse);
-        
-        } catch (StatusRuntimeException e) {
-        
-            System.out.println("RPC failed: " + e.getStatus());
-        
+    private MetricsTrackerClient(Channel channel, ManagedChannel ownedChannel, Duration deadline, ResponseCache cache,
+            CallPriority priority, String caller) {
+        MetricsTrackerGrpc.MetricsTrackerStub stub = MetricsTrackerGrpc.newStub(channel);
+        Metadata headers = new Metadata();
+        if (priority != null) {
+            headers.put(PRIORITY_KEY, priority.headerValue());
         }
-        try {
-            System.out.println("\nRequesting Pod Memory Metrics...");
-            PodMetricsResponse podMemResponse = blockingStub.getPodsMemoryUtilization(request);
-            System.out.println("Pod Memory Metrics: " + podMemResponse);
+        if (caller != null) {
+            headers.put(CALLER_KEY, caller);
+        }
+        if (!headers.keys().isEmpty()) {
+            stub = stub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+        }
+        // Joins the tracker's spans to the trace of the caller, if any
+        this.stub = stub.withInterceptors(new TracingClientInterceptor());
+        this.ownedChannel = ownedChannel;
+        this.deadline = deadline;
+        this.cache = cache;
+    }
+
+    public CompletableFuture<PodMetricsResponse> getPodsCPUUtilization(MetricsRequest request) {
+        return cached("GetPodsCPUUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getPodsCPUUtilization, request);
+    }
+
+    public CompletableFuture<PodMetricsResponse> getPodsMemoryUtilization(MetricsRequest request) {
+        return cached("GetPodsMemoryUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getPodsMemoryUtilization, request);
+    }
+
+    public CompletableFuture<PodMetricsResponse> getPodsHitsUtilization(MetricsRequest request) {
+        return cached("GetPodsHitsUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getPodsHitsUtilization, request);
+    }
+
+    public CompletableFuture<NodeMetricsResponse> getNodesCPUUtilization(MetricsRequest request) {
+        return cached("GetNodesCPUUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getNodesCPUUtilization, request);
+    }
+
+    public CompletableFuture<NodeMetricsResponse> getNodesMemoryUtilization(MetricsRequest request) {
+        return cached("GetNodesMemoryUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getNodesMemoryUtilization, request);
+    }
+
+    public CompletableFuture<WorkloadMetricsResponse> getWorkloadsCPUUtilization(WorkloadMetricsRequest request) {
+        return cached("GetWorkloadsCPUUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getWorkloadsCPUUtilization, request);
+    }
+
+    public CompletableFuture<WorkloadMetricsResponse> getWorkloadsMemoryUtilization(WorkloadMetricsRequest request) {
+        return cached("GetWorkloadsMemoryUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getWorkloadsMemoryUtilization, request);
+    }
+
+    public CompletableFuture<WorkloadMetricsResponse> getWorkloadsHitsUtilization(WorkloadMetricsRequest request) {
+        return cached("GetWorkloadsHitsUtilization", MetricsTrackerGrpc.MetricsTrackerStub::getWorkloadsHitsUtilization, request);
+    }
+
+    public CompletableFuture<PercentilesResponse> getPodsCPUPercentiles(PercentilesRequest request) {
+        return cached("GetPodsCPUPercentiles", MetricsTrackerGrpc.MetricsTrackerStub::getPodsCPUPercentiles, request);
+    }
+
+    public CompletableFuture<PercentilesResponse> getPodsMemoryPercentiles(PercentilesRequest request) {
+        return cached("GetPodsMemoryPercentiles", MetricsTrackerGrpc.MetricsTrackerStub::getPodsMemoryPercentiles, request);
+    }
+
+    public CompletableFuture<PercentilesResponse> getPodsHitsPercentiles(PercentilesRequest request) {
+        return cached("GetPodsHitsPercentiles", MetricsTrackerGrpc.MetricsTrackerStub::getPodsHitsPercentiles, request);
+    }
+
+    public CompletableFuture<LatencyQuantilesResponse> getPodsLatencyQuantiles(LatencyQuantilesRequest request) {
+        return cached("GetPodsLatencyQuantiles", MetricsTrackerGrpc.MetricsTrackerStub::getPodsLatencyQuantiles, request);
+    }
+
+    public CompletableFuture<ForecastResponse> getPodForecast(ForecastRequest request) {
+        return cached("GetPodForecast", MetricsTrackerGrpc.MetricsTrackerStub::getPodForecast, request);
+    }
+
+    public CompletableFuture<ForecastResponse> getNodeForecast(ForecastRequest request) {
+        return cached("GetNodeForecast", MetricsTrackerGrpc.MetricsTrackerStub::getNodeForecast, request);
+    }
+
+    public CompletableFuture<ForecastResponse> getWorkloadForecast(ForecastRequest request) {
+        return cached("GetWorkloadForecast", MetricsTrackerGrpc.MetricsTrackerStub::getWorkloadForecast, request);
+    }
+
+    public CompletableFuture<RecommendReplicasResponse> recommendReplicas(RecommendReplicasRequest request) {
+        return unary(MetricsTrackerGrpc.MetricsTrackerStub::recommendReplicas, request);
+    }
 
-        } catch (StatusRuntimeException e) {
-        
-            System.out.println("RPC failed: " + e.getStatus());
-        
+    public CompletableFuture<PlacementResponse> planPlacement(PlacementRequest request) {
+        return unary(MetricsTrackerGrpc.MetricsTrackerStub::planPlacement, request);
+    }
+
+    public CompletableFuture<ServerStatsResponse> getServerStats() {
+        return unary(MetricsTrackerGrpc.MetricsTrackerStub::getServerStats, ServerStatsRequest.getDefaultInstance());
+    }
+
+    /**
+     * Streams anomalies until the observer cancels; watches carry no deadline.
+     */
+    public void watchAnomalies(WatchAnomaliesRequest request, StreamObserver<AnomalyEvent> observer) {
+        stub.watchAnomalies(request, observer);
+    }
+
+    /**
+     * Fetches the five pod and node utilizations concurrently over the channel.
+     */
+    public CompletableFuture<MetricsSnapshot> getSnapshot(int seconds) {
+        MetricsRequest request = MetricsRequest.newBuilder().setSeconds(seconds).build();
+        CompletableFuture<PodMetricsResponse> podsCpu = getPodsCPUUtilization(request);
+        CompletableFuture<PodMetricsResponse> podsMemory = getPodsMemoryUtilization(request);
+        CompletableFuture<PodMetricsResponse> podsHits = getPodsHitsUtilization(request);
+        CompletableFuture<NodeMetricsResponse> nodesCpu = getNodesCPUUtilization(request);
+        CompletableFuture<NodeMetricsResponse> nodesMemory = getNodesMemoryUtilization(request);
+        return CompletableFuture.allOf(podsCpu, podsMemory, podsHits, nodesCpu, nodesMemory)
+            .thenApply(ignored -> new MetricsSnapshot(
+                podsCpu.join(), podsMemory.join(), podsHits.join(), nodesCpu.join(), nodesMemory.join()));
+    }
+
+    private <ReqT, RespT> CompletableFuture<RespT> cached(String method, AsyncCall<ReqT, RespT> call, ReqT request) {
+        if (cache == null) {
+            return unary(call, request);
         }
-        try {
+        return cache.get(method, request, () -> unary(call, request));
+    }
+
+    // The deadline starts when the call does, cancelling the future cancels the call
+    private <ReqT, RespT> CompletableFuture<RespT> unary(AsyncCall<ReqT, RespT> call, ReqT request) {
+        CompletableFuture<RespT> future = new CompletableFuture<>();
+        call.start(stub.withDeadlineAfter(deadline.toNanos(), TimeUnit.NANOSECONDS), request,
+            new ClientResponseObserver<ReqT, RespT>() {
+                private RespT response;
 
-            System.out.println("\nRequesting Pod Hits Metrics...");
-            PodMetricsResponse podHitsResponse = blockingStub.getPodsHitsUtilization(request);
-            System.out.println("Pod Hits Metrics: " + podHitsResponse);
+                @Override
+                public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+                    future.whenComplete((value, error) -> {
+                        if (future.isCancelled()) {
+                            requestStream.cancel("Cancelled by the caller", null);
+                        }
+                    });
+                }
 
-        } catch (StatusRuntimeException e) {
-        
-            System.out.println("RPC failed: " + e.getStatus());
-        
+                @Override
+                public void onNext(RespT value) {
+                    response = value;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    future.completeExceptionally(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    future.complete(response);
+                }
+            });
+        return future;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (ownedChannel != null) {
+            ownedChannel.shutdown();
+            if (!ownedChannel.awaitTermination(5, TimeUnit.SECONDS)) {
+                ownedChannel.shutdownNow();
+            }
         }
-        try {
+    }
 
-            System.out.println("\nRequesting Node CPU Metrics...");
-            NodeMetricsResponse nodeCPUResponse = blockingStub.getNodesCPUUtilization(request);
-            System.out.println("Node CPU Metrics: " + nodeCPUResponse);
+    /**
+     * Builder pattern for client configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private List<String> targets = List.of("localhost:50051");
+        private ManagedChannel channel;
+        private boolean plaintext = true;
+        private Duration deadline = Duration.ofSeconds(5);
+        private int maxAttempts = 3;
+        private Duration cacheTtl = Duration.ZERO;
+        private int maxInboundMessageSize = 64 * 1024 * 1024;
+        private CallPriority priority;
+        private String caller;
 
-        } catch (StatusRuntimeException e) {
-        
-            System.out.println("RPC failed: " + e.getStatus());
-        
+        /**
+         * Tracker replicas as host:port. A single target may also be any gRPC
+         * target, e.g. dns:///metrics-tracker-headless:50051 to balance over
+         * the pods behind a headless Service.
+         */
+        public Builder targets(List<String> targets) {
+            this.targets = List.copyOf(targets);
+            return this;
         }
-        try {
 
-            System.out.println("\nRequesting Node Memory Metrics...");
-            NodeMetricsResponse nodeMemResponse = blockingStub.getNodesMemoryUtilization(request);
-            System.out.println("Node Memory Metrics: " + nodeMemResponse);
+        /**
+         * Uses a caller-managed channel instead of building one from targets.
+         * Balancing and retries are then the channel's own.
+         */
+        public Builder channel(ManagedChannel channel) {
+            this.channel = channel;
+            return this;
+        }
+
+        public Builder plaintext(boolean plaintext) {
+            this.plaintext = plaintext;
+            return this;
+        }
 
-        } catch (StatusRuntimeException e) {
-            System.out.println("RPC failed: " + e.getStatus());
+        public Builder deadline(Duration deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Attempts per call, including the first, for calls failing with
+         * UNAVAILABLE or RESOURCE_EXHAUSTED.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * How long snapshot reads are served from the cache, zero to disable it.
+         */
+        public Builder cacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+            return this;
+        }
+
+        public Builder maxInboundMessageSize(int maxInboundMessageSize) {
+            this.maxInboundMessageSize = maxInboundMessageSize;
+            return this;
+        }
+
+        /**
+         * Priority class sent with every call, the tracker's default when unset.
+         * Controllers use RECONCILE, dashboards DASHBOARD so they are shed first.
+         */
+        public Builder priority(CallPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Name sent with every call, the tracker shares Prometheus fairly
+         * between the callers of a priority class.
+         */
+        public Builder caller(String caller) {
+            this.caller = caller;
+            return this;
+        }
+
+        public MetricsTrackerClient build() {
+            if (channel == null && (targets == null || targets.isEmpty())) {
+                throw new IllegalStateException("At least one target is required");
+            }
+            if (deadline == null || deadline.isNegative() || deadline.isZero()) {
+                throw new IllegalStateException("Deadline must be positive");
+            }
+            if (maxAttempts < 1) {
+                throw new IllegalStateException("maxAttempts must be at least 1");
+            }
+            if (cacheTtl == null || cacheTtl.isNegative()) {
+                throw new IllegalStateException("Cache TTL cannot be negative");
+            }
+            if (caller != null && caller.isBlank()) {
+                throw new IllegalStateException("Caller cannot be blank");
+            }
+            ResponseCache cache = cacheTtl.isZero()
+                ? null
+                : new ResponseCache(cacheTtl.toNanos(), MAX_CACHE_ENTRIES, System::nanoTime);
+            if (channel != null) {
+                return new MetricsTrackerClient(channel, null, deadline, cache, priority, caller);
+            }
+            ManagedChannel owned = buildChannel();
+            return new MetricsTrackerClient(owned, owned, deadline, cache, priority, caller);
+        }
+
+        @SuppressWarnings("deprecation")
+        private ManagedChannel buildChannel() {
+            ManagedChannelBuilder<?> builder;
+            if (targets.size() == 1) {
+                builder = ManagedChannelBuilder.forTarget(targets.get(0));
+            } else {
+                StaticNameResolverProvider resolver = new StaticNameResolverProvider(addresses(targets));
+                builder = ManagedChannelBuilder.forTarget(resolver.target())
+                    .nameResolverFactory(resolver);
+            }
+            if (plaintext) {
+                builder.usePlaintext();
+            }
+            return builder
+                .defaultLoadBalancingPolicy("round_robin")
+                .defaultServiceConfig(serviceConfig())
+                .enableRetry()
+                .maxInboundMessageSize(maxInboundMessageSize)
+                .build();
+        }
+
+        // Service config numbers are doubles, as if parsed from JSON. Rejections
+        // of an overloaded tracker carry a pushback that replaces the backoff.
+        private Map<String, Object> serviceConfig() {
+            if (maxAttempts == 1) {
+                return Map.of();
+            }
+            Map<String, Object> retryPolicy = Map.of(
+                "maxAttempts", (double) maxAttempts,
+                "initialBackoff", "0.1s",
+                "maxBackoff", "1s",
+                "backoffMultiplier", 2.0,
+                "retryableStatusCodes", List.of("UNAVAILABLE", "RESOURCE_EXHAUSTED"));
+            Map<String, Object> methodConfig = Map.of(
+                "name", List.of(Map.of("service", SERVICE_NAME)),
+                "retryPolicy", retryPolicy);
+            return Map.of("methodConfig", List.of(methodConfig));
+        }
+
+        private static List<InetSocketAddress> addresses(List<String> targets) {
+            List<InetSocketAddress> addresses = new ArrayList<>(targets.size());
+            for (String target : targets) {
+                int colon = target.lastIndexOf(':');
+                if (colon <= 0 || colon == target.length() - 1) {
+                    throw new IllegalStateException("Target must be host:port: " + target);
+                }
+                String host = target.substring(0, colon);
+                if (host.startsWith("[") && host.endsWith("]")) {
+                    host = host.substring(1, host.length() - 1);
+                }
+                try {
+                    addresses.add(new InetSocketAddress(host, Integer.parseInt(target.substring(colon + 1))));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Invalid target " + target, e);
+                }
+            }
+            return addresses;
         }
     }
 
     public static void main(String[] args) throws Exception {
-        String target = "localhost:50051";
-        
-        // Create a channel
-        ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
-            .usePlaintext()  // For testing only, don't use in production without TLS
-            .build();
-        
-        try {
-            MetricsTrackerClient client = new MetricsTrackerClient(channel);
-            client.getAllMetrics();
-        } finally {
-            // Shutdown the channel
-            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        List<String> targets = args.length > 0 ? List.of(args) : List.of("localhost:50051");
+
+        try (MetricsTrackerClient client = MetricsTrackerClient.builder().targets(targets).build()) {
+            MetricsSnapshot snapshot = client.getSnapshot(60).get();
+            System.out.println("Pod CPU Metrics: " + snapshot.podsCpu());
+            System.out.println("Pod Memory Metrics: " + snapshot.podsMemory());
+            System.out.println("Pod Hits Metrics: " + snapshot.podsHits());
+            System.out.println("Node CPU Metrics: " + snapshot.nodesCpu());
+            System.out.println("Node Memory Metrics: " + snapshot.nodesMemory());
+            System.out.println("Workload CPU Metrics: "
+                + client.getWorkloadsCPUUtilization(WorkloadMetricsRequest.getDefaultInstance()).get());
         }
     }
 }
@@ -0,0 +1,83 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of in-flight and completed responses. Concurrent
+ * identical requests share one call; failed calls are not cached.
+ */
+final class ResponseCache {
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private record Key(String method, Object request) {
+    }
+
+    private record Entry(CompletableFuture<?> response, long expiresAt) {
+    }
+
+    ResponseCache(long ttlNanos, int maxEntries, LongSupplier clock) {
+        this.ttlNanos = ttlNanos;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached response of a request, calling loader when it is
+     * missing or expired. Each caller gets its own future, so that cancelling
+     * it does not affect other callers.
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> get(String method, Object request, Supplier<CompletableFuture<T>> loader) {
+        long now = clock.getAsLong();
+        Key key = new Key(method, request);
+        CompletableFuture<T> created = new CompletableFuture<>();
+        Entry fresh = new Entry(created, now + ttlNanos);
+        Entry entry = entries.compute(key,
+            (k, existing) -> existing != null && existing.expiresAt() - now > 0 ? existing : fresh);
+
+        // The call starts outside compute, a failing call removes its entry
+        if (entry == fresh) {
+            if (entries.size() > maxEntries) {
+                entries.values().removeIf(cached -> cached.expiresAt() - now <= 0);
+            }
+            loader.get().whenComplete((response, error) -> {
+                if (error != null) {
+                    entries.remove(key, fresh);
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(response);
+                }
+            });
+        }
+        return ((CompletableFuture<T>) entry.response()).copy();
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.client;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Resolves a channel target to a fixed list of tracker replicas, so that the
+ * round_robin policy can spread calls over replicas that are not behind one
+ * DNS name.
+ */
+final class StaticNameResolverProvider extends NameResolverProvider {
+    static final String SCHEME = "metricstracker-static";
+
+    private final String authority;
+    private final List<EquivalentAddressGroup> addresses;
+
+    StaticNameResolverProvider(List<InetSocketAddress> replicas) {
+        InetSocketAddress first = replicas.get(0);
+        this.authority = first.getHostString() + ":" + first.getPort();
+        this.addresses = replicas.stream()
+            .map(EquivalentAddressGroup::new)
+            .toList();
+    }
+
+    String target() {
+        return SCHEME + ":///" + authority;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        return 5;
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        return new NameResolver() {
+            @Override
+            public String getServiceAuthority() {
+                return authority;
+            }
+
+            @Override
+            public void start(Listener2 listener) {
+                listener.onResult(ResolutionResult.newBuilder()
+                    .setAddresses(addresses)
+                    .setAttributes(Attributes.EMPTY)
+                    .build());
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+}
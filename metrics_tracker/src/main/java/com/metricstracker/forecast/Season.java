@@ -0,0 +1,57 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import java.time.Duration;
+
+/**
+ * A cycle of a {@link SeasonalModel}, e.g. a day or a week, learnt as one
+ * offset from the level per bucket of the cycle. Buckets are aligned to the
+ * epoch, so a daily season with 5 minute buckets holds one offset for every
+ * 5 minutes of the day in UTC.
+ *
+ * @param length Duration of the cycle
+ * @param bucket Resolution of the cycle, must divide its length
+ * @param gamma  Weight of a new period in the offset of its bucket, in (0, 1).
+ *               A bucket spanning several periods is updated once for each.
+ */
+public record Season(Duration length, Duration bucket, double gamma) {
+    public static final Season DAILY = new Season(Duration.ofDays(1), Duration.ofMinutes(5), 0.3);
+    public static final Season WEEKLY = new Season(Duration.ofDays(7), Duration.ofMinutes(30), 0.02);
+
+    public Season {
+        if (length == null || bucket == null || bucket.isNegative() || bucket.isZero()) {
+            throw new IllegalArgumentException("Season length and bucket must be positive");
+        }
+        if (length.toMillis() % bucket.toMillis() != 0 || length.toMillis() / bucket.toMillis() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Season bucket must divide its length");
+        }
+        if (!(gamma > 0 && gamma < 1)) {
+            throw new IllegalArgumentException("Season gamma must be in (0, 1)");
+        }
+    }
+
+    public int buckets() {
+        return (int) (length.toMillis() / bucket.toMillis());
+    }
+
+    int bucketOf(long millis) {
+        return (int) Math.floorMod(Math.floorDiv(millis, bucket.toMillis()), (long) buckets());
+    }
+}
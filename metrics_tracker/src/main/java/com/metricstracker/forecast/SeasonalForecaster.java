@@ -0,0 +1,250 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.service.MetricsListener;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadResolver;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one {@link SeasonalModel} per pod series and per workload series,
+ * updated from every scrape. A workload series is the sum over the pods of
+ * the workload, i.e. its total demand, which keeps its daily and weekly cycle
+ * across pod restarts and replica changes where pod series start over.
+ */
+public class SeasonalForecaster implements MetricsListener {
+    public static final double DEFAULT_ALPHA = 0.02;
+    public static final double DEFAULT_BETA = 0.001;
+    public static final double DEFAULT_PHI = 0.97;
+    public static final Duration DEFAULT_PERIOD = Duration.ofMinutes(5);
+    public static final List<Season> DEFAULT_SEASONS = List.of(Season.DAILY, Season.WEEKLY);
+    public static final int MIN_SAMPLES = 4;
+
+    // Pod series missing from this many consecutive scrapes are dropped
+    private static final int MAX_MISSED_SCRAPES = 20;
+
+    private final double alpha;
+    private final double beta;
+    private final double phi;
+    private final Duration period;
+    private final List<Season> seasons;
+    private final boolean trackPods;
+    private final WorkloadResolver workloads;
+    private final Clock clock;
+    private final long maxWorkloadIdleMillis;
+
+    private final Map<MetricType, Map<String, SeasonalModel>> pods = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Map<String, SeasonalModel>> workloadSeries = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Long> podScrapes = new EnumMap<>(MetricType.class);
+
+    private SeasonalForecaster(Builder builder) {
+        this.alpha = builder.alpha;
+        this.beta = builder.beta;
+        this.phi = builder.phi;
+        this.period = builder.period;
+        this.seasons = List.copyOf(builder.seasons);
+        this.trackPods = builder.trackPods;
+        this.workloads = builder.workloadResolver;
+        this.clock = builder.clock;
+        // What a workload learnt is kept through outages shorter than its shortest season
+        this.maxWorkloadIdleMillis = seasons.stream()
+            .mapToLong(season -> season.length().toMillis())
+            .min()
+            .orElse(Duration.ofDays(1).toMillis());
+        for (MetricType type : MetricType.values()) {
+            pods.put(type, new ConcurrentHashMap<>());
+            workloadSeries.put(type, new ConcurrentHashMap<>());
+            podScrapes.put(type, 0L);
+        }
+    }
+
+    @Override
+    public void onPodMetrics(MetricType type, PodMetricBatch metrics) {
+        long now = clock.millis();
+        long scrape = podScrapes.merge(type, 1L, Long::sum);
+        Map<String, double[]> totals = new HashMap<>();
+        Map<String, SeasonalModel> podModels = pods.get(type);
+        long millis = now;
+        for (int i = 0; i < metrics.size(); i++) {
+            String podName = metrics.podName(i);
+            double value = metrics.value(i);
+            millis = metrics.timestampMillis(i, now);
+            if (trackPods) {
+                SeasonalModel model = podModels.computeIfAbsent(podName, name -> newModel());
+                model.update(millis, value);
+                model.lastScrape = scrape;
+            }
+            if (Double.isFinite(value)) {
+                totals.computeIfAbsent(workloads.workloadOf(podName), name -> new double[1])[0] += value;
+            }
+        }
+        podModels.values().removeIf(model -> scrape - model.lastScrape > MAX_MISSED_SCRAPES);
+
+        // Samples of one instant query share their evaluation time
+        Map<String, SeasonalModel> workloadModels = workloadSeries.get(type);
+        for (Map.Entry<String, double[]> total : totals.entrySet()) {
+            workloadModels.computeIfAbsent(total.getKey(), name -> newModel()).update(millis, total.getValue()[0]);
+        }
+        long idleSince = millis - maxWorkloadIdleMillis;
+        workloadModels.values().removeIf(model -> model.getLastMillis() < idleSince);
+    }
+
+    private SeasonalModel newModel() {
+        return new SeasonalModel(alpha, beta, phi, period, seasons);
+    }
+
+    public Optional<SeasonalModel> podSeries(MetricType type, String podName) {
+        return Optional.ofNullable(pods.get(type).get(podName));
+    }
+
+    /**
+     * Total of a metric over the pods of a workload.
+     */
+    public Optional<SeasonalModel> workloadSeries(MetricType type, String workload) {
+        return Optional.ofNullable(workloadSeries.get(type).get(workload));
+    }
+
+    /**
+     * Forecasts a series, clamping predictions at zero since utilizations
+     * cannot be negative.
+     */
+    public static double[] forecast(SeasonalModel model, Duration interval, int steps) {
+        double[] predictions = model.forecast(interval, steps);
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = Math.max(0.0, predictions[i]);
+        }
+        return predictions;
+    }
+
+    /**
+     * Approximate heap held by the models.
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (MetricType type : MetricType.values()) {
+            for (SeasonalModel model : pods.get(type).values()) {
+                bytes += model.sizeInBytes();
+            }
+            for (SeasonalModel model : workloadSeries.get(type).values()) {
+                bytes += model.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private double alpha = DEFAULT_ALPHA;
+        private double beta = DEFAULT_BETA;
+        private double phi = DEFAULT_PHI;
+        private Duration period = DEFAULT_PERIOD;
+        private List<Season> seasons = DEFAULT_SEASONS;
+        private boolean trackPods = true;
+        private WorkloadResolver workloadResolver = WorkloadResolver.byNamePrefix();
+        private Clock clock = Clock.systemUTC();
+
+        /**
+         * Weight of a new period in the level.
+         */
+        public Builder alpha(double alpha) {
+            this.alpha = alpha;
+            return this;
+        }
+
+        /**
+         * Weight of a new level change in the trend.
+         */
+        public Builder beta(double beta) {
+            this.beta = beta;
+            return this;
+        }
+
+        /**
+         * Share of the latest deviation from the fit kept per period ahead.
+         */
+        public Builder phi(double phi) {
+            this.phi = phi;
+            return this;
+        }
+
+        /**
+         * Time over which scrapes are averaged before they are smoothed.
+         * Season buckets must be multiples of it.
+         */
+        public Builder period(Duration period) {
+            this.period = period;
+            return this;
+        }
+
+        public Builder seasons(List<Season> seasons) {
+            this.seasons = seasons;
+            return this;
+        }
+
+        /**
+         * Whether pods get a model of their own next to their workload's.
+         */
+        public Builder trackPods(boolean trackPods) {
+            this.trackPods = trackPods;
+            return this;
+        }
+
+        public Builder workloadResolver(WorkloadResolver workloadResolver) {
+            this.workloadResolver = workloadResolver;
+            return this;
+        }
+
+        /**
+         * Time of samples whose timestamp cannot be parsed.
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public SeasonalForecaster build() {
+            if (seasons == null) {
+                throw new IllegalStateException("Seasons are required, empty for none");
+            }
+            if (workloadResolver == null || clock == null) {
+                throw new IllegalStateException("WorkloadResolver and clock are required");
+            }
+            try {
+                // Validates the parameters once instead of for every series
+                new SeasonalModel(alpha, beta, phi, period, seasons);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            return new SeasonalForecaster(this);
+        }
+    }
+}
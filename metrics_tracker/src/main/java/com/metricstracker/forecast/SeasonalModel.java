@@ -0,0 +1,238 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Additive Holt-Winters (triple exponential smoothing) with any number of
+ * seasons, e.g. a daily and a weekly one, and a decaying correction for the
+ * latest deviation from the fit:
+ *
+ * <pre>
+ * forecast(t + h) = level + h * trend + sum of season offsets at t + h + phi^h * error
+ * </pre>
+ *
+ * Scrapes are averaged into periods of a few minutes and the level, the
+ * trend per period and the offset of the period's bucket in every season are
+ * updated once per period. Smoothing per scrape would let the level follow
+ * the daily cycle within minutes and leave the seasons nothing to learn. The
+ * deviation of the current, partial period from the fit is carried into the
+ * next minutes of the forecast and fades by {@code phi} per period, so a
+ * sudden surge is not ignored until the period closes.
+ *
+ * Each update costs O(seasons) regardless of how long the series is. Seasons
+ * start out flat and are learnt as the samples come in: until a first cycle
+ * has been seen the model forecasts like Holt's linear method.
+ */
+public final class SeasonalModel {
+    private final double alpha;
+    private final double beta;
+    private final double phi;
+    private final long periodMillis;
+    private final Season[] seasons;
+    private final float[][] offsets;
+
+    private double level;
+    private double trend;
+    // Start of the latest period folded into the level, Long.MIN_VALUE before the first one
+    private long levelMillis = Long.MIN_VALUE;
+
+    // Samples of the current period
+    private long periodStart;
+    private double periodSum;
+    private int periodSamples;
+
+    private long firstMillis;
+    private long lastMillis;
+    private long samples;
+
+    // Scrape counter of the last update, maintained by SeasonalForecaster
+    volatile long lastScrape;
+
+    /**
+     * @param alpha   Weight of a new period in the level, in (0, 1]
+     * @param beta    Weight of a new level change in the trend, in [0, 1]
+     * @param phi     Share of the latest deviation from the fit kept per period ahead, in [0, 1)
+     * @param period  Time over which scrapes are averaged, and the unit of the trend
+     * @param seasons Cycles to learn, may be empty. Their buckets must be
+     *                multiples of the period.
+     */
+    public SeasonalModel(double alpha, double beta, double phi, Duration period, List<Season> seasons) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Alpha must be in (0, 1]");
+        }
+        if (!(beta >= 0 && beta <= 1)) {
+            throw new IllegalArgumentException("Beta must be in [0, 1]");
+        }
+        if (!(phi >= 0 && phi < 1)) {
+            throw new IllegalArgumentException("Phi must be in [0, 1)");
+        }
+        if (period == null || period.toMillis() <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        this.alpha = alpha;
+        this.beta = beta;
+        this.phi = phi;
+        this.periodMillis = period.toMillis();
+        this.seasons = seasons.toArray(new Season[0]);
+        this.offsets = new float[this.seasons.length][];
+        for (int i = 0; i < this.seasons.length; i++) {
+            if (this.seasons[i].bucket().toMillis() % periodMillis != 0) {
+                throw new IllegalArgumentException("Season buckets must be multiples of the period");
+            }
+            offsets[i] = new float[this.seasons[i].buckets()];
+        }
+    }
+
+    /**
+     * Folds in the sample taken at {@code millis}. Samples not newer than the
+     * latest one are ignored.
+     */
+    public synchronized void update(long millis, double value) {
+        if (!Double.isFinite(value) || (samples > 0 && millis <= lastMillis)) {
+            return;
+        }
+        long period = Math.floorDiv(millis, periodMillis) * periodMillis;
+        if (samples == 0) {
+            firstMillis = millis;
+        } else if (period != periodStart) {
+            closePeriod(period);
+        }
+        if (periodSamples == 0) {
+            periodStart = period;
+        }
+        periodSum += value;
+        periodSamples++;
+        lastMillis = millis;
+        samples++;
+    }
+
+    // Folds the mean of the current period in, periods without samples are skipped along the trend
+    private void closePeriod(long next) {
+        double value = periodSum / periodSamples;
+        long start = periodStart;
+        periodSum = 0;
+        periodSamples = 0;
+        if (levelMillis == Long.MIN_VALUE) {
+            level = value;
+            levelMillis = start;
+            return;
+        }
+
+        double periods = Math.max(1.0, (start - levelMillis) / (double) periodMillis);
+        double seasonal = seasonalAt(start);
+        double previous = level;
+        level = alpha * (value - seasonal) + (1 - alpha) * (level + periods * trend);
+        trend = beta * (level - previous) / periods + (1 - beta) * trend;
+        levelMillis = start;
+
+        // Each season learns what the level and the other seasons leave unexplained
+        for (int i = 0; i < seasons.length; i++) {
+            int bucket = seasons[i].bucketOf(start);
+            double offset = offsets[i][bucket];
+            double others = seasonal - offset;
+            double gamma = seasons[i].gamma();
+            offsets[i][bucket] = (float) (gamma * (value - level - others) + (1 - gamma) * offset);
+        }
+    }
+
+    private double seasonalAt(long millis) {
+        double sum = 0;
+        for (int i = 0; i < seasons.length; i++) {
+            sum += offsets[i][seasons[i].bucketOf(millis)];
+        }
+        return sum;
+    }
+
+    // Level, trend and seasons at a time, without the error correction
+    private double fitAt(long millis) {
+        return level + trend * (millis - levelMillis) / periodMillis + seasonalAt(millis);
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Time of the latest sample, in epoch milliseconds.
+     */
+    public synchronized long getLastMillis() {
+        return lastMillis;
+    }
+
+    /**
+     * Whether the samples span at least one full cycle of the shortest
+     * season, so that the forecast follows a cycle rather than only the trend.
+     * Always true for a model without seasons once it has a sample.
+     */
+    public synchronized boolean isWarm() {
+        if (samples == 0) {
+            return false;
+        }
+        for (Season season : seasons) {
+            if (lastMillis - firstMillis >= season.length().toMillis()) {
+                return true;
+            }
+        }
+        return seasons.length == 0;
+    }
+
+    /**
+     * Forecasts the value at {@code millis}, normally after the latest sample.
+     */
+    public synchronized double forecastAt(long millis) {
+        if (samples == 0) {
+            return 0;
+        }
+        double current = periodSum / periodSamples;
+        if (levelMillis == Long.MIN_VALUE) {
+            // Still within the first period
+            return current;
+        }
+        double error = current - fitAt(periodStart);
+        double periodsAhead = Math.max(0, millis - lastMillis) / (double) periodMillis;
+        return fitAt(millis) + Math.pow(phi, periodsAhead) * error;
+    }
+
+    /**
+     * Forecasts {@code steps} values, {@code interval} apart, starting one
+     * interval after the latest sample.
+     */
+    public synchronized double[] forecast(Duration interval, int steps) {
+        double[] predictions = new double[steps];
+        long intervalMillis = interval.toMillis();
+        for (int h = 1; h <= steps; h++) {
+            predictions[h - 1] = forecastAt(lastMillis + h * intervalMillis);
+        }
+        return predictions;
+    }
+
+    /**
+     * Approximate heap held by the model.
+     */
+    public long sizeInBytes() {
+        long bytes = 120;
+        for (float[] season : offsets) {
+            bytes += 16 + 4L * season.length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.service.MetricsListener;
+import com.metricstracker.service.NodeMetricBatch;
+import com.metricstracker.service.PodMetricBatch;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one {@link TrendModel} per pod and node series and updates it from every
+ * scrape, so forecasts never need the history to be re-read or refitted.
+ *
+ * <p>Models are fed the time between samples in steps of the scrape interval,
+ * so forecasts stay one interval apart when a series is polled less often,
+ * e.g. a stable workload under adaptive scraping.
+ */
+public class TrendForecaster implements MetricsListener {
+    public static final int DEFAULT_STEPS = 3;
+    public static final int MIN_SAMPLES = 4;
+
+    // Series missing from this many consecutive scrapes are dropped
+    private static final int MAX_MISSED_SCRAPES = 20;
+
+    private final double decay;
+    private final long stepMillis;
+    private final Clock clock;
+    private final Map<MetricType, Map<String, TrendModel>> pods = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Map<String, TrendModel>> nodes = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Long> podScrapes = new EnumMap<>(MetricType.class);
+    private final Map<MetricType, Long> nodeScrapes = new EnumMap<>(MetricType.class);
+
+    /**
+     * @param step Scrape interval, the step of the forecasts
+     */
+    public TrendForecaster(double decay, Duration step) {
+        this(decay, step, Clock.systemUTC());
+    }
+
+    TrendForecaster(double decay, Duration step, Clock clock) {
+        if (step.toMillis() <= 0) {
+            throw new IllegalArgumentException("Step must be positive");
+        }
+        this.decay = decay;
+        this.stepMillis = step.toMillis();
+        this.clock = clock;
+        for (MetricType type : MetricType.values()) {
+            pods.put(type, new ConcurrentHashMap<>());
+            nodes.put(type, new ConcurrentHashMap<>());
+            podScrapes.put(type, 0L);
+            nodeScrapes.put(type, 0L);
+        }
+    }
+
+    @Override
+    public void onPodMetrics(MetricType type, PodMetricBatch metrics) {
+        Map<String, TrendModel> series = pods.get(type);
+        long scrape = podScrapes.merge(type, 1L, Long::sum);
+        long now = clock.millis();
+        for (int i = 0; i < metrics.size(); i++) {
+            TrendModel model = series.computeIfAbsent(metrics.podName(i), name -> new TrendModel(decay));
+            update(model, metrics.timestampMillis(i, now), metrics.value(i));
+            model.lastScrape = scrape;
+        }
+        evictStale(series, scrape);
+    }
+
+    @Override
+    public void onNodeMetrics(MetricType type, NodeMetricBatch metrics) {
+        Map<String, TrendModel> series = nodes.get(type);
+        long scrape = nodeScrapes.merge(type, 1L, Long::sum);
+        long now = clock.millis();
+        for (int i = 0; i < metrics.size(); i++) {
+            TrendModel model = series.computeIfAbsent(metrics.nodeName(i), name -> new TrendModel(decay));
+            update(model, metrics.timestampMillis(i, now), metrics.value(i));
+            model.lastScrape = scrape;
+        }
+        evictStale(series, scrape);
+    }
+
+    // Samples not newer than the previous one, e.g. an unchanged Prometheus sample, are skipped
+    private void update(TrendModel model, long millis, double value) {
+        if (!Double.isFinite(value) || millis <= model.lastMillis) {
+            return;
+        }
+        double steps = model.lastMillis == Long.MIN_VALUE ? 1 : (millis - model.lastMillis) / (double) stepMillis;
+        model.update(value, steps);
+        model.lastMillis = millis;
+    }
+
+    private static void evictStale(Map<String, TrendModel> series, long scrape) {
+        series.values().removeIf(model -> scrape - model.lastScrape > MAX_MISSED_SCRAPES);
+    }
+
+    public Optional<TrendModel> podSeries(MetricType type, String podName) {
+        return Optional.ofNullable(pods.get(type).get(podName));
+    }
+
+    public Optional<TrendModel> nodeSeries(MetricType type, String nodeName) {
+        return Optional.ofNullable(nodes.get(type).get(nodeName));
+    }
+
+    /**
+     * Forecasts a series, clamping predictions at zero since utilizations
+     * cannot be negative.
+     */
+    public static double[] forecast(TrendModel model, int steps) {
+        double[] predictions = model.forecast(steps);
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = Math.max(0.0, predictions[i]);
+        }
+        return predictions;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+/**
+ * Exponentially weighted least squares fit of y = intercept + slope * t.
+ *
+ * Only the weighted sufficient statistics are kept, with t measured in steps
+ * relative to the newest sample (0 is the latest sample, -1 one step before...).
+ * Each update shifts the origin by the steps elapsed since the previous sample,
+ * decays the statistics by as many steps and folds the new sample in, so it
+ * costs O(1) regardless of how long the series is. Samples need not be evenly
+ * spaced: a series polled every fourth step still forecasts per step.
+ */
+public final class TrendModel {
+    private final double decay;
+
+    // Weighted sums of 1, t, t^2, y and t*y
+    private double s0;
+    private double st;
+    private double stt;
+    private double sy;
+    private double sty;
+    private long samples;
+
+    // Scrape counter and sample time of the last update, maintained by TrendForecaster
+    volatile long lastScrape;
+    long lastMillis = Long.MIN_VALUE;
+
+    /**
+     * @param decay Weight kept by a sample per step, in (0, 1]. A decay of 1 is
+     *              an ordinary least squares fit over the whole history.
+     */
+    public TrendModel(double decay) {
+        if (!(decay > 0 && decay <= 1)) {
+            throw new IllegalArgumentException("Decay must be in (0, 1]");
+        }
+        this.decay = decay;
+    }
+
+    /**
+     * Adds a sample one step after the previous one.
+     */
+    public void update(double value) {
+        update(value, 1);
+    }
+
+    /**
+     * Adds a sample a number of steps, possibly fractional, after the previous one.
+     */
+    public synchronized void update(double value, double steps) {
+        if (!Double.isFinite(value) || !(steps >= 0)) {
+            return;
+        }
+        // Move the origin to the new sample: every previous t becomes t - steps
+        stt = stt - 2 * steps * st + steps * steps * s0;
+        sty = sty - steps * sy;
+        st = st - steps * s0;
+
+        double weight = steps == 1 ? decay : Math.pow(decay, steps);
+        s0 = s0 * weight + 1;
+        st *= weight;
+        stt *= weight;
+        sy = sy * weight + value;
+        sty *= weight;
+        samples++;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Forecasts the values one to {@code steps} steps after the latest sample.
+     */
+    public synchronized double[] forecast(int steps) {
+        double[] predictions = new double[steps];
+        if (samples == 0) {
+            return predictions;
+        }
+
+        double slope = 0;
+        double determinant = s0 * stt - st * st;
+        if (samples > 1 && determinant > 1e-12) {
+            slope = (s0 * sty - st * sy) / determinant;
+        }
+        double intercept = (sy - slope * st) / s0;
+
+        for (int h = 1; h <= steps; h++) {
+            predictions[h - 1] = intercept + slope * h;
+        }
+        return predictions;
+    }
+}
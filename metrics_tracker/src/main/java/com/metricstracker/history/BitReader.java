@@ -0,0 +1,62 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.history;
+
+/**
+ * Sequential reader over a bit stream written by {@link BitWriter}.
+ */
+final class BitReader {
+    private final long[] words;
+    private long position;
+
+    BitReader(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Reads {@code count} bits as an unsigned value, 1 <= count <= 64.
+     */
+    long read(int count) {
+        int word = (int) (position >>> 6);
+        int free = 64 - (int) (position & 63);
+        long value;
+        if (count <= free) {
+            value = words[word] >>> (free - count);
+        } else {
+            value = (words[word] << (count - free)) | (words[word + 1] >>> (64 - (count - free)));
+        }
+        position += count;
+        return count == 64 ? value : value & ((1L << count) - 1);
+    }
+
+    boolean readBit() {
+        int word = (int) (position >>> 6);
+        boolean bit = (words[word] << (position & 63)) < 0;
+        position++;
+        return bit;
+    }
+
+    /**
+     * Reads a two's complement value of {@code count} bits.
+     */
+    long readSigned(int count) {
+        long value = read(count);
+        return (value << (64 - count)) >> (64 - count);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.history;
+
+import java.util.Arrays;
+
+/**
+ * Append-only bit stream over a long array, most significant bit first.
+ */
+final class BitWriter {
+    private long[] words;
+    private long bits;
+
+    BitWriter(int initialWords) {
+        this.words = new long[Math.max(initialWords, 1)];
+    }
+
+    /**
+     * Appends the low {@code count} bits of {@code value}, 0 <= count <= 64.
+     */
+    void write(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        int word = (int) (bits >>> 6);
+        if (word + 1 >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        if (count < 64) {
+            value &= (1L << count) - 1;
+        }
+        int free = 64 - (int) (bits & 63);
+        if (count <= free) {
+            words[word] |= value << (free - count);
+        } else {
+            words[word] |= value >>> (count - free);
+            words[word + 1] |= value << (64 - (count - free));
+        }
+        bits += count;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    long bits() {
+        return bits;
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    /**
+     * Copy of the written words without the unused tail.
+     */
+    long[] toArray() {
+        return Arrays.copyOf(words, (int) ((bits + 63) >>> 6));
+    }
+}
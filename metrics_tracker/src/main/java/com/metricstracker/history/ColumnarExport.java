@@ -0,0 +1,234 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.history;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Columnar snapshot of a set of series, resampled onto a fixed time grid and
+ * produced as a stream of byte chunks, so hours of history can be exported
+ * without materialising the whole file on the server.
+ *
+ * The concatenated chunks form one little-endian file whose sections all start
+ * on 8 byte boundaries, so a consumer can memory-map it and view the columns in
+ * place (e.g. {@code reinterpret(Float64, ...)} in Julia, {@code np.frombuffer}
+ * in Python):
+ *
+ * <pre>
+ * offset       size      content
+ * 0            8         magic "MTCOLv01"
+ * 8            4         u32 series count S
+ * 12           4         u32 timestamp count T
+ * 16           8         i64 first timestamp, epoch milliseconds
+ * 24           8         i64 step, milliseconds
+ * 32           4         u32 dictionary size D in bytes, a multiple of 8
+ * 36           4         reserved, zero
+ * 40           D         name dictionary: u32 offsets[S + 1] into the UTF-8
+ *                        name bytes that follow, zero padded to D
+ * 40 + D       8 T       i64 timestamps[T], epoch milliseconds
+ * 40 + D + 8 T 8 T S     f64 values, one column of T values per series in
+ *                        dictionary order
+ * </pre>
+ *
+ * Row k covers [first + k step, first + (k + 1) step) and holds the last
+ * sample of the series in that step, or NaN when it has none.
+ */
+public final class ColumnarExport implements Iterator<byte[]> {
+    public static final String MAGIC = "MTCOLv01";
+    public static final int HEADER_BYTES = 40;
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    private final List<String> names;
+    private final Function<String, CompressedSeries> series;
+    private final long to;
+    private final long first;
+    private final long step;
+    private final int timestamps;
+    private final int chunkBytes;
+    private final long totalBytes;
+
+    private final double[] column;
+    private final ByteBuffer buffer;
+    private ByteBuffer section;
+    private int nextSeries = -1;
+    private long written;
+
+    /**
+     * @param names Series in column order
+     * @param series Series of a name, or null once it expired
+     * @param from Start of the export, rounded down to a whole step, epoch milliseconds
+     * @param to Exclusive end of the export, epoch milliseconds
+     * @param step Grid step in milliseconds
+     * @param chunkBytes Size of every chunk but the last
+     */
+    ColumnarExport(List<String> names, Function<String, CompressedSeries> series,
+            long from, long to, long step, int chunkBytes) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Step must be at least one millisecond");
+        }
+        if (chunkBytes < 8) {
+            throw new IllegalArgumentException("Chunks must hold at least 8 bytes");
+        }
+        this.names = List.copyOf(names);
+        this.series = series;
+        this.to = Math.max(from, to);
+        this.step = step;
+        this.first = Math.floorDiv(from, step) * step;
+        long rows = (this.to - first + step - 1) / step;
+        if (rows > Integer.MAX_VALUE / 8) {
+            throw new IllegalArgumentException("Export over " + rows + " steps is too long, use a longer step");
+        }
+        this.timestamps = (int) rows;
+        this.chunkBytes = chunkBytes;
+        this.column = new double[timestamps];
+        this.buffer = ByteBuffer.allocate(8 * timestamps).order(ByteOrder.LITTLE_ENDIAN);
+
+        ByteBuffer header = header();
+        this.totalBytes = header.remaining() + 8L * timestamps * (1L + this.names.size());
+        this.section = header;
+    }
+
+    private ByteBuffer header() {
+        byte[][] encoded = new byte[names.size()][];
+        int nameBytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            nameBytes += encoded[i].length;
+        }
+        int dictionaryBytes = align(4 * (names.size() + 1) + nameBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + dictionaryBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC.getBytes(StandardCharsets.US_ASCII))
+            .putInt(names.size())
+            .putInt(timestamps)
+            .putLong(first)
+            .putLong(step)
+            .putInt(dictionaryBytes)
+            .putInt(0);
+        int offset = 0;
+        buffer.putInt(offset);
+        for (byte[] name : encoded) {
+            offset += name.length;
+            buffer.putInt(offset);
+        }
+        for (byte[] name : encoded) {
+            buffer.put(name);
+        }
+        // Padding is already zero
+        return buffer.position(buffer.capacity()).flip();
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    public long firstTimestamp() {
+        return first;
+    }
+
+    public int timestampCount() {
+        return timestamps;
+    }
+
+    /**
+     * Size of the whole file, known before the first chunk is produced.
+     */
+    public long totalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return written < totalBytes;
+    }
+
+    /**
+     * Next chunk of the file, each a new array the caller may keep.
+     */
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        byte[] chunk = new byte[(int) Math.min(chunkBytes, totalBytes - written)];
+        int filled = 0;
+        while (filled < chunk.length) {
+            if (!section.hasRemaining()) {
+                section = nextSection();
+            }
+            int length = Math.min(section.remaining(), chunk.length - filled);
+            section.get(chunk, filled, length);
+            filled += length;
+        }
+        written += chunk.length;
+        return chunk;
+    }
+
+    /**
+     * Writes the remaining chunks to the stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        while (hasNext()) {
+            out.write(next());
+        }
+    }
+
+    // Every section after the header is one column, decoded into a reused buffer
+    private ByteBuffer nextSection() {
+        buffer.clear();
+        if (nextSeries < 0) {
+            for (int k = 0; k < timestamps; k++) {
+                buffer.putLong(first + k * step);
+            }
+        } else {
+            fill(series.apply(names.get(nextSeries)));
+            DoubleBuffer values = buffer.asDoubleBuffer();
+            values.put(column);
+            buffer.position(8 * timestamps);
+        }
+        nextSeries++;
+        return buffer.flip();
+    }
+
+    private void fill(CompressedSeries samples) {
+        Arrays.fill(column, Double.NaN);
+        if (samples == null) {
+            return;
+        }
+        // Samples come in time order, so the last one of a step wins
+        CompressedSeries.Cursor cursor = samples.cursor(first, to);
+        while (cursor.next()) {
+            column[(int) ((cursor.timestamp() - first) / step)] = cursor.value();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.history;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time series held in Gorilla-style compressed blocks.
+ *
+ * Timestamps (epoch milliseconds) are stored as the delta of their delta,
+ * which is zero or a few bits for regular scrapes. Values are XORed with the
+ * previous value and only the meaningful bits between the leading and trailing
+ * zeros are kept, reusing the previous bit window when the new one fits in it.
+ * Values can optionally be rounded to fewer significant mantissa bits first,
+ * which lengthens the trailing zeros of noisy series at a bounded relative error.
+ *
+ * Samples are appended to an open block that is sealed and trimmed once it
+ * holds {@code blockSamples} samples; every block starts from a raw sample, so
+ * range reads skip whole blocks and decode the rest sequentially. Old blocks
+ * are dropped whole when they fall out of retention.
+ */
+public final class CompressedSeries {
+    // 90 minutes of 15 second scrapes; the raw first sample and block header cost about 0.5 B per sample
+    public static final int DEFAULT_BLOCK_SAMPLES = 360;
+    public static final int LOSSLESS = 52;
+
+    private final int blockSamples;
+    private final int precisionBits;
+    private final ArrayDeque<Block> sealed = new ArrayDeque<>();
+
+    // Open block and encoder state
+    private BitWriter writer;
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading;
+    private int lastTrailing;
+
+    public CompressedSeries() {
+        this(DEFAULT_BLOCK_SAMPLES, LOSSLESS);
+    }
+
+    /**
+     * @param blockSamples  Samples per block
+     * @param precisionBits Significant mantissa bits kept per value, {@link #LOSSLESS} keeps all 52
+     */
+    public CompressedSeries(int blockSamples, int precisionBits) {
+        if (blockSamples < 2) {
+            throw new IllegalArgumentException("Blocks need at least two samples");
+        }
+        if (precisionBits < 1 || precisionBits > LOSSLESS) {
+            throw new IllegalArgumentException("Precision must be between 1 and 52 bits");
+        }
+        this.blockSamples = blockSamples;
+        this.precisionBits = precisionBits;
+    }
+
+    /**
+     * Appends a sample. Samples must arrive in increasing time order; others are ignored.
+     *
+     * @return Whether the sample was appended
+     */
+    public synchronized boolean append(long timestampMillis, double value) {
+        if (timestampMillis <= lastTimestamp) {
+            return false;
+        }
+        long valueBits = Double.doubleToRawLongBits(round(value));
+        if (count == 0) {
+            writer = new BitWriter(4);
+            writer.write(timestampMillis, 64);
+            writer.write(valueBits, 64);
+            firstTimestamp = timestampMillis;
+            lastDelta = 0;
+            lastLeading = -1;
+        } else {
+            long delta = timestampMillis - lastTimestamp;
+            writeTimestamp(delta - lastDelta);
+            writeValue(valueBits ^ lastValueBits);
+            lastDelta = delta;
+        }
+        lastTimestamp = timestampMillis;
+        lastValueBits = valueBits;
+
+        if (++count == blockSamples) {
+            sealed.addLast(new Block(writer.toArray(), count, firstTimestamp, lastTimestamp));
+            writer = null;
+            count = 0;
+        }
+        return true;
+    }
+
+    private double round(double value) {
+        if (precisionBits == LOSSLESS || !Double.isFinite(value)) {
+            return value;
+        }
+        int dropped = LOSSLESS - precisionBits;
+        long bits = Double.doubleToRawLongBits(value);
+        // Round half up on the magnitude; a carry correctly bumps the exponent
+        long rounded = (bits + (1L << (dropped - 1))) & -(1L << dropped);
+        double result = Double.longBitsToDouble(rounded);
+        return Double.isFinite(result) ? result : value;
+    }
+
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writer.write(0b0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta < 64) {
+            writer.write(0b10, 2);
+            writer.write(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta < 256) {
+            writer.write(0b110, 3);
+            writer.write(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta < 2048) {
+            writer.write(0b1110, 4);
+            writer.write(deltaOfDelta, 12);
+        } else if (deltaOfDelta >= Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE) {
+            writer.write(0b11110, 5);
+            writer.write(deltaOfDelta, 32);
+        } else {
+            writer.write(0b11111, 5);
+            writer.write(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writer.write(0b0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            writer.write(0b10, 2);
+            writer.write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            writer.write(0b11, 2);
+            writer.write(leading, 5);
+            // A full 64 bit window does not fit in six bits and is written as zero
+            writer.write(significant & 63, 6);
+            writer.write(xor >>> trailing, significant);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    /**
+     * Drops the blocks whose samples are all older than the given time.
+     */
+    public synchronized void dropBefore(long timestampMillis) {
+        while (!sealed.isEmpty() && sealed.peekFirst().lastTimestamp < timestampMillis) {
+            sealed.removeFirst();
+        }
+    }
+
+    public synchronized int size() {
+        int size = count;
+        for (Block block : sealed) {
+            size += block.count;
+        }
+        return size;
+    }
+
+    /**
+     * Timestamp of the latest sample, or {@link Long#MIN_VALUE} when empty.
+     */
+    public synchronized long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Heap held by the encoded samples, including the array headers of every block.
+     */
+    public synchronized long sizeInBytes() {
+        long bytes = 0;
+        for (Block block : sealed) {
+            bytes += Block.OVERHEAD_BYTES + 8L * block.words.length;
+        }
+        if (writer != null) {
+            bytes += Block.OVERHEAD_BYTES + 8L * writer.words().length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Cursor over the samples with from <= timestamp < to. Sealed blocks are
+     * shared and the open block is copied, so reading does not hold up appends.
+     */
+    public Cursor cursor(long fromMillis, long toMillis) {
+        List<Block> blocks = new ArrayList<>();
+        synchronized (this) {
+            for (Block block : sealed) {
+                if (block.lastTimestamp >= fromMillis && block.firstTimestamp < toMillis) {
+                    blocks.add(block);
+                }
+            }
+            if (count > 0 && lastTimestamp >= fromMillis && firstTimestamp < toMillis) {
+                blocks.add(new Block(writer.toArray(), count, firstTimestamp, lastTimestamp));
+            }
+        }
+        return new Cursor(blocks, fromMillis, toMillis);
+    }
+
+    /**
+     * Decodes the samples with from <= timestamp < to in time order.
+     *
+     * @return Number of samples passed to the consumer
+     */
+    public int read(long fromMillis, long toMillis, SampleConsumer consumer) {
+        Cursor cursor = cursor(fromMillis, toMillis);
+        int samples = 0;
+        while (cursor.next()) {
+            consumer.accept(cursor.timestamp(), cursor.value());
+            samples++;
+        }
+        return samples;
+    }
+
+    @FunctionalInterface
+    public interface SampleConsumer {
+        void accept(long timestampMillis, double value);
+    }
+
+    /**
+     * Forward-only decoder over a snapshot of blocks.
+     */
+    public static final class Cursor {
+        private final List<Block> blocks;
+        private final long from;
+        private final long to;
+        private int blockIndex = -1;
+        private BitReader reader;
+        private int remaining;
+        private boolean first;
+
+        private long timestamp;
+        private long delta;
+        private long valueBits;
+        private int leading;
+        private int trailing;
+
+        private Cursor(List<Block> blocks, long from, long to) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Advances to the next sample in range.
+         *
+         * @return false once the range is exhausted
+         */
+        public boolean next() {
+            while (true) {
+                if (remaining == 0 && !nextBlock()) {
+                    return false;
+                }
+                decode();
+                if (timestamp >= to) {
+                    remaining = 0;
+                    blockIndex = blocks.size();
+                    return false;
+                }
+                if (timestamp >= from) {
+                    return true;
+                }
+            }
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public double value() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        private boolean nextBlock() {
+            if (++blockIndex >= blocks.size()) {
+                return false;
+            }
+            Block block = blocks.get(blockIndex);
+            reader = new BitReader(block.words);
+            remaining = block.count;
+            first = true;
+            return true;
+        }
+
+        private void decode() {
+            remaining--;
+            if (first) {
+                first = false;
+                timestamp = reader.read(64);
+                valueBits = reader.read(64);
+                delta = 0;
+                leading = -1;
+                return;
+            }
+            delta += readDeltaOfDelta();
+            timestamp += delta;
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(5);
+                    int significant = (int) reader.read(6);
+                    if (significant == 0) {
+                        significant = 64;
+                    }
+                    trailing = 64 - leading - significant;
+                }
+                valueBits ^= reader.read(64 - leading - trailing) << trailing;
+            }
+        }
+
+        private long readDeltaOfDelta() {
+            if (!reader.readBit()) {
+                return 0;
+            }
+            if (!reader.readBit()) {
+                return reader.readSigned(7);
+            }
+            if (!reader.readBit()) {
+                return reader.readSigned(9);
+            }
+            if (!reader.readBit()) {
+                return reader.readSigned(12);
+            }
+            return reader.readBit() ? reader.readSigned(64) : reader.readSigned(32);
+        }
+    }
+
+    private static final class Block {
+        // Object header and fields plus the header of the word array
+        static final int OVERHEAD_BYTES = 56;
+
+        final long[] words;
+        final int count;
+        final long firstTimestamp;
+        final long lastTimestamp;
+
+        Block(long[] words, int count, long firstTimestamp, long lastTimestamp) {
+            this.words = words;
+            this.count = count;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.limit;
+
+import com.metricstracker.model.CallPriority;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+/**
+ * Sheds unary calls beyond the {@link ConcurrencyLimiter} with
+ * RESOURCE_EXHAUSTED and a {@code grpc-retry-pushback-ms} trailer, which gRPC
+ * clients with a retry policy for that code honour as the retry delay.
+ *
+ * Streaming calls are long lived and paced by flow control, so they are
+ * neither limited nor counted.
+ */
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+
+    public static final Metadata.Key<String> PRIORITY_KEY =
+        Metadata.Key.of(CallPriority.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+    public static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+        Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final ConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+            Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (call.getMethodDescriptor().getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.startCall(call, headers);
+        }
+
+        CallPriority priority = CallPriority.fromHeader(headers.get(PRIORITY_KEY));
+        Optional<ConcurrencyLimiter.Permit> acquired = limiter.tryAcquire(priority);
+        if (acquired.isEmpty()) {
+            long retryAfter = limiter.retryAfterMillis();
+            logger.debug("Rejecting {} call to {}, {} calls in flight", priority,
+                call.getMethodDescriptor().getFullMethodName(), limiter.inFlight());
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_PUSHBACK_KEY, Long.toString(retryAfter));
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Concurrency limit of " + limiter.limit()
+                + " reached for " + priority.headerValue() + " calls, retry in " + retryAfter + "ms"), trailers);
+            return new ServerCall.Listener<>() {};
+        }
+
+        ConcurrencyLimiter.Permit permit = acquired.get();
+        ServerCall<ReqT, RespT> released = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                permit.release();
+                super.close(status, trailers);
+            }
+        };
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(released, headers);
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            // A cancelled call is never closed, its latency still tells of a slow server
+            @Override
+            public void onCancel() {
+                permit.release();
+                super.onCancel();
+            }
+        };
+    }
+}
@@ -0,0 +1,215 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.limit;
+
+import com.metricstracker.model.CallPriority;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits calls while fewer than an adaptive limit are in flight and rejects
+ * the rest right away, instead of letting them queue for threads and
+ * Prometheus connections.
+ *
+ * Each {@link CallPriority} may only fill its share of the limit, so when the
+ * tracker saturates dashboard calls are rejected first and the remaining
+ * headroom stays free for reconcile calls.
+ */
+public class ConcurrencyLimiter {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 4;
+    public static final int DEFAULT_MAX_LIMIT = 500;
+    public static final double DEFAULT_SMOOTHING = 0.2;
+    public static final double DEFAULT_TOLERANCE = 1.5;
+    public static final int DEFAULT_LONG_WINDOW = 600;
+    public static final int DEFAULT_WINDOW_SAMPLES = 10;
+    public static final long MIN_RETRY_AFTER_MILLIS = 10;
+
+    private final GradientLimit limit;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private ConcurrencyLimiter(Builder builder) {
+        this.limit = new GradientLimit(builder.initialLimit, builder.minLimit, builder.maxLimit,
+            builder.smoothing, builder.tolerance, builder.longWindow, builder.windowSamples);
+        this.nanoTime = builder.nanoTime;
+    }
+
+    /**
+     * Admits a call of the given priority.
+     *
+     * @return Permit to release when the call finishes, empty when the call
+     *         has to be rejected
+     */
+    public Optional<Permit> tryAcquire(CallPriority priority) {
+        int admitted = Math.max(1, (int) (limit.limit() * priority.share()));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= admitted) {
+                rejected.increment();
+                return Optional.empty();
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return Optional.of(new Permit(current + 1, nanoTime.getAsLong()));
+            }
+        }
+    }
+
+    /**
+     * Delay a rejected caller should wait before retrying: about one call
+     * latency, when the calls in flight have made room.
+     */
+    public long retryAfterMillis() {
+        return Math.max(MIN_RETRY_AFTER_MILLIS, (long) Math.ceil(limit.shortRttNanos() / 1e6));
+    }
+
+    public int limit() {
+        return limit.limit();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Calls rejected since start.
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Slot of an admitted call. Releasing feeds its latency into the limit;
+     * only the first release counts.
+     */
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                limit.onSample(nanoTime.getAsLong() - startNanos, inFlightAtStart);
+            }
+        }
+    }
+
+    /**
+     * Builder pattern for limiter configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        private int minLimit = DEFAULT_MIN_LIMIT;
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+        private double smoothing = DEFAULT_SMOOTHING;
+        private double tolerance = DEFAULT_TOLERANCE;
+        private int longWindow = DEFAULT_LONG_WINDOW;
+        private int windowSamples = DEFAULT_WINDOW_SAMPLES;
+        private LongSupplier nanoTime = System::nanoTime;
+
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Weight of each window's estimate in the limit, in (0, 1].
+         */
+        public Builder smoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * Slowdown over the long term latency that still lets the limit grow.
+         */
+        public Builder tolerance(double tolerance) {
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Windows averaged into the long term latency.
+         */
+        public Builder longWindow(int longWindow) {
+            this.longWindow = longWindow;
+            return this;
+        }
+
+        /**
+         * Calls per latency window, each window updates the limit once.
+         */
+        public Builder windowSamples(int windowSamples) {
+            this.windowSamples = windowSamples;
+            return this;
+        }
+
+        public Builder nanoTime(LongSupplier nanoTime) {
+            this.nanoTime = nanoTime;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalStateException("Limits must satisfy 1 <= min <= max");
+            }
+            if (initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalStateException("Initial limit must be within [min, max]");
+            }
+            if (!(smoothing > 0 && smoothing <= 1)) {
+                throw new IllegalStateException("Smoothing must be in (0, 1]");
+            }
+            if (!(tolerance >= 1)) {
+                throw new IllegalStateException("Tolerance must be at least 1");
+            }
+            if (longWindow < 1 || windowSamples < 1) {
+                throw new IllegalStateException("Windows must hold at least one sample");
+            }
+            if (nanoTime == null) {
+                throw new IllegalStateException("Time source is required");
+            }
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.limit;
+
+/**
+ * Concurrency limit estimated from call latency, after the gradient algorithm
+ * of Netflix's concurrency-limits.
+ *
+ * Latencies are averaged over windows of calls and compared with a slow
+ * moving average of those windows. While the short term latency stays within
+ * the tolerance of the long term one the limit grows by about its square
+ * root per window; once calls queue up behind a slow dependency it shrinks in
+ * proportion to the slowdown, by at most half per window.
+ */
+final class GradientLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final double longDecay;
+    private final int windowSamples;
+
+    private volatile double limit;
+    private volatile double shortRttNanos;
+    private double longRttNanos;
+    private long windowRttNanos;
+    private int windowCount;
+    private int windowMaxInFlight;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance,
+            int longWindow, int windowSamples) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.longDecay = 2.0 / (longWindow + 1);
+        this.windowSamples = windowSamples;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * Mean latency of the last window, zero before the first one completed.
+     */
+    double shortRttNanos() {
+        return shortRttNanos;
+    }
+
+    /**
+     * Records a finished call.
+     *
+     * @param rttNanos Latency of the call
+     * @param inFlight Calls in flight when it started, itself included
+     */
+    synchronized void onSample(long rttNanos, int inFlight) {
+        windowRttNanos += rttNanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        if (++windowCount < windowSamples) {
+            return;
+        }
+        double shortRtt = (double) windowRttNanos / windowCount;
+        int maxInFlight = windowMaxInFlight;
+        windowRttNanos = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+
+        shortRttNanos = shortRtt;
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else {
+            longRttNanos += (shortRtt - longRttNanos) * longDecay;
+        }
+        // Once a slowdown is over, forget the inflated baseline quickly
+        if (longRttNanos > 2 * shortRtt) {
+            longRttNanos *= 0.95;
+        }
+        // Calls that never came close to the limit say nothing about it
+        if (maxInFlight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        double next = limit * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,266 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Prometheus query API serving a synthetic cluster.
+ *
+ * Answers /api/v1/query with an instant vector covering every synthetic pod or
+ * node, depending on which metric the PromQL query selects, including the
+ * request latency histogram buckets of each pod. Pods are grouped in
+ * StatefulSets ("svc-12-3") and nodes are node exporter instances
+ * ("10.0.1.7:9100"). Each series follows its own daily-like sine wave plus
+ * noise, so consecutive scrapes see values that move like real workloads.
+ *
+ * Bare range selectors of the pod CPU and request counters, as polled for
+ * rates computed in the tracker, get a range vector of monotonic counter
+ * samples every scrape interval, counting from the start of this server.
+ *
+ * Usage: FakePrometheusServer [--port 9090] [--pods 10000] [--nodes 500] [--pods-per-workload 10]
+ */
+public class FakePrometheusServer implements AutoCloseable {
+    private static final double PERIOD_SECONDS = 3600;
+    private static final int SCRAPE_SECONDS = 15;
+    private static final Pattern RANGE_SELECTOR = Pattern.compile("^\\w+\\{[^}]*}\\[(\\d+)s]$");
+    // Upper bounds in seconds, and share of requests at most that slow at a median of 100ms
+    private static final String[] BUCKET_BOUNDS = {"0.025", "0.05", "0.1", "0.25", "0.5", "1", "+Inf"};
+    private static final double[] BUCKET_SHARES = {0.05, 0.2, 0.5, 0.85, 0.96, 0.99, 1.0};
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final HttpServer server;
+    private final int pods;
+    private final int nodes;
+    private final int podsPerWorkload;
+
+    public FakePrometheusServer(int port, int pods, int nodes, int podsPerWorkload) throws IOException {
+        this.pods = pods;
+        this.nodes = nodes;
+        this.podsPerWorkload = podsPerWorkload;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/api/v1/query", this::handleQuery);
+        this.server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        String query = queryParameter(exchange.getRequestURI().getRawQuery());
+        long millis = System.currentTimeMillis();
+        double now = millis / 1000.0;
+        String timestamp = (millis / 1000) + "." + String.format("%03d", millis % 1000);
+
+        Matcher range = RANGE_SELECTOR.matcher(query.strip());
+        if (range.matches()) {
+            handleRange(exchange, query, millis, Integer.parseInt(range.group(1)));
+            return;
+        }
+
+        StringBuilder body = new StringBuilder(64 + Math.max(pods, nodes) * 96);
+        body.append("{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[");
+        if (query.contains("http_server_requests_seconds_bucket")) {
+            appendBuckets(body, now, timestamp);
+        } else if (query.contains("container_cpu_usage_seconds_total")) {
+            appendPods(body, now, timestamp, 0.05, 1.5);
+        } else if (query.contains("container_memory_working_set_bytes")) {
+            appendPods(body, now, timestamp, 64.0 * 1024 * 1024, 2048.0 * 1024 * 1024);
+        } else if (query.contains("http_server_requests_seconds_count")) {
+            appendPods(body, now, timestamp, 1, 500);
+        } else if (query.contains("node_cpu_seconds_total")) {
+            appendNodes(body, now, timestamp, 0.5, 16);
+        } else if (query.contains("node_memory")) {
+            appendNodes(body, now, timestamp, 10, 95);
+        }
+        body.append("]}}");
+        respond(exchange, body);
+    }
+
+    // Counter samples of every pod on the scrape grid within the window
+    private void handleRange(HttpExchange exchange, String query, long millis, int seconds) throws IOException {
+        double min = 0.05;
+        double max = 1.5;
+        if (query.startsWith("http_server_requests_seconds_count")) {
+            min = 1;
+            max = 500;
+        } else if (!query.startsWith("container_cpu_usage_seconds_total")) {
+            min = 0;
+            max = 0;
+        }
+        long from = Math.max(millis / 1000 - seconds, startMillis / 1000);
+        long first = (from + SCRAPE_SECONDS - 1) / SCRAPE_SECONDS * SCRAPE_SECONDS;
+        long last = millis / 1000 / SCRAPE_SECONDS * SCRAPE_SECONDS;
+
+        StringBuilder body = new StringBuilder(64 + pods * (64 + 40 * (seconds / SCRAPE_SECONDS + 1)));
+        body.append("{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[");
+        for (int i = 0; max > 0 && i < pods; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"metric\":{\"container\":\"app\",\"pod\":\"svc-")
+                .append(i / podsPerWorkload).append('-').append(i % podsPerWorkload)
+                .append("\"},\"values\":[");
+            for (long t = first; t <= last; t += SCRAPE_SECONDS) {
+                if (t > first) {
+                    body.append(',');
+                }
+                body.append('[').append(t).append(",\"").append(counter(i, t, min, max)).append("\"]");
+            }
+            body.append("]}");
+        }
+        body.append("]}}");
+        respond(exchange, body);
+    }
+
+    private static void respond(HttpExchange exchange, StringBuilder body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Cumulative request rate of each pod under each latency bound, slower on busier pods
+    private void appendBuckets(StringBuilder body, double now, String timestamp) {
+        for (int i = 0; i < pods; i++) {
+            double hits = value(i, now, 1, 500);
+            double slowdown = 0.5 + hits / 500;
+            String pod = "svc-" + (i / podsPerWorkload) + '-' + (i % podsPerWorkload);
+            for (int bucket = 0; bucket < BUCKET_BOUNDS.length; bucket++) {
+                if (i > 0 || bucket > 0) {
+                    body.append(',');
+                }
+                double share = bucket == BUCKET_BOUNDS.length - 1
+                    ? 1.0
+                    : Math.pow(BUCKET_SHARES[bucket], slowdown);
+                body.append("{\"metric\":{\"le\":\"").append(BUCKET_BOUNDS[bucket])
+                    .append("\",\"pod\":\"").append(pod)
+                    .append("\"},\"value\":[").append(timestamp).append(",\"")
+                    .append(hits * share).append("\"]}");
+            }
+        }
+    }
+
+    private void appendPods(StringBuilder body, double now, String timestamp, double min, double max) {
+        for (int i = 0; i < pods; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"metric\":{\"pod\":\"svc-")
+                .append(i / podsPerWorkload).append('-').append(i % podsPerWorkload)
+                .append("\"},\"value\":[").append(timestamp).append(",\"")
+                .append(value(i, now, min, max)).append("\"]}");
+        }
+    }
+
+    private void appendNodes(StringBuilder body, double now, String timestamp, double min, double max) {
+        for (int i = 0; i < nodes; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"metric\":{\"instance\":\"10.")
+                .append((i >>> 16) & 0xff).append('.').append((i >>> 8) & 0xff).append('.').append(i & 0xff)
+                .append(":9100\"},\"value\":[").append(timestamp).append(",\"")
+                .append(value(i + 1_000_003, now, min, max)).append("\"]}");
+        }
+    }
+
+    /*
+     * Total counted since this server started of a rate following the noiseless
+     * wave of value(), its closed-form integral so that samples never decrease.
+     */
+    private double counter(int series, long seconds, double min, double max) {
+        long hash = series * 0x9E3779B97F4A7C15L;
+        double baseline = ((hash >>> 11) & 0xffff) / 65535.0;
+        double phase = ((hash >>> 27) & 0xffff) / 65535.0 * 2 * Math.PI;
+        double omega = 2 * Math.PI / PERIOD_SECONDS;
+        double amplitude = 0.7 * 0.35 * baseline;
+        double mean = 0.3 * baseline + 0.7 * 0.5;
+        double start = startMillis / 1000.0;
+        double integral = mean * (seconds - start)
+            - amplitude / omega * (Math.cos(omega * seconds + phase) - Math.cos(omega * start + phase));
+        return min * (seconds - start) + (max - min) * integral;
+    }
+
+    // Per series baseline and phase derived from its index, plus a little noise
+    private static double value(int series, double now, double min, double max) {
+        long hash = series * 0x9E3779B97F4A7C15L;
+        double baseline = ((hash >>> 11) & 0xffff) / 65535.0;
+        double phase = ((hash >>> 27) & 0xffff) / 65535.0 * 2 * Math.PI;
+        double wave = 0.5 + 0.35 * Math.sin(2 * Math.PI * now / PERIOD_SECONDS + phase) * baseline;
+        double noise = (Math.random() - 0.5) * 0.1;
+        double level = Math.min(1, Math.max(0, 0.3 * baseline + 0.7 * wave + noise));
+        return min + (max - min) * level;
+    }
+
+    private static String queryParameter(String rawQuery) {
+        if (rawQuery == null) {
+            return "";
+        }
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.startsWith("query=")) {
+                return URLDecoder.decode(parameter.substring("query=".length()), StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 9090;
+        int pods = 10_000;
+        int nodes = 500;
+        int podsPerWorkload = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--pods" -> pods = Integer.parseInt(args[i + 1]);
+                case "--nodes" -> nodes = Integer.parseInt(args[i + 1]);
+                case "--pods-per-workload" -> podsPerWorkload = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        FakePrometheusServer server = new FakePrometheusServer(port, pods, nodes, podsPerWorkload);
+        server.start();
+        System.out.printf("Fake Prometheus serving %d pods and %d nodes on port %d%n", pods, nodes, server.getPort());
+    }
+}
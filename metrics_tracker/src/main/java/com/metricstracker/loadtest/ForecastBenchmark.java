@@ -0,0 +1,331 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.loadtest;
+
+import com.metricstracker.forecast.SeasonalForecaster;
+import com.metricstracker.forecast.SeasonalModel;
+import com.metricstracker.forecast.TrendForecaster;
+import com.metricstracker.forecast.TrendModel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Replays workload load traces through the {@link TrendModel} the tracker
+ * forecasts pods with, a {@link SeasonalModel} with daily and weekly seasons
+ * and the linear fit of the Julia LoadController, and compares their forecasts
+ * minutes ahead with what happened.
+ *
+ * Traces are CSV files of {@code timestamp,service,pod,cpu,memory,hits} rows,
+ * in epoch seconds with one row per pod and scrape, as the scaling
+ * controller's trace simulator reads them. The CPU of all pods of a service
+ * is summed per timestamp. Without a trace, workloads with a morning ramp,
+ * an evening decline, quieter weekends and slow growth are generated.
+ *
+ * Forecasts are scored after a warm-up, by default all but the last week, as
+ * the weighted absolute percentage error (WAPE) and the share of samples
+ * that came in more than 10% above the forecast, i.e. when replicas sized on
+ * the forecast would have been short.
+ *
+ * LoadController fits {@code y = a + b t} to the usage window it is given and
+ * extrapolates the line. Its state space regression has constant coefficients,
+ * so after filtering they are the ordinary least squares ones computed here,
+ * over the last {@code --linear-window} scrapes. Unlike LoadController the
+ * forecast is not capped at 100, as the summed CPU of a workload is not a
+ * percentage.
+ *
+ * Usage: ForecastBenchmark [--trace file.csv] [--services 30] [--weeks 3]
+ *     [--warmup-days 14] [--decay 0.9] [--alpha a] [--beta b] [--phi p]
+ *     [--linear-window 20]
+ */
+public class ForecastBenchmark {
+    private static final int[] HORIZON_MINUTES = {1, 5, 15, 30};
+    private static final long SCRAPE_MILLIS = 15_000;
+    // Monday 2023-11-13 00:00 UTC, so generated weekends fall on weekends
+    private static final long START_MILLIS = 1_699_833_600_000L;
+    private static final double LATE_MARGIN = 1.1;
+    // LoadController's validate_input minimum
+    private static final int LINEAR_MIN_SAMPLES = 4;
+
+    private final List<String> names;
+    private final List<long[]> timestamps;
+    private final List<double[]> values;
+
+    private ForecastBenchmark(List<String> names, List<long[]> timestamps, List<double[]> values) {
+        this.names = names;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    /**
+     * Generates {@code services} workloads over {@code weeks} weeks of 15 second scrapes.
+     */
+    public static ForecastBenchmark generate(int services, int weeks) {
+        Random random = new Random(1);
+        int samples = (int) (Duration.ofDays(7L * weeks).toMillis() / SCRAPE_MILLIS);
+        long[] times = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            times[i] = START_MILLIS + i * SCRAPE_MILLIS;
+        }
+        List<String> names = new ArrayList<>();
+        List<long[]> timestamps = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        for (int s = 0; s < services; s++) {
+            double base = 100 + random.nextDouble() * 600;
+            double weekend = 0.4 + random.nextDouble() * 0.4;
+            double growthPerWeek = random.nextDouble() * 0.05;
+            // Workloads serve different time zones
+            double shiftHours = random.nextInt(6);
+            double[] load = new double[samples];
+            double drift = 0;
+            for (int i = 0; i < samples; i++) {
+                double hours = (times[i] - START_MILLIS) / 3_600_000.0 - shiftHours;
+                double day = Math.floorMod((long) Math.floor(hours / 24), 7L);
+                double profile = daily(hours - 24 * Math.floor(hours / 24)) * (day >= 5 ? weekend : 1);
+                double growth = 1 + growthPerWeek * hours / 168;
+                // Slow random drift on top of the cycle, plus per-scrape noise
+                drift = 0.999 * drift + 0.003 * random.nextGaussian();
+                load[i] = Math.max(0, base * growth * (profile + drift) * (1 + 0.08 * random.nextGaussian()));
+            }
+            names.add("svc-" + s);
+            timestamps.add(times);
+            values.add(load);
+        }
+        return new ForecastBenchmark(names, timestamps, values);
+    }
+
+    // Share of the daily peak by hour of day: quiet nights, a ramp from 6:30 to 9:00, a lunch dip
+    private static double daily(double hour) {
+        double night = 0.3;
+        if (hour < 6.5 || hour >= 22) {
+            return night;
+        }
+        if (hour < 9) {
+            return night + (1 - night) * smoothstep((hour - 6.5) / 2.5);
+        }
+        if (hour < 17) {
+            return 1 - 0.15 * Math.exp(-Math.pow((hour - 12.5) / 0.75, 2));
+        }
+        return 1 - (1 - night) * smoothstep((hour - 17) / 5);
+    }
+
+    private static double smoothstep(double x) {
+        return x * x * (3 - 2 * x);
+    }
+
+    /**
+     * Reads a trace, summing the CPU of the pods of each service per timestamp.
+     */
+    public static ForecastBenchmark load(Path trace) throws IOException {
+        Map<String, TreeMap<Long, Double>> services = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(trace)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",", 5);
+                if (fields.length < 4 || line.startsWith("#") || line.startsWith("timestamp,")) {
+                    continue;
+                }
+                long millis = Long.parseLong(fields[0]) * 1000;
+                services.computeIfAbsent(fields[1], name -> new TreeMap<>())
+                    .merge(millis, Double.parseDouble(fields[3]), Double::sum);
+            }
+        }
+        List<String> names = new ArrayList<>();
+        List<long[]> timestamps = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        for (Map.Entry<String, TreeMap<Long, Double>> service : services.entrySet()) {
+            long[] times = new long[service.getValue().size()];
+            double[] load = new double[times.length];
+            int i = 0;
+            for (Map.Entry<Long, Double> sample : service.getValue().entrySet()) {
+                times[i] = sample.getKey();
+                load[i++] = sample.getValue();
+            }
+            names.add(service.getKey());
+            timestamps.add(times);
+            values.add(load);
+        }
+        return new ForecastBenchmark(names, timestamps, values);
+    }
+
+    public void run(Duration warmup, double decay, double alpha, double beta, double phi, int linearWindow) {
+        if (linearWindow < LINEAR_MIN_SAMPLES) {
+            throw new IllegalArgumentException("The linear window needs at least " + LINEAR_MIN_SAMPLES + " samples");
+        }
+        int horizons = HORIZON_MINUTES.length;
+        Score[] trend = new Score[horizons];
+        Score[] seasonal = new Score[horizons];
+        Score[] linear = new Score[horizons];
+        for (int h = 0; h < horizons; h++) {
+            trend[h] = new Score();
+            seasonal[h] = new Score();
+            linear[h] = new Score();
+        }
+
+        long start = System.nanoTime();
+        long updates = 0;
+        for (int s = 0; s < names.size(); s++) {
+            long[] times = timestamps.get(s);
+            double[] load = values.get(s);
+            if (times.length < 2) {
+                continue;
+            }
+            long scrapeMillis = times[1] - times[0];
+            int[] steps = new int[horizons];
+            for (int h = 0; h < horizons; h++) {
+                steps[h] = (int) Math.max(1, Duration.ofMinutes(HORIZON_MINUTES[h]).toMillis() / scrapeMillis);
+            }
+            int longest = steps[horizons - 1];
+            long scoreFrom = times[0] + warmup.toMillis();
+
+            TrendModel trendModel = new TrendModel(decay);
+            SeasonalModel seasonalModel = new SeasonalModel(alpha, beta, phi, SeasonalForecaster.DEFAULT_PERIOD,
+                SeasonalForecaster.DEFAULT_SEASONS);
+            for (int i = 0; i < load.length; i++) {
+                trendModel.update(load[i]);
+                seasonalModel.update(times[i], load[i]);
+                updates++;
+                if (times[i] < scoreFrom || trendModel.getSamples() < TrendForecaster.MIN_SAMPLES
+                        || i + 1 < linearWindow) {
+                    continue;
+                }
+                double[] trendForecast = TrendForecaster.forecast(trendModel, longest);
+                LinearFit line = LinearFit.of(load, i + 1 - linearWindow, linearWindow);
+                for (int h = 0; h < horizons; h++) {
+                    int target = i + steps[h];
+                    if (target >= load.length) {
+                        break;
+                    }
+                    trend[h].add(trendForecast[steps[h] - 1], load[target]);
+                    seasonal[h].add(Math.max(0, seasonalModel.forecastAt(times[target])), load[target]);
+                    linear[h].add(Math.max(0, line.at(linearWindow - 1 + steps[h])), load[target]);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d workloads, scored after %.1f days, %.1f M updates/s of all models, linear window %d%n",
+            names.size(), warmup.toMinutes() / 1440.0, updates / seconds / 1e6, linearWindow);
+        System.out.printf("%-8s %12s %12s %12s %12s %12s %12s%n",
+            "horizon", "trend WAPE", "seasonal", "linear", "trend late", "seasonal", "linear");
+        for (int h = 0; h < horizons; h++) {
+            System.out.printf("%-8s %11.1f%% %11.1f%% %11.1f%% %11.1f%% %11.1f%% %11.1f%%%n", HORIZON_MINUTES[h] + "m",
+                trend[h].wape(), seasonal[h].wape(), linear[h].wape(),
+                trend[h].late(), seasonal[h].late(), linear[h].late());
+        }
+    }
+
+    /**
+     * Least squares line through a window of samples, indexed from 0 at its start.
+     */
+    record LinearFit(double intercept, double slope) {
+        static LinearFit of(double[] values, int from, int length) {
+            // Centering the index keeps the sums small and the slope exact
+            double meanIndex = (length - 1) / 2.0;
+            double meanValue = 0;
+            for (int i = 0; i < length; i++) {
+                meanValue += values[from + i];
+            }
+            meanValue /= length;
+            double covariance = 0;
+            double variance = 0;
+            for (int i = 0; i < length; i++) {
+                double x = i - meanIndex;
+                covariance += x * (values[from + i] - meanValue);
+                variance += x * x;
+            }
+            double slope = covariance / variance;
+            return new LinearFit(meanValue - slope * meanIndex, slope);
+        }
+
+        double at(double index) {
+            return intercept + slope * index;
+        }
+    }
+
+    private static final class Score {
+        private double absoluteError;
+        private double actual;
+        private long late;
+        private long count;
+
+        void add(double forecast, double value) {
+            absoluteError += Math.abs(forecast - value);
+            actual += Math.abs(value);
+            if (value > forecast * LATE_MARGIN) {
+                late++;
+            }
+            count++;
+        }
+
+        double wape() {
+            return actual == 0 ? 0 : 100 * absoluteError / actual;
+        }
+
+        double late() {
+            return count == 0 ? 0 : 100.0 * late / count;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path trace = null;
+        int services = 30;
+        int weeks = 3;
+        Integer warmupDays = null;
+        double decay = 0.9;
+        double alpha = SeasonalForecaster.DEFAULT_ALPHA;
+        double beta = SeasonalForecaster.DEFAULT_BETA;
+        double phi = SeasonalForecaster.DEFAULT_PHI;
+        int linearWindow = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--trace" -> trace = Path.of(args[i + 1]);
+                case "--services" -> services = Integer.parseInt(args[i + 1]);
+                case "--weeks" -> weeks = Integer.parseInt(args[i + 1]);
+                case "--warmup-days" -> warmupDays = Integer.parseInt(args[i + 1]);
+                case "--decay" -> decay = Double.parseDouble(args[i + 1]);
+                case "--alpha" -> alpha = Double.parseDouble(args[i + 1]);
+                case "--beta" -> beta = Double.parseDouble(args[i + 1]);
+                case "--phi" -> phi = Double.parseDouble(args[i + 1]);
+                case "--linear-window" -> linearWindow = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        ForecastBenchmark benchmark = trace != null ? load(trace) : generate(services, weeks);
+        Duration warmup;
+        if (warmupDays != null) {
+            warmup = Duration.ofDays(warmupDays);
+        } else {
+            long span = 0;
+            for (long[] times : benchmark.timestamps) {
+                span = Math.max(span, times[times.length - 1] - times[0]);
+            }
+            warmup = Duration.ofMillis(Math.max(0, span - Duration.ofDays(7).toMillis()));
+        }
+        benchmark.run(warmup, decay, alpha, beta, phi, linearWindow);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.loadtest;
+
+import com.metricstracker.history.CompressedSeries;
+
+import java.util.Random;
+
+/**
+ * Compares {@link CompressedSeries} with raw timestamp and value arrays on
+ * series shaped like the scraped pod metrics: noisy CPU percentages, memory in
+ * MB that moves in pages, and request rates derived from integer counters.
+ *
+ * Reports heap per sample and sequential decode throughput for lossless and
+ * rounded encodings, with timestamps truncated to seconds as
+ * {@link com.metricstracker.history.MetricHistory} stores them.
+ *
+ * Usage: HistoryBenchmark [--series 3000] [--samples 1440] [--rounds 5]
+ */
+public class HistoryBenchmark {
+    private static final long SCRAPE_MILLIS = 15_000;
+    private static final int[] PRECISIONS = {CompressedSeries.LOSSLESS, 24, 16, 12};
+
+    private final long[][] timestamps;
+    private final double[][] values;
+    private final String[] shapes;
+
+    public HistoryBenchmark(int seriesCount, int samples) {
+        Random random = new Random(1);
+        timestamps = new long[seriesCount][samples];
+        values = new double[seriesCount][samples];
+        shapes = new String[seriesCount];
+        for (int s = 0; s < seriesCount; s++) {
+            long time = 1_700_000_000_000L + random.nextInt(15_000);
+            double base = 10 + random.nextDouble() * 50;
+            long pages = 50_000 + random.nextInt(200_000);
+            long requests = 0;
+            shapes[s] = switch (s % 3) {
+                case 0 -> "cpu";
+                case 1 -> "memory";
+                default -> "hits";
+            };
+            for (int i = 0; i < samples; i++) {
+                // The scraper runs with a fixed delay, so intervals drift by the query latency
+                time += SCRAPE_MILLIS + random.nextInt(40);
+                timestamps[s][i] = time / 1000 * 1000;
+                values[s][i] = switch (s % 3) {
+                    case 0 -> Math.max(0, base + 10 * Math.sin(i / 240.0) + random.nextGaussian() * 2);
+                    case 1 -> {
+                        if (random.nextInt(10) == 0) {
+                            pages += random.nextInt(200) - 100;
+                        }
+                        yield pages * 4096 / (1024.0 * 1024.0);
+                    }
+                    default -> {
+                        long previous = requests;
+                        requests += (long) (base * 15 + random.nextGaussian() * base);
+                        yield (requests - previous) / 60.0;
+                    }
+                };
+            }
+        }
+    }
+
+    public void run(int rounds) {
+        int seriesCount = values.length;
+        long samples = (long) seriesCount * values[0].length;
+        long rawBytes = 0;
+        for (int s = 0; s < seriesCount; s++) {
+            // Two arrays per series, each with a 16 byte header
+            rawBytes += 32 + 16L * values[s].length;
+        }
+
+        System.out.printf("%d series x %d samples%n", seriesCount, values[0].length);
+        System.out.printf("%-14s %10s %8s %8s %14s %12s%n",
+            "encoding", "MB", "B/sample", "ratio", "decode Ms/s", "max rel err");
+        double rawRate = rawScan(rounds, samples);
+        System.out.printf("%-14s %10.1f %8.2f %8.1f %14.1f %12s%n",
+            "raw arrays", rawBytes / 1048576.0, (double) rawBytes / samples, 1.0, rawRate, "0");
+
+        for (int precision : PRECISIONS) {
+            CompressedSeries[] series = new CompressedSeries[seriesCount];
+            long bytes = 0;
+            for (int s = 0; s < seriesCount; s++) {
+                series[s] = new CompressedSeries(CompressedSeries.DEFAULT_BLOCK_SAMPLES, precision);
+                for (int i = 0; i < values[s].length; i++) {
+                    series[s].append(timestamps[s][i], values[s][i]);
+                }
+                bytes += series[s].sizeInBytes();
+            }
+            double rate = decodeScan(series, rounds, samples);
+            System.out.printf("%-14s %10.1f %8.2f %8.1f %14.1f %12.2e%n",
+                precision == CompressedSeries.LOSSLESS ? "lossless" : precision + " bits",
+                bytes / 1048576.0, (double) bytes / samples, (double) rawBytes / bytes, rate, maxError(series));
+        }
+    }
+
+    private double rawScan(int rounds, long samples) {
+        double best = 0;
+        double checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int s = 0; s < values.length; s++) {
+                long[] times = timestamps[s];
+                double[] series = values[s];
+                for (int i = 0; i < series.length; i++) {
+                    checksum += series[i] + times[i];
+                }
+            }
+            best = Math.max(best, samples / ((System.nanoTime() - start) / 1e9) / 1e6);
+        }
+        consume(checksum);
+        return best;
+    }
+
+    private static double decodeScan(CompressedSeries[] series, int rounds, long samples) {
+        double best = 0;
+        double checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (CompressedSeries s : series) {
+                CompressedSeries.Cursor cursor = s.cursor(Long.MIN_VALUE, Long.MAX_VALUE);
+                while (cursor.next()) {
+                    checksum += cursor.value() + cursor.timestamp();
+                }
+            }
+            best = Math.max(best, samples / ((System.nanoTime() - start) / 1e9) / 1e6);
+        }
+        consume(checksum);
+        return best;
+    }
+
+    private double maxError(CompressedSeries[] series) {
+        double[] max = {0};
+        for (int s = 0; s < series.length; s++) {
+            double[] expected = values[s];
+            int[] index = {0};
+            series[s].read(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> {
+                double original = expected[index[0]++];
+                if (original != 0) {
+                    max[0] = Math.max(max[0], Math.abs(value - original) / Math.abs(original));
+                }
+            });
+        }
+        return max[0];
+    }
+
+    private static void consume(double checksum) {
+        if (checksum == 42) {
+            System.out.println();
+        }
+    }
+
+    public static void main(String[] args) {
+        int series = 3000;
+        int samples = 1440;
+        int rounds = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--series" -> series = Integer.parseInt(args[i + 1]);
+                case "--samples" -> samples = Integer.parseInt(args[i + 1]);
+                case "--rounds" -> rounds = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        new HistoryBenchmark(series, samples).run(rounds);
+    }
+}
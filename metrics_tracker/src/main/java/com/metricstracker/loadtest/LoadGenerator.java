@@ -0,0 +1,290 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.loadtest;
+
+import com.metricstracker.proto.*;
+import com.metricstracker.service.WorkloadResolver;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives every unary MetricsTracker RPC, and the ExportHistory stream drained
+ * to its end, at a target rate and reports latency percentiles, throughput and
+ * the server heap and GC activity during the run. WatchAnomalies is left out:
+ * its stream stays open and has no latency to measure.
+ *
+ * Load is open loop: each worker owns a slice of the target rate and latency is
+ * measured from the time a call was scheduled to start, so a stalled server
+ * shows up as queueing delay instead of silently lowering the offered load.
+ *
+ * Usage: LoadGenerator [--target localhost:50051] [--rate 100] [--duration 60]
+ *                      [--threads 16] [--rpcs GetPodsCPUUtilization,...]
+ */
+public class LoadGenerator {
+    private static final int MAX_MESSAGE_BYTES = 512 * 1024 * 1024;
+    private static final int MAX_RECOMMENDED_SERVICES = 100;
+    private static final double NODE_CPU_MILLICORES = 16_000;
+    private static final double NODE_MEMORY_BYTES = 64.0 * 1024 * 1024 * 1024;
+
+    private final MetricsTrackerGrpc.MetricsTrackerBlockingStub stub;
+    private final Map<String, Runnable> calls = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+
+    public LoadGenerator(ManagedChannel channel, Set<String> rpcs) {
+        this.stub = MetricsTrackerGrpc.newBlockingStub(channel);
+
+        MetricsRequest request = MetricsRequest.newBuilder().setSeconds(60).build();
+        PodMetricsResponse pods = stub.getPodsCPUUtilization(request);
+        NodeMetricsResponse nodes = stub.getNodesCPUUtilization(request);
+        String podName = pods.getMetricsCount() > 0 ? pods.getMetrics(0).getPodName() : "";
+        String nodeName = nodes.getMetricsCount() > 0 ? nodes.getMetrics(0).getNodeName() : "";
+
+        register("GetPodsCPUUtilization", () -> stub.getPodsCPUUtilization(request));
+        register("GetPodsMemoryUtilization", () -> stub.getPodsMemoryUtilization(request));
+        register("GetPodsHitsUtilization", () -> stub.getPodsHitsUtilization(request));
+        register("GetNodesCPUUtilization", () -> stub.getNodesCPUUtilization(request));
+        register("GetNodesMemoryUtilization", () -> stub.getNodesMemoryUtilization(request));
+        register("GetPodForecast", () -> stub.getPodForecast(
+            ForecastRequest.newBuilder().setName(podName).build()));
+        register("GetNodeForecast", () -> stub.getNodeForecast(
+            ForecastRequest.newBuilder().setName(nodeName).build()));
+        Set<String> statefulSets = statefulSets(pods);
+        String workloadName = statefulSets.isEmpty() ? "" : statefulSets.iterator().next();
+        register("GetWorkloadForecast", () -> stub.getWorkloadForecast(
+            ForecastRequest.newBuilder().setName(workloadName).build()));
+        PercentilesRequest percentiles = PercentilesRequest.newBuilder().setByStatefulSet(true).build();
+        register("GetPodsCPUPercentiles", () -> stub.getPodsCPUPercentiles(percentiles));
+        register("GetPodsMemoryPercentiles", () -> stub.getPodsMemoryPercentiles(percentiles));
+        register("GetPodsHitsPercentiles", () -> stub.getPodsHitsPercentiles(percentiles));
+        WorkloadMetricsRequest workloads = WorkloadMetricsRequest.newBuilder().setSeconds(60).build();
+        register("GetWorkloadsCPUUtilization", () -> stub.getWorkloadsCPUUtilization(workloads));
+        register("GetWorkloadsMemoryUtilization", () -> stub.getWorkloadsMemoryUtilization(workloads));
+        register("GetWorkloadsHitsUtilization", () -> stub.getWorkloadsHitsUtilization(workloads));
+        LatencyQuantilesRequest latency = LatencyQuantilesRequest.newBuilder().setSeconds(60).setByWorkload(true).build();
+        register("GetPodsLatencyQuantiles", () -> stub.getPodsLatencyQuantiles(latency));
+        RecommendReplicasRequest recommend = recommendRequest(statefulSets);
+        register("RecommendReplicas", () -> stub.recommendReplicas(recommend));
+        PlacementRequest placement = placementRequest(statefulSets, pods, nodes);
+        register("PlanPlacement", () -> stub.planPlacement(placement));
+        ExportHistoryRequest export = ExportHistoryRequest.newBuilder()
+            .setKind(ExportHistoryRequest.Kind.PODS)
+            .setMetric("CPU")
+            .setSeconds(600)
+            .build();
+        register("ExportHistory", () -> stub.exportHistory(export).forEachRemaining(chunk -> { }));
+
+        if (!rpcs.isEmpty()) {
+            calls.keySet().retainAll(rpcs);
+        }
+    }
+
+    private void register(String name, Runnable call) {
+        calls.put(name, call);
+        latencies.put(name, new LatencyHistogram());
+        errors.put(name, new LongAdder());
+    }
+
+    // The first observed StatefulSets, as many as a large ApplicationProvisioner would send
+    private static Set<String> statefulSets(PodMetricsResponse pods) {
+        WorkloadResolver workloads = WorkloadResolver.byNamePrefix();
+        Set<String> statefulSets = new LinkedHashSet<>();
+        for (PodMetric pod : pods.getMetricsList()) {
+            if (statefulSets.size() == MAX_RECOMMENDED_SERVICES) {
+                break;
+            }
+            statefulSets.add(workloads.workloadOf(pod.getPodName()));
+        }
+        return statefulSets;
+    }
+
+    // One service per StatefulSet
+    private static RecommendReplicasRequest recommendRequest(Set<String> statefulSets) {
+        RecommendReplicasRequest.Builder request = RecommendReplicasRequest.newBuilder();
+        for (String statefulSet : statefulSets) {
+            request.addServices(ServiceSpec.newBuilder()
+                .setName(statefulSet)
+                .setStatefulSetName(statefulSet)
+                .setMaxReplicas(50));
+        }
+        return request.build();
+    }
+
+    // Every observed node, the StatefulSets with their current replica counts and no known placement
+    private static PlacementRequest placementRequest(Set<String> statefulSets, PodMetricsResponse pods,
+            NodeMetricsResponse nodes) {
+        PlacementRequest.Builder request = PlacementRequest.newBuilder();
+        for (NodeMetric node : nodes.getMetricsList()) {
+            request.addNodes(NodeCapacity.newBuilder()
+                .setName(node.getNodeName())
+                .setCpuMillicores(NODE_CPU_MILLICORES)
+                .setMemoryBytes(NODE_MEMORY_BYTES));
+        }
+        WorkloadResolver workloads = WorkloadResolver.byNamePrefix();
+        Map<String, Integer> replicas = new LinkedHashMap<>();
+        for (PodMetric pod : pods.getMetricsList()) {
+            String statefulSet = workloads.workloadOf(pod.getPodName());
+            if (statefulSets.contains(statefulSet)) {
+                replicas.merge(statefulSet, 1, Integer::sum);
+            }
+        }
+        replicas.forEach((statefulSet, count) -> request.addGroups(PodGroup.newBuilder()
+            .setName(statefulSet)
+            .setReplicas(count)
+            .setCpuRequestMillicores(500)
+            .setMemoryRequestBytes(512.0 * 1024 * 1024)));
+        return request.build();
+    }
+
+    /**
+     * Runs the load for the given duration, cycling through the selected RPCs.
+     */
+    public void run(double rate, long durationSeconds, int threads) throws InterruptedException {
+        List<String> names = new ArrayList<>(calls.keySet());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) * threads / rate);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int worker = 0; worker < threads; worker++) {
+            int offset = worker;
+            workers.execute(() -> {
+                try {
+                    long scheduled = start + offset * intervalNanos / threads;
+                    for (long call = offset; scheduled < end; call += threads) {
+                        long wait = scheduled - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        String name = names.get((int) (call % names.size()));
+                        try {
+                            calls.get(name).run();
+                        } catch (RuntimeException e) {
+                            errors.get(name).increment();
+                        }
+                        latencies.get(name).record(System.nanoTime() - scheduled);
+                        scheduled += intervalNanos;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+    }
+
+    public void report(double elapsedSeconds) {
+        System.out.printf("%-30s %9s %8s %10s %10s %10s %10s %10s%n",
+            "rpc", "calls", "errors", "rps", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (String name : calls.keySet()) {
+            LatencyHistogram histogram = latencies.get(name);
+            System.out.printf("%-30s %9d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                name,
+                histogram.count(),
+                errors.get(name).sum(),
+                histogram.count() / elapsedSeconds,
+                histogram.quantile(0.5) / 1e6,
+                histogram.quantile(0.99) / 1e6,
+                histogram.quantile(0.999) / 1e6,
+                histogram.max() / 1e6);
+        }
+    }
+
+    public ServerStatsResponse serverStats() {
+        return stub.getServerStats(ServerStatsRequest.getDefaultInstance());
+    }
+
+    private static void reportServer(ServerStatsResponse before, ServerStatsResponse after) {
+        System.out.printf("%nServer heap: %.1f MB used / %.1f MB committed / %.1f MB max (%.1f MB before)%n",
+            after.getHeapUsedBytes() / 1048576.0,
+            after.getHeapCommittedBytes() / 1048576.0,
+            after.getHeapMaxBytes() / 1048576.0,
+            before.getHeapUsedBytes() / 1048576.0);
+        for (GarbageCollectorStats collector : after.getGarbageCollectorsList()) {
+            GarbageCollectorStats initial = before.getGarbageCollectorsList().stream()
+                .filter(gc -> gc.getName().equals(collector.getName()))
+                .findFirst()
+                .orElse(GarbageCollectorStats.getDefaultInstance());
+            System.out.printf("GC %-24s %6d collections %8d ms%n",
+                collector.getName(),
+                collector.getCollections() - initial.getCollections(),
+                collector.getCollectionTimeMillis() - initial.getCollectionTimeMillis());
+        }
+        System.out.printf("Server threads: %d%n", after.getThreadCount());
+        System.out.printf("Server metric history: %.1f MB, percentile sketches: %.1f MB%n",
+            after.getHistoryBytes() / 1048576.0, after.getSketchBytes() / 1048576.0);
+        if (after.getScrapeBaselineQueries() > 0) {
+            System.out.printf("Prometheus scrape: %d queries (baseline %d), %d series (baseline %d)%n",
+                after.getScrapeQueries(), after.getScrapeBaselineQueries(),
+                after.getScrapeSeries(), after.getScrapeBaselineSeries());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = "localhost:50051";
+        double rate = 100;
+        long duration = 60;
+        int threads = 16;
+        Set<String> rpcs = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--target" -> target = args[i + 1];
+                case "--rate" -> rate = Double.parseDouble(args[i + 1]);
+                case "--duration" -> duration = Long.parseLong(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--rpcs" -> rpcs.addAll(List.of(args[i + 1].split(",")));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
+            .usePlaintext()
+            .maxInboundMessageSize(MAX_MESSAGE_BYTES)
+            .build();
+        try {
+            LoadGenerator generator = new LoadGenerator(channel, rpcs);
+            ServerStatsResponse before = generator.serverStats();
+            long start = System.nanoTime();
+            generator.run(rate, duration, threads);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            ServerStatsResponse after = generator.serverStats();
+
+            generator.report(elapsed);
+            reportServer(before, after);
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
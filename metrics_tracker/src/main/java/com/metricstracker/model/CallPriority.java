@@ -0,0 +1,72 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.model;
+
+import java.util.Locale;
+
+/**
+ * Priority class of a call to the tracker, sent by clients in the
+ * {@value #HEADER} header. Under load, lower classes are shed first so that
+ * reconcile traffic keeps getting through while dashboards back off.
+ */
+public enum CallPriority {
+    /** Scaling decisions of controllers, may use the whole concurrency limit */
+    RECONCILE(1.0),
+    /** Calls without a priority */
+    DEFAULT(0.8),
+    /** Dashboards and ad-hoc queries, shed first */
+    DASHBOARD(0.5);
+
+    public static final String HEADER = "x-call-priority";
+
+    private final double share;
+
+    CallPriority(double share) {
+        this.share = share;
+    }
+
+    /**
+     * Fraction of the concurrency limit calls of this class may occupy.
+     */
+    public double share() {
+        return share;
+    }
+
+    /**
+     * Header value of this class.
+     */
+    public String headerValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses a header value, falling back to {@link #DEFAULT} when it is
+     * missing or unknown.
+     */
+    public static CallPriority fromHeader(String value) {
+        if (value != null) {
+            for (CallPriority priority : values()) {
+                if (priority.headerValue().equalsIgnoreCase(value.trim())) {
+                    return priority;
+                }
+            }
+        }
+        return DEFAULT;
+    }
+}
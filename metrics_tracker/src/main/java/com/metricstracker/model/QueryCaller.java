@@ -0,0 +1,43 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.model;
+
+/**
+ * Caller on whose behalf the tracker queries Prometheus, named by clients in
+ * the {@value #HEADER} header. Queries are queued fairly between callers of
+ * the same priority class.
+ */
+public record QueryCaller(String name, CallPriority priority) {
+    public static final String HEADER = "x-caller";
+
+    /** Calls without a caller header */
+    public static final String ANONYMOUS = "anonymous";
+
+    /** Queries issued by the tracker itself, e.g. the background scrape */
+    public static final QueryCaller BACKGROUND = new QueryCaller("background", CallPriority.DEFAULT);
+
+    public QueryCaller {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Caller name cannot be null or blank");
+        }
+        if (priority == null) {
+            throw new IllegalArgumentException("Caller priority cannot be null");
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.placement;
+
+import java.util.Arrays;
+
+/**
+ * Two-dimensional (CPU, memory) bin packing over primitive arrays.
+ *
+ * Nodes are bins, given in preference order: the caller lists the nodes that
+ * must stay up first and drain candidates after them, so both heuristics only
+ * spill onto a candidate once the preferred nodes are full. Items come in groups
+ * of identical replicas, which lets a whole group be placed on a node in one
+ * step: first fit and best fit both keep choosing the same node for identical
+ * items until it is full.
+ *
+ * First fit looks nodes up in a segment tree holding the largest remaining CPU
+ * and memory of each range, so a lookup skips every range where no node can
+ * hold the item. Best fit scans the open nodes for the tightest fit.
+ */
+public final class BinPacker {
+    public enum Strategy {
+        FIRST_FIT_DECREASING,
+        BEST_FIT_DECREASING
+    }
+
+    private static final int GROUP_BITS = 20;
+    private static final long GROUP_MASK = (1L << GROUP_BITS) - 1;
+
+    private final int nodes;
+    private final double[] cpuFree;
+    private final double[] memoryFree;
+    private final boolean[] open;
+    private final double cpuScale;
+    private final double memoryScale;
+
+    // Segment tree over the node order; leaf i sits at index size + i
+    private final int size;
+    private final double[] treeCpu;
+    private final double[] treeMemory;
+
+    /**
+     * @param cpuFree    Remaining CPU of each node, updated in place while packing
+     * @param memoryFree Remaining memory of each node, updated in place while packing
+     * @param open       Whether each node already counts as in use; candidates start closed
+     *                   and are opened by the first item they receive
+     */
+    public BinPacker(double[] cpuFree, double[] memoryFree, boolean[] open) {
+        if (cpuFree.length != memoryFree.length || cpuFree.length != open.length) {
+            throw new IllegalArgumentException("Node arrays must have the same length");
+        }
+        this.nodes = cpuFree.length;
+        this.cpuFree = cpuFree;
+        this.memoryFree = memoryFree;
+        this.open = open;
+        this.cpuScale = 1 / Math.max(max(cpuFree), Double.MIN_NORMAL);
+        this.memoryScale = 1 / Math.max(max(memoryFree), Double.MIN_NORMAL);
+
+        int leaves = 1;
+        while (leaves < Math.max(nodes, 1)) {
+            leaves <<= 1;
+        }
+        this.size = leaves;
+        this.treeCpu = new double[2 * leaves];
+        this.treeMemory = new double[2 * leaves];
+        Arrays.fill(treeCpu, Double.NEGATIVE_INFINITY);
+        Arrays.fill(treeMemory, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < nodes; i++) {
+            treeCpu[leaves + i] = cpuFree[i];
+            treeMemory[leaves + i] = memoryFree[i];
+        }
+        for (int i = leaves - 1; i > 0; i--) {
+            treeCpu[i] = Math.max(treeCpu[2 * i], treeCpu[2 * i + 1]);
+            treeMemory[i] = Math.max(treeMemory[2 * i], treeMemory[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Packs the groups largest first.
+     *
+     * @param cpu      CPU request of one replica of each group
+     * @param memory   Memory request of one replica of each group
+     * @param replicas Replicas to place for each group
+     * @param sink     Receives every (group, node, count) placement
+     * @return Replicas of each group that did not fit anywhere
+     */
+    public int[] pack(Strategy strategy, double[] cpu, double[] memory, int[] replicas, PlacementSink sink) {
+        int groups = replicas.length;
+        int[] unplaced = new int[groups];
+        for (int group : decreasingOrder(cpu, memory)) {
+            unplaced[group] = strategy == Strategy.FIRST_FIT_DECREASING
+                ? firstFit(group, cpu[group], memory[group], replicas[group], sink)
+                : bestFit(group, cpu[group], memory[group], replicas[group], sink);
+        }
+        return unplaced;
+    }
+
+    private int firstFit(int group, double cpu, double memory, int replicas, PlacementSink sink) {
+        while (replicas > 0) {
+            int node = firstFitting(1, cpu, memory);
+            if (node < 0) {
+                break;
+            }
+            replicas -= place(group, node, cpu, memory, replicas, sink);
+        }
+        return replicas;
+    }
+
+    // Leftmost leaf below index that fits, pruning ranges whose maxima are too small
+    private int firstFitting(int index, double cpu, double memory) {
+        if (treeCpu[index] < cpu || treeMemory[index] < memory) {
+            return -1;
+        }
+        if (index >= size) {
+            return index - size;
+        }
+        int left = firstFitting(2 * index, cpu, memory);
+        return left >= 0 ? left : firstFitting(2 * index + 1, cpu, memory);
+    }
+
+    private int bestFit(int group, double cpu, double memory, int replicas, PlacementSink sink) {
+        while (replicas > 0) {
+            int best = -1;
+            double bestScore = Double.POSITIVE_INFINITY;
+            int firstClosed = -1;
+            for (int node = 0; node < nodes; node++) {
+                if (cpuFree[node] < cpu || memoryFree[node] < memory) {
+                    continue;
+                }
+                if (!open[node]) {
+                    if (firstClosed < 0) {
+                        firstClosed = node;
+                    }
+                    continue;
+                }
+                double score = (cpuFree[node] - cpu) * cpuScale + (memoryFree[node] - memory) * memoryScale;
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = node;
+                }
+            }
+            int node = best >= 0 ? best : firstClosed;
+            if (node < 0) {
+                break;
+            }
+            replicas -= place(group, node, cpu, memory, replicas, sink);
+        }
+        return replicas;
+    }
+
+    // Places as many replicas as fit on the node and returns how many that was
+    private int place(int group, int node, double cpu, double memory, int replicas, PlacementSink sink) {
+        long fit = replicas;
+        if (cpu > 0) {
+            fit = Math.min(fit, (long) (cpuFree[node] / cpu));
+        }
+        if (memory > 0) {
+            fit = Math.min(fit, (long) (memoryFree[node] / memory));
+        }
+        int count = (int) Math.max(fit, 1);
+        cpuFree[node] -= count * cpu;
+        memoryFree[node] -= count * memory;
+        open[node] = true;
+        update(node);
+        sink.accept(group, node, count);
+        return count;
+    }
+
+    private void update(int node) {
+        int index = size + node;
+        treeCpu[index] = cpuFree[node];
+        treeMemory[index] = memoryFree[node];
+        for (index >>= 1; index > 0; index >>= 1) {
+            treeCpu[index] = Math.max(treeCpu[2 * index], treeCpu[2 * index + 1]);
+            treeMemory[index] = Math.max(treeMemory[2 * index], treeMemory[2 * index + 1]);
+        }
+    }
+
+    // Groups by their dominant share of the largest node, biggest first
+    private int[] decreasingOrder(double[] cpu, double[] memory) {
+        int groups = cpu.length;
+        if (groups > GROUP_MASK + 1) {
+            throw new IllegalArgumentException("At most " + (GROUP_MASK + 1) + " groups can be packed at once");
+        }
+        long[] keys = new long[groups];
+        for (int i = 0; i < groups; i++) {
+            double share = Math.max(cpu[i] * cpuScale, memory[i] * memoryScale);
+            // Non-negative doubles order like their bit patterns, so sorting the inverted
+            // high bits of the share sorts largest first; the low bits carry the index
+            long bits = Double.doubleToLongBits(Math.max(share, 0)) >>> GROUP_BITS;
+            keys[i] = (~bits << GROUP_BITS) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[groups];
+        for (int i = 0; i < groups; i++) {
+            order[i] = (int) (keys[i] & GROUP_MASK);
+        }
+        return order;
+    }
+
+    private static double max(double[] values) {
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /**
+     * Receives placements as they are made.
+     */
+    @FunctionalInterface
+    public interface PlacementSink {
+        void accept(int group, int node, int count);
+    }
+}
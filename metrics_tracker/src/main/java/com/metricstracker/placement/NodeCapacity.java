@@ -0,0 +1,37 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.placement;
+
+/**
+ * Allocatable resources of a node that replicas may be placed on.
+ *
+ * @param name          Node name, as reported by the node metrics
+ * @param cpuMillicores Allocatable CPU in millicores
+ * @param memoryBytes   Allocatable memory in bytes
+ */
+public record NodeCapacity(String name, double cpuMillicores, double memoryBytes) {
+    public NodeCapacity {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Node name cannot be null or blank");
+        }
+        if (cpuMillicores <= 0 || memoryBytes <= 0) {
+            throw new IllegalArgumentException("Node " + name + " needs a positive CPU and memory capacity");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.placement;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consolidation plan computed by {@link PlacementPlanner}.
+ *
+ * @param nodes          Every node with the replicas placed on it, in request order
+ * @param drainableNodes Nodes left without placed replicas or significant other load
+ * @param unplaced       Replicas per group that fit on no node
+ * @param migrations     Running replicas that the plan moves to another node
+ */
+public record PlacementPlan(List<NodePlan> nodes, List<String> drainableNodes, Map<String, Integer> unplaced,
+                            int migrations) {
+
+    /**
+     * @param name              Node name
+     * @param placements        Replicas placed on the node per group
+     * @param cpuUtilization    Expected CPU utilization in percent once the plan is applied
+     * @param memoryUtilization Expected memory utilization in percent once the plan is applied
+     * @param drainable         Whether the node can be drained
+     */
+    public record NodePlan(String name, Map<String, Integer> placements, double cpuUtilization,
+                           double memoryUtilization, boolean drainable) {
+    }
+}
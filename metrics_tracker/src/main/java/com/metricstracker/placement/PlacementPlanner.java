@@ -0,0 +1,247 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.placement;
+
+import com.metricstracker.service.MetricsService;
+import com.metricstracker.service.NodeMetricBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Plans where replicas should run so that as many nodes as possible can be drained.
+ *
+ * The load already on a node is its observed usage minus the requests of
+ * the replicas the plan is about to place, which are listed per group as running
+ * on it. Nodes whose remaining load is at most the drain threshold are drain
+ * candidates; all others keep running and are filled first, fullest first, up to
+ * the utilization ceiling. A candidate that receives no replica can be drained.
+ */
+public class PlacementPlanner {
+    public static final double DEFAULT_MAX_UTILIZATION = 90.0;
+    public static final double DEFAULT_DRAIN_UTILIZATION = 10.0;
+
+    // One percent of a core
+    private static final double MILLICORES_PER_CORE_PERCENT = 10.0;
+
+    private final MetricsService metricsService;
+    private final int windowSeconds;
+
+    public PlacementPlanner(MetricsService metricsService, int windowSeconds) {
+        this.metricsService = metricsService;
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * @param maxUtilization   Utilization ceiling in percent that no node is packed beyond
+     * @param drainUtilization Remaining utilization in percent below which a node may be drained
+     */
+    public PlacementPlan plan(List<NodeCapacity> nodes, List<PodGroup> groups, BinPacker.Strategy strategy,
+                              double maxUtilization, double drainUtilization) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        int nodeCount = nodes.size();
+        Map<String, Integer> nodeIndex = new HashMap<>();
+        for (int i = 0; i < nodeCount; i++) {
+            if (nodeIndex.put(nodes.get(i).name(), i) != null) {
+                throw new IllegalArgumentException("Duplicate node " + nodes.get(i).name());
+            }
+        }
+
+        // Node CPU is a percentage of one core summed over all cores, memory a percentage of the node
+        double[] baseCpu = observed(metricsService.getNodesCPUUtilization(windowSeconds), nodeCount, nodeIndex);
+        double[] baseMemory = observed(metricsService.getNodesMemoryUtilization(windowSeconds), nodeCount, nodeIndex);
+        for (int i = 0; i < nodeCount; i++) {
+            baseCpu[i] *= MILLICORES_PER_CORE_PERCENT;
+            baseMemory[i] = baseMemory[i] / 100 * nodes.get(i).memoryBytes();
+        }
+        int[][] running = runningNodes(groups, nodeIndex);
+        for (int g = 0; g < groups.size(); g++) {
+            for (int node : running[g]) {
+                baseCpu[node] -= groups.get(g).cpuRequestMillicores();
+                baseMemory[node] -= groups.get(g).memoryRequestBytes();
+            }
+        }
+
+        double[] baseShare = new double[nodeCount];
+        boolean[] candidate = new boolean[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            NodeCapacity node = nodes.get(i);
+            baseCpu[i] = Math.max(baseCpu[i], 0);
+            baseMemory[i] = Math.max(baseMemory[i], 0);
+            baseShare[i] = Math.max(baseCpu[i] / node.cpuMillicores(), baseMemory[i] / node.memoryBytes()) * 100;
+            candidate[i] = baseShare[i] <= drainUtilization;
+        }
+
+        // Nodes that stay up come first, each tier fullest first
+        int[] order = IntStream.range(0, nodeCount).boxed()
+            .sorted(Comparator.<Integer>comparingInt(i -> candidate[i] ? 1 : 0)
+                .thenComparing(i -> -baseShare[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+        double[] cpuFree = new double[nodeCount];
+        double[] memoryFree = new double[nodeCount];
+        boolean[] open = new boolean[nodeCount];
+        for (int slot = 0; slot < nodeCount; slot++) {
+            int i = order[slot];
+            NodeCapacity node = nodes.get(i);
+            cpuFree[slot] = Math.max(node.cpuMillicores() * maxUtilization / 100 - baseCpu[i], 0);
+            memoryFree[slot] = Math.max(node.memoryBytes() * maxUtilization / 100 - baseMemory[i], 0);
+            open[slot] = !candidate[i];
+        }
+
+        int groupCount = groups.size();
+        double[] cpu = new double[groupCount];
+        double[] memory = new double[groupCount];
+        int[] replicas = new int[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            cpu[g] = groups.get(g).cpuRequestMillicores();
+            memory[g] = groups.get(g).memoryRequestBytes();
+            replicas[g] = groups.get(g).replicas();
+        }
+
+        Placements placements = new Placements();
+        int[] unplaced = new BinPacker(cpuFree, memoryFree, open)
+            .pack(strategy, cpu, memory, replicas, (group, slot, count) -> placements.add(group, order[slot], count));
+
+        return toPlan(nodes, groups, running, placements, unplaced, baseCpu, baseMemory, candidate);
+    }
+
+    private static PlacementPlan toPlan(List<NodeCapacity> nodes, List<PodGroup> groups, int[][] running,
+                                        Placements placements, int[] unplaced, double[] cpuUsed, double[] memoryUsed,
+                                        boolean[] candidate) {
+        int nodeCount = nodes.size();
+        List<Map<String, Integer>> byNode = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            byNode.add(new LinkedHashMap<>());
+        }
+
+        int listed = 0;
+        for (PodGroup group : groups) {
+            listed += group.currentNodes().size();
+        }
+
+        // A group is placed on each node at most once, so every placement keeps
+        // as many of its replicas as were already running on that node
+        int kept = 0;
+        for (int p = 0; p < placements.size; p++) {
+            int group = placements.groups[p];
+            int node = placements.nodes[p];
+            int count = placements.counts[p];
+            PodGroup spec = groups.get(group);
+            byNode.get(node).merge(spec.name(), count, Integer::sum);
+            cpuUsed[node] += count * spec.cpuRequestMillicores();
+            memoryUsed[node] += count * spec.memoryRequestBytes();
+            kept += Math.min(count, occurrences(running[group], node));
+        }
+
+        List<PlacementPlan.NodePlan> nodePlans = new ArrayList<>(nodeCount);
+        List<String> drainable = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            NodeCapacity node = nodes.get(i);
+            boolean drain = candidate[i] && byNode.get(i).isEmpty();
+            if (drain) {
+                drainable.add(node.name());
+            }
+            nodePlans.add(new PlacementPlan.NodePlan(node.name(), byNode.get(i),
+                cpuUsed[i] / node.cpuMillicores() * 100, memoryUsed[i] / node.memoryBytes() * 100, drain));
+        }
+
+        Map<String, Integer> unplacedByGroup = new LinkedHashMap<>();
+        for (int g = 0; g < groups.size(); g++) {
+            if (unplaced[g] > 0) {
+                unplacedByGroup.merge(groups.get(g).name(), unplaced[g], Integer::sum);
+            }
+        }
+        return new PlacementPlan(nodePlans, drainable, unplacedByGroup, listed - kept);
+    }
+
+    // Observed metric value per listed node; nodes without metrics start empty
+    private static double[] observed(NodeMetricBatch metrics, int nodeCount, Map<String, Integer> nodeIndex) {
+        double[] values = new double[nodeCount];
+        for (int i = 0; i < metrics.size(); i++) {
+            Integer node = nodeIndex.get(metrics.nodeName(i));
+            if (node != null) {
+                values[node] = metrics.value(i);
+            }
+        }
+        return values;
+    }
+
+    // Sorted indices of the listed nodes each group is running on; unknown nodes are dropped
+    private static int[][] runningNodes(List<PodGroup> groups, Map<String, Integer> nodeIndex) {
+        int[][] running = new int[groups.size()][];
+        for (int g = 0; g < running.length; g++) {
+            List<String> current = groups.get(g).currentNodes();
+            int[] nodes = new int[current.size()];
+            int size = 0;
+            for (String name : current) {
+                Integer node = nodeIndex.get(name);
+                if (node != null) {
+                    nodes[size++] = node;
+                }
+            }
+            running[g] = Arrays.copyOf(nodes, size);
+            Arrays.sort(running[g]);
+        }
+        return running;
+    }
+
+    private static int occurrences(int[] sorted, int value) {
+        int from = Arrays.binarySearch(sorted, value);
+        if (from < 0) {
+            return 0;
+        }
+        int to = from;
+        while (from > 0 && sorted[from - 1] == value) {
+            from--;
+        }
+        while (to + 1 < sorted.length && sorted[to + 1] == value) {
+            to++;
+        }
+        return to - from + 1;
+    }
+
+    // Growable (group, node, count) triples
+    private static final class Placements {
+        private int[] groups = new int[64];
+        private int[] nodes = new int[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        void add(int group, int node, int count) {
+            if (size == groups.length) {
+                groups = Arrays.copyOf(groups, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            groups[size] = group;
+            nodes[size] = node;
+            counts[size] = count;
+            size++;
+        }
+    }
+}
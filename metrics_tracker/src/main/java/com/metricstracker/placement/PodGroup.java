@@ -0,0 +1,46 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.placement;
+
+import java.util.List;
+
+/**
+ * Identical replicas to place, typically the pods of one StatefulSet.
+ *
+ * @param name                  Group name, usually the StatefulSet
+ * @param replicas              Number of replicas to place
+ * @param cpuRequestMillicores  CPU request of one replica in millicores
+ * @param memoryRequestBytes    Memory request of one replica in bytes
+ * @param currentNodes          Node of each replica that is already running
+ */
+public record PodGroup(String name, int replicas, double cpuRequestMillicores, double memoryRequestBytes,
+                       List<String> currentNodes) {
+    public PodGroup {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Group name cannot be null or blank");
+        }
+        if (replicas < 0 || cpuRequestMillicores < 0 || memoryRequestBytes < 0) {
+            throw new IllegalArgumentException("Group " + name + " has negative replicas or requests");
+        }
+        if (currentNodes.size() > replicas) {
+            throw new IllegalArgumentException("Group " + name + " lists more current nodes than replicas");
+        }
+        currentNodes = List.copyOf(currentNodes);
+    }
+}
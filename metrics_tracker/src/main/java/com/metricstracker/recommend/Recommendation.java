@@ -0,0 +1,38 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.recommend;
+
+/**
+ * Replica suggestion for one service.
+ *
+ * @param name               The service name
+ * @param statefulSetName    The StatefulSet running the service
+ * @param suggestedReplicas  Suggested number of replicas
+ * @param predictedCpu       Expected CPU utilization with the suggested replicas
+ * @param predictedMemory    Expected memory utilization with the suggested replicas
+ * @param observedPods       Pods of the StatefulSet present in the metrics
+ */
+public record Recommendation(
+        String name,
+        String statefulSetName,
+        int suggestedReplicas,
+        double predictedCpu,
+        double predictedMemory,
+        int observedPods) {
+}
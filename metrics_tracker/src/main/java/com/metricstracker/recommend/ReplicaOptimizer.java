@@ -0,0 +1,133 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.recommend;
+
+/**
+ * Replica search over the solver objective
+ *
+ *   |expectedCpu - targetCpu| + |expectedMemory - targetMemory| + penalty * replicas
+ *
+ * where expected utilization is the predicted one scaled by current / candidate
+ * replicas. Ties resolve to the smallest count.
+ *
+ * This is a copy of the scaling controller's ReplicaOptimizer, which lives in
+ * a separate build: keep the scan and the validation of both in step. Both
+ * test suites check the same reference values from the solver's objective.
+ */
+public final class ReplicaOptimizer {
+    public static final double DEFAULT_REPLICA_PENALTY = 0.1;
+
+    // Skipped candidates must be worse by more than rounding in the fitness sums
+    private static final double DESCENT_MARGIN = 1e-9;
+
+    private final double replicaPenalty;
+
+    public ReplicaOptimizer() {
+        this(DEFAULT_REPLICA_PENALTY);
+    }
+
+    /**
+     * @param replicaPenalty Weight of the replica count in the objective, to prefer
+     *                       smaller deployments when utilization allows it
+     */
+    public ReplicaOptimizer(double replicaPenalty) {
+        if (replicaPenalty < 0 || Double.isNaN(replicaPenalty)) {
+            throw new IllegalArgumentException("replicaPenalty must be non-negative");
+        }
+        this.replicaPenalty = replicaPenalty;
+    }
+
+    /**
+     * Scores every service in [0, size) and writes the suggested replicas and
+     * the utilization expected with them into the output arrays. Inputs are
+     * validated up front so that a bad entry fails the whole batch before any
+     * output is written.
+     */
+    public void optimize(int size,
+                         double[] predictedCpu, double[] predictedMemory, int[] currentReplicas,
+                         int[] minReplicas, int[] maxReplicas,
+                         double[] targetCpu, double[] targetMemory,
+                         int[] suggestedReplicas, double[] expectedCpu, double[] expectedMemory) {
+        for (int i = 0; i < size; i++) {
+            validate(currentReplicas[i], minReplicas[i], maxReplicas[i], targetCpu[i], targetMemory[i]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            double cpuLoad = predictedCpu[i] * currentReplicas[i];
+            double memoryLoad = predictedMemory[i] * currentReplicas[i];
+            int best = scan(cpuLoad, memoryLoad, minReplicas[i], maxReplicas[i], targetCpu[i], targetMemory[i]);
+
+            suggestedReplicas[i] = best;
+            expectedCpu[i] = cpuLoad / best;
+            expectedMemory[i] = memoryLoad / best;
+        }
+    }
+
+    private int scan(double cpuLoad, double memoryLoad, int minReplicas, int maxReplicas,
+                     double targetCpu, double targetMemory) {
+        // Once both expected utilizations are below target every term grows with the
+        // replica count, so no candidate after the first such one can be better.
+        // While both are above target each added replica closes the gaps by more
+        // than its penalty as long as (cpuLoad + memoryLoad) > penalty * r * (r + 1),
+        // so no candidate before the last such one can be better either.
+        int first = minReplicas;
+        int last = maxReplicas;
+        if (cpuLoad >= 0 && memoryLoad >= 0) {
+            double upper = Math.ceil(Math.max(cpuLoad / targetCpu, memoryLoad / targetMemory));
+            last = (int) Math.max(minReplicas, Math.min(maxReplicas, upper));
+            double lower = Math.floor(Math.min(cpuLoad / targetCpu, memoryLoad / targetMemory));
+            int below = (int) Math.min(last, lower);
+            if (below > minReplicas
+                    && (cpuLoad + memoryLoad) / ((double) (below - 1) * below) - replicaPenalty > DESCENT_MARGIN) {
+                first = below;
+            }
+        }
+        int best = first;
+        double bestFitness = Double.POSITIVE_INFINITY;
+        for (int replicas = first; replicas <= last; replicas++) {
+            double fitness = Math.abs(cpuLoad / replicas - targetCpu)
+                + Math.abs(memoryLoad / replicas - targetMemory)
+                + replicaPenalty * replicas;
+            if (fitness < bestFitness) {
+                bestFitness = fitness;
+                best = replicas;
+            }
+        }
+        return best;
+    }
+
+    private static void validate(int currentReplicas, int minReplicas, int maxReplicas,
+                                 double targetCpu, double targetMemory) {
+        if (minReplicas < 1) {
+            throw new IllegalArgumentException("minReplicas must be at least 1");
+        }
+        if (maxReplicas < minReplicas) {
+            throw new IllegalArgumentException("maxReplicas must be greater than or equal to minReplicas");
+        }
+        if (currentReplicas < 0) {
+            throw new IllegalArgumentException("currentReplicas must be non-negative");
+        }
+        if (!(targetCpu > 0 && targetCpu < 100)) {
+            throw new IllegalArgumentException("targetCpuUtilization must be between 0 and 100");
+        }
+        if (!(targetMemory > 0 && targetMemory < 100)) {
+            throw new IllegalArgumentException("targetMemoryUtilization must be between 0 and 100");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.recommend;
+
+import com.metricstracker.forecast.SeasonalForecaster;
+import com.metricstracker.forecast.SeasonalModel;
+import com.metricstracker.forecast.TrendForecaster;
+import com.metricstracker.forecast.TrendModel;
+import com.metricstracker.model.MetricType;
+import com.metricstracker.service.MetricsService;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadResolver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+
+/**
+ * Recommends replicas for every service of an ApplicationProvisioner at once.
+ *
+ * Pod CPU and memory are fetched a single time for the whole request, averaged
+ * per StatefulSet (using the trend forecast of each pod when it has enough
+ * samples) and scored in one {@link ReplicaOptimizer} pass, so the cost of a
+ * request does not grow with one metric query per service.
+ *
+ * With a lead time, a StatefulSet whose workload has a warm seasonal model is
+ * sized for the peak of its seasonal forecast over the lead time when that is
+ * above the trend, so replicas are added ahead of a daily ramp.
+ */
+public class ReplicaRecommender {
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private static final Duration LEAD_STEP = Duration.ofMinutes(1);
+
+    private final MetricsService metricsService;
+    private final TrendForecaster forecaster;
+    private final SeasonalForecaster seasonalForecaster;
+    private final WorkloadResolver workloads;
+    private final ReplicaOptimizer optimizer;
+    private final int windowSeconds;
+
+    public ReplicaRecommender(MetricsService metricsService, TrendForecaster forecaster,
+                              WorkloadResolver workloads, ReplicaOptimizer optimizer, int windowSeconds) {
+        this(metricsService, forecaster, null, workloads, optimizer, windowSeconds);
+    }
+
+    public ReplicaRecommender(MetricsService metricsService, TrendForecaster forecaster,
+                              SeasonalForecaster seasonalForecaster, WorkloadResolver workloads,
+                              ReplicaOptimizer optimizer, int windowSeconds) {
+        this.metricsService = metricsService;
+        this.forecaster = forecaster;
+        this.seasonalForecaster = seasonalForecaster;
+        this.workloads = workloads;
+        this.optimizer = optimizer;
+        this.windowSeconds = windowSeconds;
+    }
+
+    public List<Recommendation> recommend(List<ServiceTarget> services) {
+        return recommend(services, Duration.ZERO);
+    }
+
+    /**
+     * @param lead How far ahead to size for seasonal peaks, zero to size for the trend only
+     */
+    public List<Recommendation> recommend(List<ServiceTarget> services, Duration lead) {
+        Set<String> statefulSets = new HashSet<>();
+        for (ServiceTarget service : services) {
+            statefulSets.add(service.statefulSetName());
+        }
+
+        Map<String, Usage> cpu = aggregate(MetricType.CPU, metricsService.getPodsCPUUtilization(windowSeconds), statefulSets);
+        Map<String, Usage> memory = aggregate(MetricType.MEMORY, metricsService.getPodsMemoryUtilization(windowSeconds), statefulSets);
+
+        int size = services.size();
+        double[] predictedCpu = new double[size];
+        double[] predictedMemory = new double[size];
+        int[] currentReplicas = new int[size];
+        int[] minReplicas = new int[size];
+        int[] maxReplicas = new int[size];
+        double[] targetCpu = new double[size];
+        double[] targetMemory = new double[size];
+        int[] observedPods = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            ServiceTarget service = services.get(i);
+            Usage cpuUsage = cpu.get(service.statefulSetName());
+            Usage memoryUsage = memory.get(service.statefulSetName());
+            int observed = cpuUsage == null || memoryUsage == null ? 0 : Math.min(cpuUsage.pods, memoryUsage.pods);
+
+            observedPods[i] = observed;
+            currentReplicas[i] = service.currentReplicas() > 0 ? service.currentReplicas() : Math.max(observed, 1);
+            minReplicas[i] = service.minReplicas();
+            maxReplicas[i] = service.maxReplicas();
+            targetCpu[i] = service.targetCpuUtilization();
+            targetMemory[i] = service.targetMemoryUtilization();
+            if (observed > 0) {
+                predictedCpu[i] = cpuPercentage(cpuUsage.mean(), service);
+                predictedMemory[i] = memoryPercentage(memoryUsage.mean(), service);
+                // Seasonal forecasts are workload totals, spread over the observed pods
+                OptionalDouble cpuPeak = seasonalPeak(MetricType.CPU, service.statefulSetName(), lead);
+                if (cpuPeak.isPresent()) {
+                    predictedCpu[i] = Math.max(predictedCpu[i], cpuPercentage(cpuPeak.getAsDouble() / observed, service));
+                }
+                OptionalDouble memoryPeak = seasonalPeak(MetricType.MEMORY, service.statefulSetName(), lead);
+                if (memoryPeak.isPresent()) {
+                    predictedMemory[i] = Math.max(predictedMemory[i],
+                        memoryPercentage(memoryPeak.getAsDouble() / observed, service));
+                }
+            }
+        }
+
+        int[] suggested = new int[size];
+        double[] expectedCpu = new double[size];
+        double[] expectedMemory = new double[size];
+        optimizer.optimize(size, predictedCpu, predictedMemory, currentReplicas, minReplicas, maxReplicas,
+            targetCpu, targetMemory, suggested, expectedCpu, expectedMemory);
+
+        List<Recommendation> recommendations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ServiceTarget service = services.get(i);
+            if (observedPods[i] == 0) {
+                // Without metrics keep the current size instead of scaling to the minimum
+                int replicas = Math.max(minReplicas[i], Math.min(maxReplicas[i], currentReplicas[i]));
+                recommendations.add(new Recommendation(service.name(), service.statefulSetName(), replicas, 0, 0, 0));
+            } else {
+                recommendations.add(new Recommendation(service.name(), service.statefulSetName(),
+                    suggested[i], expectedCpu[i], expectedMemory[i], observedPods[i]));
+            }
+        }
+        return recommendations;
+    }
+
+    private Map<String, Usage> aggregate(MetricType type, PodMetricBatch metrics, Set<String> statefulSets) {
+        Map<String, Usage> usage = new HashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            String podName = metrics.podName(i);
+            String owner = workloads.workloadOf(podName);
+            if (statefulSets.contains(owner)) {
+                usage.computeIfAbsent(owner, name -> new Usage()).add(predicted(type, podName, metrics.value(i)));
+            }
+        }
+        return usage;
+    }
+
+    // Mean of the pod's trend forecast when available, the latest value otherwise
+    private double predicted(MetricType type, String podName, double value) {
+        if (forecaster == null) {
+            return value;
+        }
+        TrendModel model = forecaster.podSeries(type, podName).orElse(null);
+        if (model == null || model.getSamples() < TrendForecaster.MIN_SAMPLES) {
+            return value;
+        }
+        double sum = 0;
+        double[] predictions = TrendForecaster.forecast(model, TrendForecaster.DEFAULT_STEPS);
+        for (double prediction : predictions) {
+            sum += prediction;
+        }
+        return sum / predictions.length;
+    }
+
+    // Highest seasonal forecast of a workload total within the lead time, if its model is warm
+    private OptionalDouble seasonalPeak(MetricType type, String workload, Duration lead) {
+        if (seasonalForecaster == null || lead.isNegative() || lead.isZero()) {
+            return OptionalDouble.empty();
+        }
+        SeasonalModel model = seasonalForecaster.workloadSeries(type, workload).orElse(null);
+        if (model == null || !model.isWarm()) {
+            return OptionalDouble.empty();
+        }
+        int steps = (int) Math.max(1, (lead.toMillis() + LEAD_STEP.toMillis() - 1) / LEAD_STEP.toMillis());
+        double peak = 0;
+        for (double prediction : SeasonalForecaster.forecast(model, LEAD_STEP, steps)) {
+            peak = Math.max(peak, prediction);
+        }
+        return OptionalDouble.of(peak);
+    }
+
+    // Pod CPU is reported as a percentage of one core
+    private static double cpuPercentage(double value, ServiceTarget service) {
+        if (service.cpuRequestMillicores() <= 0) {
+            return value;
+        }
+        return value * 10 / service.cpuRequestMillicores() * 100;
+    }
+
+    // Pod memory is reported in MB
+    private static double memoryPercentage(double value, ServiceTarget service) {
+        if (service.memoryRequestBytes() <= 0) {
+            return value;
+        }
+        return value * BYTES_PER_MB / service.memoryRequestBytes() * 100;
+    }
+
+    private static final class Usage {
+        private double sum;
+        private int pods;
+
+        void add(double value) {
+            sum += value;
+            pods++;
+        }
+
+        double mean() {
+            return sum / pods;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.recommend;
+
+/**
+ * Scaling settings of one service of an ApplicationProvisioner.
+ *
+ * @param name                    The service name
+ * @param statefulSetName         The StatefulSet running the service
+ * @param currentReplicas         Current replicas, 0 to use the observed pod count
+ * @param minReplicas             Lower replica bound
+ * @param maxReplicas             Upper replica bound
+ * @param targetCpuUtilization    Target CPU utilization percentage
+ * @param targetMemoryUtilization Target memory utilization percentage
+ * @param cpuRequestMillicores    CPU request per pod, 0 to use raw CPU percentage of a core
+ * @param memoryRequestBytes      Memory request per pod, 0 to use raw memory in MB
+ */
+public record ServiceTarget(
+        String name,
+        String statefulSetName,
+        int currentReplicas,
+        int minReplicas,
+        int maxReplicas,
+        double targetCpuUtilization,
+        double targetMemoryUtilization,
+        double cpuRequestMillicores,
+        double memoryRequestBytes) {
+
+    public ServiceTarget {
+        if (statefulSetName == null || statefulSetName.isBlank()) {
+            throw new IllegalArgumentException("StatefulSet name cannot be null or blank");
+        }
+        if (minReplicas < 1) {
+            throw new IllegalArgumentException("minReplicas must be at least 1");
+        }
+        if (maxReplicas < minReplicas) {
+            throw new IllegalArgumentException("maxReplicas must be greater than or equal to minReplicas");
+        }
+        if (!(targetCpuUtilization > 0 && targetCpuUtilization < 100)) {
+            throw new IllegalArgumentException("targetCpuUtilization must be between 0 and 100");
+        }
+        if (!(targetMemoryUtilization > 0 && targetMemoryUtilization < 100)) {
+            throw new IllegalArgumentException("targetMemoryUtilization must be between 0 and 100");
+        }
+    }
+}
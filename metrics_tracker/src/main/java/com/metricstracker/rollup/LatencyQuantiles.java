@@ -0,0 +1,37 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.rollup;
+
+/**
+ * Request latency quantiles of one pod or workload.
+ *
+ * @param name              Pod or workload name
+ * @param pods              Pods merged into the estimates
+ * @param values            Latency in seconds per requested quantile, in request
+ *                          order, NaN when there were no requests
+ * @param requestsPerSecond Rate of requests counted by the histogram
+ * @param timestamp         Latest sample timestamp of the pods
+ */
+public record LatencyQuantiles(
+        String name,
+        int pods,
+        double[] values,
+        double requestsPerSecond,
+        String timestamp) {
+}
@@ -0,0 +1,195 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.rollup;
+
+import com.metricstracker.model.Timestamps;
+import com.metricstracker.service.HistogramBucketSink;
+import com.metricstracker.service.WorkloadResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes request latency quantiles per pod and per workload from the
+ * buckets of a Prometheus histogram.
+ *
+ * Buckets are merged into sorted primitive arrays as they are streamed from
+ * the response, and the workload histograms are the bucket-wise sums of their
+ * pods, exactly what {@code sum by (workload, le)} would produce. Quantiles
+ * follow PromQL {@code histogram_quantile}: linear interpolation inside the
+ * bucket holding the rank, the lower bound of the first bucket taken as zero,
+ * and the largest finite bound returned for ranks in the +Inf bucket.
+ *
+ * One instance collects a single response and is not thread-safe.
+ */
+public class LatencyRollup implements HistogramBucketSink {
+    private final WorkloadResolver workloads;
+    private final Map<String, Buckets> pods = new HashMap<>();
+
+    public LatencyRollup(WorkloadResolver workloads) {
+        this.workloads = workloads;
+    }
+
+    @Override
+    public void accept(String podName, double upperBound, double value, String timestamp) {
+        pods.computeIfAbsent(podName, name -> new Buckets()).add(upperBound, value, timestamp);
+    }
+
+    /**
+     * Quantiles of every pod.
+     *
+     * @param quantiles Quantiles in [0, 1]
+     * @param names     Pods to report, empty for all
+     * @return One entry per pod, ordered by name
+     */
+    public List<LatencyQuantiles> pods(double[] quantiles, Set<String> names) {
+        List<LatencyQuantiles> results = new ArrayList<>();
+        for (Map.Entry<String, Buckets> entry : pods.entrySet()) {
+            if (names.isEmpty() || names.contains(entry.getKey())) {
+                results.add(entry.getValue().quantiles(entry.getKey(), 1, quantiles));
+            }
+        }
+        results.sort((a, b) -> a.name().compareTo(b.name()));
+        return results;
+    }
+
+    /**
+     * Quantiles of the merged histogram of each workload.
+     *
+     * @param quantiles Quantiles in [0, 1]
+     * @param names     Workloads to report, empty for all
+     * @return One entry per workload, ordered by name
+     */
+    public List<LatencyQuantiles> workloads(double[] quantiles, Set<String> names) {
+        Map<String, Buckets> merged = new HashMap<>();
+        Map<String, Integer> podCounts = new HashMap<>();
+        for (Map.Entry<String, Buckets> entry : pods.entrySet()) {
+            String workload = workloads.workloadOf(entry.getKey());
+            if (!names.isEmpty() && !names.contains(workload)) {
+                continue;
+            }
+            merged.computeIfAbsent(workload, name -> new Buckets()).addAll(entry.getValue());
+            podCounts.merge(workload, 1, Integer::sum);
+        }
+
+        List<LatencyQuantiles> results = new ArrayList<>(merged.size());
+        for (Map.Entry<String, Buckets> entry : merged.entrySet()) {
+            results.add(entry.getValue().quantiles(entry.getKey(), podCounts.get(entry.getKey()), quantiles));
+        }
+        results.sort((a, b) -> a.name().compareTo(b.name()));
+        return results;
+    }
+
+    /**
+     * PromQL histogram_quantile over cumulative buckets sorted by upper bound.
+     *
+     * @return NaN when the histogram has no +Inf bucket, fewer than two buckets
+     *         or no observations
+     */
+    static double quantile(double q, double[] upperBounds, double[] counts, int size) {
+        if (size < 2 || upperBounds[size - 1] != Double.POSITIVE_INFINITY) {
+            return Double.NaN;
+        }
+        // Rates of separately scraped buckets can be slightly out of order
+        double[] cumulative = Arrays.copyOf(counts, size);
+        for (int i = 1; i < size; i++) {
+            cumulative[i] = Math.max(cumulative[i], cumulative[i - 1]);
+        }
+        double observations = cumulative[size - 1];
+        if (observations == 0) {
+            return Double.NaN;
+        }
+
+        double rank = q * observations;
+        int bucket = 0;
+        while (bucket < size - 1 && cumulative[bucket] < rank) {
+            bucket++;
+        }
+        if (bucket == size - 1) {
+            return upperBounds[size - 2];
+        }
+        if (bucket == 0 && upperBounds[0] <= 0) {
+            return upperBounds[0];
+        }
+
+        double start = 0;
+        double end = upperBounds[bucket];
+        double count = cumulative[bucket];
+        if (bucket > 0) {
+            start = upperBounds[bucket - 1];
+            count -= cumulative[bucket - 1];
+            rank -= cumulative[bucket - 1];
+        }
+        return start + (end - start) * (rank / count);
+    }
+
+    // Cumulative bucket values kept sorted by upper bound, equal bounds summed
+    private static final class Buckets {
+        double[] upperBounds = new double[16];
+        double[] counts = new double[16];
+        int size;
+        String timestamp;
+        long timestampMillis = Long.MIN_VALUE;
+
+        void add(double upperBound, double value, String sampleTimestamp) {
+            int index = Arrays.binarySearch(upperBounds, 0, size, upperBound);
+            if (index >= 0) {
+                counts[index] += value;
+            } else {
+                int insertAt = -index - 1;
+                if (size == upperBounds.length) {
+                    upperBounds = Arrays.copyOf(upperBounds, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                System.arraycopy(upperBounds, insertAt, upperBounds, insertAt + 1, size - insertAt);
+                System.arraycopy(counts, insertAt, counts, insertAt + 1, size - insertAt);
+                upperBounds[insertAt] = upperBound;
+                counts[insertAt] = value;
+                size++;
+            }
+            if (sampleTimestamp != null && !sampleTimestamp.equals(timestamp)) {
+                long millis = Timestamps.toMillis(sampleTimestamp, Long.MIN_VALUE);
+                if (timestamp == null || millis > timestampMillis) {
+                    timestamp = sampleTimestamp;
+                    timestampMillis = millis;
+                }
+            }
+        }
+
+        void addAll(Buckets other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.upperBounds[i], other.counts[i], other.timestamp);
+            }
+        }
+
+        LatencyQuantiles quantiles(String name, int pods, double[] quantiles) {
+            double[] values = new double[quantiles.length];
+            for (int i = 0; i < quantiles.length; i++) {
+                values[i] = quantile(quantiles[i], upperBounds, counts, size);
+            }
+            boolean complete = size > 0 && upperBounds[size - 1] == Double.POSITIVE_INFINITY;
+            double requestsPerSecond = complete ? counts[size - 1] : 0;
+            return new LatencyQuantiles(name, pods, values, requestsPerSecond, timestamp != null ? timestamp : "");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.rollup;
+
+import java.util.OptionalInt;
+
+/**
+ * One metric of one workload, aggregated over its pods.
+ *
+ * @param name      The workload (StatefulSet, Deployment...) name
+ * @param pods      Pods of the workload present in the metrics
+ * @param readyPods Pods passing their readiness checks, empty without a pod watch
+ * @param sum       Sum of the pod values
+ * @param mean      Mean of the pod values
+ * @param max       Largest pod value
+ * @param timestamp Latest sample timestamp of the pods
+ */
+public record WorkloadAggregate(
+        String name,
+        int pods,
+        OptionalInt readyPods,
+        double sum,
+        double mean,
+        double max,
+        String timestamp) {
+}
@@ -0,0 +1,92 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.rollup;
+
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates per-pod samples into one row per owning workload, so that
+ * clients thinking in StatefulSets receive a few hundred rows instead of
+ * every pod.
+ */
+public class WorkloadRollup {
+    private final WorkloadResolver workloads;
+
+    public WorkloadRollup(WorkloadResolver workloads) {
+        this.workloads = workloads;
+    }
+
+    /**
+     * Rolls up one metric.
+     *
+     * @param names Workloads to report, empty for all
+     * @return One aggregate per workload, ordered by name
+     */
+    public List<WorkloadAggregate> rollup(PodMetricBatch metrics, Set<String> names) {
+        Map<String, Accumulator> accumulators = new HashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            String workload = workloads.workloadOf(metrics.podName(i));
+            if (!names.isEmpty() && !names.contains(workload)) {
+                continue;
+            }
+            accumulators.computeIfAbsent(workload, name -> new Accumulator())
+                .add(metrics.value(i), metrics.timestamp(i), metrics.timestampMillis(i, Long.MIN_VALUE));
+        }
+
+        List<WorkloadAggregate> aggregates = new ArrayList<>(accumulators.size());
+        for (Map.Entry<String, Accumulator> entry : accumulators.entrySet()) {
+            Accumulator accumulator = entry.getValue();
+            aggregates.add(new WorkloadAggregate(
+                entry.getKey(),
+                accumulator.pods,
+                workloads.readyPods(entry.getKey()),
+                accumulator.sum,
+                accumulator.sum / accumulator.pods,
+                accumulator.max,
+                accumulator.timestamp));
+        }
+        aggregates.sort((a, b) -> a.name().compareTo(b.name()));
+        return aggregates;
+    }
+
+    private static final class Accumulator {
+        int pods;
+        double sum;
+        double max = Double.NEGATIVE_INFINITY;
+        String timestamp;
+        long timestampMillis = Long.MIN_VALUE;
+
+        void add(double value, String sampleTimestamp, long millis) {
+            pods++;
+            sum += value;
+            max = Math.max(max, value);
+            if (timestamp == null || millis > timestampMillis) {
+                timestamp = sampleTimestamp;
+                timestampMillis = millis;
+            }
+        }
+    }
+}
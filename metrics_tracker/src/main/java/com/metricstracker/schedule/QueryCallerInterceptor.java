@@ -0,0 +1,66 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.schedule;
+
+import com.metricstracker.model.CallPriority;
+import com.metricstracker.model.QueryCaller;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Identifies the caller of every call from its {@value QueryCaller#HEADER}
+ * and {@value CallPriority#HEADER} headers, and keeps it in the gRPC context
+ * for the {@link QueryScheduler} to queue the call's Prometheus queries by.
+ */
+public class QueryCallerInterceptor implements ServerInterceptor {
+    public static final Metadata.Key<String> CALLER_KEY =
+        Metadata.Key.of(QueryCaller.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+    public static final Metadata.Key<String> PRIORITY_KEY =
+        Metadata.Key.of(CallPriority.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+    // Longer names are cut, callers only need to tell themselves apart
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private static final Context.Key<QueryCaller> CALLER = Context.key("query-caller");
+
+    /**
+     * Caller of the current call, {@link QueryCaller#BACKGROUND} outside of one.
+     */
+    public static QueryCaller current() {
+        QueryCaller caller = CALLER.get();
+        return caller != null ? caller : QueryCaller.BACKGROUND;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+            Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String name = headers.get(CALLER_KEY);
+        if (name == null || name.isBlank()) {
+            name = QueryCaller.ANONYMOUS;
+        } else if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH);
+        }
+        QueryCaller caller = new QueryCaller(name.trim(), CallPriority.fromHeader(headers.get(PRIORITY_KEY)));
+        return Contexts.interceptCall(Context.current().withValue(CALLER, caller), call, headers, next);
+    }
+}
@@ -0,0 +1,359 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.schedule;
+
+import com.metricstracker.model.CallPriority;
+import com.metricstracker.model.QueryCaller;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Admits Prometheus queries under a global cap on queries in flight. Queries
+ * beyond the cap wait in one queue per {@link CallPriority}, and a free slot
+ * always goes to the highest class with a waiting query.
+ *
+ * Within a class, callers share the slots by start-time fair queuing: each
+ * query is tagged with the virtual time its caller has used up, advanced by
+ * the query's cost over the caller's weight, and the lowest tag runs first.
+ * A caller issuing wide-window queries thus gets through fewer of them per
+ * turn than a caller issuing cheap ones, instead of starving it.
+ *
+ * The caller of a query is looked up when it is submitted, by default from
+ * the gRPC context set by {@link QueryCallerInterceptor}.
+ */
+public class QueryScheduler {
+    /**
+     * Assumed scrape interval of Prometheus targets, a range vector reads one
+     * sample per series for every interval of its window.
+     */
+    public static final int SAMPLE_INTERVAL_SECONDS = 15;
+
+    private final int maxInFlight;
+    private final long maxWaitNanos;
+    private final Map<String, Double> weights;
+    private final Supplier<QueryCaller> callers;
+    private final LongSupplier nanoTime;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lane[] lanes;
+    private int inFlight;
+    private long sequence;
+
+    private QueryScheduler(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.maxWaitNanos = builder.maxWait.toNanos();
+        this.weights = Map.copyOf(builder.weights);
+        this.callers = builder.callers;
+        this.nanoTime = builder.nanoTime;
+        CallPriority[] priorities = CallPriority.values();
+        this.lanes = new Lane[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new Lane(priorities[i]);
+        }
+    }
+
+    /**
+     * Cost of a query over a window, in samples read per series: one for an
+     * instant query, plus one for every sample interval of a range vector.
+     */
+    public static double costOfWindow(int seconds) {
+        return 1 + Math.max(0, seconds) / (double) SAMPLE_INTERVAL_SECONDS;
+    }
+
+    /**
+     * Runs a query once admitted, blocking the calling thread while it waits.
+     *
+     * @throws QueryRejectedException when the query waited longer than the
+     *         maximum wait, or the thread was interrupted while waiting
+     */
+    public <T> T call(double cost, Supplier<T> query) {
+        acquire(cost);
+        try {
+            return query.get();
+        } finally {
+            release();
+        }
+    }
+
+    public void run(double cost, Runnable query) {
+        acquire(cost);
+        try {
+            query.run();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(double cost) {
+        QueryCaller caller = callers.get();
+        Lane lane = lanes[caller.priority().ordinal()];
+        long queuedAt = nanoTime.getAsLong();
+        lock.lock();
+        try {
+            Ticket ticket = lane.tag(caller.name(), cost / weights.getOrDefault(caller.name(), 1.0),
+                sequence++, queuedAt);
+            if (inFlight < maxInFlight) {
+                // Nothing waits while a slot is free, slots are handed out on release
+                grant(lane, ticket, queuedAt);
+                return;
+            }
+            ticket.ready = lock.newCondition();
+            lane.queue.add(ticket);
+            long remaining = maxWaitNanos;
+            try {
+                while (!ticket.granted) {
+                    if (remaining <= 0) {
+                        lane.queue.remove(ticket);
+                        lane.rejected++;
+                        throw new QueryRejectedException("Query of " + caller.name() + " waited over "
+                            + Duration.ofNanos(maxWaitNanos).toMillis() + "ms for one of " + maxInFlight
+                            + " Prometheus query slots");
+                    }
+                    remaining = ticket.ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (ticket.granted) {
+                    // Granted while being interrupted, pass the slot on
+                    releaseLocked();
+                } else {
+                    lane.queue.remove(ticket);
+                    lane.rejected++;
+                }
+                throw new QueryRejectedException("Interrupted while waiting for a Prometheus query slot");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        inFlight--;
+        for (Lane lane : lanes) {
+            while (inFlight < maxInFlight && !lane.queue.isEmpty()) {
+                Ticket next = lane.queue.poll();
+                grant(lane, next, nanoTime.getAsLong());
+                next.ready.signal();
+            }
+        }
+    }
+
+    private void grant(Lane lane, Ticket ticket, long now) {
+        inFlight++;
+        ticket.granted = true;
+        lane.admitted(ticket, now - ticket.queuedAt);
+    }
+
+    /**
+     * Queries currently running against Prometheus.
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Queueing statistics of every priority class, highest first.
+     */
+    public List<ClassStats> stats() {
+        lock.lock();
+        try {
+            List<ClassStats> stats = new ArrayList<>(lanes.length);
+            for (Lane lane : lanes) {
+                stats.add(new ClassStats(lane.priority, lane.queue.size(), lane.queries, lane.rejected,
+                    lane.totalWaitNanos, lane.maxWaitNanos));
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queueing statistics of a priority class since the scheduler started.
+     *
+     * @param queued         Queries waiting now
+     * @param queries        Queries admitted, with or without waiting
+     * @param rejected       Queries given up on after waiting too long
+     * @param totalWaitNanos Time admitted queries spent waiting
+     * @param maxWaitNanos   Longest wait of an admitted query
+     */
+    public record ClassStats(CallPriority priority, int queued, long queries, long rejected,
+            long totalWaitNanos, long maxWaitNanos) {
+
+        public double meanWaitMillis() {
+            return queries == 0 ? 0 : totalWaitNanos / 1e6 / queries;
+        }
+    }
+
+    /**
+     * Thrown when a query is not admitted.
+     */
+    public static class QueryRejectedException extends RuntimeException {
+        public QueryRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Ticket implements Comparable<Ticket> {
+        final double start;
+        final long sequence;
+        final long queuedAt;
+        Condition ready;
+        boolean granted;
+
+        Ticket(double start, long sequence, long queuedAt) {
+            this.start = start;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            int byStart = Double.compare(start, other.start);
+            return byStart != 0 ? byStart : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    // Fair queue of one priority class, guarded by the scheduler lock
+    private static final class Lane {
+        final CallPriority priority;
+        final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+        // Finish tag of the last query of each caller
+        final Map<String, Double> finish = new HashMap<>();
+        // Start tag of the query admitted last
+        double virtualTime;
+        long queries;
+        long rejected;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        Lane(CallPriority priority) {
+            this.priority = priority;
+        }
+
+        Ticket tag(String caller, double cost, long sequence, long queuedAt) {
+            double start = Math.max(virtualTime, finish.getOrDefault(caller, 0.0));
+            finish.put(caller, start + cost);
+            return new Ticket(start, sequence, queuedAt);
+        }
+
+        void admitted(Ticket ticket, long waitNanos) {
+            virtualTime = Math.max(virtualTime, ticket.start);
+            queries++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            if (queue.isEmpty() && finish.size() > 1) {
+                // Tags at or behind the virtual time no longer hold a caller back
+                finish.values().removeIf(tag -> tag <= virtualTime);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int maxInFlight = 8;
+        private Duration maxWait = Duration.ofSeconds(10);
+        private final Map<String, Double> weights = new HashMap<>();
+        private Supplier<QueryCaller> callers = QueryCallerInterceptor::current;
+        private LongSupplier nanoTime = System::nanoTime;
+
+        /**
+         * Prometheus queries run at once, across all callers.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * How long a query may wait for a slot before it is rejected.
+         */
+        public Builder maxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * Share of a caller relative to others of its class, 1 when unset.
+         */
+        public Builder weight(String caller, double weight) {
+            this.weights.put(caller, weight);
+            return this;
+        }
+
+        /**
+         * Looks up the caller of a query being submitted.
+         */
+        public Builder callers(Supplier<QueryCaller> callers) {
+            this.callers = callers;
+            return this;
+        }
+
+        public Builder nanoTime(LongSupplier nanoTime) {
+            this.nanoTime = nanoTime;
+            return this;
+        }
+
+        public QueryScheduler build() {
+            if (maxInFlight < 1) {
+                throw new IllegalStateException("maxInFlight must be at least 1");
+            }
+            if (maxWait == null || maxWait.isNegative() || maxWait.isZero()) {
+                throw new IllegalStateException("Maximum wait must be positive");
+            }
+            if (weights.values().stream().anyMatch(weight -> !(weight > 0) || weight.isInfinite())) {
+                throw new IllegalStateException("Caller weights must be positive");
+            }
+            if (callers == null || nanoTime == null) {
+                throw new IllegalStateException("Caller lookup and clock are required");
+            }
+            return new QueryScheduler(this);
+        }
+    }
+}
@@ -20,37 +20,177 @@ package com.metricstracker.server;
 
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import com.metricstracker.anomaly.AnomalyDetector;
+import com.metricstracker.forecast.SeasonalForecaster;
+import com.metricstracker.forecast.TrendForecaster;
+import com.metricstracker.history.MetricHistory;
+import com.metricstracker.limit.ConcurrencyLimitInterceptor;
+import com.metricstracker.limit.ConcurrencyLimiter;
+import com.metricstracker.schedule.QueryCallerInterceptor;
+import com.metricstracker.schedule.QueryScheduler;
+import com.metricstracker.sketch.PercentileTracker;
+import com.metricstracker.service.AdaptiveScraper;
+import com.metricstracker.service.MetricsScraper;
 import com.metricstracker.service.PrometheusMetricsService;
 import com.metricstracker.service.PrometheusClient;
+import com.metricstracker.service.PodWatcher;
+import com.metricstracker.service.WorkloadIndex;
+import com.metricstracker.service.WorkloadResolver;
+import com.metricstracker.trace.FileSpanExporter;
+import com.metricstracker.trace.Sampler;
+import com.metricstracker.trace.Tracer;
+import com.metricstracker.trace.TracingServerInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 public class MetricsTrackerServer {
     private static final Logger logger = LoggerFactory.getLogger(MetricsTrackerServer.class);
     private static final int PORT = 50051;
+    private final String prometheusUrl;
+    private final int serverPort;
+    private final boolean resolveNodeNames;
+    private final boolean adaptiveScrape;
+    private final boolean watchPods;
+    private final String podNamespace;
+    private final boolean limitConcurrency;
+    private final boolean scheduleQueries;
+    private final boolean localCounterRates;
+    private final Path traceFile;
+    private final double traceSampleRatio;
+    private final Duration slowTraceThreshold;
     private Server server;
+    private Tracer tracer = Tracer.noop();
+    private MetricsScraper scraper;
+    private PodWatcher podWatcher;
 
     // Prometheus configuration - these could be moved to a config file
     private static final String PROMETHEUS_URL = "http://localhost:9090"; // Default Prometheus URL
+    private static final Duration SCRAPE_INTERVAL = Duration.ofSeconds(15);
+    private static final double TREND_DECAY = 0.9;
+    private static final Duration POD_SYNC_TIMEOUT = Duration.ofSeconds(30);
+    private static final String POD_NAMESPACE = "default";
+    private static final int MAX_PROMETHEUS_QUERIES = 8;
+    private static final double TRACE_SAMPLE_RATIO = 0.01;
+
+    public MetricsTrackerServer() {
+        this(new Builder());
+    }
+
+    private MetricsTrackerServer(Builder builder) {
+        this.prometheusUrl = builder.prometheusUrl;
+        this.serverPort = builder.serverPort;
+        this.resolveNodeNames = builder.resolveNodeNames;
+        this.adaptiveScrape = builder.adaptiveScrape;
+        this.watchPods = builder.watchPods;
+        this.podNamespace = builder.podNamespace;
+        this.limitConcurrency = builder.limitConcurrency;
+        this.scheduleQueries = builder.scheduleQueries;
+        this.localCounterRates = builder.localCounterRates;
+        this.traceFile = builder.traceFile;
+        this.traceSampleRatio = builder.traceSampleRatio;
+        this.slowTraceThreshold = builder.slowTraceThreshold;
+    }
 
     private void start() throws Exception {
+        // Spans of sampled and slow calls are appended to a local file for offline analysis
+        if (traceFile != null) {
+            tracer = Tracer.builder()
+                .sampler(Sampler.ratio(traceSampleRatio))
+                .slowTraceThreshold(slowTraceThreshold)
+                .exporter(new FileSpanExporter(traceFile))
+                .build();
+        }
+
         // Initialize PrometheusClient
         PrometheusClient prometheusClient = PrometheusClient.builder()
-            .baseUrl(PROMETHEUS_URL)
+            .baseUrl(prometheusUrl)
+            .tracer(tracer)
             .build();
 
+        // Queue queries of all callers for a fair share of Prometheus
+        QueryScheduler scheduler = scheduleQueries
+            ? QueryScheduler.builder().maxInFlight(MAX_PROMETHEUS_QUERIES).build()
+            : null;
+
         // Initialize PrometheusMetricsService using the builder pattern
-        PrometheusMetricsService metricsService = PrometheusMetricsService.builder()
+        PrometheusMetricsService.Builder metricsServiceBuilder = PrometheusMetricsService.builder()
             .client(prometheusClient)
+            .scheduler(scheduler)
+            .localCounterRates(localCounterRates)
+            .tracer(tracer);
+        if (!resolveNodeNames) {
+            // Report nodes by IP, e.g. when running outside of a cluster
+            metricsServiceBuilder.nodeNameResolver(nodeIP -> nodeIP);
+        }
+        PrometheusMetricsService metricsService = metricsServiceBuilder.build();
+
+        WorkloadResolver workloads = watchPods ? watchWorkloads() : WorkloadResolver.byNamePrefix();
+
+        // Feed online models from a background scrape
+        TrendForecaster forecaster = new TrendForecaster(TREND_DECAY, SCRAPE_INTERVAL);
+        // Adaptive scraping polls stable workloads less often than SCRAPE_INTERVAL
+        MetricsScraper.Builder scraperBuilder = adaptiveScrape
+            ? AdaptiveScraper.builder().workloadResolver(workloads)
+            : MetricsScraper.builder();
+        scraper = scraperBuilder
+            .metricsService(metricsService)
+            .interval(SCRAPE_INTERVAL)
+            .build();
+        SeasonalForecaster seasonalForecaster = SeasonalForecaster.builder()
+            .workloadResolver(workloads)
             .build();
+        AnomalyDetector anomalyDetector = AnomalyDetector.builder().workloadResolver(workloads).build();
+        MetricHistory history = MetricHistory.builder().build();
+        PercentileTracker percentiles = PercentileTracker.builder().workloadResolver(workloads).build();
+        scraper.addListener(forecaster);
+        scraper.addListener(seasonalForecaster);
+        scraper.addListener(anomalyDetector);
+        scraper.addListener(history);
+        scraper.addListener(percentiles);
+        scraper.start();
+
+        // Shed calls once Prometheus latency shows the tracker is saturated
+        ConcurrencyLimiter limiter = limitConcurrency ? ConcurrencyLimiter.builder().build() : null;
+        MetricsTrackerService service = MetricsTrackerService.builder()
+            .metricsService(metricsService)
+            .forecaster(forecaster)
+            .seasonalForecaster(seasonalForecaster)
+            .workloadResolver(workloads)
+            .anomalyDetector(anomalyDetector)
+            .history(history)
+            .percentiles(percentiles)
+            .scraper(scraper)
+            .limiter(limiter)
+            .scheduler(scheduler)
+            .build();
+
+        // Interceptors run last to first, callers are identified before calls are limited
+        List<ServerInterceptor> interceptors = new ArrayList<>();
+        if (limiter != null) {
+            interceptors.add(new ConcurrencyLimitInterceptor(limiter));
+        }
+        if (scheduler != null) {
+            interceptors.add(new QueryCallerInterceptor());
+        }
+        // Outermost, so the call span also covers the time spent in the limiter
+        interceptors.add(new TracingServerInterceptor(tracer));
 
         // Create and start the gRPC server
-        server = ServerBuilder.forPort(PORT)
-            .addService(new MetricsTrackerService(metricsService))
+        server = ServerBuilder.forPort(serverPort)
+            .addService(ServerInterceptors.intercept(service, interceptors))
             .build()
             .start();
             
-        logger.info("Server started, listening on port {}", PORT);
+        logger.info("Server started, listening on port {}", serverPort);
         
         // Add shutdown hook
         Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -62,7 +202,25 @@ public class MetricsTrackerServer {
         });
     }
 
+    // Owners come from a pod watch, or from pod names when the cluster cannot be reached
+    private WorkloadResolver watchWorkloads() throws InterruptedException {
+        WorkloadIndex index = new WorkloadIndex();
+        try {
+            podWatcher = PodWatcher.fromDefaultConfig(podNamespace, index);
+            podWatcher.start(POD_SYNC_TIMEOUT);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot watch pods, resolving workloads from pod names", e);
+        }
+        return index;
+    }
+
     private void stop() {
+        if (scraper != null) {
+            scraper.close();
+        }
+        if (podWatcher != null) {
+            podWatcher.close();
+        }
         if (server != null) {
             try {
                 server.shutdown().awaitTermination();
@@ -72,6 +230,7 @@ public class MetricsTrackerServer {
                 Thread.currentThread().interrupt();
             }
         }
+        tracer.close();
     }
 
     private void blockUntilShutdown() throws InterruptedException {
@@ -81,7 +240,22 @@ public class MetricsTrackerServer {
     }
 
     public static void main(String[] args) {
-        MetricsTrackerServer server = new MetricsTrackerServer();
+        MetricsTrackerServer server = builder()
+            .prometheusUrl(System.getenv().getOrDefault("PROMETHEUS_URL", PROMETHEUS_URL))
+            .serverPort(Integer.parseInt(System.getenv().getOrDefault("METRICS_TRACKER_PORT", String.valueOf(PORT))))
+            .resolveNodeNames(Boolean.parseBoolean(System.getenv().getOrDefault("RESOLVE_NODE_NAMES", "true")))
+            .adaptiveScrape(Boolean.parseBoolean(System.getenv().getOrDefault("ADAPTIVE_SCRAPE", "false")))
+            .watchPods(Boolean.parseBoolean(System.getenv().getOrDefault("WATCH_PODS", "true")))
+            .podNamespace(System.getenv().getOrDefault("POD_NAMESPACE", POD_NAMESPACE))
+            .limitConcurrency(Boolean.parseBoolean(System.getenv().getOrDefault("LIMIT_CONCURRENCY", "true")))
+            .scheduleQueries(Boolean.parseBoolean(System.getenv().getOrDefault("SCHEDULE_QUERIES", "true")))
+            .localCounterRates(Boolean.parseBoolean(System.getenv().getOrDefault("LOCAL_COUNTER_RATES", "false")))
+            .traceFile(Optional.ofNullable(System.getenv("TRACE_FILE")).map(Path::of).orElse(null))
+            .traceSampleRatio(Double.parseDouble(System.getenv().getOrDefault("TRACE_SAMPLE_RATIO",
+                String.valueOf(TRACE_SAMPLE_RATIO))))
+            .slowTraceThreshold(Optional.ofNullable(System.getenv("TRACE_SLOW_MILLIS"))
+                .map(millis -> Duration.ofMillis(Long.parseLong(millis))).orElse(null))
+            .build();
         try {
             server.start();
             server.blockUntilShutdown();
@@ -94,9 +268,23 @@ public class MetricsTrackerServer {
     /**
      * Builder pattern for server configuration
      */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     public static class Builder {
         private String prometheusUrl = PROMETHEUS_URL;
         private int serverPort = PORT;
+        private boolean resolveNodeNames = true;
+        private boolean adaptiveScrape = false;
+        private boolean watchPods = true;
+        private String podNamespace = POD_NAMESPACE;
+        private boolean limitConcurrency = true;
+        private boolean scheduleQueries = true;
+        private boolean localCounterRates = false;
+        private Path traceFile;
+        private double traceSampleRatio = TRACE_SAMPLE_RATIO;
+        private Duration slowTraceThreshold;
 
         public Builder prometheusUrl(String url) {
             this.prometheusUrl = url;
@@ -108,8 +296,73 @@ public class MetricsTrackerServer {
             return this;
         }
 
+        public Builder resolveNodeNames(boolean resolveNodeNames) {
+            this.resolveNodeNames = resolveNodeNames;
+            return this;
+        }
+
+        public Builder adaptiveScrape(boolean adaptiveScrape) {
+            this.adaptiveScrape = adaptiveScrape;
+            return this;
+        }
+
+        public Builder watchPods(boolean watchPods) {
+            this.watchPods = watchPods;
+            return this;
+        }
+
+        /**
+         * Namespace of the pods whose owners are watched, the others resolve by name.
+         */
+        public Builder podNamespace(String podNamespace) {
+            this.podNamespace = podNamespace;
+            return this;
+        }
+
+        public Builder limitConcurrency(boolean limitConcurrency) {
+            this.limitConcurrency = limitConcurrency;
+            return this;
+        }
+
+        public Builder scheduleQueries(boolean scheduleQueries) {
+            this.scheduleQueries = scheduleQueries;
+            return this;
+        }
+
+        public Builder localCounterRates(boolean localCounterRates) {
+            this.localCounterRates = localCounterRates;
+            return this;
+        }
+
+        /**
+         * Appends spans as JSON lines to this file, no tracing when unset.
+         */
+        public Builder traceFile(Path traceFile) {
+            this.traceFile = traceFile;
+            return this;
+        }
+
+        public Builder traceSampleRatio(double traceSampleRatio) {
+            this.traceSampleRatio = traceSampleRatio;
+            return this;
+        }
+
+        /**
+         * Also traces the calls that took at least this long, whether sampled or not.
+         */
+        public Builder slowTraceThreshold(Duration slowTraceThreshold) {
+            this.slowTraceThreshold = slowTraceThreshold;
+            return this;
+        }
+
         public MetricsTrackerServer build() {
-            return new MetricsTrackerServer();
+            if (traceSampleRatio < 0 || traceSampleRatio > 1) {
+                throw new IllegalStateException("Trace sample ratio must be between 0 and 1");
+            }
+            if (watchPods && (podNamespace == null || podNamespace.isEmpty())) {
+                throw new IllegalStateException("Pod namespace is required to watch pods");
+            }
+            return new MetricsTrackerServer(this);
         }
     }
 }
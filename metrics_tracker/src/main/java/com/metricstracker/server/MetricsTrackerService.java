@@ -18,57 +18,146 @@ under the License.
 */
 package com.metricstracker.server;
 
+import com.metricstracker.anomaly.Anomaly;
+import com.metricstracker.anomaly.AnomalyDetector;
+import com.metricstracker.forecast.SeasonalForecaster;
+import com.metricstracker.forecast.SeasonalModel;
+import com.metricstracker.forecast.TrendForecaster;
+import com.metricstracker.forecast.TrendModel;
+import com.metricstracker.history.ColumnarExport;
+import com.metricstracker.history.MetricHistory;
+import com.metricstracker.limit.ConcurrencyLimiter;
 import com.metricstracker.proto.*;
+import com.metricstracker.placement.BinPacker;
+import com.metricstracker.placement.NodeCapacity;
+import com.metricstracker.placement.PlacementPlan;
+import com.metricstracker.placement.PlacementPlanner;
+import com.metricstracker.placement.PodGroup;
+import com.metricstracker.recommend.Recommendation;
+import com.metricstracker.sketch.PercentileTracker;
+import com.metricstracker.recommend.ReplicaOptimizer;
+import com.metricstracker.recommend.ReplicaRecommender;
+import com.metricstracker.recommend.ServiceTarget;
+import com.metricstracker.rollup.LatencyQuantiles;
+import com.metricstracker.rollup.LatencyRollup;
+import com.metricstracker.rollup.WorkloadAggregate;
+import com.metricstracker.rollup.WorkloadRollup;
+import com.metricstracker.schedule.QueryScheduler;
+import com.metricstracker.service.AdaptiveScraper;
+import com.metricstracker.service.MetricsScraper;
 import com.metricstracker.service.MetricsService;
-import com.metricstracker.model.NodeMetric;
-import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.NodeMetricBatch;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.PodMetricSink;
+import com.metricstracker.service.ScrapeStats;
+import com.metricstracker.service.WorkloadResolver;
+import com.metricstracker.model.MetricType;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.DoubleConsumer;
 
 public class MetricsTrackerService extends MetricsTrackerGrpc.MetricsTrackerImplBase {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsTrackerService.class);
     private final MetricsService metricsService;
+    private final TrendForecaster forecaster;
+    private final SeasonalForecaster seasonalForecaster;
+    private final ReplicaRecommender recommender;
+    private final PlacementPlanner placementPlanner;
+    private final WorkloadResolver workloadResolver;
+    private final WorkloadRollup workloadRollup;
+    private final AnomalyDetector anomalyDetector;
+    private final MetricHistory history;
+    private final PercentileTracker percentiles;
+    private final MetricsScraper scraper;
+    private final ConcurrencyLimiter limiter;
+    private final QueryScheduler scheduler;
     private final int MEASSUREMENT_INTERVAL = 60;
+    private static final int SEASONAL_STEP_SECONDS = 60;
+    // Forecasts are allocated per step, so the horizon a request may ask for is capped
+    static final int MAX_FORECAST_STEPS = 1000;
+    // Keeps the last forecast timestamp, MAX_FORECAST_STEPS intervals out, far from overflowing
+    static final int MAX_SEASONAL_STEP_SECONDS = (int) Duration.ofDays(7).toSeconds();
+    private static final int EXPORT_STEP_SECONDS = 15;
+    private static final List<Double> DEFAULT_PERCENTILES = List.of(50.0, 90.0, 95.0, 99.0);
 
     public MetricsTrackerService(MetricsService metricsService) {
-        this.metricsService = metricsService;
+        this(builder().metricsService(metricsService));
     }
 
-    private PodMetricsResponse buildPodsResponse(List<PodMetric> metrics) {
-        return PodMetricsResponse.newBuilder()
-            .addAllMetrics(metrics.stream()
-                .map(PodMetric::toProto)
-                .collect(Collectors.toList()))
-            .build();
+    private MetricsTrackerService(Builder builder) {
+        this.metricsService = builder.metricsService;
+        this.forecaster = builder.forecaster;
+        this.seasonalForecaster = builder.seasonalForecaster;
+        this.recommender = new ReplicaRecommender(metricsService, forecaster, seasonalForecaster,
+            builder.workloadResolver, new ReplicaOptimizer(), MEASSUREMENT_INTERVAL);
+        this.placementPlanner = new PlacementPlanner(metricsService, MEASSUREMENT_INTERVAL);
+        this.workloadResolver = builder.workloadResolver;
+        this.workloadRollup = new WorkloadRollup(builder.workloadResolver);
+        this.anomalyDetector = builder.anomalyDetector;
+        this.history = builder.history;
+        this.percentiles = builder.percentiles;
+        this.scraper = builder.scraper;
+        this.limiter = builder.limiter;
+        this.scheduler = builder.scheduler;
     }
 
-    private NodeMetricsResponse buildNodesResponse(List<NodeMetric> metrics) {
-        return NodeMetricsResponse.newBuilder()
-            .addAllMetrics(metrics.stream()
-                .map(NodeMetric::toProto)
-                .collect(Collectors.toList()))
-            .build();
+    // Writes parsed samples straight into the response, without intermediate records or lists
+    private static PodMetricSink podSink(PodMetricsResponse.Builder response) {
+        return (podName, value, timestamp) -> response.addMetricsBuilder()
+            .setPodName(podName)
+            .setValue(value)
+            .setTimestamp(timestamp);
+    }
+
+    private NodeMetricsResponse buildNodesResponse(NodeMetricBatch metrics) {
+        NodeMetricsResponse.Builder response = NodeMetricsResponse.newBuilder();
+        for (int i = 0; i < metrics.size(); i++) {
+            response.addMetricsBuilder()
+                .setNodeName(metrics.nodeName(i))
+                .setValue(metrics.value(i))
+                .setTimestamp(metrics.timestamp(i));
+        }
+        return response.build();
     }
 
     @Override
     public void getPodsCPUUtilization(MetricsRequest request,
             StreamObserver<PodMetricsResponse> responseObserver) {
-        responseObserver.onNext(buildPodsResponse(metricsService.getPodsCPUUtilization(this.MEASSUREMENT_INTERVAL)));
+        PodMetricsResponse.Builder response = PodMetricsResponse.newBuilder();
+        metricsService.streamPodsCPUUtilization(this.MEASSUREMENT_INTERVAL, podSink(response));
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
 
     @Override
     public void getPodsMemoryUtilization(MetricsRequest request,
             StreamObserver<PodMetricsResponse> responseObserver) {
-        responseObserver.onNext(buildPodsResponse(metricsService.getPodsMemoryUtilization(this.MEASSUREMENT_INTERVAL)));
+        PodMetricsResponse.Builder response = PodMetricsResponse.newBuilder();
+        metricsService.streamPodsMemoryUtilization(this.MEASSUREMENT_INTERVAL, podSink(response));
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
 
     @Override
     public void getPodsHitsUtilization(MetricsRequest request,
             StreamObserver<PodMetricsResponse> responseObserver) {
-        responseObserver.onNext(buildPodsResponse(metricsService.getPodsHitsUtilization(this.MEASSUREMENT_INTERVAL)));
+        PodMetricsResponse.Builder response = PodMetricsResponse.newBuilder();
+        metricsService.streamPodsHitsUtilization(this.MEASSUREMENT_INTERVAL, podSink(response));
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
 
@@ -85,4 +174,642 @@ public class MetricsTrackerService extends MetricsTrackerGrpc.MetricsTrackerImpl
         responseObserver.onNext(buildNodesResponse(metricsService.getNodesMemoryUtilization(this.MEASSUREMENT_INTERVAL)));
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void getPodForecast(ForecastRequest request,
+            StreamObserver<ForecastResponse> responseObserver) {
+        if (request.getModel() == ForecastModel.SEASONAL) {
+            seasonalForecast(request, (type, name) -> seasonalForecaster.podSeries(type, name), responseObserver);
+            return;
+        }
+        int steps = forecastSteps(request, responseObserver);
+        if (steps < 0) {
+            return;
+        }
+        TrendModel cpu = forecaster.podSeries(MetricType.CPU, request.getName()).orElse(null);
+        TrendModel memory = forecaster.podSeries(MetricType.MEMORY, request.getName()).orElse(null);
+        if (!hasEnoughSamples(request.getName(), cpu, memory, responseObserver)) {
+            return;
+        }
+
+        ForecastResponse.Builder response = forecastResponse(request.getName(), steps, cpu, memory);
+        forecaster.podSeries(MetricType.HITS, request.getName())
+            .ifPresent(hits -> addAll(response::addPredictedHits, TrendForecaster.forecast(hits, steps)));
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getNodeForecast(ForecastRequest request,
+            StreamObserver<ForecastResponse> responseObserver) {
+        if (request.getModel() == ForecastModel.SEASONAL) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Seasonal forecasts are kept for pods and workloads only")
+                .asRuntimeException());
+            return;
+        }
+        int steps = forecastSteps(request, responseObserver);
+        if (steps < 0) {
+            return;
+        }
+        TrendModel cpu = forecaster.nodeSeries(MetricType.CPU, request.getName()).orElse(null);
+        TrendModel memory = forecaster.nodeSeries(MetricType.MEMORY, request.getName()).orElse(null);
+        if (!hasEnoughSamples(request.getName(), cpu, memory, responseObserver)) {
+            return;
+        }
+
+        responseObserver.onNext(forecastResponse(request.getName(), steps, cpu, memory).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Forecasts the total demand of a workload over its pods, ahead of daily
+     * and weekly cycles.
+     */
+    @Override
+    public void getWorkloadForecast(ForecastRequest request,
+            StreamObserver<ForecastResponse> responseObserver) {
+        seasonalForecast(request, (type, name) -> seasonalForecaster.workloadSeries(type, name), responseObserver);
+    }
+
+    private void seasonalForecast(ForecastRequest request,
+            BiFunction<MetricType, String, Optional<SeasonalModel>> series,
+            StreamObserver<ForecastResponse> responseObserver) {
+        if (seasonalForecaster == null) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                .withDescription("Seasonal forecasting is not enabled")
+                .asRuntimeException());
+            return;
+        }
+        int steps = forecastSteps(request, responseObserver);
+        if (steps < 0) {
+            return;
+        }
+        if (request.getStepSeconds() > MAX_SEASONAL_STEP_SECONDS) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Forecast steps can be at most " + MAX_SEASONAL_STEP_SECONDS + " seconds apart")
+                .asRuntimeException());
+            return;
+        }
+        int stepSeconds = request.getStepSeconds() > 0 ? request.getStepSeconds() : SEASONAL_STEP_SECONDS;
+        SeasonalModel cpu = series.apply(MetricType.CPU, request.getName()).orElse(null);
+        SeasonalModel memory = series.apply(MetricType.MEMORY, request.getName()).orElse(null);
+        if (cpu == null || memory == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                .withDescription("No tracked series for " + request.getName())
+                .asRuntimeException());
+            return;
+        }
+        if (Math.min(cpu.getSamples(), memory.getSamples()) < SeasonalForecaster.MIN_SAMPLES) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                .withDescription("Need at least " + SeasonalForecaster.MIN_SAMPLES + " data points for prediction")
+                .asRuntimeException());
+            return;
+        }
+
+        Duration interval = Duration.ofSeconds(stepSeconds);
+        ForecastResponse.Builder response = ForecastResponse.newBuilder()
+            .setName(request.getName())
+            .setSamples(cpu.getSamples())
+            .setLastSampleMillis(cpu.getLastMillis())
+            .setStepSeconds(stepSeconds)
+            .setWarm(cpu.isWarm());
+        addAll(response::addPredictedCpu, SeasonalForecaster.forecast(cpu, interval, steps));
+        addAll(response::addPredictedMemory, SeasonalForecaster.forecast(memory, interval, steps));
+        series.apply(MetricType.HITS, request.getName())
+            .ifPresent(hits -> addAll(response::addPredictedHits, SeasonalForecaster.forecast(hits, interval, steps)));
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    // Requested steps, the default when unset, or -1 after rejecting too many
+    private static int forecastSteps(ForecastRequest request, StreamObserver<ForecastResponse> responseObserver) {
+        if (request.getSteps() > MAX_FORECAST_STEPS) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("At most " + MAX_FORECAST_STEPS + " forecast steps can be requested")
+                .asRuntimeException());
+            return -1;
+        }
+        return request.getSteps() > 0 ? request.getSteps() : TrendForecaster.DEFAULT_STEPS;
+    }
+
+    private static boolean hasEnoughSamples(String name, TrendModel cpu, TrendModel memory,
+            StreamObserver<ForecastResponse> responseObserver) {
+        if (cpu == null || memory == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                .withDescription("No tracked series for " + name)
+                .asRuntimeException());
+            return false;
+        }
+        if (Math.min(cpu.getSamples(), memory.getSamples()) < TrendForecaster.MIN_SAMPLES) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                .withDescription("Need at least " + TrendForecaster.MIN_SAMPLES + " data points for prediction")
+                .asRuntimeException());
+            return false;
+        }
+        return true;
+    }
+
+    private static ForecastResponse.Builder forecastResponse(String name, int steps, TrendModel cpu, TrendModel memory) {
+        ForecastResponse.Builder response = ForecastResponse.newBuilder()
+            .setName(name)
+            .setSamples(cpu.getSamples());
+        addAll(response::addPredictedCpu, TrendForecaster.forecast(cpu, steps));
+        addAll(response::addPredictedMemory, TrendForecaster.forecast(memory, steps));
+        return response;
+    }
+
+    private static void addAll(DoubleConsumer target, double[] values) {
+        for (double value : values) {
+            target.accept(value);
+        }
+    }
+
+    @Override
+    public void recommendReplicas(RecommendReplicasRequest request,
+            StreamObserver<RecommendReplicasResponse> responseObserver) {
+        List<ServiceTarget> services;
+        try {
+            services = request.getServicesList().stream()
+                .map(MetricsTrackerService::toServiceTarget)
+                .toList();
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        if (scraper instanceof AdaptiveScraper adaptiveScraper) {
+            services.forEach(service -> adaptiveScraper.updateTarget(service.statefulSetName(), cpuTarget(service)));
+        }
+
+        RecommendReplicasResponse.Builder response = RecommendReplicasResponse.newBuilder();
+        Duration lead = Duration.ofSeconds(Math.max(0, request.getLeadSeconds()));
+        for (Recommendation recommendation : recommender.recommend(services, lead)) {
+            response.addRecommendations(ReplicaRecommendation.newBuilder()
+                .setName(recommendation.name())
+                .setStatefulSetName(recommendation.statefulSetName())
+                .setSuggestedReplicas(recommendation.suggestedReplicas())
+                .setPredictedCpu(recommendation.predictedCpu())
+                .setPredictedMemory(recommendation.predictedMemory())
+                .setObservedPods(recommendation.observedPods()));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    // Target CPU in pod metric units, percent of a core
+    private static double cpuTarget(ServiceTarget service) {
+        return service.cpuRequestMillicores() > 0
+            ? service.targetCpuUtilization() * service.cpuRequestMillicores() / 1000.0
+            : service.targetCpuUtilization();
+    }
+
+    @Override
+    public void getServerStats(ServerStatsRequest request,
+            StreamObserver<ServerStatsResponse> responseObserver) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        ServerStatsResponse.Builder response = ServerStatsResponse.newBuilder()
+            .setHeapUsedBytes(heap.getUsed())
+            .setHeapCommittedBytes(heap.getCommitted())
+            .setHeapMaxBytes(heap.getMax())
+            .setThreadCount(ManagementFactory.getThreadMXBean().getThreadCount())
+            .setUptimeMillis(ManagementFactory.getRuntimeMXBean().getUptime())
+            .setHistoryBytes(history.sizeInBytes())
+            .setSketchBytes(percentiles.sizeInBytes());
+        if (seasonalForecaster != null) {
+            response.setSeasonalForecastBytes(seasonalForecaster.sizeInBytes());
+        }
+        if (scraper != null) {
+            ScrapeStats stats = scraper.getStats();
+            response.setScrapeQueries(stats.queries())
+                .setScrapeSeries(stats.series())
+                .setScrapeBaselineQueries(stats.baselineQueries())
+                .setScrapeBaselineSeries(stats.baselineSeries());
+        }
+        if (limiter != null) {
+            response.setConcurrencyLimit(limiter.limit())
+                .setCallsInFlight(limiter.inFlight())
+                .setCallsRejected(limiter.rejected());
+        }
+        if (scheduler != null) {
+            response.setPrometheusQueriesInFlight(scheduler.inFlight())
+                .setPrometheusQuerySlots(scheduler.maxInFlight());
+            for (QueryScheduler.ClassStats stats : scheduler.stats()) {
+                response.addQueryClasses(QueryClassStats.newBuilder()
+                    .setPriority(stats.priority().headerValue())
+                    .setQueued(stats.queued())
+                    .setQueries(stats.queries())
+                    .setRejected(stats.rejected())
+                    .setMeanWaitMillis(stats.meanWaitMillis())
+                    .setMaxWaitMillis(stats.maxWaitNanos() / 1e6));
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            response.addGarbageCollectors(GarbageCollectorStats.newBuilder()
+                .setName(collector.getName())
+                .setCollections(collector.getCollectionCount())
+                .setCollectionTimeMillis(collector.getCollectionTime()));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void planPlacement(PlacementRequest request,
+            StreamObserver<PlacementResponse> responseObserver) {
+        PlacementPlan plan;
+        try {
+            List<NodeCapacity> nodes = request.getNodesList().stream()
+                .map(node -> new NodeCapacity(node.getName(), node.getCpuMillicores(), node.getMemoryBytes()))
+                .toList();
+            List<PodGroup> groups = request.getGroupsList().stream()
+                .map(group -> new PodGroup(group.getName(), group.getReplicas(), group.getCpuRequestMillicores(),
+                    group.getMemoryRequestBytes(), group.getCurrentNodesList()))
+                .toList();
+            BinPacker.Strategy strategy = request.getStrategy() == PlacementStrategy.BEST_FIT_DECREASING
+                ? BinPacker.Strategy.BEST_FIT_DECREASING
+                : BinPacker.Strategy.FIRST_FIT_DECREASING;
+            plan = placementPlanner.plan(nodes, groups, strategy,
+                request.getMaxNodeUtilization() > 0 ? request.getMaxNodeUtilization() : PlacementPlanner.DEFAULT_MAX_UTILIZATION,
+                request.getDrainUtilization() > 0 ? request.getDrainUtilization() : PlacementPlanner.DEFAULT_DRAIN_UTILIZATION);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        PlacementResponse.Builder response = PlacementResponse.newBuilder()
+            .addAllDrainableNodes(plan.drainableNodes())
+            .setMigrations(plan.migrations());
+        for (PlacementPlan.NodePlan node : plan.nodes()) {
+            NodePlan.Builder nodePlan = NodePlan.newBuilder()
+                .setNodeName(node.name())
+                .setCpuUtilization(node.cpuUtilization())
+                .setMemoryUtilization(node.memoryUtilization())
+                .setDrainable(node.drainable());
+            for (Map.Entry<String, Integer> placement : node.placements().entrySet()) {
+                nodePlan.addPlacements(groupPlacement(placement));
+            }
+            response.addNodes(nodePlan);
+        }
+        for (Map.Entry<String, Integer> unplaced : plan.unplaced().entrySet()) {
+            response.addUnplaced(groupPlacement(unplaced));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    private static GroupPlacement groupPlacement(Map.Entry<String, Integer> replicas) {
+        return GroupPlacement.newBuilder()
+            .setGroup(replicas.getKey())
+            .setReplicas(replicas.getValue())
+            .build();
+    }
+
+    /**
+     * Streams shifts as the scrape that completes them arrives. Events are
+     * dropped rather than buffered while the client is not reading.
+     */
+    @Override
+    public void watchAnomalies(WatchAnomaliesRequest request,
+            StreamObserver<AnomalyEvent> responseObserver) {
+        ServerCallStreamObserver<AnomalyEvent> call = (ServerCallStreamObserver<AnomalyEvent>) responseObserver;
+        Set<String> statefulSets = Set.copyOf(request.getStatefulSetsList());
+        boolean includePods = request.getIncludePods();
+
+        AutoCloseable subscription = anomalyDetector.subscribe(anomaly -> {
+            if (anomaly.scope() == Anomaly.Scope.POD && !includePods) {
+                return;
+            }
+            if (!statefulSets.isEmpty() && !statefulSets.contains(anomaly.statefulSetName())) {
+                return;
+            }
+            synchronized (call) {
+                if (call.isCancelled()) {
+                    return;
+                }
+                if (!call.isReady()) {
+                    logger.debug("Dropping anomaly for {}, watcher is not reading", anomaly.name());
+                    return;
+                }
+                call.onNext(toAnomalyEvent(anomaly));
+            }
+        });
+        call.setOnCancelHandler(() -> {
+            try {
+                subscription.close();
+            } catch (Exception e) {
+                logger.warn("Failed to remove anomaly watcher", e);
+            }
+        });
+    }
+
+    private static AnomalyEvent toAnomalyEvent(Anomaly anomaly) {
+        return AnomalyEvent.newBuilder()
+            .setScope(anomaly.scope() == Anomaly.Scope.POD ? AnomalyEvent.Scope.POD : AnomalyEvent.Scope.STATEFUL_SET)
+            .setName(anomaly.name())
+            .setStatefulSetName(anomaly.statefulSetName())
+            .setMetric(anomaly.metric().name())
+            .setDirection(anomaly.direction() == Anomaly.Direction.UP ? AnomalyEvent.Direction.UP : AnomalyEvent.Direction.DOWN)
+            .setValue(anomaly.value())
+            .setBaseline(anomaly.baseline())
+            .setScore(anomaly.score())
+            .setTimestamp(anomaly.timestamp())
+            .build();
+    }
+
+    @Override
+    public void getPodsCPUPercentiles(PercentilesRequest request,
+            StreamObserver<PercentilesResponse> responseObserver) {
+        respondPercentiles(MetricType.CPU, request, responseObserver);
+    }
+
+    @Override
+    public void getPodsMemoryPercentiles(PercentilesRequest request,
+            StreamObserver<PercentilesResponse> responseObserver) {
+        respondPercentiles(MetricType.MEMORY, request, responseObserver);
+    }
+
+    @Override
+    public void getPodsHitsPercentiles(PercentilesRequest request,
+            StreamObserver<PercentilesResponse> responseObserver) {
+        respondPercentiles(MetricType.HITS, request, responseObserver);
+    }
+
+    private void respondPercentiles(MetricType type, PercentilesRequest request,
+            StreamObserver<PercentilesResponse> responseObserver) {
+        List<Double> requested = request.getPercentilesCount() > 0
+            ? request.getPercentilesList()
+            : DEFAULT_PERCENTILES;
+        double[] quantiles = quantilesOf(requested);
+        if (quantiles == null) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Percentiles must be between 0 and 100")
+                .asRuntimeException());
+            return;
+        }
+
+        Duration window = Duration.ofSeconds(Math.max(request.getSeconds(), 0));
+        Set<String> names = Set.copyOf(request.getNamesList());
+        List<PercentileTracker.Percentiles> results = request.getByStatefulSet()
+            ? percentiles.statefulSets(type, window, quantiles, names)
+            : percentiles.pods(type, window, quantiles, names);
+
+        PercentilesResponse.Builder response = PercentilesResponse.newBuilder()
+            .addAllPercentiles(requested);
+        for (PercentileTracker.Percentiles result : results) {
+            PercentileSeries.Builder series = PercentileSeries.newBuilder()
+                .setName(result.name())
+                .setCount(result.count());
+            addAll(series::addValues, result.values());
+            response.addSeries(series);
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    // Percentiles in [0, 100] as quantiles in [0, 1], null when one is out of range
+    private static double[] quantilesOf(List<Double> percentiles) {
+        double[] quantiles = new double[percentiles.size()];
+        for (int i = 0; i < quantiles.length; i++) {
+            double percentile = percentiles.get(i);
+            if (!(percentile >= 0 && percentile <= 100)) {
+                return null;
+            }
+            quantiles[i] = percentile / 100;
+        }
+        return quantiles;
+    }
+
+    /**
+     * Latency quantiles computed from one query of the request duration
+     * histogram buckets, merged per workload in the tracker when asked to.
+     */
+    @Override
+    public void getPodsLatencyQuantiles(LatencyQuantilesRequest request,
+            StreamObserver<LatencyQuantilesResponse> responseObserver) {
+        List<Double> requested = request.getPercentilesCount() > 0
+            ? request.getPercentilesList()
+            : DEFAULT_PERCENTILES;
+        double[] quantiles = quantilesOf(requested);
+        if (quantiles == null) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Percentiles must be between 0 and 100")
+                .asRuntimeException());
+            return;
+        }
+
+        LatencyRollup rollup = new LatencyRollup(workloadResolver);
+        int seconds = request.getSeconds() > 0 ? request.getSeconds() : MEASSUREMENT_INTERVAL;
+        metricsService.streamPodsLatencyBuckets(seconds, null, rollup);
+
+        Set<String> names = Set.copyOf(request.getNamesList());
+        List<LatencyQuantiles> results = request.getByWorkload()
+            ? rollup.workloads(quantiles, names)
+            : rollup.pods(quantiles, names);
+
+        LatencyQuantilesResponse.Builder response = LatencyQuantilesResponse.newBuilder()
+            .addAllPercentiles(requested);
+        for (LatencyQuantiles result : results) {
+            LatencySeries.Builder series = LatencySeries.newBuilder()
+                .setName(result.name())
+                .setRequestsPerSecond(result.requestsPerSecond())
+                .setPods(result.pods())
+                .setTimestamp(result.timestamp());
+            addAll(series::addSeconds, result.values());
+            response.addSeries(series);
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getWorkloadsCPUUtilization(WorkloadMetricsRequest request,
+            StreamObserver<WorkloadMetricsResponse> responseObserver) {
+        respondWorkloads(metricsService.getPodsCPUUtilization(windowOf(request)), request, responseObserver);
+    }
+
+    @Override
+    public void getWorkloadsMemoryUtilization(WorkloadMetricsRequest request,
+            StreamObserver<WorkloadMetricsResponse> responseObserver) {
+        respondWorkloads(metricsService.getPodsMemoryUtilization(windowOf(request)), request, responseObserver);
+    }
+
+    @Override
+    public void getWorkloadsHitsUtilization(WorkloadMetricsRequest request,
+            StreamObserver<WorkloadMetricsResponse> responseObserver) {
+        respondWorkloads(metricsService.getPodsHitsUtilization(windowOf(request)), request, responseObserver);
+    }
+
+    private int windowOf(WorkloadMetricsRequest request) {
+        return request.getSeconds() > 0 ? request.getSeconds() : MEASSUREMENT_INTERVAL;
+    }
+
+    private void respondWorkloads(PodMetricBatch metrics, WorkloadMetricsRequest request,
+            StreamObserver<WorkloadMetricsResponse> responseObserver) {
+        WorkloadMetricsResponse.Builder response = WorkloadMetricsResponse.newBuilder();
+        for (WorkloadAggregate aggregate : workloadRollup.rollup(metrics, Set.copyOf(request.getNamesList()))) {
+            WorkloadMetric.Builder metric = WorkloadMetric.newBuilder()
+                .setName(aggregate.name())
+                .setPods(aggregate.pods())
+                .setSum(aggregate.sum())
+                .setMean(aggregate.mean())
+                .setMax(aggregate.max())
+                .setTimestamp(aggregate.timestamp());
+            aggregate.readyPods().ifPresent(metric::setReadyPods);
+            response.addMetrics(metric);
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Streams history as columnar chunks, producing each one only when the
+     * client can take it so a long export never piles up in server memory.
+     */
+    @Override
+    public void exportHistory(ExportHistoryRequest request, StreamObserver<ExportHistoryChunk> responseObserver) {
+        ColumnarExport export;
+        try {
+            MetricType type = MetricType.valueOf(request.getMetric());
+            Duration window = Duration.ofSeconds(request.getSeconds());
+            Duration step = Duration.ofSeconds(request.getStepSeconds() > 0 ? request.getStepSeconds() : EXPORT_STEP_SECONDS);
+            export = request.getKind() == ExportHistoryRequest.Kind.NODES
+                ? history.exportNodes(type, request.getNamesList(), window, step)
+                : history.exportPods(type, request.getNamesList(), window, step);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Invalid export of metric '" + request.getMetric() + "': " + e.getMessage())
+                .asRuntimeException());
+            return;
+        }
+
+        ServerCallStreamObserver<ExportHistoryChunk> call = (ServerCallStreamObserver<ExportHistoryChunk>) responseObserver;
+        long totalBytes = export.totalBytes();
+        call.setOnCancelHandler(() -> logger.debug("History export cancelled after a partial transfer"));
+        call.setOnReadyHandler(new Runnable() {
+            private boolean started;
+            private boolean completed;
+
+            @Override
+            public void run() {
+                while (!completed && call.isReady() && export.hasNext()) {
+                    ExportHistoryChunk.Builder chunk = ExportHistoryChunk.newBuilder()
+                        .setData(UnsafeByteOperations.unsafeWrap(export.next()));
+                    if (!started) {
+                        chunk.setTotalBytes(totalBytes);
+                        started = true;
+                    }
+                    call.onNext(chunk.build());
+                }
+                if (!completed && !export.hasNext() && !call.isCancelled()) {
+                    completed = true;
+                    call.onCompleted();
+                }
+            }
+        });
+    }
+
+    // Unset proto3 fields fall back to the solver defaults
+    private static ServiceTarget toServiceTarget(ServiceSpec spec) {
+        return new ServiceTarget(
+            spec.getName(),
+            spec.getStatefulSetName(),
+            spec.getCurrentReplicas(),
+            spec.getMinReplicas() > 0 ? spec.getMinReplicas() : 1,
+            spec.getMaxReplicas() > 0 ? spec.getMaxReplicas() : 10,
+            spec.getTargetCpuUtilization() > 0 ? spec.getTargetCpuUtilization() : 70.0,
+            spec.getTargetMemoryUtilization() > 0 ? spec.getTargetMemoryUtilization() : 70.0,
+            spec.getCpuRequestMillicores(),
+            spec.getMemoryRequestBytes());
+    }
+
+    /**
+     * Builder pattern for service configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private MetricsService metricsService;
+        private TrendForecaster forecaster = new TrendForecaster(0.9, Duration.ofSeconds(15));
+        private SeasonalForecaster seasonalForecaster;
+        private WorkloadResolver workloadResolver = WorkloadResolver.byNamePrefix();
+        private AnomalyDetector anomalyDetector = AnomalyDetector.builder().build();
+        private MetricHistory history = MetricHistory.builder().build();
+        private PercentileTracker percentiles = PercentileTracker.builder().build();
+        private MetricsScraper scraper;
+        private ConcurrencyLimiter limiter;
+        private QueryScheduler scheduler;
+
+        public Builder metricsService(MetricsService metricsService) {
+            this.metricsService = metricsService;
+            return this;
+        }
+
+        public Builder forecaster(TrendForecaster forecaster) {
+            this.forecaster = forecaster;
+            return this;
+        }
+
+        /**
+         * Seasonal models served by the forecast RPCs with the SEASONAL model,
+         * and used for the lead time of RecommendReplicas.
+         */
+        public Builder seasonalForecaster(SeasonalForecaster seasonalForecaster) {
+            this.seasonalForecaster = seasonalForecaster;
+            return this;
+        }
+
+        public Builder workloadResolver(WorkloadResolver workloadResolver) {
+            this.workloadResolver = workloadResolver;
+            return this;
+        }
+
+        public Builder anomalyDetector(AnomalyDetector anomalyDetector) {
+            this.anomalyDetector = anomalyDetector;
+            return this;
+        }
+
+        public Builder history(MetricHistory history) {
+            this.history = history;
+            return this;
+        }
+
+        public Builder percentiles(PercentileTracker percentiles) {
+            this.percentiles = percentiles;
+            return this;
+        }
+
+        /**
+         * Background scraper whose Prometheus load is reported by GetServerStats.
+         * An adaptive scraper also learns the CPU targets of RecommendReplicas.
+         */
+        public Builder scraper(MetricsScraper scraper) {
+            this.scraper = scraper;
+            return this;
+        }
+
+        /**
+         * Limiter in front of the service, reported by GetServerStats.
+         */
+        public Builder limiter(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        /**
+         * Scheduler of the Prometheus queries, its queues reported by GetServerStats.
+         */
+        public Builder scheduler(QueryScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public MetricsTrackerService build() {
+            if (metricsService == null) {
+                throw new IllegalStateException("MetricsService is required");
+            }
+            return new MetricsTrackerService(this);
+        }
+    }
 }
@@ -0,0 +1,487 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.metricstracker.model.MetricType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link MetricsScraper} that polls each workload at its own interval instead
+ * of fetching every pod on every round. Workloads whose CPU or traffic is
+ * volatile, or whose CPU is close to or above its target utilization, are polled
+ * at the minimum interval; stable, idle ones back off to the maximum.
+ *
+ * <p>The scraper ticks at the minimum interval. Intervals are power-of-two
+ * multiples of the tick and workloads fall due on multiples of their interval,
+ * so the workloads due on a tick are fetched together through one
+ * {@code pod=~"a-[0-9]+|b-[0-9]+"} selector per metric. Every maximum interval
+ * a full, unfiltered round rediscovers pods and workloads. Nodes are few and
+ * are polled at their own fixed interval.
+ */
+public class AdaptiveScraper extends MetricsScraper {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveScraper.class);
+
+    // Listeners drop series missing from 20 consecutive batches
+    static final int MAX_MULTIPLE = 16;
+    // Workloads are polled at the minimum interval until their statistics settle
+    private static final int WARMUP_SAMPLES = 3;
+    // Swings below one unit (1% of a core, one request per second) are not volatility
+    private static final double NOISE_FLOOR = 1.0;
+    private static final int POD_QUERIES = 3;
+    private static final int NODE_QUERIES = 2;
+
+    private final WorkloadResolver workloadResolver;
+    private final int maxMultiple;
+    private final int nodeMultiple;
+    private final double targetUtilization;
+    private final double volatilityScale;
+    private final double targetBand;
+    private final double smoothing;
+    private final int maxSelectorLength;
+    private final Map<String, Workload> workloads = new HashMap<>();
+    private final Map<String, Double> targets = new ConcurrentHashMap<>();
+    private long tick;
+    private long nodeSeries;
+
+    private AdaptiveScraper(Builder builder) {
+        super(builder.metricsService, builder.minInterval, builder.windowSeconds);
+        this.workloadResolver = builder.workloadResolver;
+        this.maxMultiple = powerOfTwoBelow(builder.maxInterval.toMillis() / builder.minInterval.toMillis());
+        this.nodeMultiple = Math.min(maxMultiple,
+            powerOfTwoBelow(builder.nodeInterval.toMillis() / builder.minInterval.toMillis()));
+        this.targetUtilization = builder.targetUtilization;
+        this.volatilityScale = builder.volatilityScale;
+        this.targetBand = builder.targetBand;
+        this.smoothing = builder.smoothing;
+        this.maxSelectorLength = builder.maxSelectorLength;
+    }
+
+    private static int powerOfTwoBelow(long ratio) {
+        return Integer.highestOneBit((int) Math.max(1, Math.min(ratio, MAX_MULTIPLE)));
+    }
+
+    /**
+     * Sets the CPU level, in pod metric units, around which a workload is
+     * polled at the minimum interval.
+     */
+    public void updateTarget(String workload, double cpuTarget) {
+        if (cpuTarget > 0) {
+            targets.put(workload, cpuTarget);
+        }
+    }
+
+    /**
+     * Current polling interval of a workload, empty until a round has seen it.
+     */
+    public synchronized Optional<Duration> intervalOf(String workload) {
+        Workload state = workloads.get(workload);
+        return state == null
+            ? Optional.empty()
+            : Optional.of(getInterval().multipliedBy(state.multiple));
+    }
+
+    @Override
+    public synchronized void scrapeOnce() {
+        if (tick % maxMultiple == 0) {
+            discover();
+            ScrapeStats stats = getStats();
+            logger.info("Polling {} workloads, Prometheus queries reduced by {}%, series by {}%",
+                workloads.size(),
+                Math.round(stats.queryReduction() * 100),
+                Math.round(stats.seriesReduction() * 100));
+        } else {
+            scrapeDue();
+        }
+
+        if (tick % nodeMultiple == 0) {
+            long before = getStats().series();
+            dispatchNodes(MetricType.CPU, () -> getMetricsService().getNodesCPUUtilization(getWindowSeconds()));
+            dispatchNodes(MetricType.MEMORY, () -> getMetricsService().getNodesMemoryUtilization(getWindowSeconds()));
+            nodeSeries = getStats().series() - before;
+        }
+
+        long pods = 0;
+        for (Workload workload : workloads.values()) {
+            pods += workload.pods.size();
+        }
+        recordBaseline(POD_QUERIES + NODE_QUERIES, POD_QUERIES * pods + nodeSeries);
+        tick++;
+    }
+
+    // Full round: rebuilds workload membership and reschedules every workload
+    private void discover() {
+        MetricsService metricsService = getMetricsService();
+        int window = getWindowSeconds();
+        PodMetricBatch cpu = fetchPods(MetricType.CPU, () -> metricsService.getPodsCPUUtilization(window));
+        PodMetricBatch memory = fetchPods(MetricType.MEMORY, () -> metricsService.getPodsMemoryUtilization(window));
+        PodMetricBatch hits = fetchPods(MetricType.HITS, () -> metricsService.getPodsHitsUtilization(window));
+
+        for (Workload workload : workloads.values()) {
+            workload.pods.clear();
+        }
+        addPods(cpu);
+        addPods(memory);
+        addPods(hits);
+        Iterator<Workload> iterator = workloads.values().iterator();
+        while (iterator.hasNext()) {
+            Workload workload = iterator.next();
+            if (workload.pods.isEmpty()) {
+                iterator.remove();
+            } else {
+                workload.selector = null;
+            }
+        }
+
+        observe(workloads.values(), cpu, hits);
+        publish(cpu, memory, hits);
+    }
+
+    // Fetches the workloads due on this tick through shared selectors
+    private void scrapeDue() {
+        List<Workload> due = new ArrayList<>();
+        for (Workload workload : workloads.values()) {
+            if (workload.nextTick <= tick) {
+                due.add(workload);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        MetricsService metricsService = getMetricsService();
+        int window = getWindowSeconds();
+        PodMetricBatch cpu = new PodMetricBatch();
+        PodMetricBatch memory = new PodMetricBatch();
+        PodMetricBatch hits = new PodMetricBatch();
+        for (String selector : selectors(due)) {
+            cpu.addAll(fetchPods(MetricType.CPU, () -> metricsService.getPodsCPUUtilization(window, selector)));
+            memory.addAll(fetchPods(MetricType.MEMORY, () -> metricsService.getPodsMemoryUtilization(window, selector)));
+            hits.addAll(fetchPods(MetricType.HITS, () -> metricsService.getPodsHitsUtilization(window, selector)));
+        }
+
+        // Scaled-up StatefulSets show up through their ordinal pattern
+        addPods(cpu);
+        addPods(memory);
+        addPods(hits);
+        observe(due, cpu, hits);
+        publish(cpu, memory, hits);
+    }
+
+    private void addPods(PodMetricBatch metrics) {
+        for (int i = 0; i < metrics.size(); i++) {
+            String podName = metrics.podName(i);
+            Workload workload = workloads.computeIfAbsent(workloadResolver.workloadOf(podName), Workload::new);
+            if (workload.pods.add(podName)) {
+                workload.selector = null;
+            }
+        }
+    }
+
+    // One batch per metric and round, so that listeners count rounds rather than queries
+    private void publish(PodMetricBatch cpu, PodMetricBatch memory, PodMetricBatch hits) {
+        publishPods(MetricType.CPU, cpu);
+        publishPods(MetricType.MEMORY, memory);
+        publishPods(MetricType.HITS, hits);
+    }
+
+    private void observe(Iterable<Workload> scraped, PodMetricBatch cpu, PodMetricBatch hits) {
+        Map<String, double[]> cpuMeans = meansByWorkload(cpu);
+        Map<String, double[]> hitsMeans = meansByWorkload(hits);
+        for (Workload workload : scraped) {
+            double[] cpuMean = cpuMeans.get(workload.name);
+            if (cpuMean != null) {
+                double[] hitsMean = hitsMeans.get(workload.name);
+                workload.cpu.update(cpuMean[0] / cpuMean[1], smoothing);
+                workload.hits.update(hitsMean == null ? 0.0 : hitsMean[0] / hitsMean[1], smoothing);
+                workload.samples++;
+            }
+            workload.multiple = multipleOf(workload);
+            workload.nextTick = (tick / workload.multiple + 1) * workload.multiple;
+        }
+    }
+
+    // Sum and count of the pod values of every workload
+    private Map<String, double[]> meansByWorkload(PodMetricBatch metrics) {
+        Map<String, double[]> sums = new HashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            double[] sum = sums.computeIfAbsent(workloadResolver.workloadOf(metrics.podName(i)), name -> new double[2]);
+            sum[0] += metrics.value(i);
+            sum[1]++;
+        }
+        return sums;
+    }
+
+    /**
+     * Maps the urgency of a workload, from 0 for stable and idle to 1 for
+     * volatile or at target, onto the tick multiples 1..maxMultiple.
+     */
+    private int multipleOf(Workload workload) {
+        if (workload.samples < WARMUP_SAMPLES) {
+            return 1;
+        }
+        double volatility = Math.max(workload.cpu.variation(), workload.hits.variation()) / volatilityScale;
+        double target = targets.getOrDefault(workload.name, targetUtilization);
+        double headroom = Math.max(target - workload.cpu.mean, 0.0) / target / targetBand;
+        double urgency = Math.max(Math.min(volatility, 1.0), 1.0 - Math.min(headroom, 1.0));
+        int steps = Integer.numberOfTrailingZeros(maxMultiple);
+        return 1 << (int) Math.round((1.0 - urgency) * steps);
+    }
+
+    // Alternations of workload patterns, split to keep query URLs bounded
+    private List<String> selectors(List<Workload> group) {
+        List<String> selectors = new ArrayList<>();
+        StringBuilder selector = new StringBuilder();
+        for (Workload workload : group) {
+            String pattern = workload.selector();
+            if (selector.length() > 0 && selector.length() + 1 + pattern.length() > maxSelectorLength) {
+                selectors.add(selector.toString());
+                selector.setLength(0);
+            }
+            if (selector.length() > 0) {
+                selector.append('|');
+            }
+            selector.append(pattern);
+        }
+        selectors.add(selector.toString());
+        return selectors;
+    }
+
+    private static String quote(String name) {
+        StringBuilder quoted = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ("\\.+*?()|[]{}^$".indexOf(c) >= 0) {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+        return quoted.toString();
+    }
+
+    private static boolean isOrdinal(String podName, String workload) {
+        if (podName.length() <= workload.length() + 1
+                || !podName.startsWith(workload)
+                || podName.charAt(workload.length()) != '-') {
+            return false;
+        }
+        for (int i = workload.length() + 1; i < podName.length(); i++) {
+            if (!Character.isDigit(podName.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Workload {
+        final String name;
+        final Set<String> pods = new TreeSet<>();
+        final Ewma cpu = new Ewma();
+        final Ewma hits = new Ewma();
+        int samples;
+        int multiple = 1;
+        long nextTick;
+        String selector;
+
+        Workload(String name) {
+            this.name = name;
+        }
+
+        // StatefulSets match by ordinal so that new replicas are picked up between discoveries
+        String selector() {
+            if (selector == null) {
+                boolean ordinals = pods.stream().allMatch(pod -> isOrdinal(pod, name));
+                selector = ordinals
+                    ? quote(name) + "-[0-9]+"
+                    : String.join("|", pods.stream().map(AdaptiveScraper::quote).toList());
+            }
+            return selector;
+        }
+    }
+
+    // Exponentially weighted mean and variance
+    private static final class Ewma {
+        double mean;
+        double variance;
+        boolean initialized;
+
+        void update(double value, double alpha) {
+            if (!initialized) {
+                mean = value;
+                initialized = true;
+                return;
+            }
+            double delta = value - mean;
+            double increment = alpha * delta;
+            mean += increment;
+            variance = (1 - alpha) * (variance + delta * increment);
+        }
+
+        // Coefficient of variation, relative to the noise floor for near-zero series
+        double variation() {
+            return Math.sqrt(variance) / Math.max(Math.abs(mean), NOISE_FLOOR);
+        }
+    }
+
+    /**
+     * Builder pattern for scraper configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder extends MetricsScraper.Builder {
+        private MetricsService metricsService;
+        private WorkloadResolver workloadResolver = WorkloadResolver.byNamePrefix();
+        private Duration minInterval = Duration.ofSeconds(15);
+        private Duration maxInterval = Duration.ofSeconds(120);
+        private Duration nodeInterval = Duration.ofSeconds(60);
+        private int windowSeconds = 60;
+        private double targetUtilization = 70.0;
+        private double volatilityScale = 0.25;
+        private double targetBand = 0.3;
+        private double smoothing = 0.3;
+        private int maxSelectorLength = 2000;
+
+        @Override
+        public Builder metricsService(MetricsService metricsService) {
+            this.metricsService = metricsService;
+            return this;
+        }
+
+        public Builder workloadResolver(WorkloadResolver workloadResolver) {
+            this.workloadResolver = workloadResolver;
+            return this;
+        }
+
+        /**
+         * Interval of the most urgent workloads, and tick of the scraper.
+         */
+        public Builder minInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        /**
+         * Interval of stable workloads, and period of full discovery rounds.
+         * Rounded down to a power-of-two multiple of the minimum interval.
+         */
+        public Builder maxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        /**
+         * Same as {@link #minInterval(Duration)}.
+         */
+        @Override
+        public Builder interval(Duration interval) {
+            return minInterval(interval);
+        }
+
+        public Builder nodeInterval(Duration nodeInterval) {
+            this.nodeInterval = nodeInterval;
+            return this;
+        }
+
+        @Override
+        public Builder windowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+            return this;
+        }
+
+        /**
+         * Default CPU level, in pod metric units, around which workloads are
+         * polled at the minimum interval.
+         */
+        public Builder targetUtilization(double targetUtilization) {
+            this.targetUtilization = targetUtilization;
+            return this;
+        }
+
+        /**
+         * Coefficient of variation at which a workload counts as fully volatile.
+         */
+        public Builder volatilityScale(double volatilityScale) {
+            this.volatilityScale = volatilityScale;
+            return this;
+        }
+
+        /**
+         * Relative distance below target within which a workload counts as near it.
+         */
+        public Builder targetBand(double targetBand) {
+            this.targetBand = targetBand;
+            return this;
+        }
+
+        public Builder smoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        public Builder maxSelectorLength(int maxSelectorLength) {
+            this.maxSelectorLength = maxSelectorLength;
+            return this;
+        }
+
+        @Override
+        public AdaptiveScraper build() {
+            if (metricsService == null) {
+                throw new IllegalStateException("MetricsService is required");
+            }
+            if (workloadResolver == null) {
+                throw new IllegalStateException("WorkloadResolver is required");
+            }
+            if (minInterval == null || minInterval.toMillis() <= 0) {
+                throw new IllegalStateException("minInterval must be positive");
+            }
+            if (maxInterval == null || maxInterval.compareTo(minInterval) < 0) {
+                throw new IllegalStateException("maxInterval must be at least minInterval");
+            }
+            if (maxInterval.toMillis() / minInterval.toMillis() > MAX_MULTIPLE) {
+                throw new IllegalStateException("maxInterval must be at most " + MAX_MULTIPLE + " times minInterval");
+            }
+            if (nodeInterval == null || nodeInterval.compareTo(minInterval) < 0) {
+                throw new IllegalStateException("nodeInterval must be at least minInterval");
+            }
+            if (!(targetUtilization > 0) || !(volatilityScale > 0) || !(targetBand > 0)) {
+                throw new IllegalStateException("Target utilization, volatility scale and target band must be positive");
+            }
+            if (!(smoothing > 0 && smoothing <= 1)) {
+                throw new IllegalStateException("Smoothing must be in (0, 1]");
+            }
+            if (maxSelectorLength <= 0) {
+                throw new IllegalStateException("maxSelectorLength must be positive");
+            }
+            return new AdaptiveScraper(this);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-second rates of counters computed in the tracker from raw samples, as an
+ * alternative to having Prometheus evaluate rate() over every series on each
+ * request.
+ *
+ * Each poll fetches only the samples appended since the previous one, with a
+ * small overlap for late ingestion; samples not newer than the last one of
+ * their series are dropped. Per series the last {@code samplesPerSeries}
+ * samples are kept in a ring as reset-corrected running totals, so a rate over
+ * any window the ring covers is one subtraction. All state lives in primitive
+ * arrays indexed by a slot per series, and slots of series that stopped
+ * reporting for longer than the retention are reused.
+ *
+ * The ring only reaches {@code samplesPerSeries - 1} scrape intervals back, so
+ * callers check {@link #covers} and fall back to rate() in Prometheus for
+ * longer windows rather than getting a rate over the last few minutes.
+ *
+ * Rates follow PromQL counter semantics: a decrease is a reset and the new
+ * value counts in full as the increase since it. Unlike rate() the result is
+ * not extrapolated to the window edges; the window starts at the newest sample
+ * at or before its start, or at the oldest kept sample when the ring does not
+ * reach that far.
+ *
+ * Not thread-safe: callers serialize polls and reads.
+ */
+public class CounterRates implements CounterSampleSink {
+    // Samples appended this long before the previous poll are fetched again
+    static final int OVERLAP_SECONDS = 15;
+
+    private final int samplesPerSeries;
+    private final long coveredSeconds;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int used;
+
+    private String[] seriesKeys;
+    private String[] pods;
+    private double[] lastRaw;
+    private int[] newest;
+    private int[] counts;
+    // Ring of samplesPerSeries entries per slot
+    private long[] times;
+    private double[] totals;
+
+    private long lastPollMillis = Long.MIN_VALUE;
+
+    private CounterRates(Builder builder) {
+        this.samplesPerSeries = builder.samplesPerSeries;
+        this.coveredSeconds = (samplesPerSeries - 1) * builder.scrapeInterval.toSeconds();
+        this.retentionMillis = builder.retention.toMillis();
+        this.clock = builder.clock;
+        allocate(builder.initialSeries);
+    }
+
+    /**
+     * Whether the kept samples reach back over a window, so that its rates are
+     * not computed over a shorter one.
+     */
+    public boolean covers(int windowSeconds) {
+        return windowSeconds <= coveredSeconds;
+    }
+
+    /**
+     * Seconds of samples the next poll has to fetch for rates over a window:
+     * the whole window on the first poll, afterwards the time since the
+     * previous poll plus the overlap. Never more than the ring can keep.
+     */
+    public int lookbackSeconds(int windowSeconds) {
+        long window = Math.min(windowSeconds, coveredSeconds);
+        if (lastPollMillis == Long.MIN_VALUE) {
+            return (int) window + OVERLAP_SECONDS;
+        }
+        long since = Math.max(clock.getAsLong() - lastPollMillis, 0);
+        return (int) Math.min(TimeUnit.MILLISECONDS.toSeconds(since + 999), window) + OVERLAP_SECONDS;
+    }
+
+    /**
+     * Records that a poll completed and frees the slots of series without a
+     * sample for longer than the retention.
+     */
+    public void polled() {
+        long now = clock.getAsLong();
+        lastPollMillis = now;
+        for (int slot = 0; slot < used; slot++) {
+            if (seriesKeys[slot] != null && times[ring(slot, newest[slot])] < now - retentionMillis) {
+                slots.remove(seriesKeys[slot]);
+                seriesKeys[slot] = null;
+                pods[slot] = null;
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        }
+    }
+
+    @Override
+    public void accept(String series, String podName, long millis, double value) {
+        Integer existing = slots.get(series);
+        int slot = existing != null ? existing : assign(series, podName);
+        int count = counts[slot];
+        double total = 0;
+        if (count > 0) {
+            int last = ring(slot, newest[slot]);
+            if (millis <= times[last]) {
+                return;
+            }
+            double previous = lastRaw[slot];
+            total = totals[last] + (value >= previous ? value - previous : value);
+        }
+        int index = count == 0 ? 0 : (newest[slot] + 1) % samplesPerSeries;
+        newest[slot] = index;
+        counts[slot] = Math.min(count + 1, samplesPerSeries);
+        times[ring(slot, index)] = millis;
+        totals[ring(slot, index)] = total;
+        lastRaw[slot] = value;
+    }
+
+    /**
+     * Hands the summed rate of the series of each pod over a window to a sink,
+     * timestamped with the newest sample of the pod. Series with fewer than two
+     * samples in reach do not contribute.
+     */
+    public void forEachPodRate(int windowSeconds, PodMetricSink sink) {
+        long windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        Map<String, Integer> podIndex = new HashMap<>();
+        double[] sums = new double[16];
+        long[] latest = new long[16];
+        String[] names = new String[16];
+
+        for (int slot = 0; slot < used; slot++) {
+            if (seriesKeys[slot] == null || counts[slot] < 2) {
+                continue;
+            }
+            double rate = rate(slot, windowMillis);
+            if (Double.isNaN(rate)) {
+                continue;
+            }
+            int pod = podIndex.computeIfAbsent(pods[slot], name -> podIndex.size());
+            if (pod == names.length) {
+                sums = Arrays.copyOf(sums, pod * 2);
+                latest = Arrays.copyOf(latest, pod * 2);
+                names = Arrays.copyOf(names, pod * 2);
+            }
+            if (names[pod] == null) {
+                names[pod] = pods[slot];
+                latest[pod] = Long.MIN_VALUE;
+            }
+            sums[pod] += rate;
+            latest[pod] = Math.max(latest[pod], times[ring(slot, newest[slot])]);
+        }
+
+        for (int pod = 0; pod < podIndex.size(); pod++) {
+            sink.accept(names[pod], sums[pod], Double.toString(latest[pod] / 1000.0));
+        }
+    }
+
+    /**
+     * Series currently tracked.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Approximate heap held by the sample arrays.
+     */
+    public long sizeInBytes() {
+        return (long) times.length * (Long.BYTES + Double.BYTES)
+            + (long) lastRaw.length * (Double.BYTES + 2 * Integer.BYTES);
+    }
+
+    private double rate(int slot, long windowMillis) {
+        int end = ring(slot, newest[slot]);
+        long windowStart = times[end] - windowMillis;
+        // Walk back to the newest sample at or before the window start
+        int start = end;
+        for (int i = 1; i < counts[slot]; i++) {
+            int candidate = ring(slot, (newest[slot] - i + samplesPerSeries) % samplesPerSeries);
+            start = candidate;
+            if (times[candidate] <= windowStart) {
+                break;
+            }
+        }
+        long elapsed = times[end] - times[start];
+        if (elapsed <= 0) {
+            return Double.NaN;
+        }
+        return (totals[end] - totals[start]) * 1000.0 / elapsed;
+    }
+
+    private int ring(int slot, int index) {
+        return slot * samplesPerSeries + index;
+    }
+
+    private int assign(String series, String podName) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (used == seriesKeys.length) {
+                allocate(used * 2);
+            }
+            slot = used++;
+        }
+        slots.put(series, slot);
+        seriesKeys[slot] = series;
+        pods[slot] = podName;
+        counts[slot] = 0;
+        newest[slot] = 0;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        seriesKeys = seriesKeys == null ? new String[capacity] : Arrays.copyOf(seriesKeys, capacity);
+        pods = pods == null ? new String[capacity] : Arrays.copyOf(pods, capacity);
+        lastRaw = lastRaw == null ? new double[capacity] : Arrays.copyOf(lastRaw, capacity);
+        newest = newest == null ? new int[capacity] : Arrays.copyOf(newest, capacity);
+        counts = counts == null ? new int[capacity] : Arrays.copyOf(counts, capacity);
+        times = times == null ? new long[capacity * samplesPerSeries] : Arrays.copyOf(times, capacity * samplesPerSeries);
+        totals = totals == null ? new double[capacity * samplesPerSeries] : Arrays.copyOf(totals, capacity * samplesPerSeries);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int samplesPerSeries = 16;
+        private Duration scrapeInterval = Duration.ofSeconds(15);
+        private Duration retention = Duration.ofMinutes(5);
+        private int initialSeries = 1024;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        /**
+         * Samples kept per series, which bounds the longest window covered at
+         * the scrape interval times one less than this count.
+         */
+        public Builder samplesPerSeries(int samplesPerSeries) {
+            this.samplesPerSeries = samplesPerSeries;
+            return this;
+        }
+
+        /**
+         * Shortest interval at which Prometheus scrapes the counters, 15s by
+         * default. Series scraped faster fill the ring over a shorter window
+         * than {@link #covers} assumes.
+         */
+        public Builder scrapeInterval(Duration scrapeInterval) {
+            this.scrapeInterval = scrapeInterval;
+            return this;
+        }
+
+        /**
+         * How long a series is kept after its last sample.
+         */
+        public Builder retention(Duration retention) {
+            this.retention = retention;
+            return this;
+        }
+
+        public Builder initialSeries(int initialSeries) {
+            this.initialSeries = initialSeries;
+            return this;
+        }
+
+        /**
+         * Wall clock in epoch milliseconds.
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public CounterRates build() {
+            if (samplesPerSeries < 2) {
+                throw new IllegalStateException("At least two samples per series are required");
+            }
+            if (initialSeries < 1) {
+                throw new IllegalStateException("Initial series must be positive");
+            }
+            if (scrapeInterval.toSeconds() < 1) {
+                throw new IllegalStateException("Scrape interval must be at least a second");
+            }
+            if (retention.isNegative() || retention.isZero()) {
+                throw new IllegalStateException("Retention must be positive");
+            }
+            return new CounterRates(this);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+/**
+ * Receives the buckets of a Prometheus histogram one at a time as they are
+ * parsed, each labelled by pod and by its upper bound, the {@code le} label.
+ */
+@FunctionalInterface
+public interface HistogramBucketSink {
+    /**
+     * @param podName    Pod the bucket belongs to
+     * @param upperBound Inclusive upper bound, positive infinity for the +Inf bucket
+     * @param value      Cumulative value of the bucket, typically a per-second rate
+     * @param timestamp  Evaluation time of the sample
+     */
+    void accept(String podName, double upperBound, double value, String timestamp);
+}
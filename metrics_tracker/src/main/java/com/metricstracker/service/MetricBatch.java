@@ -0,0 +1,207 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.metricstracker.model.Timestamps;
+
+import java.util.Arrays;
+
+/**
+ * Samples of one metric in column arrays, the layout shared by
+ * {@link PodMetricBatch} and {@link NodeMetricBatch}.
+ *
+ * Rows hold a name reference and a primitive value. Timestamps are stored
+ * once per run of consecutive rows sharing them: samples of an instant query
+ * share their evaluation time, so a batch usually carries a single timestamp,
+ * formatted once and parsed to epoch milliseconds once. Values can be
+ * converted in place without copying the batch.
+ *
+ * Batches are not thread-safe; they are filled by one thread and then only read.
+ */
+public abstract class MetricBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] names;
+    private double[] values;
+    private int size;
+
+    // Run r covers the rows from runStarts[r] up to the start of run r + 1
+    private int[] runStarts = new int[1];
+    private String[] runTexts = new String[1];
+    private long[] runMillis = new long[1];
+    private int runs;
+
+    protected MetricBatch(int capacity) {
+        int initial = Math.max(capacity, 1);
+        names = new String[initial];
+        values = new double[initial];
+    }
+
+    protected MetricBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Appends one sample. The timestamp is only checked and parsed when it
+     * starts a new run, so rows sharing it cost a string comparison.
+     *
+     * @throws IllegalArgumentException When the name is null or empty, which is
+     *         how a missing label is parsed, or the timestamp is null or blank
+     */
+    protected void append(String name, double value, String timestamp) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be null or empty");
+        }
+        if (!continuesRun(timestamp)) {
+            if (timestamp == null || timestamp.isBlank()) {
+                throw new IllegalArgumentException("Timestamp cannot be null or blank");
+            }
+            addRun(size, timestamp, Timestamps.toMillis(timestamp, Long.MIN_VALUE));
+        }
+        ensureCapacity(size + 1);
+        names[size] = name;
+        values[size] = value;
+        size++;
+    }
+
+    protected void appendAll(MetricBatch other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.names, 0, names, size, other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        for (int r = 0; r < other.runs; r++) {
+            if (!continuesRun(other.runTexts[r])) {
+                addRun(size + other.runStarts[r], other.runTexts[r], other.runMillis[r]);
+            }
+        }
+        size += other.size;
+    }
+
+    protected String name(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    protected void setName(int index, String name) {
+        checkIndex(index);
+        names[index] = name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double value(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Timestamp as reported by Prometheus, epoch seconds with millisecond decimals.
+     */
+    public String timestamp(int index) {
+        return runTexts[runOf(index)];
+    }
+
+    /**
+     * Timestamp in epoch milliseconds.
+     *
+     * @param fallbackMillis Returned when the timestamp is not a number
+     */
+    public long timestampMillis(int index, long fallbackMillis) {
+        long millis = runMillis[runOf(index)];
+        return millis == Long.MIN_VALUE ? fallbackMillis : millis;
+    }
+
+    /**
+     * Multiplies every value in place, for unit conversions.
+     */
+    public void scale(double factor) {
+        for (int i = 0; i < size; i++) {
+            values[i] *= factor;
+        }
+    }
+
+    /**
+     * Releases the spare capacity left by growing the columns, once the batch
+     * is complete and about to be handed on.
+     */
+    public void trimToSize() {
+        if (names.length > size) {
+            names = Arrays.copyOf(names, size);
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Approximate heap held by the columns, names and timestamp texts excluded
+     * since they are shared with other batches.
+     */
+    public long sizeInBytes() {
+        return 16L * 2 + (long) names.length * 4 + (long) values.length * Double.BYTES
+            + (long) runStarts.length * (Integer.BYTES + 4 + Long.BYTES);
+    }
+
+    // Whether a row with this timestamp extends the last run
+    private boolean continuesRun(String timestamp) {
+        if (runs == 0) {
+            return false;
+        }
+        String last = runTexts[runs - 1];
+        return last == timestamp || last.equals(timestamp);
+    }
+
+    private void addRun(int row, String timestamp, long millis) {
+        if (runs == runStarts.length) {
+            runStarts = Arrays.copyOf(runStarts, runs * 2);
+            runTexts = Arrays.copyOf(runTexts, runs * 2);
+            runMillis = Arrays.copyOf(runMillis, runs * 2);
+        }
+        runStarts[runs] = row;
+        runTexts[runs] = timestamp;
+        runMillis[runs] = millis;
+        runs++;
+    }
+
+    private int runOf(int index) {
+        checkIndex(index);
+        if (runs == 1) {
+            return 0;
+        }
+        int run = Arrays.binarySearch(runStarts, 0, runs, index);
+        return run >= 0 ? run : -run - 2;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > names.length) {
+            int grown = Math.max(capacity, names.length * 2);
+            names = Arrays.copyOf(names, grown);
+            values = Arrays.copyOf(values, grown);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+}
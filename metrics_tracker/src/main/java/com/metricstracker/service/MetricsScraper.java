@@ -0,0 +1,200 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.metricstracker.model.MetricType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Periodically pulls every pod and node metric from a {@link MetricsService}
+ * and hands the samples to the registered {@link MetricsListener}s, so that
+ * online models are updated as metrics arrive instead of on request.
+ */
+public class MetricsScraper implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsScraper.class);
+
+    private final MetricsService metricsService;
+    private final Duration interval;
+    private final int windowSeconds;
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder series = new LongAdder();
+    private final LongAdder baselineQueries = new LongAdder();
+    private final LongAdder baselineSeries = new LongAdder();
+    private ScheduledExecutorService executor;
+
+    public MetricsScraper(MetricsService metricsService, Duration interval, int windowSeconds) {
+        this.metricsService = metricsService;
+        this.interval = interval;
+        this.windowSeconds = windowSeconds;
+    }
+
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    protected MetricsService getMetricsService() {
+        return metricsService;
+    }
+
+    protected int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * Prometheus queries issued and series returned so far, next to what a
+     * fixed scrape of every metric at this scraper's cadence would have cost.
+     */
+    public ScrapeStats getStats() {
+        return new ScrapeStats(queries.sum(), series.sum(), baselineQueries.sum(), baselineSeries.sum());
+    }
+
+    /**
+     * Collects one round of samples. A failing metric is logged and skipped so
+     * that the remaining ones are still delivered.
+     */
+    public void scrapeOnce() {
+        long before = series.sum();
+        publishPods(MetricType.CPU, fetchPods(MetricType.CPU, () -> metricsService.getPodsCPUUtilization(windowSeconds)));
+        publishPods(MetricType.MEMORY, fetchPods(MetricType.MEMORY, () -> metricsService.getPodsMemoryUtilization(windowSeconds)));
+        publishPods(MetricType.HITS, fetchPods(MetricType.HITS, () -> metricsService.getPodsHitsUtilization(windowSeconds)));
+        dispatchNodes(MetricType.CPU, () -> metricsService.getNodesCPUUtilization(windowSeconds));
+        dispatchNodes(MetricType.MEMORY, () -> metricsService.getNodesMemoryUtilization(windowSeconds));
+        recordBaseline(5, series.sum() - before);
+    }
+
+    /**
+     * Runs one pod query and counts it, returning no samples when it fails.
+     */
+    protected PodMetricBatch fetchPods(MetricType type, Supplier<PodMetricBatch> query) {
+        queries.increment();
+        try {
+            PodMetricBatch metrics = query.get();
+            series.add(metrics.size());
+            return metrics;
+        } catch (Exception e) {
+            logger.warn("Failed to scrape pod {} metrics", type, e);
+            return new PodMetricBatch(0);
+        }
+    }
+
+    protected void publishPods(MetricType type, PodMetricBatch metrics) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onPodMetrics(type, metrics);
+            } catch (Exception e) {
+                logger.warn("Failed to deliver pod {} metrics", type, e);
+            }
+        }
+    }
+
+    protected void dispatchNodes(MetricType type, Supplier<NodeMetricBatch> query) {
+        queries.increment();
+        NodeMetricBatch metrics;
+        try {
+            metrics = query.get();
+            series.add(metrics.size());
+        } catch (Exception e) {
+            logger.warn("Failed to scrape node {} metrics", type, e);
+            return;
+        }
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onNodeMetrics(type, metrics);
+            } catch (Exception e) {
+                logger.warn("Failed to deliver node {} metrics", type, e);
+            }
+        }
+    }
+
+    /**
+     * Accounts for the queries and series a fixed full scrape would have cost
+     * in place of the current round.
+     */
+    protected void recordBaseline(long baselineQueries, long baselineSeries) {
+        this.baselineQueries.add(baselineQueries);
+        this.baselineSeries.add(baselineSeries);
+    }
+
+    public synchronized void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-scraper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::scrapeOnce, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Scraping metrics every {}s", interval.toSeconds());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builder pattern for scraper configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private MetricsService metricsService;
+        private Duration interval = Duration.ofSeconds(15);
+        private int windowSeconds = 60;
+
+        public Builder metricsService(MetricsService metricsService) {
+            this.metricsService = metricsService;
+            return this;
+        }
+
+        public Builder interval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder windowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+            return this;
+        }
+
+        public MetricsScraper build() {
+            if (metricsService == null) {
+                throw new IllegalStateException("MetricsService is required");
+            }
+            return new MetricsScraper(metricsService, interval, windowSeconds);
+        }
+    }
+}
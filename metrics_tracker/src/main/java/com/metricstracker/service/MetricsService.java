@@ -18,14 +18,65 @@ under the License.
 */
 package com.metricstracker.service;
 
-import java.util.List;
-import com.metricstracker.model.PodMetric;
-import com.metricstracker.model.NodeMetric;
+import java.util.regex.Pattern;
 
+/**
+ * Source of pod and node utilization samples. Results are column-wise batches
+ * of primitives rather than lists of records, which keeps large responses to a
+ * fraction of the heap; see {@link MetricBatch}.
+ */
 public interface MetricsService {
-    List<PodMetric> getPodsCPUUtilization(int seconds);
-    List<PodMetric> getPodsMemoryUtilization(int seconds);
-    List<PodMetric> getPodsHitsUtilization(int seconds);
-    List<NodeMetric> getNodesCPUUtilization(int seconds);
-    List<NodeMetric> getNodesMemoryUtilization(int seconds);
+    PodMetricBatch getPodsCPUUtilization(int seconds);
+    PodMetricBatch getPodsMemoryUtilization(int seconds);
+    PodMetricBatch getPodsHitsUtilization(int seconds);
+    NodeMetricBatch getNodesCPUUtilization(int seconds);
+    NodeMetricBatch getNodesMemoryUtilization(int seconds);
+
+    /*
+     * Variants restricted to the pods whose whole name matches podPattern, a
+     * regular expression in the RE2 syntax PromQL label matchers use. Backends
+     * should push the selector into the query; the defaults filter the full result.
+     */
+
+    default PodMetricBatch getPodsCPUUtilization(int seconds, String podPattern) {
+        return matching(getPodsCPUUtilization(seconds), podPattern);
+    }
+
+    default PodMetricBatch getPodsMemoryUtilization(int seconds, String podPattern) {
+        return matching(getPodsMemoryUtilization(seconds), podPattern);
+    }
+
+    default PodMetricBatch getPodsHitsUtilization(int seconds, String podPattern) {
+        return matching(getPodsHitsUtilization(seconds), podPattern);
+    }
+
+    /*
+     * Variants handing each sample to a sink instead of returning a batch, for
+     * callers that serialize samples as they arrive. Samples and units are the
+     * same as those of the batch variants.
+     */
+
+    default void streamPodsCPUUtilization(int seconds, PodMetricSink sink) {
+        getPodsCPUUtilization(seconds).forEach(sink);
+    }
+
+    default void streamPodsMemoryUtilization(int seconds, PodMetricSink sink) {
+        getPodsMemoryUtilization(seconds).forEach(sink);
+    }
+
+    default void streamPodsHitsUtilization(int seconds, PodMetricSink sink) {
+        getPodsHitsUtilization(seconds).forEach(sink);
+    }
+
+    /**
+     * Streams the per-second rate of each request duration histogram bucket of
+     * every pod over a window, restricted to the pods matching podPattern
+     * unless it is null. Bucket bounds are in seconds.
+     */
+    void streamPodsLatencyBuckets(int seconds, String podPattern, HistogramBucketSink sink);
+
+    private static PodMetricBatch matching(PodMetricBatch metrics, String podPattern) {
+        Pattern pattern = Pattern.compile(podPattern);
+        return metrics.filter(podName -> pattern.matcher(podName).matches());
+    }
 }
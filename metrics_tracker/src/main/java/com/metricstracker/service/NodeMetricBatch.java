@@ -0,0 +1,82 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.metricstracker.model.NodeMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Node samples of one query, stored column-wise. See {@link MetricBatch}.
+ */
+public final class NodeMetricBatch extends MetricBatch {
+
+    public NodeMetricBatch() {
+        super();
+    }
+
+    public NodeMetricBatch(int capacity) {
+        super(capacity);
+    }
+
+    public static NodeMetricBatch of(List<NodeMetric> metrics) {
+        NodeMetricBatch batch = new NodeMetricBatch(metrics.size());
+        for (NodeMetric metric : metrics) {
+            batch.add(metric.nodeName(), metric.value(), metric.timestamp());
+        }
+        return batch;
+    }
+
+    public static NodeMetricBatch of(NodeMetric... metrics) {
+        return of(List.of(metrics));
+    }
+
+    /**
+     * Appends one sample, with the same checks as the NodeMetric record.
+     */
+    public void add(String nodeName, double value, String timestamp) {
+        append(nodeName, value, timestamp);
+    }
+
+    public String nodeName(int index) {
+        return name(index);
+    }
+
+    /**
+     * Replaces every node name in place, e.g. to resolve exporter addresses.
+     */
+    public void rename(UnaryOperator<String> names) {
+        for (int i = 0; i < size(); i++) {
+            setName(i, names.apply(name(i)));
+        }
+    }
+
+    /**
+     * Copies the rows into records, for callers outside the hot path.
+     */
+    public List<NodeMetric> toList() {
+        List<NodeMetric> metrics = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            metrics.add(new NodeMetric(nodeName(i), value(i), timestamp(i)));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Maps node IPs to node names from a snapshot of all nodes, so that resolving
+ * the rows of a node query costs one node list rather than one per row.
+ *
+ * <p>The snapshot is reloaded once it is older than the TTL. An IP missing
+ * from it, e.g. a node that just joined, triggers an early reload at most once
+ * per {@link #MISS_RELOAD_INTERVAL}, so a scrape resolving many rows still
+ * lists nodes at most once.
+ */
+public class NodeNameCache implements UnaryOperator<String> {
+    static final Duration MISS_RELOAD_INTERVAL = Duration.ofSeconds(10);
+
+    private final Supplier<Map<String, String>> loader;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+
+    // Guarded by this
+    private Map<String, String> namesByIP = Map.of();
+    private long loadedAt;
+    private boolean loaded;
+
+    /**
+     * @param loader Lists the nodes, returning the name of each by InternalIP
+     */
+    public NodeNameCache(Supplier<Map<String, String>> loader, Duration ttl) {
+        this(loader, ttl, System::nanoTime);
+    }
+
+    NodeNameCache(Supplier<Map<String, String>> loader, Duration ttl, LongSupplier nanoTime) {
+        this.loader = loader;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @throws NoSuchElementException when no node has the IP
+     */
+    @Override
+    public synchronized String apply(String nodeIP) {
+        long now = nanoTime.getAsLong();
+        if (!loaded || now - loadedAt >= ttlNanos) {
+            load(now);
+        }
+        String name = namesByIP.get(nodeIP);
+        if (name == null && now - loadedAt >= MISS_RELOAD_INTERVAL.toNanos()) {
+            load(now);
+            name = namesByIP.get(nodeIP);
+        }
+        if (name == null) {
+            throw new NoSuchElementException("Node not found with IP: " + nodeIP);
+        }
+        return name;
+    }
+
+    private void load(long now) {
+        namesByIP = Map.copyOf(loader.get());
+        loadedAt = now;
+        loaded = true;
+    }
+}
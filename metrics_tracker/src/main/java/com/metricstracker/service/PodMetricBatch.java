@@ -0,0 +1,101 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.metricstracker.model.PodMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Pod samples of one query, stored column-wise. See {@link MetricBatch}.
+ */
+public final class PodMetricBatch extends MetricBatch implements PodMetricSink {
+
+    public PodMetricBatch() {
+        super();
+    }
+
+    public PodMetricBatch(int capacity) {
+        super(capacity);
+    }
+
+    public static PodMetricBatch of(List<PodMetric> metrics) {
+        PodMetricBatch batch = new PodMetricBatch(metrics.size());
+        for (PodMetric metric : metrics) {
+            batch.add(metric.podName(), metric.value(), metric.timestamp());
+        }
+        return batch;
+    }
+
+    public static PodMetricBatch of(PodMetric... metrics) {
+        return of(List.of(metrics));
+    }
+
+    /**
+     * Appends one sample, with the same checks as the PodMetric record.
+     */
+    public void add(String podName, double value, String timestamp) {
+        append(podName, value, timestamp);
+    }
+
+    @Override
+    public void accept(String podName, double value, String timestamp) {
+        append(podName, value, timestamp);
+    }
+
+    public void addAll(PodMetricBatch other) {
+        appendAll(other);
+    }
+
+    public String podName(int index) {
+        return name(index);
+    }
+
+    /**
+     * Rows of the pods whose name passes the filter, as a new batch.
+     */
+    public PodMetricBatch filter(Predicate<String> podNames) {
+        PodMetricBatch filtered = new PodMetricBatch();
+        for (int i = 0; i < size(); i++) {
+            if (podNames.test(podName(i))) {
+                filtered.add(podName(i), value(i), timestamp(i));
+            }
+        }
+        return filtered;
+    }
+
+    public void forEach(PodMetricSink sink) {
+        for (int i = 0; i < size(); i++) {
+            sink.accept(podName(i), value(i), timestamp(i));
+        }
+    }
+
+    /**
+     * Copies the rows into records, for callers outside the hot path.
+     */
+    public List<PodMetric> toList() {
+        List<PodMetric> metrics = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            metrics.add(new PodMetric(podName(i), value(i), timestamp(i)));
+        }
+        return metrics;
+    }
+}
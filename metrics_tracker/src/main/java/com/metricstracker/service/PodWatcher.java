@@ -0,0 +1,157 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1OwnerReference;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.kubernetes.client.openapi.models.V1PodCondition;
+import io.kubernetes.client.openapi.models.V1PodList;
+import io.kubernetes.client.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a {@link WorkloadIndex} up to date from a shared informer on the pods
+ * of one namespace, so that owners and readiness come from one list followed
+ * by a watch instead of a request per lookup.
+ *
+ * <p>The index is keyed by pod name, as are the Prometheus series it
+ * resolves, so a single namespace is watched: pods of the same name in other
+ * namespaces would otherwise overwrite each other's owner.
+ */
+public class PodWatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PodWatcher.class);
+    private static final long RESYNC_MILLIS = Duration.ofMinutes(10).toMillis();
+
+    private final WorkloadIndex index;
+    private final SharedInformerFactory factory;
+    private final SharedIndexInformer<V1Pod> informer;
+
+    public PodWatcher(ApiClient client, String namespace, WorkloadIndex index) {
+        this.index = index;
+        // Watches are long-lived requests
+        client.setReadTimeout(0);
+        CoreV1Api api = new CoreV1Api(client);
+        this.factory = new SharedInformerFactory(client);
+        this.informer = factory.sharedIndexInformerFor(
+            params -> api.listNamespacedPodCall(namespace, null, null, null, null, null, null,
+                params.resourceVersion, null, params.timeoutSeconds, params.watch, null),
+            V1Pod.class, V1PodList.class, RESYNC_MILLIS);
+        informer.addEventHandler(new ResourceEventHandler<>() {
+            @Override
+            public void onAdd(V1Pod pod) {
+                update(pod);
+            }
+
+            @Override
+            public void onUpdate(V1Pod oldPod, V1Pod newPod) {
+                update(newPod);
+            }
+
+            @Override
+            public void onDelete(V1Pod pod, boolean deletedFinalStateUnknown) {
+                // A recreated pod of the same name may already have replaced this one
+                index.remove(pod.getMetadata().getName(), ownerOf(pod));
+            }
+        });
+    }
+
+    /**
+     * Watches a namespace of the cluster of the default kubeconfig or service account.
+     */
+    public static PodWatcher fromDefaultConfig(String namespace, WorkloadIndex index) throws IOException {
+        return new PodWatcher(Config.defaultClient(), namespace, index);
+    }
+
+    /**
+     * Starts the watch and waits up to timeout for the initial list.
+     *
+     * @return whether the index holds every pod of the namespace
+     */
+    public boolean start(Duration timeout) throws InterruptedException {
+        factory.startAllRegisteredInformers();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!informer.hasSynced() && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        if (informer.hasSynced()) {
+            logger.info("Indexed owners of {} pods", index.size());
+            return true;
+        }
+        logger.warn("Pod list not complete after {}s, resolving unknown pods by name", timeout.toSeconds());
+        return false;
+    }
+
+    private void update(V1Pod pod) {
+        index.put(pod.getMetadata().getName(), ownerOf(pod), isReady(pod));
+    }
+
+    /**
+     * The controller of a pod, following Deployment pods through their
+     * ReplicaSet, whose name is the Deployment name and the pod-template-hash.
+     */
+    static String ownerOf(V1Pod pod) {
+        V1ObjectMeta metadata = pod.getMetadata();
+        List<V1OwnerReference> references = metadata.getOwnerReferences();
+        if (references == null) {
+            return metadata.getName();
+        }
+        for (V1OwnerReference reference : references) {
+            if (!Boolean.TRUE.equals(reference.getController())) {
+                continue;
+            }
+            Map<String, String> labels = metadata.getLabels();
+            String hash = labels == null ? null : labels.get("pod-template-hash");
+            if ("ReplicaSet".equals(reference.getKind()) && hash != null
+                    && reference.getName().endsWith("-" + hash)) {
+                return reference.getName().substring(0, reference.getName().length() - hash.length() - 1);
+            }
+            return reference.getName();
+        }
+        return metadata.getName();
+    }
+
+    static boolean isReady(V1Pod pod) {
+        if (pod.getStatus() == null || pod.getStatus().getConditions() == null) {
+            return false;
+        }
+        for (V1PodCondition condition : pod.getStatus().getConditions()) {
+            if ("Ready".equals(condition.getType())) {
+                return "True".equals(condition.getStatus());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        factory.stopAllRegisteredInformers();
+    }
+}
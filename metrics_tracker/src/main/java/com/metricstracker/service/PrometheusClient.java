@@ -18,12 +18,16 @@ under the License.
 */
 package com.metricstracker.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.metricstracker.model.NodeMetric;
-import com.metricstracker.model.PodMetric;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+import com.metricstracker.trace.Span;
+import com.metricstracker.trace.Tracer;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -32,41 +36,119 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 public class PrometheusClient {
+    static final String QUERY_SPAN = "prometheus.query";
+
     private final String baseUrl;
     private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final Tracer tracer;
 
     public PrometheusClient(String baseUrl) {
+        this(baseUrl, Tracer.noop());
+    }
+
+    public PrometheusClient(String baseUrl, Tracer tracer) {
         this.baseUrl = baseUrl;
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
                 .build();
-        this.objectMapper = new ObjectMapper();
+        this.jsonFactory = new JsonFactory();
+        this.tracer = tracer;
     }
 
-    public List<PodMetric> queryPodMetrics(String query) {
-        try {
-            String response = executeQuery(query);
-            return parsePodMetricsResponse(response);
-        } catch (Exception e) {
-            throw new PrometheusQueryException("Failed to query pod metrics", e);
+    public PodMetricBatch queryPodMetrics(String query) {
+        PodMetricBatch metrics = new PodMetricBatch();
+        queryPodMetrics(query, metrics);
+        metrics.trimToSize();
+        return metrics;
+    }
+
+    /**
+     * Streams the samples of an instant vector query into a sink as the
+     * response is parsed, without building a JSON tree or sample records.
+     * Samples are only delivered once the response status is known to be
+     * successful, so a failed query delivers none.
+     */
+    public void queryPodMetrics(String query, PodMetricSink sink) {
+        query(query, "pod metrics", response -> parseVector(response, "pod", (podName, value, timestamp) -> {
+            // Same checks as the PodMetric record
+            if (podName.isBlank()) {
+                throw new IllegalArgumentException("Pod name cannot be null or blank");
+            }
+            if (timestamp.isBlank()) {
+                throw new IllegalArgumentException("Timestamp cannot be null or blank");
+            }
+            sink.accept(podName, value, timestamp);
+        }));
+    }
+
+    /**
+     * Streams the buckets of a histogram query grouped by pod and le, such as
+     * {@code sum(rate(x_bucket[1m])) by (pod, le)}, with the same guarantees as
+     * {@link #queryPodMetrics(String, PodMetricSink)}.
+     */
+    public void queryHistogramBuckets(String query, HistogramBucketSink sink) {
+        query(query, "histogram buckets", response -> parseVector(response, "pod", "le",
+                (podName, le, value, timestamp) -> {
+            if (podName.isBlank()) {
+                throw new IllegalArgumentException("Pod name cannot be null or blank");
+            }
+            if (timestamp.isBlank()) {
+                throw new IllegalArgumentException("Timestamp cannot be null or blank");
+            }
+            sink.accept(podName, upperBound(le), value, timestamp);
+        }));
+    }
+
+    /**
+     * Streams the raw samples of a range selector query such as
+     * {@code counter{...}[90s]}, each tagged with its series label set, with
+     * the same guarantees as {@link #queryPodMetrics(String, PodMetricSink)}.
+     */
+    public void queryCounterSamples(String query, CounterSampleSink sink) {
+        query(query, "counter samples", response -> parseMatrix(response, "pod", sink));
+    }
+
+    // Prometheus formats the last bucket bound as "+Inf", which Double.parseDouble rejects
+    static double upperBound(String le) {
+        if (le == null || le.isEmpty()) {
+            throw new IllegalArgumentException("Histogram bucket without an le label");
+        }
+        if ("+Inf".equals(le)) {
+            return Double.POSITIVE_INFINITY;
         }
+        return Double.parseDouble(le);
+    }
+
+    public NodeMetricBatch queryNodeMetrics(String query) {
+        NodeMetricBatch metrics = new NodeMetricBatch();
+        query(query, "node metrics", response -> parseVector(response, "instance", metrics::add));
+        metrics.trimToSize();
+        return metrics;
     }
 
-    public List<NodeMetric> queryNodeMetrics(String query) {
-        try {
-            String response = executeQuery(query);
-            return parseNodeMetricsResponse(response);
+    /*
+     * Runs a query and parses its response under a span recording the query
+     * text, the number of series returned and the bytes read.
+     */
+    private void query(String query, String description, ResponseParser parser) {
+        Span span = tracer.startSpan(QUERY_SPAN).setAttribute("query", query);
+        try (CountingInputStream response = new CountingInputStream(executeQuery(query, span))) {
+            span.setAttribute("series", parser.parse(response));
+            span.setAttribute("response.bytes", response.count);
         } catch (Exception e) {
-            throw new PrometheusQueryException("Failed to query node metrics", e);
+            span.recordError(e);
+            throw new PrometheusQueryException("Failed to query " + description, e);
+        } finally {
+            span.close();
         }
     }
 
-    private String executeQuery(String query) throws IOException, InterruptedException {
+    private InputStream executeQuery(String query, Span span) throws IOException, InterruptedException {
         String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
         String url = baseUrl + "/api/v1/query?query=" + encodedQuery;
 
@@ -76,68 +158,419 @@ public class PrometheusClient {
                 .header("Accept", "application/json")
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        span.setAttribute("http.status", response.statusCode());
 
         if (response.statusCode() != 200) {
+            String body;
+            try (InputStream error = response.body()) {
+                body = new String(error.readAllBytes(), StandardCharsets.UTF_8);
+            }
             throw new PrometheusQueryException("Prometheus query failed with status: " + response.statusCode() + 
-                                             ", body: " + response.body());
+                                             ", body: " + body);
         }
 
         return response.body();
     }
 
-    private List<PodMetric> parsePodMetricsResponse(String response) throws IOException {
-        JsonNode root = objectMapper.readTree(response);
-        
-        if (!"success".equals(root.path("status").asText())) {
-            throw new PrometheusQueryException("Query returned error status: " + root.path("error").asText());
+    /**
+     * Parses {"status": ..., "data": {"result": [{"metric": {...}, "value": [t, "v"]}]}}
+     * with a streaming parser. Labels, timestamps and values are read with the
+     * same conversions as JsonNode.asText() and asDouble(), so that results
+     * match a tree-based parse. Rows without both a timestamp and a value are
+     * skipped.
+     *
+     * @return The number of rows delivered
+     */
+    int parseVector(InputStream response, String label, SampleSink sink) throws IOException {
+        return parseVector(response, label, null,
+            (name, second, value, timestamp) -> sink.accept(name, value, timestamp));
+    }
+
+    /**
+     * Same as above, also reading a second label, null when it is not requested
+     * or missing from a row.
+     */
+    int parseVector(InputStream response, String label, String secondLabel, LabelledSampleSink sink)
+            throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            String status = "";
+            String error = "";
+            int rows = 0;
+            // Rows parsed before the status, delivered once it is known
+            List<Object[]> pending = null;
+
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if ("status".equals(field)) {
+                        status = asText(parser);
+                    } else if ("error".equals(field)) {
+                        error = asText(parser);
+                    } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                        if ("success".equals(status)) {
+                            pending = null;
+                            rows = parseData(parser, label, secondLabel, sink);
+                        } else {
+                            List<Object[]> parsed = new ArrayList<>();
+                            parseData(parser, label, secondLabel, (name, second, value, timestamp) ->
+                                parsed.add(new Object[] {name, second, value, timestamp}));
+                            pending = parsed;
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+
+            if (!"success".equals(status)) {
+                throw new PrometheusQueryException("Query returned error status: " + error);
+            }
+            if (pending != null) {
+                for (Object[] row : pending) {
+                    sink.accept((String) row[0], (String) row[1], (Double) row[2], (String) row[3]);
+                }
+                rows = pending.size();
+            }
+            return rows;
         }
+    }
 
-        JsonNode result = root.path("data").path("result");
-        if (result.isEmpty()) {
-            return Collections.emptyList();
+    /**
+     * Parses a matrix response, {"data": {"result": [{"metric": {...}, "values": [[t, "v"], ...]}]}},
+     * keying each series by its labels in response order, which Prometheus
+     * sorts by name. Samples are only delivered once the status is known to be
+     * successful.
+     *
+     * @return The number of series parsed
+     */
+    int parseMatrix(InputStream response, String label, CounterSampleSink sink) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            String status = "";
+            String error = "";
+            int series = 0;
+            List<Object[]> pending = null;
+
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if ("status".equals(field)) {
+                        status = asText(parser);
+                    } else if ("error".equals(field)) {
+                        error = asText(parser);
+                    } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                        if ("success".equals(status)) {
+                            pending = null;
+                            series = parseMatrixData(parser, label, sink);
+                        } else {
+                            List<Object[]> rows = new ArrayList<>();
+                            series = parseMatrixData(parser, label, (key, name, millis, value) ->
+                                rows.add(new Object[] {key, name, millis, value}));
+                            pending = rows;
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+
+            if (!"success".equals(status)) {
+                throw new PrometheusQueryException("Query returned error status: " + error);
+            }
+            if (pending != null) {
+                for (Object[] row : pending) {
+                    sink.accept((String) row[0], (String) row[1], (Long) row[2], (Double) row[3]);
+                }
+            }
+            return series;
         }
+    }
 
-        List<PodMetric> metrics = new ArrayList<>();
-        for (JsonNode item : result) {
-            String podName = item.path("metric").path("pod").asText();
-            JsonNode value = item.path("value");
-            
-            if (value.size() >= 2) {
-                String timestamp = value.get(0).asText();
-                double metricValue = value.get(1).asDouble();
-                metrics.add(new PodMetric(podName, metricValue, timestamp));
+    private static int parseMatrixData(JsonParser parser, String label, CounterSampleSink sink) throws IOException {
+        int series = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("result".equals(field) && token == JsonToken.START_ARRAY) {
+                SeriesSamples samples = new SeriesSamples();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parseSeries(parser, label, samples, sink)) {
+                        series++;
+                    }
+                }
+            } else {
+                parser.skipChildren();
             }
         }
+        return series;
+    }
 
-        return metrics;
+    private static boolean parseSeries(JsonParser parser, String label, SeriesSamples samples, CounterSampleSink sink)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return false;
+        }
+        StringBuilder series = new StringBuilder();
+        String name = "";
+        samples.size = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("metric".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String labelName = parser.getCurrentName();
+                    parser.nextToken();
+                    String value = asText(parser);
+                    if (label.equals(labelName)) {
+                        name = value;
+                    }
+                    series.append(labelName).append('=').append(value).append(',');
+                }
+            } else if ("values".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    long millis = 0;
+                    double value = 0.0;
+                    int values = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (values == 0) {
+                            millis = Math.round(asDouble(parser) * 1000);
+                        } else if (values == 1) {
+                            value = asDouble(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        values++;
+                    }
+                    if (values >= 2) {
+                        samples.add(millis, value);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        String key = series.toString();
+        for (int i = 0; i < samples.size; i++) {
+            sink.accept(key, name, samples.millis[i], samples.values[i]);
+        }
+        return true;
     }
 
-    private List<NodeMetric> parseNodeMetricsResponse(String response) throws IOException {
-        JsonNode root = objectMapper.readTree(response);
-        
-        if (!"success".equals(root.path("status").asText())) {
-            throw new PrometheusQueryException("Query returned error status: " + root.path("error").asText());
+    // Samples of one series, held until its labels are known whatever the field order
+    private static final class SeriesSamples {
+        long[] millis = new long[16];
+        double[] values = new double[16];
+        int size;
+
+        void add(long time, double value) {
+            if (size == millis.length) {
+                millis = Arrays.copyOf(millis, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            millis[size] = time;
+            values[size] = value;
+            size++;
         }
+    }
 
-        JsonNode result = root.path("data").path("result");
-        if (result.isEmpty()) {
-            return Collections.emptyList();
+    private static int parseData(JsonParser parser, String label, String secondLabel, LabelledSampleSink sink)
+            throws IOException {
+        int rows = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("result".equals(field) && token == JsonToken.START_ARRAY) {
+                Timestamps timestamps = new Timestamps();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parseSample(parser, label, secondLabel, timestamps, sink)) {
+                        rows++;
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
         }
+        return rows;
+    }
 
-        List<NodeMetric> metrics = new ArrayList<>();
-        for (JsonNode item : result) {
-            String nodeName = item.path("metric").path("instance").asText();
-            JsonNode value = item.path("value");
-            
-            if (value.size() >= 2) {
-                String timestamp = value.get(0).asText();
-                double metricValue = value.get(1).asDouble();
-                metrics.add(new NodeMetric(nodeName, metricValue, timestamp));
+    private static boolean parseSample(JsonParser parser, String label, String secondLabel, Timestamps timestamps,
+            LabelledSampleSink sink) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return false;
+        }
+        String name = "";
+        String second = null;
+        String timestamp = null;
+        double value = 0.0;
+        int values = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("metric".equals(field)) {
+                name = "";
+                second = null;
+                if (token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String labelName = parser.getCurrentName();
+                        parser.nextToken();
+                        if (label.equals(labelName)) {
+                            name = asText(parser);
+                        } else if (secondLabel != null && secondLabel.equals(labelName)) {
+                            second = asText(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            } else if ("value".equals(field)) {
+                values = 0;
+                if (token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (values == 0) {
+                            timestamp = timestamps.asText(parser);
+                        } else if (values == 1) {
+                            value = asDouble(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        values++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            } else {
+                parser.skipChildren();
             }
         }
+        if (values >= 2) {
+            sink.accept(name, second, value, timestamp);
+            return true;
+        }
+        return false;
+    }
 
-        return metrics;
+    // Parses a response, returning the number of series delivered
+    @FunctionalInterface
+    private interface ResponseParser {
+        int parse(InputStream response) throws IOException;
+    }
+
+    // Counts the response bytes as they are parsed
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    // One row of a vector, labelled by pod or instance
+    @FunctionalInterface
+    interface SampleSink {
+        void accept(String name, double value, String timestamp);
+    }
+
+    // One row of a vector with a second label, such as the le of a histogram bucket
+    @FunctionalInterface
+    interface LabelledSampleSink {
+        void accept(String name, String second, double value, String timestamp);
+    }
+
+    // Samples of an instant query share their evaluation time, formatted once
+    private static final class Timestamps {
+        private double last = Double.NaN;
+        private String lastText;
+
+        String asText(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.VALUE_NUMBER_FLOAT) {
+                return PrometheusClient.asText(parser);
+            }
+            double timestamp = parser.getDoubleValue();
+            if (timestamp != last) {
+                last = timestamp;
+                lastText = Double.toString(timestamp);
+            }
+            return lastText;
+        }
+    }
+
+    // JsonNode.asText() of the current value, containers read as ""
+    private static String asText(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return Integer.toString(parser.getIntValue());
+                    case LONG:
+                        return Long.toString(parser.getLongValue());
+                    default:
+                        return parser.getBigIntegerValue().toString();
+                }
+            case VALUE_NUMBER_FLOAT:
+                return Double.toString(parser.getDoubleValue());
+            case VALUE_TRUE:
+                return "true";
+            case VALUE_FALSE:
+                return "false";
+            case VALUE_NULL:
+                return "null";
+            default:
+                parser.skipChildren();
+                return "";
+        }
+    }
+
+    // JsonNode.asDouble() of the current value, Prometheus sends sample values as strings
+    private static double asDouble(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return NumberInput.parseAsDouble(parser.getText(), 0.0);
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return 1.0;
+            default:
+                parser.skipChildren();
+                return 0.0;
+        }
     }
 
     // Custom exception for Prometheus-related errors
@@ -158,14 +591,23 @@ public class PrometheusClient {
 
     public static class Builder {
         private String baseUrl = "http://localhost:9090";
+        private Tracer tracer = Tracer.noop();
 
         public Builder baseUrl(String baseUrl) {
             this.baseUrl = baseUrl;
             return this;
         }
 
+        public Builder tracer(Tracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
         public PrometheusClient build() {
-            return new PrometheusClient(baseUrl);
+            if (tracer == null) {
+                throw new IllegalStateException("Tracer is required");
+            }
+            return new PrometheusClient(baseUrl, tracer);
         }
     }
 }
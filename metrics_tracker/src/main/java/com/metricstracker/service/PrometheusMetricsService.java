@@ -19,8 +19,9 @@ under the License.
 package com.metricstracker.service;
 
 import com.metricstracker.service.PrometheusClient;
-import com.metricstracker.model.PodMetric;
-import com.metricstracker.model.NodeMetric;
+import com.metricstracker.schedule.QueryScheduler;
+import com.metricstracker.trace.Span;
+import com.metricstracker.trace.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,25 +29,54 @@ import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.Configuration;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1Node;
+import io.kubernetes.client.openapi.models.V1NodeAddress;
 import io.kubernetes.client.openapi.models.V1NodeList;
 import io.kubernetes.client.util.Config;
 
-import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 public class PrometheusMetricsService implements MetricsService {
     private static final Logger logger = LoggerFactory.getLogger(PrometheusMetricsService.class);
     private final PrometheusClient client;
+    private final UnaryOperator<String> nodeNameResolver;
+    private final QueryScheduler scheduler;
+    // Local rate state of the CPU and hits counters, null to have Prometheus evaluate rate()
+    private final CounterRates cpuRates;
+    private final CounterRates hitsRates;
+    private final Tracer tracer;
 
     // Query templates for different metrics
     private static final String POD_CPU_QUERY_TEMPLATE = 
-        "sum(rate(container_cpu_usage_seconds_total{container!=\"\"}[%ds])) by (pod)";
+        "sum(rate(container_cpu_usage_seconds_total{%s}[%ds])) by (pod)";
     
     private static final String POD_MEMORY_QUERY_TEMPLATE = 
-        "sum(container_memory_working_set_bytes{container!=\"\"}) by (pod)";
+        "sum(container_memory_working_set_bytes{%s}) by (pod)";
     
     private static final String POD_HITS_QUERY_TEMPLATE = 
-        "sum(rate(http_server_requests_seconds_count{container!=\"\"}[%ds])) by (pod)";
+        "sum(rate(http_server_requests_seconds_count{%s}[%ds])) by (pod)";
+
+    private static final String POD_LATENCY_BUCKETS_QUERY_TEMPLATE =
+        "sum(rate(http_server_requests_seconds_bucket{%s}[%ds])) by (pod, le)";
+
+    // Raw counter samples for rates computed in the tracker
+    private static final String POD_CPU_SAMPLES_QUERY_TEMPLATE =
+        "container_cpu_usage_seconds_total{%s}[%ds]";
+
+    private static final String POD_HITS_SAMPLES_QUERY_TEMPLATE =
+        "http_server_requests_seconds_count{%s}[%ds]";
+
+    private static final String POD_SELECTOR = "container!=\"\"";
+
+    // Node names are listed at most once per TTL, not per node row
+    private static final Duration NODE_NAME_TTL = Duration.ofMinutes(1);
     
     private static final String NODE_CPU_QUERY_TEMPLATE = 
         "sum(rate(node_cpu_seconds_total{mode!=\"idle\"}[%ds])) by (instance)";
@@ -55,24 +85,38 @@ public class PrometheusMetricsService implements MetricsService {
         "sum(node_memory_MemTotal_bytes - node_memory_MemAvailable_bytes) by (instance) / sum(node_memory_MemTotal_bytes) by (instance) * 100";
 
     public PrometheusMetricsService(PrometheusClient client) {
-        this.client = client;
+        this(builder().client(client));
+    }
+
+    private PrometheusMetricsService(Builder builder) {
+        this.client = builder.client;
+        this.nodeNameResolver = builder.nodeNameResolver != null
+            ? builder.nodeNameResolver
+            : new NodeNameCache(PrometheusMetricsService::listNodeNamesByIP, NODE_NAME_TTL);
+        this.scheduler = builder.scheduler;
+        this.cpuRates = builder.localCounterRates ? CounterRates.builder().build() : null;
+        this.hitsRates = builder.localCounterRates ? CounterRates.builder().build() : null;
+        this.tracer = builder.tracer;
+    }
+
+    @Override
+    public PodMetricBatch getPodsCPUUtilization(int seconds) {
+        return getPodsCPUUtilization(seconds, null);
     }
 
     @Override
-    public List<PodMetric> getPodsCPUUtilization(int seconds) {
+    public PodMetricBatch getPodsCPUUtilization(int seconds, String podPattern) {
         logger.debug("Retrieving CPU utilization for pods over {} seconds", seconds);
         try {
-            String query = String.format(POD_CPU_QUERY_TEMPLATE, seconds);
-            List<PodMetric> metrics = client.queryPodMetrics(query);
+            if (cpuRates != null && cpuRates.covers(seconds)) {
+                return localRates("metrics.pods.cpu", cpuRates, POD_CPU_SAMPLES_QUERY_TEMPLATE, seconds, podPattern, 100);
+            }
+            String query = String.format(POD_CPU_QUERY_TEMPLATE, podSelector(podPattern), seconds);
+            PodMetricBatch metrics = schedule("metrics.pods.cpu", seconds, () -> client.queryPodMetrics(query));
             
             // Convert raw CPU values to percentage (multiply by 100)
-            return metrics.stream()
-                .map(metric -> new PodMetric(
-                    metric.podName(),
-                    metric.value() * 100, // Convert to percentage
-                    metric.timestamp()
-                ))
-                .toList();
+            metrics.scale(100);
+            return metrics;
         } catch (Exception e) {
             logger.error("Failed to retrieve pod CPU metrics", e);
             throw new MetricsServiceException("Error retrieving pod CPU metrics", e);
@@ -80,21 +124,21 @@ public class PrometheusMetricsService implements MetricsService {
     }
 
     @Override
-    public List<PodMetric> getPodsMemoryUtilization(int seconds) {
+    public PodMetricBatch getPodsMemoryUtilization(int seconds) {
+        return getPodsMemoryUtilization(seconds, null);
+    }
+
+    @Override
+    public PodMetricBatch getPodsMemoryUtilization(int seconds, String podPattern) {
         logger.debug("Retrieving memory utilization for pods");
         try {
             // Memory query doesn't need time window as it's an instant value
-            String query = POD_MEMORY_QUERY_TEMPLATE;
-            List<PodMetric> metrics = client.queryPodMetrics(query);
+            String query = String.format(POD_MEMORY_QUERY_TEMPLATE, podSelector(podPattern));
+            PodMetricBatch metrics = schedule("metrics.pods.memory", 0, () -> client.queryPodMetrics(query));
             
             // Convert bytes to megabytes
-            return metrics.stream()
-                .map(metric -> new PodMetric(
-                    metric.podName(),
-                    metric.value() / (1024 * 1024), // Convert bytes to MB
-                    metric.timestamp()
-                ))
-                .toList();
+            metrics.scale(1.0 / (1024 * 1024));
+            return metrics;
         } catch (Exception e) {
             logger.error("Failed to retrieve pod memory metrics", e);
             throw new MetricsServiceException("Error retrieving pod memory metrics", e);
@@ -102,33 +146,105 @@ public class PrometheusMetricsService implements MetricsService {
     }
 
     @Override
-    public List<PodMetric> getPodsHitsUtilization(int seconds) {
+    public PodMetricBatch getPodsHitsUtilization(int seconds) {
+        return getPodsHitsUtilization(seconds, null);
+    }
+
+    @Override
+    public PodMetricBatch getPodsHitsUtilization(int seconds, String podPattern) {
         logger.debug("Retrieving HTTP hits for pods over {} seconds", seconds);
         try {
-            String query = String.format(POD_HITS_QUERY_TEMPLATE, seconds);
-            return client.queryPodMetrics(query);
+            if (hitsRates != null && hitsRates.covers(seconds)) {
+                return localRates("metrics.pods.hits", hitsRates, POD_HITS_SAMPLES_QUERY_TEMPLATE, seconds, podPattern, 1);
+            }
+            String query = String.format(POD_HITS_QUERY_TEMPLATE, podSelector(podPattern), seconds);
+            return schedule("metrics.pods.hits", seconds, () -> client.queryPodMetrics(query));
+        } catch (Exception e) {
+            logger.error("Failed to retrieve pod hits metrics", e);
+            throw new MetricsServiceException("Error retrieving pod hits metrics", e);
+        }
+    }
+
+    /*
+     * Streaming variants: unit conversions are applied as each sample is parsed,
+     * with the same arithmetic as the batch variants above.
+     */
+
+    @Override
+    public void streamPodsCPUUtilization(int seconds, PodMetricSink sink) {
+        logger.debug("Streaming CPU utilization for pods over {} seconds", seconds);
+        try {
+            if (cpuRates != null && cpuRates.covers(seconds)) {
+                streamLocalRates("metrics.pods.cpu", cpuRates, POD_CPU_SAMPLES_QUERY_TEMPLATE, seconds, null, 100, sink);
+                return;
+            }
+            String query = String.format(POD_CPU_QUERY_TEMPLATE, POD_SELECTOR, seconds);
+            scheduleStream("metrics.pods.cpu", seconds, () -> client.queryPodMetrics(query, (podName, value, timestamp) ->
+                sink.accept(podName, value * 100, timestamp))); // Convert to percentage
+        } catch (Exception e) {
+            logger.error("Failed to retrieve pod CPU metrics", e);
+            throw new MetricsServiceException("Error retrieving pod CPU metrics", e);
+        }
+    }
+
+    @Override
+    public void streamPodsMemoryUtilization(int seconds, PodMetricSink sink) {
+        logger.debug("Streaming memory utilization for pods");
+        try {
+            String query = String.format(POD_MEMORY_QUERY_TEMPLATE, POD_SELECTOR);
+            scheduleStream("metrics.pods.memory", 0, () -> client.queryPodMetrics(query, (podName, value, timestamp) ->
+                sink.accept(podName, value / (1024 * 1024), timestamp))); // Convert bytes to MB
+        } catch (Exception e) {
+            logger.error("Failed to retrieve pod memory metrics", e);
+            throw new MetricsServiceException("Error retrieving pod memory metrics", e);
+        }
+    }
+
+    @Override
+    public void streamPodsHitsUtilization(int seconds, PodMetricSink sink) {
+        logger.debug("Streaming HTTP hits for pods over {} seconds", seconds);
+        try {
+            if (hitsRates != null && hitsRates.covers(seconds)) {
+                streamLocalRates("metrics.pods.hits", hitsRates, POD_HITS_SAMPLES_QUERY_TEMPLATE, seconds, null, 1,
+                        sink);
+                return;
+            }
+            String query = String.format(POD_HITS_QUERY_TEMPLATE, POD_SELECTOR, seconds);
+            scheduleStream("metrics.pods.hits", seconds, () -> client.queryPodMetrics(query, sink));
         } catch (Exception e) {
             logger.error("Failed to retrieve pod hits metrics", e);
             throw new MetricsServiceException("Error retrieving pod hits metrics", e);
         }
     }
 
+    /**
+     * Streams the bucket rates of every pod so quantiles can be computed per
+     * pod and per workload from one query, instead of one histogram_quantile
+     * query per quantile and grouping.
+     */
+    @Override
+    public void streamPodsLatencyBuckets(int seconds, String podPattern, HistogramBucketSink sink) {
+        logger.debug("Streaming request latency buckets for pods over {} seconds", seconds);
+        try {
+            String query = String.format(POD_LATENCY_BUCKETS_QUERY_TEMPLATE, podSelector(podPattern), seconds);
+            scheduleStream("metrics.pods.latency_buckets", seconds, () -> client.queryHistogramBuckets(query, sink));
+        } catch (Exception e) {
+            logger.error("Failed to retrieve pod latency buckets", e);
+            throw new MetricsServiceException("Error retrieving pod latency buckets", e);
+        }
+    }
+
     @Override
-    public List<NodeMetric> getNodesCPUUtilization(int seconds) {
+    public NodeMetricBatch getNodesCPUUtilization(int seconds) {
         logger.debug("Retrieving CPU utilization for nodes over {} seconds", seconds);
         try {
             String query = String.format(NODE_CPU_QUERY_TEMPLATE, seconds);
-            List<NodeMetric> metrics = client.queryNodeMetrics(query);
+            NodeMetricBatch metrics = schedule("metrics.nodes.cpu", seconds, () -> client.queryNodeMetrics(query));
             
             // Convert raw CPU values to percentage (multiply by 100)
-            return metrics.stream()
-                .map(metric -> new NodeMetric(
-                    getNodeNameByIP(metric.nodeName()
-                                          .substring(0, metric.nodeName().indexOf(":"))),
-                    metric.value() * 100, // Convert to percentage
-                    metric.timestamp()
-                ))
-                .toList();
+            metrics.scale(100);
+            metrics.rename(this::resolveNodeName);
+            return metrics;
         } catch (Exception e) {
             logger.error("Failed to retrieve node CPU metrics", e);
             throw new MetricsServiceException("Error retrieving node CPU metrics", e);
@@ -136,31 +252,125 @@ public class PrometheusMetricsService implements MetricsService {
     }
 
     @Override
-    public List<NodeMetric> getNodesMemoryUtilization(int seconds) {
+    public NodeMetricBatch getNodesMemoryUtilization(int seconds) {
         logger.debug("Retrieving memory utilization for nodes");
         try {
             // Memory percentage is calculated directly in the query
             String query = NODE_MEMORY_QUERY_TEMPLATE;
-            List<NodeMetric> metrics = client.queryNodeMetrics(query);
+            NodeMetricBatch metrics = schedule("metrics.nodes.memory", 0, () -> client.queryNodeMetrics(query));
             
-            return metrics.stream()
-                .map(metric -> new NodeMetric(
-                    getNodeNameByIP(metric.nodeName()
-                                          .substring(0, metric.nodeName().indexOf(":"))),
-                    metric.value(), // Already in percentage
-                    metric.timestamp()
-                ))
-                .toList();
+            // Already in percentage
+            metrics.rename(this::resolveNodeName);
+            return metrics;
         } catch (Exception e) {
             logger.error("Failed to retrieve node memory metrics", e);
             throw new MetricsServiceException("Error retrieving node memory metrics", e);
         }
     }
 
+    private PodMetricBatch localRates(String operation, CounterRates rates, String template, int seconds,
+            String podPattern, double scale) {
+        PodMetricBatch metrics = new PodMetricBatch();
+        streamLocalRates(operation, rates, template, seconds, podPattern, scale, metrics);
+        return metrics;
+    }
+
+    // Exporters report instance as ip:port, resolved to the name of the node with that address
+    private String resolveNodeName(String instance) {
+        String nodeIP = instance.substring(0, instance.indexOf(":"));
+        try (Span span = tracer.startSpan("node.resolve").setAttribute("node.ip", nodeIP)) {
+            try {
+                return nodeNameResolver.apply(nodeIP);
+            } catch (RuntimeException e) {
+                span.recordError(e);
+                throw e;
+            }
+        }
+    }
+
+    /*
+     * Fetches the counter samples appended since the previous poll and hands
+     * each pod's summed rate, times scale, to the sink. The pod pattern is
+     * applied here rather than in the query so that all polls share one state.
+     * The state is locked only once the scheduler admitted the poll, so that
+     * callers queued behind other queries do not block those already admitted.
+     */
+    private void streamLocalRates(String operation, CounterRates rates, String template, int seconds,
+            String podPattern, double scale, PodMetricSink sink) {
+        Predicate<String> pods = podPattern == null ? podName -> true : Pattern.compile(podPattern).asMatchPredicate();
+        int estimate;
+        synchronized (rates) {
+            estimate = rates.lookbackSeconds(seconds);
+        }
+        scheduleStream(operation, estimate, () -> {
+            synchronized (rates) {
+                // Shorter than the estimate when another caller polled meanwhile
+                int lookback = rates.lookbackSeconds(seconds);
+                client.queryCounterSamples(String.format(template, POD_SELECTOR, lookback), rates);
+                rates.polled();
+                rates.forEachPodRate(seconds, (podName, value, timestamp) -> {
+                    if (pods.test(podName)) {
+                        sink.accept(podName, value * scale, timestamp);
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+     * Runs a query over a window of seconds, zero for instant queries, through
+     * the scheduler if any. The operation span includes the time queued in the
+     * scheduler, so it can be told apart from the Prometheus query span.
+     */
+    private <T> T schedule(String operation, int seconds, Supplier<T> query) {
+        try (Span span = tracer.startSpan(operation).setAttribute("window.seconds", seconds)) {
+            try {
+                T result = scheduler != null
+                        ? scheduler.call(QueryScheduler.costOfWindow(seconds), query)
+                        : query.get();
+                if (result instanceof MetricBatch batch) {
+                    span.setAttribute("series", batch.size());
+                }
+                return result;
+            } catch (RuntimeException e) {
+                span.recordError(e);
+                throw e;
+            }
+        }
+    }
+
+    private void scheduleStream(String operation, int seconds, Runnable query) {
+        schedule(operation, seconds, () -> {
+            query.run();
+            return null;
+        });
+    }
+
+    // Label matchers selecting application containers, optionally of the matching pods only
+    private static String podSelector(String podPattern) {
+        if (podPattern == null) {
+            return POD_SELECTOR;
+        }
+        String quoted = podPattern.replace("\\", "\\\\").replace("\"", "\\\"");
+        return POD_SELECTOR + ",pod=~\"" + quoted + "\"";
+    }
+
     /**
-     * Get node name from IP address.
+     * Get node name from IP address. Lists every node; resolve many IPs
+     * through a {@link NodeNameCache} instead.
      */
     public static String getNodeNameByIP(String nodeIP) {
+        String name = listNodeNamesByIP().get(nodeIP);
+        if (name == null) {
+            throw new RuntimeException("Node not found with IP: " + nodeIP);
+        }
+        return name;
+    }
+
+    /**
+     * Lists the nodes once and maps the InternalIP of each to its name.
+     */
+    public static Map<String, String> listNodeNamesByIP() {
         // Load the default Kubernetes configuration from cluster or kubeconfig
         try {
             ApiClient client = Config.defaultClient();
@@ -171,15 +381,16 @@ public class PrometheusMetricsService implements MetricsService {
             
             // Get list of all nodes
             V1NodeList nodeList = api.listNode(null, null, null, null, null, null, null, null, null, null);
-            
-            // Search through nodes to find matching IP
-            return nodeList.getItems().stream()
-                .filter(node -> node.getStatus().getAddresses().stream()
-                    .anyMatch(address -> "InternalIP".equals(address.getType()) 
-                        && nodeIP.equals(address.getAddress())))
-                .findFirst()
-                .map(node -> node.getMetadata().getName())
-                .orElseThrow(() -> new RuntimeException("Node not found with IP: " + nodeIP));
+
+            Map<String, String> names = new HashMap<>();
+            for (V1Node node : nodeList.getItems()) {
+                for (V1NodeAddress address : node.getStatus().getAddresses()) {
+                    if ("InternalIP".equals(address.getType())) {
+                        names.put(address.getAddress(), node.getMetadata().getName());
+                    }
+                }
+            }
+            return names;
 
         } catch (IOException | ApiException e) {
             throw new RuntimeException("Failed to load Kubernetes configuration", e);
@@ -204,17 +415,60 @@ public class PrometheusMetricsService implements MetricsService {
 
     public static class Builder {
         private PrometheusClient client;
+        private UnaryOperator<String> nodeNameResolver;
+        private QueryScheduler scheduler;
+        private boolean localCounterRates;
+        private Tracer tracer = Tracer.noop();
 
         public Builder client(PrometheusClient client) {
             this.client = client;
             return this;
         }
 
+        /**
+         * Maps the IP of a node exporter instance to the node name, by default
+         * from a node list cached for a minute.
+         */
+        public Builder nodeNameResolver(UnaryOperator<String> nodeNameResolver) {
+            this.nodeNameResolver = nodeNameResolver;
+            return this;
+        }
+
+        /**
+         * Queues queries for a fair share of Prometheus, unscheduled when unset.
+         */
+        public Builder scheduler(QueryScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Computes pod CPU and hits rates in the tracker from raw counter
+         * samples fetched incrementally, so Prometheus no longer evaluates
+         * rate() over every container series on each poll. Windows longer
+         * than the samples kept per series still use rate().
+         */
+        public Builder localCounterRates(boolean localCounterRates) {
+            this.localCounterRates = localCounterRates;
+            return this;
+        }
+
+        /**
+         * Records spans for each metric operation and node name lookup, none when unset.
+         */
+        public Builder tracer(Tracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
         public PrometheusMetricsService build() {
             if (client == null) {
                 throw new IllegalStateException("PrometheusClient is required");
             }
-            return new PrometheusMetricsService(client);
+            if (tracer == null) {
+                throw new IllegalStateException("Tracer is required");
+            }
+            return new PrometheusMetricsService(this);
         }
     }
 }
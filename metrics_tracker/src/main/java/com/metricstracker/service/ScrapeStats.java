@@ -0,0 +1,48 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+/**
+ * Prometheus load of a {@link MetricsScraper}.
+ *
+ * @param queries         Queries issued
+ * @param series          Series returned by those queries
+ * @param baselineQueries Queries a fixed full scrape would have issued over the same rounds
+ * @param baselineSeries  Series a fixed full scrape would have fetched over the same rounds
+ */
+public record ScrapeStats(long queries, long series, long baselineQueries, long baselineSeries) {
+
+    /**
+     * Fraction of the baseline query rate that was saved, 0 before the first round.
+     */
+    public double queryReduction() {
+        return reduction(queries, baselineQueries);
+    }
+
+    /**
+     * Fraction of the baseline series that were not fetched, 0 before the first round.
+     */
+    public double seriesReduction() {
+        return reduction(series, baselineSeries);
+    }
+
+    private static double reduction(long actual, long baseline) {
+        return baseline > 0 ? 1.0 - (double) actual / baseline : 0.0;
+    }
+}
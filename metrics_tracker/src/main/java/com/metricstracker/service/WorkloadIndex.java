@@ -0,0 +1,116 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pod to owner index fed by a pod watch, see {@link PodWatcher}. Pods the
+ * index has not seen yet, e.g. before the first list completes, fall back to
+ * another resolver.
+ *
+ * <p>Owners are the controllers users scale: the StatefulSet, DaemonSet or Job
+ * of a pod, and the Deployment rather than the ReplicaSet of Deployment pods.
+ */
+public class WorkloadIndex implements WorkloadResolver {
+    private final WorkloadResolver fallback;
+    private final Map<String, PodEntry> pods = new ConcurrentHashMap<>();
+    // Guarded by this, pods is concurrent so that lookups need no lock
+    private final Map<String, OwnerEntry> owners = new HashMap<>();
+
+    private record PodEntry(String owner, boolean ready) {
+    }
+
+    private static final class OwnerEntry {
+        int pods;
+        int ready;
+    }
+
+    public WorkloadIndex() {
+        this(WorkloadResolver.byNamePrefix());
+    }
+
+    public WorkloadIndex(WorkloadResolver fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String workloadOf(String podName) {
+        PodEntry entry = pods.get(podName);
+        return entry != null ? entry.owner() : fallback.workloadOf(podName);
+    }
+
+    @Override
+    public synchronized OptionalInt readyPods(String workload) {
+        OwnerEntry owner = owners.get(workload);
+        return owner == null ? OptionalInt.empty() : OptionalInt.of(owner.ready);
+    }
+
+    /**
+     * Pods of a workload known to the index, 0 when it has none.
+     */
+    public synchronized int podCount(String workload) {
+        OwnerEntry owner = owners.get(workload);
+        return owner == null ? 0 : owner.pods;
+    }
+
+    public int size() {
+        return pods.size();
+    }
+
+    /**
+     * Adds a pod or records a change of its owner or readiness.
+     */
+    public synchronized void put(String podName, String owner, boolean ready) {
+        PodEntry previous = pods.put(podName, new PodEntry(owner, ready));
+        if (previous != null) {
+            release(previous);
+        }
+        OwnerEntry entry = owners.computeIfAbsent(owner, name -> new OwnerEntry());
+        entry.pods++;
+        if (ready) {
+            entry.ready++;
+        }
+    }
+
+    /**
+     * Removes a pod unless another owner's pod of the same name has replaced it.
+     */
+    public synchronized void remove(String podName, String owner) {
+        PodEntry previous = pods.get(podName);
+        if (previous != null && previous.owner().equals(owner)) {
+            pods.remove(podName);
+            release(previous);
+        }
+    }
+
+    private void release(PodEntry pod) {
+        OwnerEntry owner = owners.get(pod.owner());
+        owner.pods--;
+        if (pod.ready()) {
+            owner.ready--;
+        }
+        if (owner.pods == 0) {
+            owners.remove(pod.owner());
+        }
+    }
+}
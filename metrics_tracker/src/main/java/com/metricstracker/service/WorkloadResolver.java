@@ -0,0 +1,59 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import java.util.OptionalInt;
+
+/**
+ * Maps a pod to the workload (StatefulSet, Deployment...) that owns it.
+ */
+public interface WorkloadResolver {
+
+    /**
+     * Returns the owning workload name, or the pod name itself when unknown.
+     */
+    String workloadOf(String podName);
+
+    /**
+     * Pods of a workload currently passing their readiness checks, empty when
+     * the resolver does not watch pod status.
+     */
+    default OptionalInt readyPods(String workload) {
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Resolves StatefulSet pods from their name, which is the StatefulSet name
+     * followed by the ordinal ("web-statefulset-2").
+     */
+    static WorkloadResolver byNamePrefix() {
+        return podName -> {
+            int dash = podName.lastIndexOf('-');
+            if (dash <= 0 || dash == podName.length() - 1) {
+                return podName;
+            }
+            for (int i = dash + 1; i < podName.length(); i++) {
+                if (!Character.isDigit(podName.charAt(i))) {
+                    return podName;
+                }
+            }
+            return podName.substring(0, dash);
+        };
+    }
+}
@@ -0,0 +1,221 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.sketch;
+
+/**
+ * Mergeable quantile sketch with relative accuracy guarantees (DDSketch).
+ *
+ * Positive values are counted in logarithmic bins of width gamma = (1 + a) / (1 - a),
+ * so any quantile is returned within a relative error a of the true value no
+ * matter how skewed the distribution is. Values close to zero, or negative,
+ * are counted in a dedicated zero bin, which suits utilizations.
+ *
+ * Bins live in a dense int array covering the occupied index range. When that
+ * range would exceed {@code maxBins} the lowest bins are collapsed into one,
+ * which bounds memory and only costs accuracy in the low quantiles. Sketches
+ * with the same accuracy merge by adding bin counts.
+ */
+public final class DDSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 2048;
+
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double multiplier;
+    private final int maxBins;
+
+    private int[] counts = new int[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public DDSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    public DDSketch(double relativeAccuracy, int maxBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1)");
+        }
+        if (maxBins < 2) {
+            throw new IllegalArgumentException("A sketch needs at least two bins");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+        this.maxBins = maxBins;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value < MIN_INDEXABLE) {
+            zeroCount++;
+            return;
+        }
+        int index = index(value);
+        ensureCovers(index, index);
+        counts[Math.max(index - offset, 0)]++;
+    }
+
+    /**
+     * Adds the counts of another sketch with the same relative accuracy.
+     */
+    public void merge(DDSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first < 0) {
+            return;
+        }
+        ensureCovers(other.offset + first, other.offset + last);
+        for (int i = first; i <= last; i++) {
+            counts[Math.max(other.offset + i - offset, 0)] += other.counts[i];
+        }
+    }
+
+    /**
+     * Estimates the value at quantile q in [0, 1]; NaN for an empty sketch.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        // The extremes are tracked exactly
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+        double rank = q * (count - 1);
+        long cumulative = zeroCount;
+        if (cumulative > rank) {
+            return Math.max(min, Math.min(0, max));
+        }
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative > rank) {
+                return Math.max(min, Math.min(value(offset + i), max));
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void clear() {
+        counts = new int[0];
+        offset = 0;
+        zeroCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Heap held by the sketch, including its bin array.
+     */
+    public long sizeInBytes() {
+        return 72 + 16 + 4L * counts.length;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) * multiplier);
+    }
+
+    // Midpoint of the bin in the sense of relative error
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    // Grows the bin array to cover [low, high], collapsing the lowest bins beyond maxBins
+    private void ensureCovers(int low, int high) {
+        if (counts.length == 0) {
+            int length = Math.min(high - low + 1, maxBins);
+            counts = new int[length];
+            offset = high - length + 1;
+            return;
+        }
+        int newLow = Math.min(low, offset);
+        int newHigh = Math.max(high, offset + counts.length - 1);
+        if (newLow == offset && newHigh == offset + counts.length - 1) {
+            return;
+        }
+        int length = newHigh - newLow + 1;
+        int newOffset = newLow;
+        if (length > maxBins) {
+            newOffset = newHigh - maxBins + 1;
+            length = maxBins;
+        }
+        int[] grown = new int[length];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                grown[Math.max(offset + i - newOffset, 0)] += counts[i];
+            }
+        }
+        counts = grown;
+        offset = newOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "DDSketch{count=" + count + ", min=" + min + ", max=" + max
+            + ", bins=" + counts.length + ", zeros=" + zeroCount + "}";
+    }
+}
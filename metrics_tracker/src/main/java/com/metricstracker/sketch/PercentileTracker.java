@@ -0,0 +1,234 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.sketch;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.service.MetricsListener;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadResolver;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link WindowedSketch} per pod for CPU, memory and hits, updated from
+ * every scrape, and answers percentile queries per pod or per StatefulSet by
+ * merging the sketches of its pods.
+ */
+public class PercentileTracker implements MetricsListener {
+    public static final Duration DEFAULT_SLOT = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_RETENTION = Duration.ofHours(1);
+    public static final int DEFAULT_MAX_BINS = 512;
+
+    private final WorkloadResolver workloads;
+    private final long slotMillis;
+    private final int slotCount;
+    private final long retentionMillis;
+    private final double relativeAccuracy;
+    private final int maxBins;
+    private final Clock clock;
+    private final Map<MetricType, Map<String, WindowedSketch>> pods = new EnumMap<>(MetricType.class);
+
+    private PercentileTracker(Builder builder) {
+        this.workloads = builder.workloadResolver;
+        this.slotMillis = builder.slot.toMillis();
+        this.slotCount = (int) Math.max(1, (builder.retention.toMillis() + slotMillis - 1) / slotMillis);
+        this.retentionMillis = slotMillis * slotCount;
+        this.relativeAccuracy = builder.relativeAccuracy;
+        this.maxBins = builder.maxBins;
+        this.clock = builder.clock;
+        for (MetricType type : MetricType.values()) {
+            pods.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void onPodMetrics(MetricType type, PodMetricBatch metrics) {
+        Map<String, WindowedSketch> series = pods.get(type);
+        long now = clock.millis();
+        for (int i = 0; i < metrics.size(); i++) {
+            series.computeIfAbsent(metrics.podName(i),
+                    name -> new WindowedSketch(slotMillis, slotCount, relativeAccuracy, maxBins))
+                .add(metrics.timestampMillis(i, now), metrics.value(i));
+        }
+        series.values().removeIf(sketch -> sketch.lastTimestamp() < now - retentionMillis);
+    }
+
+    /**
+     * Percentiles of each pod over the trailing window.
+     *
+     * @param quantiles Quantiles in [0, 1]
+     * @param names     Pods to report, all pods when empty
+     */
+    public List<Percentiles> pods(MetricType type, Duration window, double[] quantiles, Set<String> names) {
+        long now = clock.millis();
+        long windowMillis = windowMillis(window);
+        List<Percentiles> result = new ArrayList<>();
+        for (Map.Entry<String, WindowedSketch> pod : new TreeMap<>(pods.get(type)).entrySet()) {
+            if (!names.isEmpty() && !names.contains(pod.getKey())) {
+                continue;
+            }
+            DDSketch merged = new DDSketch(relativeAccuracy, maxBins);
+            pod.getValue().mergeInto(merged, now, windowMillis);
+            if (!merged.isEmpty()) {
+                result.add(Percentiles.of(pod.getKey(), merged, quantiles));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Percentiles of each StatefulSet over the trailing window, merging the
+     * samples of all its pods.
+     *
+     * @param quantiles Quantiles in [0, 1]
+     * @param names     StatefulSets to report, all StatefulSets when empty
+     */
+    public List<Percentiles> statefulSets(MetricType type, Duration window, double[] quantiles, Set<String> names) {
+        long now = clock.millis();
+        long windowMillis = windowMillis(window);
+        Map<String, DDSketch> merged = new TreeMap<>();
+        for (Map.Entry<String, WindowedSketch> pod : pods.get(type).entrySet()) {
+            String owner = workloads.workloadOf(pod.getKey());
+            if (!names.isEmpty() && !names.contains(owner)) {
+                continue;
+            }
+            pod.getValue().mergeInto(merged.computeIfAbsent(owner, name -> new DDSketch(relativeAccuracy, maxBins)),
+                now, windowMillis);
+        }
+
+        List<Percentiles> result = new ArrayList<>();
+        for (Map.Entry<String, DDSketch> statefulSet : merged.entrySet()) {
+            if (!statefulSet.getValue().isEmpty()) {
+                result.add(Percentiles.of(statefulSet.getKey(), statefulSet.getValue(), quantiles));
+            }
+        }
+        return result;
+    }
+
+    // Windows that are unset or beyond the retention cover everything retained
+    private long windowMillis(Duration window) {
+        if (window == null || window.isZero() || window.isNegative()) {
+            return retentionMillis;
+        }
+        return Math.min(window.toMillis(), retentionMillis);
+    }
+
+    public Duration getRetention() {
+        return Duration.ofMillis(retentionMillis);
+    }
+
+    /**
+     * Heap held by the sketches of all pods.
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Map<String, WindowedSketch> series : pods.values()) {
+            for (WindowedSketch sketch : series.values()) {
+                bytes += sketch.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Quantile estimates of one pod or StatefulSet.
+     *
+     * @param name   Pod or StatefulSet name
+     * @param values Estimates in the order of the requested quantiles
+     * @param count  Samples merged into the estimates
+     */
+    public record Percentiles(String name, double[] values, long count) {
+        static Percentiles of(String name, DDSketch sketch, double[] quantiles) {
+            double[] values = new double[quantiles.length];
+            for (int i = 0; i < quantiles.length; i++) {
+                values[i] = sketch.quantile(quantiles[i]);
+            }
+            return new Percentiles(name, values, sketch.count());
+        }
+    }
+
+    /**
+     * Builder pattern for tracker configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private WorkloadResolver workloadResolver = WorkloadResolver.byNamePrefix();
+        private Duration slot = DEFAULT_SLOT;
+        private Duration retention = DEFAULT_RETENTION;
+        private double relativeAccuracy = DDSketch.DEFAULT_RELATIVE_ACCURACY;
+        private int maxBins = DEFAULT_MAX_BINS;
+        private Clock clock = Clock.systemUTC();
+
+        public Builder workloadResolver(WorkloadResolver workloadResolver) {
+            this.workloadResolver = workloadResolver;
+            return this;
+        }
+
+        public Builder slot(Duration slot) {
+            this.slot = slot;
+            return this;
+        }
+
+        public Builder retention(Duration retention) {
+            this.retention = retention;
+            return this;
+        }
+
+        public Builder relativeAccuracy(double relativeAccuracy) {
+            this.relativeAccuracy = relativeAccuracy;
+            return this;
+        }
+
+        public Builder maxBins(int maxBins) {
+            this.maxBins = maxBins;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public PercentileTracker build() {
+            if (workloadResolver == null) {
+                throw new IllegalStateException("WorkloadResolver is required");
+            }
+            if (slot == null || slot.toMillis() < 1 || retention == null || retention.compareTo(slot) < 0) {
+                throw new IllegalStateException("Retention must cover at least one positive slot");
+            }
+            if (clock == null) {
+                throw new IllegalStateException("Clock is required");
+            }
+            // Fail fast on invalid sketch settings
+            new DDSketch(relativeAccuracy, maxBins);
+            return new PercentileTracker(this);
+        }
+    }
+}
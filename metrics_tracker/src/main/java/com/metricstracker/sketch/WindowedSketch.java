@@ -0,0 +1,90 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.sketch;
+
+/**
+ * Ring of {@link DDSketch}es over consecutive time slots, so quantiles can be
+ * read over any trailing window up to the ring length at slot granularity.
+ *
+ * Samples land in the slot of their own timestamp; a slot is cleared and reused
+ * once its time has rolled out of the ring, which keeps memory bounded by the
+ * number of slots.
+ */
+public final class WindowedSketch {
+    private final long slotMillis;
+    private final DDSketch[] slots;
+    private final long[] slotStarts;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public WindowedSketch(long slotMillis, int slotCount, double relativeAccuracy, int maxBins) {
+        if (slotMillis < 1 || slotCount < 1) {
+            throw new IllegalArgumentException("Slot length and count must be positive");
+        }
+        this.slotMillis = slotMillis;
+        this.slots = new DDSketch[slotCount];
+        this.slotStarts = new long[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new DDSketch(relativeAccuracy, maxBins);
+            slotStarts[i] = Long.MIN_VALUE;
+        }
+    }
+
+    public synchronized void add(long timestampMillis, double value) {
+        long start = Math.floorDiv(timestampMillis, slotMillis) * slotMillis;
+        int slot = (int) Math.floorMod(Math.floorDiv(timestampMillis, slotMillis), (long) slots.length);
+        if (slotStarts[slot] != start) {
+            if (slotStarts[slot] > start) {
+                // Older than anything the ring still holds for this slot
+                return;
+            }
+            slots[slot].clear();
+            slotStarts[slot] = start;
+        }
+        slots[slot].add(value);
+        lastTimestamp = Math.max(lastTimestamp, timestampMillis);
+    }
+
+    /**
+     * Merges the slots overlapping (now - window, now] into {@code target}.
+     */
+    public synchronized void mergeInto(DDSketch target, long nowMillis, long windowMillis) {
+        long from = nowMillis - windowMillis;
+        for (int i = 0; i < slots.length; i++) {
+            long start = slotStarts[i];
+            if (start != Long.MIN_VALUE && start + slotMillis > from && start <= nowMillis) {
+                target.merge(slots[i]);
+            }
+        }
+    }
+
+    /**
+     * Timestamp of the latest sample, or {@link Long#MIN_VALUE} when empty.
+     */
+    public synchronized long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public synchronized long sizeInBytes() {
+        long bytes = 48 + 16 + 16 + 8L * slots.length * 2;
+        for (DDSketch slot : slots) {
+            bytes += slot.sizeInBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Appends spans to a file as JSON lines, one object per span:
+ *
+ * <pre>
+ * {"traceId":"...","spanId":"...","parentSpanId":"...","name":"prometheus.query",
+ *  "startEpochMicros":...,"durationMicros":...,"error":"...","attributes":{"query":"...","series":120}}
+ * </pre>
+ *
+ * parentSpanId and error are omitted when null. Output is buffered and
+ * flushed at most once a second, and on {@link #flush()} and {@link #close()}.
+ */
+public class FileSpanExporter implements SpanExporter {
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Writer writer;
+    private final JsonGenerator generator;
+    private long lastFlush = System.nanoTime();
+
+    public FileSpanExporter(Path file) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        this.generator = new JsonFactory().createGenerator(writer);
+        this.generator.setRootValueSeparator(null);
+        // Lines stay in the writer's buffer until the periodic flush
+        this.generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    }
+
+    @Override
+    public synchronized void export(SpanData span) {
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("traceId", span.traceId());
+            generator.writeStringField("spanId", span.spanId());
+            if (span.parentSpanId() != null) {
+                generator.writeStringField("parentSpanId", span.parentSpanId());
+            }
+            generator.writeStringField("name", span.name());
+            generator.writeNumberField("startEpochMicros", span.startEpochMicros());
+            generator.writeNumberField("durationMicros", span.durationMicros());
+            if (span.error() != null) {
+                generator.writeStringField("error", span.error());
+            }
+            generator.writeObjectFieldStart("attributes");
+            for (Map.Entry<String, Object> attribute : span.attributes().entrySet()) {
+                if (attribute.getValue() instanceof Long value) {
+                    generator.writeNumberField(attribute.getKey(), value);
+                } else {
+                    generator.writeStringField(attribute.getKey(), String.valueOf(attribute.getValue()));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.flush();
+            writer.write('\n');
+            long now = System.nanoTime();
+            if (now - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                writer.flush();
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write span " + span.name(), e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            writer.flush();
+            lastFlush = System.nanoTime();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush spans", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close span file", e);
+        }
+    }
+}
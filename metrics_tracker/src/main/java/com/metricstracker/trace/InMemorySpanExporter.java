@@ -0,0 +1,58 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Keeps the most recent spans in memory, for tests and for embedding the
+ * tracker in a process that inspects its own traces.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+    private final int capacity;
+    private final ArrayDeque<SpanData> spans;
+
+    public InMemorySpanExporter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.spans = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public synchronized void export(SpanData span) {
+        if (spans.size() == capacity) {
+            spans.removeFirst();
+        }
+        spans.addLast(span);
+    }
+
+    /**
+     * Spans in export order, children usually before their parent.
+     */
+    public synchronized List<SpanData> spans() {
+        return List.copyOf(spans);
+    }
+
+    public synchronized void clear() {
+        spans.clear();
+    }
+}
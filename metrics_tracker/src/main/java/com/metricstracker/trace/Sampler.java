@@ -0,0 +1,54 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+/**
+ * Decides whether a new trace is exported. Only roots are sampled: spans
+ * follow their parent, including a parent received from another process.
+ */
+@FunctionalInterface
+public interface Sampler {
+    boolean shouldSample(String traceId);
+
+    static Sampler always() {
+        return traceId -> true;
+    }
+
+    static Sampler never() {
+        return traceId -> false;
+    }
+
+    /**
+     * Samples the given fraction of traces by the low 63 bits of their trace
+     * id, so that every process sampling at the same ratio keeps the same traces.
+     */
+    static Sampler ratio(double ratio) {
+        if (!(ratio >= 0 && ratio <= 1)) {
+            throw new IllegalArgumentException("Sampling ratio must be in [0, 1]");
+        }
+        if (ratio == 0) {
+            return never();
+        }
+        if (ratio == 1) {
+            return always();
+        }
+        long bound = (long) (ratio * Long.MAX_VALUE);
+        return traceId -> (Long.parseUnsignedLong(traceId.substring(16), 16) >>> 1) < bound;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import io.grpc.Context;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation of a trace. A span started by {@link Tracer#startSpan(String)}
+ * is the current span of its thread, and parent of the spans started there,
+ * until it is closed; use it in a try-with-resources block on one thread.
+ *
+ * <p>Spans that are neither sampled nor buffered for the slow trace policy
+ * record nothing and only carry their context to children and callees.
+ */
+public final class Span implements AutoCloseable {
+    private final Tracer tracer;
+    private final SpanContext context;
+    private final String parentSpanId;
+    private final boolean localRoot;
+    private final String name;
+    private final boolean recording;
+    private final long startNanos;
+    private final long startEpochMicros;
+    private final Map<String, Object> attributes;
+    private final Context previous;
+    private String error;
+    private boolean ended;
+
+    Span(Tracer tracer, SpanContext context, String parentSpanId, boolean localRoot, String name,
+            boolean recording, boolean attach) {
+        this.tracer = tracer;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.localRoot = localRoot;
+        this.name = name;
+        this.recording = recording;
+        this.startNanos = System.nanoTime();
+        this.startEpochMicros = recording ? epochMicros() : 0;
+        this.attributes = recording ? new LinkedHashMap<>() : null;
+        this.previous = attach ? Context.current().withValue(Tracer.SPAN_KEY, this).attach() : null;
+    }
+
+    public SpanContext context() {
+        return context;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public Span setAttribute(String key, String value) {
+        if (recording && value != null) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    public Span setAttribute(String key, long value) {
+        if (recording) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Marks the span as failed; the first error is kept.
+     */
+    public Span recordError(Throwable throwable) {
+        if (recording && error == null) {
+            error = throwable.getClass().getSimpleName()
+                + (throwable.getMessage() != null ? ": " + throwable.getMessage() : "");
+        }
+        return this;
+    }
+
+    boolean isLocalRoot() {
+        return localRoot;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Ends the span, restores the previous current span and hands the span to
+     * the tracer for export. Later calls do nothing.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+        }
+        long durationNanos = elapsedNanos();
+        if (previous != null) {
+            Context.current().detach(previous);
+        }
+        if (recording) {
+            tracer.end(this, new SpanData(context.traceId(), context.spanId(), parentSpanId, name,
+                startEpochMicros, durationNanos / 1000, error, Collections.unmodifiableMap(attributes)));
+        }
+    }
+
+    private static long epochMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Identity of a span as carried between processes in the W3C trace context
+ * {@code traceparent} header: {@code 00-<32 hex trace id>-<16 hex span id>-<2 hex flags>}.
+ *
+ * @param sampled Whether the trace is exported, bit 0 of the flags
+ */
+public record SpanContext(String traceId, String spanId, boolean sampled) {
+    public static final String TRACEPARENT = "traceparent";
+
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+    private static final String INVALID_SPAN_ID = "0000000000000000";
+
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    /**
+     * Parses a traceparent header, empty when it is missing or malformed so
+     * that the call starts a new trace instead of failing.
+     */
+    public static Optional<SpanContext> fromTraceparent(String header) {
+        if (header == null) {
+            return Optional.empty();
+        }
+        String value = header.trim();
+        // Later versions may append fields, but keep the first four in place
+        if (value.length() < 55 || (value.length() > 55 && value.charAt(55) != '-')
+                || value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-') {
+            return Optional.empty();
+        }
+        String version = value.substring(0, 2);
+        String traceId = value.substring(3, 35);
+        String spanId = value.substring(36, 52);
+        String flags = value.substring(53, 55);
+        if (!isHex(version) || "ff".equals(version) || ("00".equals(version) && value.length() != 55)
+                || !isHex(traceId) || INVALID_TRACE_ID.equals(traceId)
+                || !isHex(spanId) || INVALID_SPAN_ID.equals(spanId)
+                || !isHex(flags)) {
+            return Optional.empty();
+        }
+        return Optional.of(new SpanContext(traceId, spanId, (Integer.parseInt(flags, 16) & 1) != 0));
+    }
+
+    static String randomTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = random.nextLong();
+        long low;
+        do {
+            low = random.nextLong();
+        } while (low == 0);
+        return hex(high) + hex(low);
+    }
+
+    static String randomSpanId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return hex(id);
+    }
+
+    private static String hex(long value) {
+        char[] digits = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            digits[i] = Character.forDigit((int) (value & 0xf), 16);
+            value >>>= 4;
+        }
+        return new String(digits);
+    }
+
+    // Lowercase only, as the specification requires
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import java.util.Map;
+
+/**
+ * A finished span as handed to a {@link SpanExporter}.
+ *
+ * @param parentSpanId      Null for the root of a trace
+ * @param startEpochMicros  Wall-clock start
+ * @param durationMicros    Measured on the monotonic clock
+ * @param error             Message of the failure that ended the span, null when it succeeded
+ */
+public record SpanData(
+    String traceId,
+    String spanId,
+    String parentSpanId,
+    String name,
+    long startEpochMicros,
+    long durationMicros,
+    String error,
+    Map<String, Object> attributes
+) {
+}
@@ -0,0 +1,216 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import io.grpc.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Starts spans and exports the finished ones of sampled traces.
+ *
+ * <p>The current span is kept in the gRPC {@link Context}, so it follows a
+ * call across the threads gRPC runs its callbacks on, and spans started while
+ * handling a call become children of the call's span.
+ *
+ * <p>Traces are exported when their root is sampled by the {@link Sampler}.
+ * With a slow trace threshold, the spans of every other trace are also
+ * recorded and held until their local root ends, and the whole trace is
+ * exported if the root took at least the threshold. Tail latency outliers are
+ * then kept however low the sampling ratio.
+ */
+public final class Tracer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+
+    static final Context.Key<Span> SPAN_KEY = Context.key("trace-span");
+
+    // Spans kept per held trace, beyond which a slow trace is exported truncated
+    private static final int MAX_HELD_SPANS = 256;
+
+    private static final Tracer NOOP = new Tracer(Sampler.never(), span -> { }, null, 0);
+
+    private final Sampler sampler;
+    private final SpanExporter exporter;
+    private final long slowTraceNanos;
+    private final Map<String, List<SpanData>> held;
+
+    private Tracer(Sampler sampler, SpanExporter exporter, Duration slowTraceThreshold, int maxHeldTraces) {
+        this.sampler = sampler;
+        this.exporter = exporter;
+        this.slowTraceNanos = slowTraceThreshold != null ? slowTraceThreshold.toNanos() : -1;
+        // Oldest traces are dropped first, e.g. those whose root never ended
+        this.held = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<SpanData>> eldest) {
+                return size() > maxHeldTraces;
+            }
+        };
+    }
+
+    /**
+     * A tracer that records nothing; spans still propagate received contexts.
+     */
+    public static Tracer noop() {
+        return NOOP;
+    }
+
+    /**
+     * Context of the current span, if any.
+     */
+    public static Optional<SpanContext> currentContext() {
+        Span span = SPAN_KEY.get();
+        return span != null ? Optional.of(span.context()) : Optional.empty();
+    }
+
+    /**
+     * Starts a child of the current span, or a new trace outside of one, and
+     * makes it current until it is closed.
+     */
+    public Span startSpan(String name) {
+        Span parent = SPAN_KEY.get();
+        return parent != null
+            ? child(name, parent.context(), false, true)
+            : root(name, true);
+    }
+
+    /**
+     * Starts the local root of a call, continuing the caller's trace when it
+     * sent one. The span is not made current; callers install it in the
+     * call's context.
+     */
+    Span startRemoteChild(String name, SpanContext remoteParent) {
+        return remoteParent != null
+            ? child(name, remoteParent, true, false)
+            : root(name, false);
+    }
+
+    private Span root(String name, boolean attach) {
+        String traceId = SpanContext.randomTraceId();
+        boolean sampled = sampler.shouldSample(traceId);
+        return new Span(this, new SpanContext(traceId, SpanContext.randomSpanId(), sampled), null, true, name,
+            sampled || slowTraceNanos >= 0, attach);
+    }
+
+    private Span child(String name, SpanContext parent, boolean localRoot, boolean attach) {
+        SpanContext context = new SpanContext(parent.traceId(), SpanContext.randomSpanId(), parent.sampled());
+        return new Span(this, context, parent.spanId(), localRoot, name,
+            parent.sampled() || slowTraceNanos >= 0, attach);
+    }
+
+    void end(Span span, SpanData data) {
+        if (span.context().sampled()) {
+            export(data);
+            return;
+        }
+        List<SpanData> trace;
+        synchronized (held) {
+            if (!span.isLocalRoot()) {
+                List<SpanData> spans = held.computeIfAbsent(data.traceId(), id -> new ArrayList<>());
+                if (spans.size() < MAX_HELD_SPANS) {
+                    spans.add(data);
+                }
+                return;
+            }
+            trace = held.remove(data.traceId());
+        }
+        if (data.durationMicros() * 1000 >= slowTraceNanos) {
+            if (trace != null) {
+                trace.forEach(this::export);
+            }
+            export(data);
+        }
+    }
+
+    private void export(SpanData span) {
+        try {
+            exporter.export(span);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to export span {}", span.name(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        exporter.close();
+    }
+
+    /**
+     * Builder pattern for tracer configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Sampler sampler = Sampler.ratio(0.01);
+        private SpanExporter exporter;
+        private Duration slowTraceThreshold;
+        private int maxHeldTraces = 1024;
+
+        public Builder sampler(Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        public Builder exporter(SpanExporter exporter) {
+            this.exporter = exporter;
+            return this;
+        }
+
+        /**
+         * Also exports the traces whose local root took at least this long,
+         * null to export sampled traces only.
+         */
+        public Builder slowTraceThreshold(Duration slowTraceThreshold) {
+            this.slowTraceThreshold = slowTraceThreshold;
+            return this;
+        }
+
+        /**
+         * Unsampled traces held at once while waiting for their root to end.
+         */
+        public Builder maxHeldTraces(int maxHeldTraces) {
+            this.maxHeldTraces = maxHeldTraces;
+            return this;
+        }
+
+        public Tracer build() {
+            if (sampler == null) {
+                throw new IllegalStateException("Sampler is required");
+            }
+            if (exporter == null) {
+                throw new IllegalStateException("SpanExporter is required");
+            }
+            if (slowTraceThreshold != null && slowTraceThreshold.isNegative()) {
+                throw new IllegalStateException("Slow trace threshold cannot be negative");
+            }
+            if (maxHeldTraces <= 0) {
+                throw new IllegalStateException("maxHeldTraces must be positive");
+            }
+            return new Tracer(sampler, exporter, slowTraceThreshold, maxHeldTraces);
+        }
+    }
+}
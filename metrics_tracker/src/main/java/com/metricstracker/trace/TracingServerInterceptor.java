@@ -0,0 +1,81 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Wraps every call in a span named after its method, continuing the trace of
+ * the caller's {@value SpanContext#TRACEPARENT} header when present. The span
+ * is current while the service handles the call and ends when the call is
+ * closed or cancelled.
+ */
+public class TracingServerInterceptor implements ServerInterceptor {
+    public static final Metadata.Key<String> TRACEPARENT_KEY =
+        Metadata.Key.of(SpanContext.TRACEPARENT, Metadata.ASCII_STRING_MARSHALLER);
+
+    private final Tracer tracer;
+
+    public TracingServerInterceptor(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+            Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        SpanContext parent = SpanContext.fromTraceparent(headers.get(TRACEPARENT_KEY)).orElse(null);
+        Span span = tracer.startRemoteChild(call.getMethodDescriptor().getFullMethodName(), parent);
+
+        ServerCall<ReqT, RespT> traced = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                span.setAttribute("rpc.status", status.getCode().name());
+                if (!status.isOk()) {
+                    span.recordError(status.asRuntimeException());
+                }
+                try {
+                    super.close(status, trailers);
+                } finally {
+                    span.close();
+                }
+            }
+        };
+        ServerCall.Listener<ReqT> listener =
+            Contexts.interceptCall(Context.current().withValue(Tracer.SPAN_KEY, span), traced, headers, next);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                span.setAttribute("rpc.status", Status.Code.CANCELLED.name());
+                try {
+                    super.onCancel();
+                } finally {
+                    span.close();
+                }
+            }
+        };
+    }
+}
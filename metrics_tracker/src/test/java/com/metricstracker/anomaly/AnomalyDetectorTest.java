@@ -0,0 +1,137 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.anomaly;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.PodMetricBatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnomalyDetectorTest {
+
+    @Test
+    void update_NoisyFlatSeries_DoesNotSignal() {
+        // Arrange
+        ChangePointDetector detector = new ChangePointDetector(0.1, 0.5, 5.0, 10, 0.05);
+        Random random = new Random(42);
+
+        // Act
+        int signals = 0;
+        for (int i = 0; i < 1000; i++) {
+            signals += Math.abs(detector.update(50.0 + random.nextGaussian()));
+        }
+
+        // Assert
+        assertEquals(0, signals);
+        assertEquals(50.0, detector.getMean(), 1.0);
+    }
+
+    @Test
+    void update_LargeStep_SignalsOnFirstSample() {
+        // Arrange
+        ChangePointDetector detector = new ChangePointDetector(0.1, 0.5, 5.0, 10, 0.05);
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            detector.update(40.0 + random.nextGaussian());
+        }
+
+        // Act
+        int shift = detector.update(80.0);
+
+        // Assert
+        assertEquals(1, shift);
+        assertEquals(40.0, detector.getLastBaseline(), 1.0);
+        assertTrue(detector.getLastScore() > 5.0);
+    }
+
+    @Test
+    void update_SmallPersistentDrop_SignalsWithinFewSamples() {
+        // Arrange: the deviation floor makes one standard deviation 5 here
+        ChangePointDetector detector = new ChangePointDetector(0.1, 0.5, 5.0, 10, 0.05);
+        for (int i = 0; i < 50; i++) {
+            detector.update(100.0);
+        }
+
+        // Act: a drop of two floor deviations
+        int samples = 0;
+        int shift = 0;
+        while (shift == 0 && samples < 10) {
+            shift = detector.update(90.0);
+            samples++;
+        }
+
+        // Assert
+        assertEquals(-1, shift);
+        assertTrue(samples <= 5, "Signalled after " + samples + " samples");
+    }
+
+    @Test
+    void onPodMetrics_StatefulSetLoadStep_PublishesStatefulSetAnomaly() {
+        // Arrange
+        AnomalyDetector detector = AnomalyDetector.builder().build();
+        List<Anomaly> anomalies = new ArrayList<>();
+        detector.subscribe(anomalies::add);
+        for (int i = 0; i < 20; i++) {
+            detector.onPodMetrics(MetricType.HITS, hits(10.0, 10.0));
+        }
+
+        // Act: both pods double their traffic in the same scrape
+        detector.onPodMetrics(MetricType.HITS, hits(20.0, 20.0));
+
+        // Assert
+        Anomaly statefulSet = anomalies.stream()
+            .filter(anomaly -> anomaly.scope() == Anomaly.Scope.STATEFUL_SET)
+            .findFirst()
+            .orElseThrow();
+        assertEquals("web", statefulSet.name());
+        assertEquals(Anomaly.Direction.UP, statefulSet.direction());
+        assertEquals(40.0, statefulSet.value(), 1e-9);
+        assertEquals(20.0, statefulSet.baseline(), 1e-9);
+        assertEquals(3, anomalies.size());
+    }
+
+    @Test
+    void onPodMetrics_UntrackedMetric_IsIgnored() {
+        // Arrange
+        AnomalyDetector detector = AnomalyDetector.builder().build();
+        List<Anomaly> anomalies = new ArrayList<>();
+        detector.subscribe(anomalies::add);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            detector.onPodMetrics(MetricType.MEMORY, hits(10.0, 10.0));
+        }
+        detector.onPodMetrics(MetricType.MEMORY, hits(500.0, 500.0));
+
+        // Assert
+        assertTrue(anomalies.isEmpty());
+    }
+
+    private static PodMetricBatch hits(double first, double second) {
+        return PodMetricBatch.of(
+            new PodMetric("web-0", first, "1700000000.000"),
+            new PodMetric("web-1", second, "1700000000.000"));
+    }
+}
@@ -18,8 +18,7 @@ under the License.
 */
 package com.metricstracker.client;
 
-import com.metricstracker.model.PodMetric;
-import com.metricstracker.model.NodeMetric;
+import com.metricstracker.service.PodMetricBatch;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterEach;
@@ -27,7 +26,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,13 +72,13 @@ class PrometheusClientTest {
             .addHeader("Content-Type", "application/json"));
 
         // Act
-        List<PodMetric> metrics = client.queryPodMetrics("test_query");
+        PodMetricBatch metrics = client.queryPodMetrics("test_query");
 
         // Assert
         assertEquals(2, metrics.size());
-        assertEquals("test-pod-1", metrics.get(0).podName());
-        assertEquals(0.75, metrics.get(0).value(), 0.001);
-        assertEquals("1641000000", metrics.get(0).timestamp());
+        assertEquals("test-pod-1", metrics.podName(0));
+        assertEquals(0.75, metrics.value(0), 0.001);
+        assertEquals("1641000000", metrics.timestamp(0));
     }
 
     @Test
@@ -101,7 +99,7 @@ class PrometheusClientTest {
             .addHeader("Content-Type", "application/json"));
 
         // Act
-        List<PodMetric> metrics = client.queryPodMetrics("test_query");
+        PodMetricBatch metrics = client.queryPodMetrics("test_query");
 
         // Assert
         assertTrue(metrics.isEmpty());
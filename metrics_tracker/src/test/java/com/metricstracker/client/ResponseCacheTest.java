@@ -0,0 +1,116 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private long now;
+    private ResponseCache cache;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        cache = new ResponseCache(1_000, 4, () -> now);
+        calls = new AtomicInteger();
+    }
+
+    private CompletableFuture<String> call(String response) {
+        calls.incrementAndGet();
+        return CompletableFuture.completedFuture(response);
+    }
+
+    @Test
+    void sharesInFlightCallsAndServesUntilExpiry() {
+        // Arrange
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        // Act
+        CompletableFuture<String> first = cache.get("GetPods", "req", () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = cache.get("GetPods", "req", () -> call("other"));
+        pending.complete("pods");
+        now = 999;
+        CompletableFuture<String> cached = cache.get("GetPods", "req", () -> call("other"));
+        now = 1_000;
+        CompletableFuture<String> expired = cache.get("GetPods", "req", () -> call("fresh"));
+
+        // Assert
+        assertEquals("pods", first.join());
+        assertEquals("pods", second.join());
+        assertEquals("pods", cached.join());
+        assertEquals("fresh", expired.join());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void doesNotCacheFailures() {
+        // Arrange
+        CompletableFuture<String> failed = CompletableFuture.failedFuture(new IllegalStateException("unavailable"));
+
+        // Act
+        CompletableFuture<String> first = cache.get("GetPods", "req", () -> failed);
+        CompletableFuture<String> retried = cache.get("GetPods", "req", () -> call("pods"));
+
+        // Assert
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals("pods", retried.join());
+    }
+
+    @Test
+    void cancellingOneCallerLeavesOthersWaiting() {
+        // Arrange
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.get("GetPods", "req", () -> pending);
+        CompletableFuture<String> second = cache.get("GetPods", "req", () -> call("other"));
+
+        // Act
+        first.cancel(true);
+        pending.complete("pods");
+
+        // Assert
+        assertTrue(first.isCancelled());
+        assertEquals("pods", second.join());
+    }
+
+    @Test
+    void keysByMethodAndRequestAndDropsExpiredEntriesWhenFull() {
+        // Act
+        for (int i = 0; i < 5; i++) {
+            cache.get("GetPods", "req-" + i, () -> call("pods"));
+        }
+        cache.get("GetNodes", "req-0", () -> call("nodes"));
+        now = 2_000;
+        cache.get("GetNodes", "req-1", () -> call("nodes"));
+
+        // Assert
+        assertEquals(7, calls.get());
+        assertEquals(1, cache.size());
+    }
+}
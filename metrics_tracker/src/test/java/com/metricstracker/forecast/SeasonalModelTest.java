@@ -0,0 +1,117 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.PodMetricBatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeasonalModelTest {
+    private static final long STEP_MILLIS = 15_000;
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+
+    @Test
+    void forecast_AfterLearningDailyCycle_AnticipatesRamp() {
+        // Arrange: a week of noisy days, stopping right before the morning ramp
+        SeasonalModel seasonal = new SeasonalModel(SeasonalForecaster.DEFAULT_ALPHA, SeasonalForecaster.DEFAULT_BETA,
+            SeasonalForecaster.DEFAULT_PHI, SeasonalForecaster.DEFAULT_PERIOD, List.of(Season.DAILY));
+        TrendModel trend = new TrendModel(0.9);
+        Random random = new Random(1);
+        long end = 7 * DAY_MILLIS + Duration.ofMinutes(6 * 60 + 55).toMillis();
+        for (long t = 0; t <= end; t += STEP_MILLIS) {
+            double value = daily(t) * (1 + 0.05 * random.nextGaussian());
+            seasonal.update(t, value);
+            trend.update(value);
+        }
+        long target = end + Duration.ofMinutes(35).toMillis();
+
+        // Act
+        double seasonalForecast = seasonal.forecastAt(target);
+        double trendForecast = trend.forecast(140)[139];
+
+        // Assert
+        assertTrue(seasonal.isWarm());
+        assertEquals(daily(target), seasonalForecast, 0.1 * daily(target));
+        assertTrue(Math.abs(seasonalForecast - daily(target)) < Math.abs(trendForecast - daily(target)),
+            "seasonal " + seasonalForecast + " closer than trend " + trendForecast + " to " + daily(target));
+    }
+
+    @Test
+    void update_OutOfOrderOrNonFinite_IsIgnored() {
+        // Arrange
+        SeasonalModel model = new SeasonalModel(0.5, 0.1, 0.9, Duration.ofMinutes(5), SeasonalForecaster.DEFAULT_SEASONS);
+        model.update(30_000, 10.0);
+
+        // Act
+        model.update(15_000, 99.0);
+        model.update(45_000, Double.NaN);
+
+        // Assert
+        assertEquals(1, model.getSamples());
+        assertEquals(30_000, model.getLastMillis());
+        assertFalse(model.isWarm());
+        assertArrayEquals(new double[] {10.0, 10.0}, model.forecast(Duration.ofMinutes(1), 2), 1e-9);
+    }
+
+    @Test
+    void constructor_SeasonBucketNotMultipleOfPeriod_Throws() {
+        Season season = new Season(Duration.ofDays(1), Duration.ofMinutes(5), 0.3);
+        assertThrows(IllegalArgumentException.class,
+            () -> new SeasonalModel(0.1, 0.0, 0.9, Duration.ofMinutes(2), List.of(season)));
+        assertThrows(IllegalStateException.class, () -> SeasonalForecaster.builder().phi(1.0).build());
+    }
+
+    @Test
+    void onPodMetrics_PodsOfWorkload_ForecastsTotal() {
+        // Arrange
+        SeasonalForecaster forecaster = SeasonalForecaster.builder().build();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            String timestamp = String.valueOf(1_700_000_000 + 15 * i);
+            forecaster.onPodMetrics(MetricType.CPU, PodMetricBatch.of(
+                new PodMetric("web-0", 30.0, timestamp),
+                new PodMetric("web-1", 50.0, timestamp)));
+        }
+
+        // Assert
+        SeasonalModel web = forecaster.workloadSeries(MetricType.CPU, "web").orElseThrow();
+        assertEquals(10, web.getSamples());
+        assertEquals(80.0, SeasonalForecaster.forecast(web, Duration.ofMinutes(1), 1)[0], 1e-6);
+        assertEquals(30.0, forecaster.podSeries(MetricType.CPU, "web-0").orElseThrow().forecastAt(1_700_000_150_000L),
+            1e-6);
+        assertTrue(forecaster.sizeInBytes() > 0);
+    }
+
+    // Load of 20 at night and 100 in the day, ramping up from 7:00 to 7:30
+    private static double daily(long millis) {
+        double hour = Math.floorMod(millis, DAY_MILLIS) / 3_600_000.0;
+        if (hour < 7 || hour >= 19) {
+            return 20;
+        }
+        return hour < 7.5 ? 20 + 80 * (hour - 7) / 0.5 : 100;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.PodMetricBatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendForecasterTest {
+    private final TrendForecaster forecaster = new TrendForecaster(1.0, Duration.ofSeconds(15),
+        Clock.fixed(Instant.ofEpochSecond(1_700_000_000), ZoneOffset.UTC));
+
+    @Test
+    void seriesPolledEveryFourthInterval_ForecastsPerInterval() {
+        // Arrange: one percent more every 15s, polled once a minute
+        for (int i = 0; i < 5; i++) {
+            forecaster.onPodMetrics(MetricType.CPU, PodMetricBatch.of(
+                new PodMetric("web-0", 10 + 4 * i, Long.toString(1_700_000_000 + 60L * i))));
+        }
+
+        // Act
+        double[] predictions = TrendForecaster.forecast(forecaster.podSeries(MetricType.CPU, "web-0").get(), 2);
+
+        // Assert
+        assertArrayEquals(new double[] {27.0, 28.0}, predictions, 1e-9);
+    }
+
+    @Test
+    void repeatedSample_IsCountedOnce() {
+        // Arrange
+        PodMetricBatch metrics = PodMetricBatch.of(new PodMetric("web-0", 10, "1700000000"));
+
+        // Act
+        forecaster.onPodMetrics(MetricType.CPU, metrics);
+        forecaster.onPodMetrics(MetricType.CPU, metrics);
+
+        // Assert
+        assertEquals(1, forecaster.podSeries(MetricType.CPU, "web-0").get().getSamples());
+    }
+}
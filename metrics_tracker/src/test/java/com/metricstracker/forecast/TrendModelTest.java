@@ -0,0 +1,109 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.forecast;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendModelTest {
+
+    @Test
+    void forecast_LinearSeriesWithoutDecay_ExtrapolatesExactly() {
+        // Arrange
+        TrendModel model = new TrendModel(1.0);
+        for (int i = 1; i <= 10; i++) {
+            model.update(10.0 + 2.0 * i);
+        }
+
+        // Act
+        double[] predictions = model.forecast(3);
+
+        // Assert
+        assertEquals(10, model.getSamples());
+        assertArrayEquals(new double[] {32.0, 34.0, 36.0}, predictions, 1e-9);
+    }
+
+    @Test
+    void forecast_DecayedFit_FollowsRecentTrend() {
+        // Arrange: flat history followed by a ramp
+        TrendModel model = new TrendModel(0.5);
+        for (int i = 0; i < 50; i++) {
+            model.update(20.0);
+        }
+        for (int i = 1; i <= 30; i++) {
+            model.update(20.0 + 5.0 * i);
+        }
+
+        // Act
+        double[] predictions = model.forecast(1);
+
+        // Assert: the old flat samples have no influence left
+        assertEquals(175.0, predictions[0], 1e-3);
+    }
+
+    @Test
+    void forecast_UnevenlySpacedSamples_ExtrapolatesPerStep() {
+        // Arrange: y = 3t sampled at t = 0, 1, 2, 6 and 14
+        TrendModel model = new TrendModel(1.0);
+        model.update(0.0);
+        model.update(3.0, 1);
+        model.update(6.0, 1);
+        model.update(18.0, 4);
+        model.update(42.0, 8);
+
+        // Act
+        double[] predictions = model.forecast(2);
+
+        // Assert
+        assertArrayEquals(new double[] {45.0, 48.0}, predictions, 1e-9);
+    }
+
+    @Test
+    void forecast_SingleSample_ReturnsLastValue() {
+        // Arrange
+        TrendModel model = new TrendModel(0.9);
+        model.update(42.0);
+
+        // Act
+        double[] predictions = model.forecast(3);
+
+        // Assert
+        assertArrayEquals(new double[] {42.0, 42.0, 42.0}, predictions, 1e-9);
+    }
+
+    @Test
+    void update_NonFiniteValue_IsIgnored() {
+        // Arrange
+        TrendModel model = new TrendModel(0.9);
+        model.update(1.0);
+
+        // Act
+        model.update(Double.NaN);
+
+        // Assert
+        assertEquals(1, model.getSamples());
+    }
+
+    @Test
+    void constructor_InvalidDecay_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new TrendModel(0.0));
+        assertThrows(IllegalArgumentException.class, () -> new TrendModel(1.5));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.history;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.PodMetricBatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarExportTest {
+
+    private static final long NOW = 1_700_000_100_000L;
+
+    @Test
+    void exportPods_Window_WritesDocumentedLayout() throws Exception {
+        // Arrange: two pods scraped every 15s, one of them twice within the last step
+        MetricHistory history = MetricHistory.builder()
+            .clock(Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC))
+            .precisionBits(CompressedSeries.LOSSLESS)
+            .build();
+        history.onPodMetrics(MetricType.CPU, PodMetricBatch.of(
+            new PodMetric("web-0", 1.5, "1700000040"),
+            new PodMetric("web-1", 2.5, "1700000040")));
+        history.onPodMetrics(MetricType.CPU, PodMetricBatch.of(new PodMetric("web-0", 3.0, "1700000070")));
+        history.onPodMetrics(MetricType.CPU, PodMetricBatch.of(new PodMetric("web-0", 4.0, "1700000076")));
+
+        // Act
+        ColumnarExport export = history.exportPods(MetricType.CPU, List.of(), Duration.ofSeconds(60),
+            Duration.ofSeconds(30));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.writeTo(out);
+        ByteBuffer file = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Assert: 60s before now + 1s starts in the 1700000040 step, and the grid ends after now
+        assertEquals(export.totalBytes(), file.capacity());
+        byte[] magic = new byte[8];
+        file.get(magic);
+        assertEquals(ColumnarExport.MAGIC, new String(magic, StandardCharsets.US_ASCII));
+        int series = file.getInt();
+        int rows = file.getInt();
+        assertEquals(2, series);
+        assertEquals(3, rows);
+        assertEquals(1_700_000_040_000L, file.getLong());
+        assertEquals(30_000L, file.getLong());
+        int dictionaryBytes = file.getInt();
+        assertEquals(0, dictionaryBytes % 8);
+        assertEquals(0, file.getInt());
+
+        int[] offsets = {file.getInt(), file.getInt(), file.getInt()};
+        byte[] names = new byte[offsets[2]];
+        file.get(names);
+        String joined = new String(names, StandardCharsets.UTF_8);
+        assertEquals("web-0", joined.substring(offsets[0], offsets[1]));
+        assertEquals("web-1", joined.substring(offsets[1], offsets[2]));
+
+        file.position(ColumnarExport.HEADER_BYTES + dictionaryBytes);
+        assertEquals(1_700_000_040_000L, file.getLong());
+        assertEquals(1_700_000_070_000L, file.getLong());
+        assertEquals(1_700_000_100_000L, file.getLong());
+        assertArrayEquals(new double[] {1.5, 4.0, Double.NaN}, column(file, rows));
+        assertArrayEquals(new double[] {2.5, Double.NaN, Double.NaN}, column(file, rows));
+        assertFalse(file.hasRemaining());
+    }
+
+    @Test
+    void next_SmallChunks_ConcatenateToSameFileWithMissingSeriesAsNaN() throws Exception {
+        // Arrange: a named series that no longer exists still gets a column
+        CompressedSeries samples = new CompressedSeries();
+        for (int i = 0; i < 100; i++) {
+            samples.append(1_000L * i, i);
+        }
+        Map<String, CompressedSeries> series = Map.of("node-a", samples);
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        new ColumnarExport(List.of("node-a", "gone"), series::get, 0, 100_000, 1_000, 1 << 20).writeTo(whole);
+
+        // Act
+        ColumnarExport export = new ColumnarExport(List.of("node-a", "gone"), series::get, 0, 100_000, 1_000, 24);
+        List<byte[]> chunks = new ArrayList<>();
+        while (export.hasNext()) {
+            chunks.add(export.next());
+        }
+
+        // Assert
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            assertTrue(chunk.length == 24 || chunk == chunks.get(chunks.size() - 1));
+            joined.write(chunk);
+        }
+        assertArrayEquals(whole.toByteArray(), joined.toByteArray());
+
+        ByteBuffer file = ByteBuffer.wrap(joined.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        int dictionaryBytes = file.getInt(32);
+        file.position(ColumnarExport.HEADER_BYTES + dictionaryBytes + 8 * 100);
+        double[] first = column(file, 100);
+        double[] missing = column(file, 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, first[i], 0.0);
+            assertTrue(Double.isNaN(missing[i]));
+        }
+    }
+
+    private static double[] column(ByteBuffer file, int rows) {
+        double[] values = new double[rows];
+        file.asDoubleBuffer().get(values);
+        file.position(file.position() + 8 * rows);
+        return values;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedSeriesTest {
+
+    @Test
+    void read_LosslessIrregularSeries_RoundTripsExactly() {
+        // Arrange: jittered scrapes, long gaps and special values across several blocks
+        CompressedSeries series = new CompressedSeries(50, CompressedSeries.LOSSLESS);
+        Random random = new Random(3);
+        List<Long> timestamps = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < 500; i++) {
+            time += i % 97 == 0 ? 86_400_000L * 40 : 15_000 + random.nextInt(3000) - 1500;
+            double value = switch (i % 7) {
+                case 0 -> 42.0;
+                case 1 -> -random.nextDouble() * 1e6;
+                case 2 -> Double.NaN;
+                default -> random.nextGaussian();
+            };
+            timestamps.add(time);
+            values.add(value);
+            series.append(time, value);
+        }
+
+        // Act
+        List<Long> readTimestamps = new ArrayList<>();
+        List<Double> readValues = new ArrayList<>();
+        int read = series.read(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> {
+            readTimestamps.add(timestamp);
+            readValues.add(value);
+        });
+
+        // Assert
+        assertEquals(500, read);
+        assertEquals(500, series.size());
+        assertEquals(timestamps, readTimestamps);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(Double.doubleToRawLongBits(values.get(i)), Double.doubleToRawLongBits(readValues.get(i)));
+        }
+    }
+
+    @Test
+    void cursor_Range_ReturnsOnlySamplesInsideAcrossBlocks() {
+        // Arrange
+        CompressedSeries series = new CompressedSeries(10, CompressedSeries.LOSSLESS);
+        for (int i = 0; i < 100; i++) {
+            series.append(i * 1000L, i);
+        }
+
+        // Act
+        CompressedSeries.Cursor cursor = series.cursor(25_000, 43_000);
+        List<Double> values = new ArrayList<>();
+        while (cursor.next()) {
+            values.add(cursor.value());
+        }
+
+        // Assert
+        assertEquals(18, values.size());
+        assertEquals(25.0, values.get(0));
+        assertEquals(42.0, values.get(17));
+    }
+
+    @Test
+    void append_OutOfOrderSample_IsIgnored() {
+        // Arrange
+        CompressedSeries series = new CompressedSeries();
+        series.append(2000, 1.0);
+
+        // Act
+        boolean appended = series.append(1000, 2.0);
+
+        // Assert
+        assertFalse(appended);
+        assertEquals(1, series.size());
+        assertEquals(2000, series.lastTimestamp());
+    }
+
+    @Test
+    void dropBefore_ExpiredBlocks_AreRemovedWhole() {
+        // Arrange
+        CompressedSeries series = new CompressedSeries(10, CompressedSeries.LOSSLESS);
+        for (int i = 0; i < 35; i++) {
+            series.append(i * 1000L, i);
+        }
+
+        // Act: the first block ends at 9s and the second at 19s
+        series.dropBefore(15_000);
+
+        // Assert
+        assertEquals(25, series.size());
+        List<Long> timestamps = new ArrayList<>();
+        series.read(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> timestamps.add(timestamp));
+        assertEquals(10_000L, (long) timestamps.get(0));
+    }
+
+    @Test
+    void append_ReducedPrecision_StaysWithinRelativeErrorAndShrinks() {
+        // Arrange
+        CompressedSeries lossless = new CompressedSeries(120, CompressedSeries.LOSSLESS);
+        CompressedSeries rounded = new CompressedSeries(120, 16);
+        Random random = new Random(11);
+        double[] values = new double[1200];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 40 + random.nextGaussian() * 5;
+            lossless.append(i * 15_000L, values[i]);
+            rounded.append(i * 15_000L, values[i]);
+        }
+
+        // Act
+        double[] maxError = {0};
+        int[] index = {0};
+        rounded.read(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> {
+            double original = values[index[0]++];
+            maxError[0] = Math.max(maxError[0], Math.abs(value - original) / original);
+        });
+
+        // Assert
+        assertTrue(maxError[0] <= Math.pow(2, -17), "Relative error " + maxError[0]);
+        assertTrue(rounded.sizeInBytes() * 2 < lossless.sizeInBytes());
+        assertTrue(lossless.sizeInBytes() < 16L * values.length);
+    }
+}
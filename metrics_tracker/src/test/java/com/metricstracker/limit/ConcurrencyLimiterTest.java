@@ -0,0 +1,119 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.limit;
+
+import com.metricstracker.model.CallPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    void tryAcquire_Saturated_ShedsDashboardBeforeReconcile() {
+        // Arrange
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(20).build();
+
+        // Act
+        int dashboard = acquireAll(limiter, CallPriority.DASHBOARD).size();
+        int normal = acquireAll(limiter, CallPriority.DEFAULT).size();
+        int reconcile = acquireAll(limiter, CallPriority.RECONCILE).size();
+
+        // Assert: each class only fills its share, the rest stays for reconcile calls
+        assertEquals(10, dashboard);
+        assertEquals(6, normal);
+        assertEquals(4, reconcile);
+        assertEquals(20, limiter.inFlight());
+        assertEquals(3, limiter.rejected());
+    }
+
+    @Test
+    void release_DependencySlowsDown_ShrinksLimitThenRecovers() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+            .initialLimit(20)
+            .nanoTime(now::get)
+            .build();
+
+        // Act: calls ten times slower for a while
+        run(limiter, now, 2_000, 10);
+        int healthy = limiter.limit();
+        run(limiter, now, 2_000, 100);
+        int overloaded = limiter.limit();
+        long retryAfter = limiter.retryAfterMillis();
+        run(limiter, now, 2_000, 10);
+        int recovered = limiter.limit();
+
+        // Assert
+        assertTrue(healthy > 20, "limit grows while latency is stable: " + healthy);
+        assertTrue(overloaded < healthy / 2, "limit shrinks when calls slow down: " + overloaded);
+        assertEquals(100, retryAfter);
+        assertTrue(recovered > overloaded, "limit recovers: " + recovered);
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void release_Twice_CountsOnce() {
+        // Arrange
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().build();
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire(CallPriority.DEFAULT).orElseThrow();
+
+        // Act
+        permit.release();
+        permit.release();
+
+        // Assert
+        assertEquals(0, limiter.inFlight());
+    }
+
+    private static List<ConcurrencyLimiter.Permit> acquireAll(ConcurrencyLimiter limiter, CallPriority priority) {
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        Optional<ConcurrencyLimiter.Permit> permit;
+        while ((permit = limiter.tryAcquire(priority)).isPresent()) {
+            permits.add(permit.get());
+        }
+        return permits;
+    }
+
+    // Unbounded demand: every millisecond finished calls are released and free slots refilled
+    private static void run(ConcurrencyLimiter limiter, AtomicLong now, int millis, long latencyMillis) {
+        Deque<long[]> started = new ArrayDeque<>();
+        Deque<ConcurrencyLimiter.Permit> permits = new ArrayDeque<>();
+        for (int tick = 0; tick < millis; tick++) {
+            while (!started.isEmpty() && started.peek()[0] + latencyMillis * 1_000_000L <= now.get()) {
+                started.poll();
+                permits.poll().release();
+            }
+            for (ConcurrencyLimiter.Permit permit : acquireAll(limiter, CallPriority.RECONCILE)) {
+                started.add(new long[] {now.get()});
+                permits.add(permit);
+            }
+            now.addAndGet(1_000_000L);
+        }
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    @Test
+    void quantiles_OfOneToThousand() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        // Act
+        long p50 = histogram.quantile(0.5);
+        long p99 = histogram.quantile(0.99);
+        long p999 = histogram.quantile(0.999);
+
+        // Assert: above 512 buckets are 8 wide and report their lower bound
+        assertEquals(500, p50);
+        assertEquals(984, p99);
+        assertEquals(992, p999);
+        assertEquals(1000, histogram.max());
+        assertEquals(1000, histogram.count());
+        assertEquals(500.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    void smallValues_CountedExactly() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 64; value++) {
+            histogram.record(value);
+        }
+
+        // Act & Assert
+        assertEquals(31, histogram.quantile(0.5));
+        assertEquals(63, histogram.quantile(0.99));
+        assertEquals(0, histogram.quantile(0));
+    }
+
+    @Test
+    void quantiles_WithinRelativeErrorOfExactOnes() {
+        // Arrange: log-normal latencies in nanoseconds, around a millisecond
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(14 + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double quantile : new double[] {0.5, 0.99, 0.999}) {
+            // Act
+            long reported = histogram.quantile(quantile);
+
+            // Assert
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            assertTrue(reported <= exact, "quantile " + quantile);
+            assertTrue(exact - reported <= exact / 64, "quantile " + quantile);
+        }
+    }
+
+    @Test
+    void buckets_CoverEveryLong() {
+        // Arrange
+        long[] values = {64, 127, 128, 1_000_000, Long.MAX_VALUE};
+
+        for (long value : values) {
+            // Act
+            long lowerBound = LatencyHistogram.lowerBound(LatencyHistogram.indexOf(value));
+
+            // Assert
+            assertTrue(lowerBound <= value && value - lowerBound <= value / 64, "value " + value);
+        }
+    }
+
+    @Test
+    void emptyAndNegative() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act
+        long empty = histogram.quantile(0.99);
+        histogram.record(-5);
+
+        // Assert
+        assertEquals(0, empty);
+        assertEquals(0, histogram.quantile(0.99));
+        assertEquals(1, histogram.count());
+    }
+}
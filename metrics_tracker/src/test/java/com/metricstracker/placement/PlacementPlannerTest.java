@@ -0,0 +1,182 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.placement;
+
+import com.metricstracker.service.HistogramBucketSink;
+import com.metricstracker.service.MetricsService;
+import com.metricstracker.service.NodeMetricBatch;
+import com.metricstracker.service.PodMetricBatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlacementPlannerTest {
+    private static final double GIB = 1024.0 * 1024 * 1024;
+
+    @Test
+    void pack_SameItem_FirstFitTakesFirstNodeAndBestFitTakesTightest() {
+        // Arrange
+        double[] cpu = {3.0};
+        double[] memory = {1.0};
+        int[] replicas = {1};
+
+        // Act
+        List<Integer> firstFit = new ArrayList<>();
+        new BinPacker(new double[] {5, 3, 4}, new double[] {10, 10, 10}, new boolean[] {true, true, true})
+            .pack(BinPacker.Strategy.FIRST_FIT_DECREASING, cpu, memory, replicas, (group, node, count) -> firstFit.add(node));
+        List<Integer> bestFit = new ArrayList<>();
+        new BinPacker(new double[] {5, 3, 4}, new double[] {10, 10, 10}, new boolean[] {true, true, true})
+            .pack(BinPacker.Strategy.BEST_FIT_DECREASING, cpu, memory, replicas, (group, node, count) -> bestFit.add(node));
+
+        // Assert
+        assertEquals(List.of(0), firstFit);
+        assertEquals(List.of(1), bestFit);
+    }
+
+    @Test
+    void pack_BothDimensions_SkipsNodesShortOnEither() {
+        // Arrange: node 0 lacks memory, node 1 lacks CPU
+        BinPacker packer = new BinPacker(new double[] {8, 1, 8}, new double[] {1, 8, 8}, new boolean[] {true, true, true});
+        List<int[]> placements = new ArrayList<>();
+
+        // Act
+        int[] unplaced = packer.pack(BinPacker.Strategy.FIRST_FIT_DECREASING,
+            new double[] {2}, new double[] {2}, new int[] {5}, (group, node, count) -> placements.add(new int[] {node, count}));
+
+        // Assert: four replicas fit on node 2, the fifth fits nowhere
+        assertEquals(1, placements.size());
+        assertArrayEquals(new int[] {2, 4}, placements.get(0));
+        assertArrayEquals(new int[] {1}, unplaced);
+    }
+
+    @Test
+    void plan_LightlyLoadedNodes_ConsolidatesAndDrainsOne() {
+        // Arrange: n1 runs 2000m of other workloads, n2 and n3 only run a web replica each;
+        // node CPU is reported in percent of one core
+        PlacementPlanner planner = new PlacementPlanner(
+            nodeMetrics(Map.of("n1", 200.0, "n2", 100.0, "n3", 100.0), Map.of("n1", 10.0, "n2", 10.0, "n3", 10.0)), 60);
+        List<NodeCapacity> nodes = List.of(
+            new NodeCapacity("n1", 4000, 8 * GIB),
+            new NodeCapacity("n2", 4000, 8 * GIB),
+            new NodeCapacity("n3", 4000, 8 * GIB));
+        List<PodGroup> groups = List.of(new PodGroup("web", 2, 1000, GIB, List.of("n2", "n3")));
+
+        // Act
+        PlacementPlan plan = planner.plan(nodes, groups, BinPacker.Strategy.FIRST_FIT_DECREASING, 90, 10);
+
+        // Assert
+        assertEquals(Map.of("web", 1), plan.nodes().get(0).placements());
+        assertEquals(Map.of("web", 1), plan.nodes().get(1).placements());
+        assertEquals(List.of("n3"), plan.drainableNodes());
+        assertEquals(1, plan.migrations());
+        assertTrue(plan.unplaced().isEmpty());
+        assertEquals(75.0, plan.nodes().get(0).cpuUtilization(), 1e-9);
+    }
+
+    @Test
+    void plan_MultiCoreNode_CpuReadAsCoresNotShareOfNode() {
+        // Arrange: 8 of the 16 cores of n1 are busy, n2 uses 200m of 4 cores
+        PlacementPlanner planner = new PlacementPlanner(
+            nodeMetrics(Map.of("n1", 800.0, "n2", 20.0), Map.of("n1", 10.0, "n2", 5.0)), 60);
+        List<NodeCapacity> nodes = List.of(
+            new NodeCapacity("n1", 16000, 64 * GIB),
+            new NodeCapacity("n2", 4000, 8 * GIB));
+        List<PodGroup> groups = List.of(new PodGroup("web", 2, 1000, GIB, List.of()));
+
+        // Act
+        PlacementPlan plan = planner.plan(nodes, groups, BinPacker.Strategy.FIRST_FIT_DECREASING, 90, 10);
+
+        // Assert
+        assertEquals(Map.of("web", 2), plan.nodes().get(0).placements());
+        assertEquals(List.of("n2"), plan.drainableNodes());
+        assertEquals(62.5, plan.nodes().get(0).cpuUtilization(), 1e-9);
+    }
+
+    @Test
+    void plan_ReplicaLargerThanAnyNode_ReportsUnplaced() {
+        // Arrange
+        PlacementPlanner planner = new PlacementPlanner(nodeMetrics(Map.of(), Map.of()), 60);
+        List<NodeCapacity> nodes = List.of(new NodeCapacity("n1", 4000, 8 * GIB));
+        List<PodGroup> groups = List.of(
+            new PodGroup("big", 1, 8000, GIB, List.of()),
+            new PodGroup("small", 2, 500, GIB, List.of()));
+
+        // Act
+        PlacementPlan plan = planner.plan(nodes, groups, BinPacker.Strategy.BEST_FIT_DECREASING, 90, 10);
+
+        // Assert
+        assertEquals(Map.of("big", 1), plan.unplaced());
+        assertEquals(Map.of("small", 2), plan.nodes().get(0).placements());
+        assertFalse(plan.nodes().get(0).drainable());
+    }
+
+    @Test
+    void plan_DuplicateNode_IsRejected() {
+        // Arrange
+        PlacementPlanner planner = new PlacementPlanner(nodeMetrics(Map.of(), Map.of()), 60);
+        List<NodeCapacity> nodes = List.of(new NodeCapacity("n1", 4000, GIB), new NodeCapacity("n1", 4000, GIB));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+            () -> planner.plan(nodes, List.of(), BinPacker.Strategy.FIRST_FIT_DECREASING, 90, 10));
+    }
+
+    private static MetricsService nodeMetrics(Map<String, Double> cpu, Map<String, Double> memory) {
+        return new MetricsService() {
+            @Override
+            public PodMetricBatch getPodsCPUUtilization(int seconds) {
+                return new PodMetricBatch();
+            }
+
+            @Override
+            public PodMetricBatch getPodsMemoryUtilization(int seconds) {
+                return new PodMetricBatch();
+            }
+
+            @Override
+            public PodMetricBatch getPodsHitsUtilization(int seconds) {
+                return new PodMetricBatch();
+            }
+
+            @Override
+            public NodeMetricBatch getNodesCPUUtilization(int seconds) {
+                return toMetrics(cpu);
+            }
+
+            @Override
+            public NodeMetricBatch getNodesMemoryUtilization(int seconds) {
+                return toMetrics(memory);
+            }
+
+            @Override
+            public void streamPodsLatencyBuckets(int seconds, String podPattern, HistogramBucketSink sink) {
+            }
+        };
+    }
+
+    private static NodeMetricBatch toMetrics(Map<String, Double> values) {
+        NodeMetricBatch metrics = new NodeMetricBatch();
+        values.forEach((node, value) -> metrics.add(node, value, "1700000000.000"));
+        return metrics;
+    }
+}
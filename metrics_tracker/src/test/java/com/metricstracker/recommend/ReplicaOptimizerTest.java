@@ -0,0 +1,85 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.recommend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaOptimizerTest {
+    private final ReplicaOptimizer optimizer = new ReplicaOptimizer();
+
+    @Test
+    void optimize_MatchesSolverObjective() {
+        // Arrange: the scaling controller's optimizer is checked against the same values,
+        // the minimum of Solver.jl's calculate_objective over [min, max]
+        double[] cpu = {90, 30, 95, 50};
+        double[] memory = {80, 20, 40, 50};
+        int[] current = {2, 6, 4, 3};
+        int[] min = {1, 2, 1, 5};
+        int[] max = {10, 10, 20, 8};
+        double[] targetCpu = {70, 60, 70, 70};
+        double[] targetMemory = {70, 50, 80, 70};
+        int[] suggested = new int[4];
+        double[] expectedCpu = new double[4];
+        double[] expectedMemory = new double[4];
+
+        // Act
+        optimizer.optimize(4, cpu, memory, current, min, max, targetCpu, targetMemory,
+            suggested, expectedCpu, expectedMemory);
+
+        // Assert: the last service is clamped to its minimum
+        assertArrayEquals(new int[] {3, 3, 5, 5}, suggested);
+        assertEquals(60.0, expectedCpu[0], 1e-9);
+        assertEquals(160.0 / 3, expectedMemory[0], 1e-9);
+        assertEquals(76.0, expectedCpu[2], 1e-9);
+        assertEquals(30.0, expectedMemory[3], 1e-9);
+    }
+
+    @Test
+    void ties_ResolveToFewestReplicas() {
+        // Arrange: without a penalty every count putting utilization between the
+        // two targets scores the same
+        ReplicaOptimizer unpenalized = new ReplicaOptimizer(0);
+        int[] suggested = new int[1];
+
+        // Act
+        unpenalized.optimize(1, new double[] {120}, new double[] {120}, new int[] {1}, new int[] {1},
+            new int[] {10}, new double[] {60}, new double[] {20}, suggested, new double[1], new double[1]);
+
+        // Assert
+        assertEquals(2, suggested[0]);
+    }
+
+    @Test
+    void invalidEntry_FailsTheBatchBeforeAnyOutput() {
+        // Arrange
+        int[] suggested = new int[2];
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> optimizer.optimize(2,
+            new double[] {90, 90}, new double[] {80, 80}, new int[] {2, 2}, new int[] {1, 1},
+            new int[] {10, 10}, new double[] {70, 150}, new double[] {70, 70},
+            suggested, new double[2], new double[2]));
+
+        // Assert
+        assertEquals(0, suggested[0]);
+        assertThrows(IllegalArgumentException.class, () -> new ReplicaOptimizer(-1));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.recommend;
+
+import com.metricstracker.service.HistogramBucketSink;
+import com.metricstracker.service.MetricsService;
+import com.metricstracker.service.NodeMetricBatch;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRecommenderTest {
+    private static final double MB = 1024 * 1024;
+    private static final String NOW = "1700000000.000";
+
+    private final PodMetricBatch cpu = new PodMetricBatch();
+    private final PodMetricBatch memory = new PodMetricBatch();
+    private final ReplicaRecommender recommender = new ReplicaRecommender(metrics(), null,
+        WorkloadResolver.byNamePrefix(), new ReplicaOptimizer(), 60);
+
+    @Test
+    void recommend_AveragesPodsPerStatefulSetAsPercentageOfRequests() {
+        // Arrange: web pods use 0.45 and 0.55 of a core against 500m, and 256 MB of 512 MB
+        cpu.add("web-0", 45, NOW);
+        cpu.add("web-1", 55, NOW);
+        cpu.add("other-0", 900, NOW);
+        memory.add("web-0", 200, NOW);
+        memory.add("web-1", 312, NOW);
+        memory.add("other-0", 900, NOW);
+        ServiceTarget web = new ServiceTarget("web", "web", 2, 1, 10, 70, 70, 500, 512 * MB);
+
+        // Act
+        List<Recommendation> recommendations = recommender.recommend(List.of(web));
+
+        // Assert: 200% CPU and 100% memory in total, best spread over 3 replicas
+        Recommendation recommendation = recommendations.get(0);
+        assertEquals(2, recommendation.observedPods());
+        assertEquals(3, recommendation.suggestedReplicas());
+        assertEquals(200.0 / 3, recommendation.predictedCpu(), 1e-9);
+        assertEquals(100.0 / 3, recommendation.predictedMemory(), 1e-9);
+    }
+
+    @Test
+    void withoutRequests_UsesRawPercentageAndMegabytes() {
+        // Arrange
+        cpu.add("api-0", 90, NOW);
+        memory.add("api-0", 80, NOW);
+        ServiceTarget api = new ServiceTarget("api", "api", 2, 1, 10, 70, 70, 0, 0);
+
+        // Act
+        Recommendation recommendation = recommender.recommend(List.of(api)).get(0);
+
+        // Assert: same as the solver with 90% CPU and 80% memory on 2 replicas
+        assertEquals(3, recommendation.suggestedReplicas());
+        assertEquals(60.0, recommendation.predictedCpu(), 1e-9);
+    }
+
+    @Test
+    void withoutMetrics_KeepsCurrentReplicasWithinBounds() {
+        // Arrange
+        ServiceTarget db = new ServiceTarget("db", "db", 4, 1, 3, 70, 70, 0, 0);
+        ServiceTarget cache = new ServiceTarget("cache", "cache", 0, 2, 5, 70, 70, 0, 0);
+
+        // Act
+        List<Recommendation> recommendations = recommender.recommend(List.of(db, cache));
+
+        // Assert
+        assertEquals(3, recommendations.get(0).suggestedReplicas());
+        assertEquals(0, recommendations.get(0).observedPods());
+        assertEquals(2, recommendations.get(1).suggestedReplicas());
+    }
+
+    private MetricsService metrics() {
+        return new MetricsService() {
+            @Override
+            public PodMetricBatch getPodsCPUUtilization(int seconds) {
+                return cpu;
+            }
+
+            @Override
+            public PodMetricBatch getPodsMemoryUtilization(int seconds) {
+                return memory;
+            }
+
+            @Override
+            public PodMetricBatch getPodsHitsUtilization(int seconds) {
+                return new PodMetricBatch();
+            }
+
+            @Override
+            public NodeMetricBatch getNodesCPUUtilization(int seconds) {
+                return new NodeMetricBatch();
+            }
+
+            @Override
+            public NodeMetricBatch getNodesMemoryUtilization(int seconds) {
+                return new NodeMetricBatch();
+            }
+
+            @Override
+            public void streamPodsLatencyBuckets(int seconds, String podPattern, HistogramBucketSink sink) {
+            }
+        };
+    }
+}
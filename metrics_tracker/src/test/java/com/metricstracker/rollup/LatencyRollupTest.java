@@ -0,0 +1,96 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.rollup;
+
+import com.metricstracker.service.WorkloadResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyRollupTest {
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.995};
+
+    @Test
+    void podQuantiles_MatchHistogramQuantile() {
+        // Arrange: buckets arrive in any order, as in a Prometheus response
+        LatencyRollup rollup = new LatencyRollup(WorkloadResolver.byNamePrefix());
+        bucket(rollup, "web-0", 0.5, 95);
+        bucket(rollup, "web-0", INF, 100);
+        bucket(rollup, "web-0", 0.1, 50);
+        bucket(rollup, "web-0", 1, 99);
+        bucket(rollup, "web-0", 0.25, 80);
+
+        // Act
+        List<LatencyQuantiles> pods = rollup.pods(QUANTILES, Set.of());
+
+        // Assert
+        assertEquals(1, pods.size());
+        LatencyQuantiles web = pods.get(0);
+        assertEquals(0.1, web.values()[0], 1e-9);
+        assertEquals(0.25 + 0.25 * 10 / 15, web.values()[1], 1e-9);
+        assertEquals(1.0, web.values()[2], 1e-9);
+        assertEquals(1.0, web.values()[3], 1e-9); // Rank in the +Inf bucket: largest finite bound
+        assertEquals(100, web.requestsPerSecond(), 1e-9);
+        assertEquals("1700000000", web.timestamp());
+    }
+
+    @Test
+    void workloadQuantiles_MergeBucketsOfTheirPods() {
+        // Arrange
+        LatencyRollup rollup = new LatencyRollup(WorkloadResolver.byNamePrefix());
+        double[] bounds = {0.1, 0.25, 0.5, 1, INF};
+        double[] fast = {50, 80, 95, 99, 100};
+        double[] slow = {0, 10, 20, 60, 100};
+        for (int i = 0; i < bounds.length; i++) {
+            bucket(rollup, "web-0", bounds[i], fast[i]);
+            bucket(rollup, "web-1", bounds[i], slow[i]);
+            bucket(rollup, "db-0", bounds[i], 0);
+        }
+
+        // Act
+        List<LatencyQuantiles> workloads = rollup.workloads(new double[] {0.5}, Set.of());
+        List<LatencyQuantiles> pods = rollup.pods(new double[] {0.5}, Set.of("web-1"));
+
+        // Assert
+        assertEquals(List.of("db", "web"), workloads.stream().map(LatencyQuantiles::name).toList());
+        assertTrue(Double.isNaN(workloads.get(0).values()[0]));
+        LatencyQuantiles web = workloads.get(1);
+        assertEquals(2, web.pods());
+        assertEquals(200, web.requestsPerSecond(), 1e-9);
+        assertEquals(0.25 + 0.25 * 10 / 25, web.values()[0], 1e-9);
+        assertEquals(0.5 + 0.5 * 30 / 40, pods.get(0).values()[0], 1e-9);
+    }
+
+    @Test
+    void quantile_WithoutInfBucket_IsNaN() {
+        // Act
+        double quantile = LatencyRollup.quantile(0.5, new double[] {0.1, 1}, new double[] {5, 10}, 2);
+
+        // Assert
+        assertTrue(Double.isNaN(quantile));
+    }
+
+    private static void bucket(LatencyRollup rollup, String pod, double upperBound, double value) {
+        rollup.accept(pod, upperBound, value, "1700000000");
+    }
+}
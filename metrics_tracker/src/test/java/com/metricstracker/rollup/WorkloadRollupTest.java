@@ -0,0 +1,117 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.rollup;
+
+import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.PodMetricBatch;
+import com.metricstracker.service.WorkloadIndex;
+import com.metricstracker.service.WorkloadResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadRollupTest {
+
+    @Test
+    void aggregatesPodsOfEachStatefulSet() {
+        // Arrange
+        WorkloadRollup rollup = new WorkloadRollup(WorkloadResolver.byNamePrefix());
+        PodMetricBatch metrics = PodMetricBatch.of(
+            new PodMetric("web-0", 20, "1700000000.5"),
+            new PodMetric("web-1", 60, "1700000001"),
+            new PodMetric("db-0", 35, "1700000000"),
+            new PodMetric("debug", 5, "1700000000"));
+
+        // Act
+        List<WorkloadAggregate> aggregates = rollup.rollup(metrics, Set.of());
+
+        // Assert
+        assertEquals(List.of("db", "debug", "web"), aggregates.stream().map(WorkloadAggregate::name).toList());
+        WorkloadAggregate web = aggregates.get(2);
+        assertEquals(2, web.pods());
+        assertEquals(80.0, web.sum(), 1e-9);
+        assertEquals(40.0, web.mean(), 1e-9);
+        assertEquals(60.0, web.max(), 1e-9);
+        assertEquals("1700000001", web.timestamp());
+        assertEquals(OptionalInt.empty(), web.readyPods());
+    }
+
+    @Test
+    void resolvesOwnersAndReadinessFromTheIndex() {
+        // Arrange
+        WorkloadIndex index = new WorkloadIndex();
+        index.put("api-7d9f8c-x2kq", "api", true);
+        index.put("api-7d9f8c-p9zt", "api", false);
+        index.put("web-0", "web", true);
+        WorkloadRollup rollup = new WorkloadRollup(index);
+        PodMetricBatch metrics = PodMetricBatch.of(
+            new PodMetric("api-7d9f8c-x2kq", 10, "1700000000"),
+            new PodMetric("api-7d9f8c-p9zt", 30, "1700000000"),
+            new PodMetric("web-0", 50, "1700000000"));
+
+        // Act
+        index.put("api-7d9f8c-p9zt", "api", true);
+        List<WorkloadAggregate> aggregates = rollup.rollup(metrics, Set.of("api"));
+
+        // Assert
+        assertEquals(1, aggregates.size());
+        assertEquals("api", aggregates.get(0).name());
+        assertEquals(2, aggregates.get(0).pods());
+        assertEquals(OptionalInt.of(2), aggregates.get(0).readyPods());
+        assertEquals(20.0, aggregates.get(0).mean(), 1e-9);
+    }
+
+    @Test
+    void indexForgetsDeletedPods() {
+        // Arrange
+        WorkloadIndex index = new WorkloadIndex();
+        index.put("web-0", "web", true);
+        index.put("web-1", "web", false);
+
+        // Act
+        index.remove("web-0", "web");
+        index.remove("web-1", "web");
+
+        // Assert
+        assertEquals(0, index.podCount("web"));
+        assertEquals(OptionalInt.empty(), index.readyPods("web"));
+        assertEquals("web", index.workloadOf("web-0"));
+        assertEquals("api-7d9f8c-x2kq", index.workloadOf("api-7d9f8c-x2kq"));
+    }
+
+    @Test
+    void indexKeepsAPodReplacedUnderTheSameName() {
+        // Arrange
+        WorkloadIndex index = new WorkloadIndex();
+        index.put("cache-0", "old-cache", true);
+        index.put("cache-0", "cache", true);
+
+        // Act
+        index.remove("cache-0", "old-cache");
+
+        // Assert
+        assertEquals("cache", index.workloadOf("cache-0"));
+        assertEquals(1, index.podCount("cache"));
+        assertEquals(0, index.podCount("old-cache"));
+    }
+}
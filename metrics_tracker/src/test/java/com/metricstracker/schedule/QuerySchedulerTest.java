@@ -0,0 +1,150 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.schedule;
+
+import com.metricstracker.model.CallPriority;
+import com.metricstracker.model.QueryCaller;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuerySchedulerTest {
+    private static final ThreadLocal<QueryCaller> CALLER = ThreadLocal.withInitial(() -> QueryCaller.BACKGROUND);
+
+    @Test
+    void call_SlotsTaken_AdmitsByPriorityThenFairShare() throws Exception {
+        // Arrange: one slot, held until every query below is queued
+        QueryScheduler scheduler = QueryScheduler.builder()
+            .maxInFlight(1)
+            .callers(CALLER::get)
+            .build();
+        CountDownLatch hold = new CountDownLatch(1);
+        Thread holder = submit(scheduler, "holder", CallPriority.DASHBOARD, 1, null, () -> await(hold));
+        waitFor(() -> scheduler.inFlight() == 1);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> queued = new ArrayList<>();
+        // A heavy caller queues three wide-window queries before a light caller queues three instant ones
+        for (int i = 1; i <= 3; i++) {
+            queued.add(submit(scheduler, "heavy", CallPriority.DEFAULT, QueryScheduler.costOfWindow(135), order, null));
+        }
+        for (int i = 1; i <= 3; i++) {
+            queued.add(submit(scheduler, "light", CallPriority.DEFAULT, QueryScheduler.costOfWindow(0), order, null));
+        }
+        queued.add(submit(scheduler, "dashboard", CallPriority.DASHBOARD, 1, order, null));
+        queued.add(submit(scheduler, "controller", CallPriority.RECONCILE, 1, order, null));
+
+        // Act
+        hold.countDown();
+        holder.join();
+        for (Thread thread : queued) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(List.of("controller", "heavy", "light", "light", "light", "heavy", "heavy", "dashboard"), order);
+        QueryScheduler.ClassStats normal = scheduler.stats().get(CallPriority.DEFAULT.ordinal());
+        assertEquals(6, normal.queries());
+        assertEquals(0, normal.queued());
+        assertTrue(normal.maxWaitNanos() > 0);
+        assertEquals(0, scheduler.inFlight());
+    }
+
+    @Test
+    void call_WaitsTooLong_Rejected() throws Exception {
+        // Arrange
+        QueryScheduler scheduler = QueryScheduler.builder()
+            .maxInFlight(1)
+            .maxWait(Duration.ofMillis(50))
+            .callers(CALLER::get)
+            .build();
+        CountDownLatch hold = new CountDownLatch(1);
+        Thread holder = submit(scheduler, "holder", CallPriority.DEFAULT, 1, null, () -> await(hold));
+        waitFor(() -> scheduler.inFlight() == 1);
+
+        // Act
+        CALLER.set(new QueryCaller("dashboard", CallPriority.DASHBOARD));
+        QueryScheduler.QueryRejectedException rejected = assertThrows(QueryScheduler.QueryRejectedException.class,
+            () -> scheduler.call(1, () -> "never run"));
+        hold.countDown();
+        holder.join();
+
+        // Assert
+        assertTrue(rejected.getMessage().contains("dashboard"));
+        QueryScheduler.ClassStats dashboard = scheduler.stats().get(CallPriority.DASHBOARD.ordinal());
+        assertEquals(1, dashboard.rejected());
+        assertEquals(0, dashboard.queries());
+        assertEquals(0, dashboard.queued());
+        assertEquals("done", scheduler.call(1, () -> "done"));
+    }
+
+    @Test
+    void builder_NoSlots_Throws() {
+        assertThrows(IllegalStateException.class, () -> QueryScheduler.builder().maxInFlight(0).build());
+        assertThrows(IllegalStateException.class, () -> QueryScheduler.builder().weight("heavy", 0).build());
+    }
+
+    // Submits a query from a new thread and waits until it runs or is queued
+    private static Thread submit(QueryScheduler scheduler, String caller, CallPriority priority, double cost,
+            List<String> order, Runnable query) throws InterruptedException {
+        int queued = queued(scheduler);
+        int inFlight = scheduler.inFlight();
+        Thread thread = new Thread(() -> {
+            CALLER.set(new QueryCaller(caller, priority));
+            scheduler.run(cost, () -> {
+                if (order != null) {
+                    order.add(caller);
+                }
+                if (query != null) {
+                    query.run();
+                }
+            });
+        });
+        thread.start();
+        waitFor(() -> queued(scheduler) > queued || scheduler.inFlight() > inFlight);
+        return thread;
+    }
+
+    private static int queued(QueryScheduler scheduler) {
+        return scheduler.stats().stream().mapToInt(QueryScheduler.ClassStats::queued).sum();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
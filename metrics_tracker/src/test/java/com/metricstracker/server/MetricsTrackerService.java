@@ -20,6 +20,7 @@ package com.metricstracker.server;
 
 import com.metricstracker.proto.*;
 import com.metricstracker.service.MetricsService;
+import com.metricstracker.service.PodMetricBatch;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.testing.GrpcCleanupRule;
@@ -29,8 +30,6 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
-import java.util.Arrays;
-
 import static org.mockito.Mockito.when;
 import static org.junit.Assert.assertEquals;
 
@@ -63,10 +62,9 @@ public class MetricsTrackerServiceTest {
                     .directExecutor()
                     .build()));
 
-        var podMetrics = Arrays.asList(
-            new PodMetric("pod1", 0.5, "2024-01-01T00:00:00Z"),
-            new PodMetric("pod2", 0.7, "2024-01-01T00:00:00Z")
-        );
+        var podMetrics = new PodMetricBatch();
+        podMetrics.add("pod1", 0.5, "2024-01-01T00:00:00Z");
+        podMetrics.add("pod2", 0.7, "2024-01-01T00:00:00Z");
         when(metricsService.getPodsCPUUtilization(30)).thenReturn(podMetrics);
 
         // Act
@@ -0,0 +1,214 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.model.NodeMetric;
+import com.metricstracker.model.PodMetric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveScraperTest {
+
+    private FakeMetricsService metricsService;
+    private AdaptiveScraper scraper;
+
+    @BeforeEach
+    void setUp() {
+        metricsService = new FakeMetricsService();
+        scraper = AdaptiveScraper.builder()
+            .metricsService(metricsService)
+            .minInterval(Duration.ofSeconds(15))
+            .maxInterval(Duration.ofSeconds(120))
+            .nodeInterval(Duration.ofSeconds(60))
+            .build();
+    }
+
+    @Test
+    void stableWorkloadsBackOffWhileVolatileOnesStayAtMinimum() {
+        // Arrange
+        metricsService.random = new Random(7);
+
+        // Act
+        for (int i = 0; i < 40; i++) {
+            scraper.scrapeOnce();
+        }
+
+        // Assert
+        assertEquals(Duration.ofSeconds(120), scraper.intervalOf("idle").orElseThrow());
+        assertEquals(Duration.ofSeconds(15), scraper.intervalOf("spiky").orElseThrow());
+        assertEquals(Duration.ofSeconds(15), scraper.intervalOf("hot").orElseThrow());
+        ScrapeStats stats = scraper.getStats();
+        assertEquals(40 * 5, stats.baselineQueries());
+        assertTrue(stats.queryReduction() > 0.15, "query reduction " + stats.queryReduction());
+        assertTrue(stats.seriesReduction() > 0.3, "series reduction " + stats.seriesReduction());
+    }
+
+    @Test
+    void batchesDueWorkloadsIntoOneSelector() {
+        // Arrange
+        for (int i = 0; i < 17; i++) {
+            scraper.scrapeOnce();
+        }
+        metricsService.patterns.clear();
+
+        // Act
+        scraper.scrapeOnce();
+
+        // Assert
+        assertEquals(List.of("spiky-[0-9]+|hot-[0-9]+", "spiky-[0-9]+|hot-[0-9]+", "spiky-[0-9]+|hot-[0-9]+"),
+            metricsService.patterns);
+    }
+
+    @Test
+    void picksUpNewStatefulSetReplicasBetweenDiscoveries() {
+        // Arrange
+        for (int i = 0; i < 17; i++) {
+            scraper.scrapeOnce();
+        }
+        metricsService.hotReplicas = 3;
+        List<PodMetric> delivered = new ArrayList<>();
+        scraper.addListener(new MetricsListener() {
+            @Override
+            public void onPodMetrics(MetricType type, PodMetricBatch metrics) {
+                if (type == MetricType.CPU) {
+                    delivered.addAll(metrics.toList());
+                }
+            }
+        });
+
+        // Act
+        scraper.scrapeOnce();
+
+        // Assert
+        assertTrue(delivered.stream().anyMatch(metric -> metric.podName().equals("hot-2")));
+        assertTrue(delivered.stream().noneMatch(metric -> metric.podName().startsWith("idle")));
+    }
+
+    @Test
+    void failingNodeListenerDoesNotStarveTheOthers() {
+        // Arrange
+        List<MetricType> delivered = new ArrayList<>();
+        scraper.addListener(new MetricsListener() {
+            @Override
+            public void onNodeMetrics(MetricType type, NodeMetricBatch metrics) {
+                throw new IllegalStateException("listener bug");
+            }
+        });
+        scraper.addListener(new MetricsListener() {
+            @Override
+            public void onNodeMetrics(MetricType type, NodeMetricBatch metrics) {
+                delivered.add(type);
+            }
+        });
+
+        // Act
+        scraper.scrapeOnce();
+
+        // Assert
+        assertEquals(List.of(MetricType.CPU, MetricType.MEMORY), delivered);
+    }
+
+    @Test
+    void rejectsIntervalsListenersCannotKeepUpWith() {
+        // Arrange
+        AdaptiveScraper.Builder builder = AdaptiveScraper.builder()
+            .metricsService(metricsService)
+            .minInterval(Duration.ofSeconds(5))
+            .maxInterval(Duration.ofMinutes(5));
+
+        // Act / Assert
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    // Idle pods at a flat 5% of a core, spiky ones swinging around 40%, hot ones at 68%
+    private static class FakeMetricsService implements MetricsService {
+        final List<String> patterns = new ArrayList<>();
+        Random random = new Random(1);
+        int hotReplicas = 2;
+
+        private PodMetricBatch pods(double idle, double spiky, double hot) {
+            PodMetricBatch metrics = new PodMetricBatch();
+            for (int i = 0; i < 4; i++) {
+                metrics.add("idle-" + i, idle, "1700000000");
+            }
+            for (int i = 0; i < 2; i++) {
+                metrics.add("spiky-" + i, spiky * (0.2 + 1.6 * random.nextDouble()), "1700000000");
+            }
+            for (int i = 0; i < hotReplicas; i++) {
+                metrics.add("hot-" + i, hot, "1700000000");
+            }
+            return metrics;
+        }
+
+        @Override
+        public PodMetricBatch getPodsCPUUtilization(int seconds) {
+            return pods(5, 40, 68);
+        }
+
+        @Override
+        public PodMetricBatch getPodsMemoryUtilization(int seconds) {
+            return pods(100, 100, 100);
+        }
+
+        @Override
+        public PodMetricBatch getPodsHitsUtilization(int seconds) {
+            return pods(2, 2, 2);
+        }
+
+        @Override
+        public PodMetricBatch getPodsCPUUtilization(int seconds, String podPattern) {
+            patterns.add(podPattern);
+            return MetricsService.super.getPodsCPUUtilization(seconds, podPattern);
+        }
+
+        @Override
+        public PodMetricBatch getPodsMemoryUtilization(int seconds, String podPattern) {
+            patterns.add(podPattern);
+            return MetricsService.super.getPodsMemoryUtilization(seconds, podPattern);
+        }
+
+        @Override
+        public PodMetricBatch getPodsHitsUtilization(int seconds, String podPattern) {
+            patterns.add(podPattern);
+            return MetricsService.super.getPodsHitsUtilization(seconds, podPattern);
+        }
+
+        @Override
+        public NodeMetricBatch getNodesCPUUtilization(int seconds) {
+            return NodeMetricBatch.of(new NodeMetric("node-1", 30, "1700000000"));
+        }
+
+        @Override
+        public NodeMetricBatch getNodesMemoryUtilization(int seconds) {
+            return NodeMetricBatch.of(new NodeMetric("node-1", 50, "1700000000"));
+        }
+
+        @Override
+        public void streamPodsLatencyBuckets(int seconds, String podPattern, HistogramBucketSink sink) {
+        }
+    }
+}
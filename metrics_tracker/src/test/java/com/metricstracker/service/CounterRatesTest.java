@@ -0,0 +1,157 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CounterRatesTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private long now = START;
+
+    @Test
+    void podRate_SumsSeriesAndCountsResetsInFull() {
+        // Arrange: two containers scraped every 15s, the second restarts
+        CounterRates rates = rates();
+        for (int i = 0; i <= 4; i++) {
+            rates.accept("pod=web-0,container=app,", "web-0", START + i * 15_000L, 10.0 * i);
+        }
+        double[] sidecar = {100, 103, 1, 4, 7};
+        for (int i = 0; i <= 4; i++) {
+            rates.accept("pod=web-0,container=sidecar,", "web-0", START + i * 15_000L, sidecar[i]);
+        }
+
+        // Act
+        Map<String, Double> podRates = podRates(rates, 60);
+
+        // Assert: app increased by 40 and sidecar by 3 + 1 + 3 + 3 over 60s
+        assertEquals((40.0 + 10.0) / 60, podRates.get("web-0"), 1e-9);
+    }
+
+    @Test
+    void overlappingPolls_DropSamplesAlreadySeen() {
+        // Arrange
+        CounterRates rates = rates();
+        rates.accept("s", "web-0", START, 0);
+        rates.accept("s", "web-0", START + 15_000, 15);
+        now = START + 20_000;
+        rates.polled();
+
+        // Act: the next poll fetches the overlap again
+        now = START + 35_000;
+        int lookback = rates.lookbackSeconds(60);
+        rates.accept("s", "web-0", START + 15_000, 15);
+        rates.accept("s", "web-0", START + 30_000, 30);
+
+        // Assert
+        assertEquals(15 + CounterRates.OVERLAP_SECONDS, lookback);
+        assertEquals(1.0, podRates(rates, 60).get("web-0"), 1e-9);
+    }
+
+    @Test
+    void window_StartsAtNewestSampleBeforeIt() {
+        // Arrange: the rate doubles halfway
+        CounterRates rates = rates();
+        double total = 0;
+        for (int i = 0; i <= 8; i++) {
+            rates.accept("s", "web-0", START + i * 15_000L, total);
+            total += i < 4 ? 15 : 30;
+        }
+
+        // Act
+        Map<String, Double> lastMinute = podRates(rates, 60);
+        Map<String, Double> lastTwoMinutes = podRates(rates, 120);
+
+        // Assert
+        assertEquals(2.0, lastMinute.get("web-0"), 1e-9);
+        assertEquals(1.5, lastTwoMinutes.get("web-0"), 1e-9);
+    }
+
+    @Test
+    void staleSeries_AreEvictedAndTheirSlotsReused() {
+        // Arrange
+        CounterRates rates = rates();
+        rates.accept("old", "web-0", START, 0);
+        rates.accept("old", "web-0", START + 15_000, 15);
+
+        // Act
+        now = START + Duration.ofMinutes(10).toMillis();
+        rates.polled();
+        rates.accept("new", "web-1", now - 15_000, 100);
+        rates.accept("new", "web-1", now, 130);
+
+        // Assert
+        assertEquals(1, rates.size());
+        Map<String, Double> podRates = podRates(rates, 60);
+        assertNull(podRates.get("web-0"));
+        assertEquals(2.0, podRates.get("web-1"), 1e-9);
+    }
+
+    @Test
+    void longWindow_NotCoveredAndNotFetched() {
+        // Arrange: 16 samples at 15s reach back 225s
+        CounterRates rates = rates();
+
+        // Act
+        boolean coversRing = rates.covers(225);
+        boolean coversHour = rates.covers(3600);
+        int firstLookback = rates.lookbackSeconds(3600);
+
+        // Assert
+        assertTrue(coversRing);
+        assertFalse(coversHour);
+        assertEquals(225 + CounterRates.OVERLAP_SECONDS, firstLookback);
+    }
+
+    @Test
+    void coveredWindow_FollowsScrapeInterval() {
+        // Arrange
+        CounterRates rates = CounterRates.builder()
+            .samplesPerSeries(121)
+            .scrapeInterval(Duration.ofSeconds(30))
+            .clock(() -> now)
+            .build();
+
+        // Act & Assert
+        assertTrue(rates.covers(3600));
+        assertFalse(rates.covers(3601));
+        assertThrows(IllegalStateException.class, () -> CounterRates.builder().scrapeInterval(Duration.ZERO).build());
+    }
+
+    private CounterRates rates() {
+        return CounterRates.builder()
+            .samplesPerSeries(16)
+            .retention(Duration.ofMinutes(5))
+            .initialSeries(1)
+            .clock(() -> now)
+            .build();
+    }
+
+    private static Map<String, Double> podRates(CounterRates rates, int seconds) {
+        Map<String, Double> podRates = new HashMap<>();
+        rates.forEachPodRate(seconds, (podName, value, timestamp) -> podRates.put(podName, value));
+        return podRates;
+    }
+}
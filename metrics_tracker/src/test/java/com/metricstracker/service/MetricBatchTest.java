@@ -0,0 +1,111 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricBatchTest {
+
+    @Test
+    void scale_ConvertsValuesInPlaceAndKeepsTimestamps() {
+        // Arrange
+        PodMetricBatch batch = new PodMetricBatch(1);
+        batch.add("web-0", 0.25, "1700000000.5");
+        batch.add("web-1", 0.75, "1700000000.5");
+
+        // Act
+        batch.scale(100);
+
+        // Assert
+        assertEquals(2, batch.size());
+        assertEquals(25.0, batch.value(0), 1e-9);
+        assertEquals(75.0, batch.value(1), 1e-9);
+        assertEquals("1700000000.5", batch.timestamp(1));
+        assertEquals(1_700_000_000_500L, batch.timestampMillis(1, -1));
+    }
+
+    @Test
+    void addAll_BatchesOfDifferentEvaluationTimes_KeepEachRowsTimestamp() {
+        // Arrange
+        PodMetricBatch first = new PodMetricBatch();
+        first.add("web-0", 1, "1700000000");
+        PodMetricBatch second = new PodMetricBatch();
+        second.add("db-0", 2, "1700000015");
+        second.add("db-1", 3, "not-a-number");
+
+        // Act
+        first.addAll(second);
+        first.addAll(second);
+
+        // Assert
+        assertEquals(5, first.size());
+        assertEquals(List.of("web-0", "db-0", "db-1", "db-0", "db-1"),
+            first.toList().stream().map(metric -> metric.podName()).toList());
+        assertEquals("1700000015", first.timestamp(3));
+        assertEquals(1_700_000_015_000L, first.timestampMillis(3, -1));
+        assertEquals(-1L, first.timestampMillis(4, -1));
+    }
+
+    @Test
+    void filterAndRename_LeaveOtherColumnsAligned() {
+        // Arrange
+        PodMetricBatch pods = new PodMetricBatch();
+        pods.add("web-0", 1, "1700000000");
+        pods.add("db-0", 2, "1700000000");
+        NodeMetricBatch nodes = new NodeMetricBatch();
+        nodes.add("10.0.0.1:9100", 40, "1700000000");
+
+        // Act
+        PodMetricBatch filtered = pods.filter(name -> name.startsWith("db"));
+        nodes.rename(instance -> "node-" + instance.substring(0, instance.indexOf(':')));
+
+        // Assert
+        assertEquals(1, filtered.size());
+        assertEquals("db-0", filtered.podName(0));
+        assertEquals(2.0, filtered.value(0), 1e-9);
+        assertEquals("node-10.0.0.1", nodes.nodeName(0));
+        assertEquals(40.0, nodes.value(0), 1e-9);
+    }
+
+    @Test
+    void add_EmptyName_Throws() {
+        // Arrange
+        PodMetricBatch batch = new PodMetricBatch();
+
+        // Act / Assert
+        assertThrows(IllegalArgumentException.class, () -> batch.add("", 1, "1700000000"));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.value(0));
+    }
+
+    @Test
+    void add_BlankTimestampAfterARun_Throws() {
+        // Arrange
+        PodMetricBatch batch = new PodMetricBatch();
+        batch.add("web-0", 1, "1700000000.000");
+
+        // Act / Assert
+        assertThrows(IllegalArgumentException.class, () -> batch.add("web-1", 2, " "));
+        assertThrows(IllegalArgumentException.class, () -> batch.add("web-1", 2, null));
+        assertEquals(1, batch.size());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeNameCacheTest {
+    private final Map<String, String> nodes = new HashMap<>(Map.of("10.0.0.1", "node-a", "10.0.0.2", "node-b"));
+    private int lists;
+    private long now;
+
+    private final NodeNameCache cache = new NodeNameCache(() -> {
+        lists++;
+        return nodes;
+    }, Duration.ofMinutes(1), () -> now);
+
+    @Test
+    void rowsOfAScrape_ShareOneNodeList() {
+        // Act
+        String a = cache.apply("10.0.0.1");
+        String b = cache.apply("10.0.0.2");
+        cache.apply("10.0.0.1");
+
+        // Assert
+        assertEquals("node-a", a);
+        assertEquals("node-b", b);
+        assertEquals(1, lists);
+    }
+
+    @Test
+    void expiredSnapshot_IsListedAgain() {
+        // Arrange
+        cache.apply("10.0.0.1");
+        nodes.put("10.0.0.1", "node-c");
+
+        // Act
+        now += Duration.ofMinutes(1).toNanos();
+        String name = cache.apply("10.0.0.1");
+
+        // Assert
+        assertEquals("node-c", name);
+        assertEquals(2, lists);
+    }
+
+    @Test
+    void unknownIP_ReloadsAtMostOncePerInterval() {
+        // Arrange
+        cache.apply("10.0.0.1");
+        now += NodeNameCache.MISS_RELOAD_INTERVAL.toNanos();
+
+        // Act
+        assertThrows(NoSuchElementException.class, () -> cache.apply("10.0.0.9"));
+        assertThrows(NoSuchElementException.class, () -> cache.apply("10.0.0.9"));
+        nodes.put("10.0.0.9", "node-new");
+        now += NodeNameCache.MISS_RELOAD_INTERVAL.toNanos();
+        String joined = cache.apply("10.0.0.9");
+
+        // Assert
+        assertEquals("node-new", joined);
+        assertEquals(3, lists);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrometheusClientParseTest {
+
+    private final PrometheusClient client = new PrometheusClient("http://localhost:9090");
+
+    @Test
+    void streamingParseMatchesTreeParse() throws IOException {
+        // Arrange
+        List<String> responses = List.of(
+            "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+                + "{\"metric\":{\"pod\":\"web-0\",\"namespace\":\"default\"},\"value\":[1700000000.123,\"0.25\"]},"
+                + "{\"metric\":{\"pod\":\"web-1\"},\"value\":[1700000000,\"1e-3\"]},"
+                + "{\"metric\":{\"pod\":\"web-2\"},\"value\":[1700000000.5,\"NaN\"]},"
+                + "{\"metric\":{\"pod\":\"web-3\"},\"value\":[1700000000.5,\"+Inf\"]},"
+                + "{\"metric\":{\"pod\":\"web-4\"},\"value\":[1700000000.5,\"not a number\"]},"
+                + "{\"metric\":{\"pod\":\"web-5\"},\"value\":[1700000000.5]},"
+                + "{\"metric\":{\"pod\":\"web-6\"},\"value\":[17000000000000,42,\"extra\"]},"
+                + "{\"value\":[1700000000.5,\"3\"],\"metric\":{\"pod\":\"web-7\"}}]}}",
+            "{\"data\":{\"result\":[{\"metric\":{\"pod\":\"late-0\"},\"value\":[1.5,\"2\"]}]},\"status\":\"success\"}",
+            "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[]}}");
+
+        for (String response : responses) {
+            // Act
+            List<String> streamed = new ArrayList<>();
+            client.parseVector(stream(response), "pod",
+                (name, value, timestamp) -> streamed.add(name + "|" + value + "|" + timestamp));
+
+            // Assert
+            assertEquals(treeParse(response), streamed, response);
+        }
+    }
+
+    @Test
+    void failedQueryDeliversNoSamples() {
+        // Arrange
+        String response = "{\"data\":{\"result\":[{\"metric\":{\"pod\":\"web-0\"},\"value\":[1,\"2\"]}]},"
+            + "\"status\":\"error\",\"error\":\"query timed out\"}";
+        List<String> streamed = new ArrayList<>();
+
+        // Act
+        PrometheusClient.PrometheusQueryException e = assertThrows(PrometheusClient.PrometheusQueryException.class,
+            () -> client.parseVector(stream(response), "pod", (name, value, timestamp) -> streamed.add(name)));
+
+        // Assert
+        assertEquals("Query returned error status: query timed out", e.getMessage());
+        assertTrue(streamed.isEmpty());
+    }
+
+    @Test
+    void histogramBuckets_ReadPodAndUpperBound() throws IOException {
+        // Arrange
+        String response = "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+            + "{\"metric\":{\"le\":\"0.25\",\"pod\":\"web-0\"},\"value\":[1700000000,\"4\"]},"
+            + "{\"metric\":{\"pod\":\"web-0\",\"le\":\"+Inf\"},\"value\":[1700000000,\"5\"]}]}}";
+        List<String> streamed = new ArrayList<>();
+
+        // Act
+        client.parseVector(stream(response), "pod", "le", (name, le, value, timestamp) ->
+            streamed.add(name + "|" + PrometheusClient.upperBound(le) + "|" + value));
+
+        // Assert
+        assertEquals(List.of("web-0|0.25|4.0", "web-0|Infinity|5.0"), streamed);
+    }
+
+    @Test
+    void matrix_KeysSamplesBySeriesLabels() throws IOException {
+        // Arrange: values before metric in the second series
+        String response = "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+            + "{\"metric\":{\"container\":\"app\",\"pod\":\"web-0\"},"
+            + "\"values\":[[1700000000,\"1\"],[1700000015.5,\"2.5\"]]},"
+            + "{\"values\":[[1700000000,\"7\"]],\"metric\":{\"container\":\"sidecar\",\"pod\":\"web-0\"}}]}}";
+        List<String> streamed = new ArrayList<>();
+
+        // Act
+        client.parseMatrix(stream(response), "pod",
+            (series, podName, millis, value) -> streamed.add(series + "|" + podName + "|" + millis + "|" + value));
+
+        // Assert
+        assertEquals(List.of(
+            "container=app,pod=web-0,|web-0|1700000000000|1.0",
+            "container=app,pod=web-0,|web-0|1700000015500|2.5",
+            "container=sidecar,pod=web-0,|web-0|1700000000000|7.0"), streamed);
+    }
+
+    private static ByteArrayInputStream stream(String response) {
+        return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The JsonNode-based parse the streaming parser replaced
+    private static List<String> treeParse(String response) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(response);
+        assertEquals("success", root.path("status").asText());
+        List<String> rows = new ArrayList<>();
+        for (JsonNode item : root.path("data").path("result")) {
+            JsonNode value = item.path("value");
+            if (value.size() >= 2) {
+                rows.add(item.path("metric").path("pod").asText() + "|" + value.get(1).asDouble() + "|"
+                    + value.get(0).asText());
+            }
+        }
+        return rows;
+    }
+}
@@ -27,7 +27,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -49,77 +48,90 @@ class PrometheusMetricsServiceTest {
     @Test
     void getPodsCPUUtilization_Success() {
         // Arrange
-        List<PodMetric> rawMetrics = List.of(
+        PodMetricBatch rawMetrics = PodMetricBatch.of(
             new PodMetric("pod1", 0.25, "1234567890"), // 25% CPU
             new PodMetric("pod2", 0.75, "1234567890")  // 75% CPU
         );
         when(client.queryPodMetrics(anyString())).thenReturn(rawMetrics);
 
         // Act
-        List<PodMetric> metrics = service.getPodsCPUUtilization(30);
+        PodMetricBatch metrics = service.getPodsCPUUtilization(30);
 
         // Assert
         assertEquals(2, metrics.size());
-        assertEquals(25.0, metrics.get(0).value(), 0.001); // Converted to percentage
-        assertEquals(75.0, metrics.get(1).value(), 0.001);
+        assertEquals(25.0, metrics.value(0), 0.001); // Converted to percentage
+        assertEquals(75.0, metrics.value(1), 0.001);
     }
 
     @Test
     void getPodsMemoryUtilization_Success() {
         // Arrange
-        List<PodMetric> rawMetrics = List.of(
+        PodMetricBatch rawMetrics = PodMetricBatch.of(
             new PodMetric("pod1", 104857600, "1234567890"),  // 100MB in bytes
             new PodMetric("pod2", 209715200, "1234567890")   // 200MB in bytes
         );
         when(client.queryPodMetrics(anyString())).thenReturn(rawMetrics);
 
         // Act
-        List<PodMetric> metrics = service.getPodsMemoryUtilization(30);
+        PodMetricBatch metrics = service.getPodsMemoryUtilization(30);
 
         // Assert
         assertEquals(2, metrics.size());
-        assertEquals(100.0, metrics.get(0).value(), 0.001); // Converted to MB
-        assertEquals(200.0, metrics.get(1).value(), 0.001);
+        assertEquals(100.0, metrics.value(0), 0.001); // Converted to MB
+        assertEquals(200.0, metrics.value(1), 0.001);
+    }
+
+    @Test
+    void getPodsCPUUtilization_PodPatternIsPushedIntoSelector() {
+        // Arrange
+        when(client.queryPodMetrics(anyString())).thenReturn(new PodMetricBatch());
+
+        // Act
+        service.getPodsCPUUtilization(30, "web\\.api-[0-9]+|db-0");
+
+        // Assert
+        verify(client).queryPodMetrics(
+            "sum(rate(container_cpu_usage_seconds_total{container!=\"\",pod=~\"web\\\\.api-[0-9]+|db-0\"}[30s])) by (pod)");
     }
 
     @Test
     void getNodesCPUUtilization_Success() {
         // Arrange
-        List<NodeMetric> rawMetrics = List.of(
+        NodeMetricBatch rawMetrics = NodeMetricBatch.of(
             new NodeMetric("ip-10-0-1-23.ec2.internal:9100", 0.45, "1234567890"),
             new NodeMetric("ip-10-0-1-24.ec2.internal:9100", 0.85, "1234567890")
         );
         when(client.queryNodeMetrics(anyString())).thenReturn(rawMetrics);
 
         // Act
-        List<NodeMetric> metrics = service.getNodesCPUUtilization(30);
+        NodeMetricBatch metrics = service.getNodesCPUUtilization(30);
 
         // Assert
         assertEquals(2, metrics.size());
-        assertEquals("ip-10-0-1-23", metrics.get(0).nodeName()); // Cleaned node name
-        assertEquals(45.0, metrics.get(0).value(), 0.001);      // Converted to percentage
-        assertEquals("ip-10-0-1-24", metrics.get(1).nodeName());
-        assertEquals(85.0, metrics.get(1).value(), 0.001);
+        assertEquals("ip-10-0-1-23", metrics.nodeName(0)); // Cleaned node name
+        assertEquals(45.0, metrics.value(0), 0.001);      // Converted to percentage
+        assertEquals("ip-10-0-1-24", metrics.nodeName(1));
+        assertEquals(85.0, metrics.value(1), 0.001);
     }
 
     @Test
     void getNodesMemoryUtilization_Success() {
         // Arrange
-        List<NodeMetric> rawMetrics = List.of(
+        NodeMetricBatch rawMetrics = NodeMetricBatch.of(
             new NodeMetric("ip-10-0-1-23.ec2.internal:9100", 65.5, "1234567890"),
             new NodeMetric("ip-10-0-1-24.ec2.internal:9100", 78.3, "1234567890")
         );
         when(client.queryNodeMetrics(anyString())).thenReturn(rawMetrics);
 
         // Act
-        List<NodeMetric> metrics = service.getNodesMemoryUtilization(30);
+        NodeMetricBatch metrics = service.getNodesMemoryUtilization(30);
 
         // Assert
         assertEquals(2, metrics.size());
-        assertEquals("ip-10-0-1-23", metrics.get(0).nodeName());
-        assertEquals(65.5, metrics.get(0).value(), 0.001);
-        assertEquals("ip-10-0-1-24", metrics.get(1).nodeName());
-        assertEquals(78.3, metrics.get(1).value(), 0.001);
+        assertEquals("ip-10-0-1-23", metrics.nodeName(0));
+        assertEquals(65.5, metrics.value(0), 0.001);
+        assertEquals("ip-10-0-1-24", metrics.nodeName(1));
+        assertEquals(78.3, metrics.value(1), 0.001);
     }
 
     @Test
@@ -0,0 +1,151 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.sketch;
+
+import com.metricstracker.model.MetricType;
+import com.metricstracker.model.PodMetric;
+import com.metricstracker.service.PodMetricBatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PercentileTrackerTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void quantile_SkewedDistribution_WithinRelativeAccuracy() {
+        // Arrange
+        DDSketch sketch = new DDSketch(0.01, 2048);
+        Random random = new Random(5);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        // Act & Assert
+        for (double q : new double[] {0.01, 0.5, 0.9, 0.95, 0.99, 0.999}) {
+            double expected = values[(int) (q * (values.length - 1))];
+            double actual = sketch.quantile(q);
+            assertEquals(expected, actual, expected * 0.01 + 1e-12, "q=" + q);
+        }
+    }
+
+    @Test
+    void merge_TwoSketches_MatchesSingleSketch() {
+        // Arrange
+        DDSketch left = new DDSketch();
+        DDSketch right = new DDSketch();
+        DDSketch all = new DDSketch();
+        for (int i = 0; i < 1000; i++) {
+            left.add(i);
+            right.add(i * 10.0);
+            all.add(i);
+            all.add(i * 10.0);
+        }
+
+        // Act
+        left.merge(right);
+
+        // Assert
+        assertEquals(all.count(), left.count());
+        for (double q : new double[] {0, 0.25, 0.5, 0.99, 1}) {
+            assertEquals(all.quantile(q), left.quantile(q), 0.0);
+        }
+    }
+
+    @Test
+    void add_RangeBeyondMaxBins_KeepsHighQuantilesAccurate() {
+        // Arrange: values spanning twelve orders of magnitude into 64 bins
+        DDSketch sketch = new DDSketch(0.01, 64);
+
+        // Act
+        for (int i = 0; i <= 1200; i++) {
+            sketch.add(Math.pow(10, i / 100.0 - 6));
+        }
+
+        // Assert
+        assertTrue(sketch.sizeInBytes() < 400);
+        assertEquals(Math.pow(10, 5.88), sketch.quantile(0.99), Math.pow(10, 5.88) * 0.01);
+        assertEquals(1e6, sketch.quantile(1.0), 0.0);
+    }
+
+    @Test
+    void statefulSets_PodsOfOneStatefulSet_AreMergedWithinWindow() {
+        // Arrange
+        PercentileTracker tracker = PercentileTracker.builder()
+            .clock(Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC))
+            .build();
+        // An old burst outside the five minute window
+        tracker.onPodMetrics(MetricType.CPU, PodMetricBatch.of(sample("web-0", 1000.0, NOW - 50 * 60_000)));
+        for (int i = 1; i <= 100; i++) {
+            tracker.onPodMetrics(MetricType.CPU, PodMetricBatch.of(
+                sample("web-0", i, NOW - i * 1000L),
+                sample("web-1", 100 + i, NOW - i * 1000L),
+                sample("db-0", 5.0, NOW - i * 1000L)));
+        }
+
+        // Act
+        List<PercentileTracker.Percentiles> recent = tracker.statefulSets(MetricType.CPU, Duration.ofMinutes(5),
+            new double[] {0.5, 1.0}, Set.of("web"));
+        List<PercentileTracker.Percentiles> all = tracker.statefulSets(MetricType.CPU, Duration.ZERO,
+            new double[] {1.0}, Set.of());
+
+        // Assert
+        assertEquals(1, recent.size());
+        assertEquals("web", recent.get(0).name());
+        assertEquals(200, recent.get(0).count());
+        assertEquals(100.0, recent.get(0).values()[0], 2.0);
+        assertEquals(200.0, recent.get(0).values()[1], 0.0);
+        assertEquals(List.of("db", "web"), all.stream().map(PercentileTracker.Percentiles::name).toList());
+        assertEquals(1000.0, all.get(1).values()[0], 0.0);
+    }
+
+    @Test
+    void pods_NamesFilter_ReturnsOnlyRequestedPods() {
+        // Arrange
+        PercentileTracker tracker = PercentileTracker.builder()
+            .clock(Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC))
+            .build();
+        tracker.onPodMetrics(MetricType.HITS, PodMetricBatch.of(sample("web-0", 3.0, NOW), sample("web-1", 4.0, NOW)));
+
+        // Act
+        List<PercentileTracker.Percentiles> result = tracker.pods(MetricType.HITS, Duration.ofMinutes(1),
+            new double[] {0.5}, Set.of("web-1"));
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("web-1", result.get(0).name());
+        assertEquals(4.0, result.get(0).values()[0], 4.0 * 0.01);
+    }
+
+    private static PodMetric sample(String pod, double value, long millis) {
+        return new PodMetric(pod, value, String.format("%d.%03d", millis / 1000, millis % 1000));
+    }
+}
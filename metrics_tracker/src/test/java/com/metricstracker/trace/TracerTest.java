@@ -0,0 +1,158 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.metricstracker.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracerTest {
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    private final InMemorySpanExporter exporter = new InMemorySpanExporter(100);
+
+    @Test
+    void traceparent_RoundTrips() {
+        // Act
+        Optional<SpanContext> context = SpanContext.fromTraceparent(TRACEPARENT);
+
+        // Assert
+        assertTrue(context.isPresent());
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.get().traceId());
+        assertEquals("00f067aa0ba902b7", context.get().spanId());
+        assertTrue(context.get().sampled());
+        assertEquals(TRACEPARENT, context.get().traceparent());
+    }
+
+    @Test
+    void traceparent_RejectsMalformedHeaders() {
+        assertFalse(SpanContext.fromTraceparent(null).isPresent());
+        assertFalse(SpanContext.fromTraceparent("").isPresent());
+        assertFalse(SpanContext.fromTraceparent("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7").isPresent());
+        assertFalse(SpanContext.fromTraceparent(
+            "00-00000000000000000000000000000000-00f067aa0ba902b7-01").isPresent());
+        assertFalse(SpanContext.fromTraceparent(
+            "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01").isPresent());
+        assertFalse(SpanContext.fromTraceparent(
+            "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01").isPresent());
+    }
+
+    @Test
+    void startSpan_NestsChildrenUnderTheCurrentSpan() {
+        // Arrange
+        Tracer tracer = Tracer.builder().sampler(Sampler.always()).exporter(exporter).build();
+
+        // Act
+        try (Span root = tracer.startSpan("call")) {
+            try (Span child = tracer.startSpan("prometheus.query").setAttribute("series", 3)) {
+                assertEquals(Optional.of(child.context()), Tracer.currentContext());
+            }
+            assertEquals(Optional.of(root.context()), Tracer.currentContext());
+        }
+
+        // Assert: children end, and are exported, first
+        List<SpanData> spans = exporter.spans();
+        assertEquals(2, spans.size());
+        SpanData child = spans.get(0);
+        SpanData root = spans.get(1);
+        assertEquals("prometheus.query", child.name());
+        assertEquals(root.traceId(), child.traceId());
+        assertEquals(root.spanId(), child.parentSpanId());
+        assertNull(root.parentSpanId());
+        assertEquals(3L, child.attributes().get("series"));
+        assertFalse(Tracer.currentContext().isPresent());
+    }
+
+    @Test
+    void remoteChild_ContinuesTheCallersTrace() {
+        // Arrange
+        Tracer tracer = Tracer.builder().sampler(Sampler.never()).exporter(exporter).build();
+        SpanContext caller = SpanContext.fromTraceparent(TRACEPARENT).orElseThrow();
+
+        // Act: the caller's sampling decision wins over the local sampler
+        try (Span call = tracer.startRemoteChild("GetPodsCPUUtilization", caller)) {
+            call.recordError(new IllegalStateException("boom"));
+        }
+
+        // Assert
+        SpanData call = exporter.spans().get(0);
+        assertEquals(caller.traceId(), call.traceId());
+        assertEquals(caller.spanId(), call.parentSpanId());
+        assertEquals("IllegalStateException: boom", call.error());
+    }
+
+    @Test
+    void unsampledTraces_AreExportedOnlyWhenSlow() throws InterruptedException {
+        // Arrange
+        Tracer tracer = Tracer.builder()
+            .sampler(Sampler.never())
+            .slowTraceThreshold(Duration.ofMillis(20))
+            .exporter(exporter)
+            .build();
+
+        // Act
+        try (Span fast = tracer.startSpan("fast")) {
+            tracer.startSpan("query").close();
+        }
+        try (Span slow = tracer.startSpan("slow")) {
+            try (Span query = tracer.startSpan("query")) {
+                Thread.sleep(30);
+            }
+        }
+
+        // Assert: the whole slow trace is kept, nothing of the fast one
+        List<SpanData> spans = exporter.spans();
+        assertEquals(2, spans.size());
+        assertEquals("query", spans.get(0).name());
+        assertEquals("slow", spans.get(1).name());
+        assertEquals(spans.get(1).spanId(), spans.get(0).parentSpanId());
+    }
+
+    @Test
+    void noop_RecordsNothingButPropagatesContext() {
+        // Act
+        try (Span span = Tracer.noop().startSpan("call")) {
+            // Assert
+            assertFalse(span.isRecording());
+            assertEquals(Optional.of(span.context()), Tracer.currentContext());
+        }
+        assertFalse(Tracer.currentContext().isPresent());
+    }
+
+    @Test
+    void ratioSampler_KeepsAboutTheRatioOfTraces() {
+        // Arrange
+        Sampler sampler = Sampler.ratio(0.25);
+
+        // Act
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (sampler.shouldSample(SpanContext.randomTraceId())) {
+                sampled++;
+            }
+        }
+
+        // Assert
+        assertEquals(0.25, sampled / 10_000.0, 0.03);
+    }
+}
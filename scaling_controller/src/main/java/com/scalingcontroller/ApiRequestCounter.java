@@ -0,0 +1,114 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.client.http.BasicBuilder;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import io.fabric8.kubernetes.client.http.RequestTags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts every request one Kubernetes client sends by verb and resource.
+ *
+ * Installed as an HTTP interceptor it sees the informer list and watch calls,
+ * lease renewals and status patches as well as the reconciler's own writes,
+ * which {@link ControllerMetrics#timeApiCall} only times when called explicitly.
+ * HTTP methods are reported as Kubernetes verbs: a GET is a get, list or watch
+ * depending on whether it names an object or asks to watch.
+ */
+public class ApiRequestCounter implements Interceptor {
+    public static final String NAME = "api-request-counter";
+
+    static final String METER = "appprov.client.requests";
+
+    private final MeterRegistry registry;
+    private final Iterable<Tag> tags;
+    // Counters by verb and resource, built once instead of per request
+    private final Map<CounterTags, Counter> counters = new ConcurrentHashMap<>();
+
+    private record CounterTags(String verb, String resource) {
+    }
+
+    /**
+     * @param tags Added to every count, e.g. the cluster the client talks to
+     */
+    public ApiRequestCounter(MeterRegistry registry, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.tags = tags;
+    }
+
+    @Override
+    public void before(BasicBuilder builder, HttpRequest request, RequestTags tags) {
+        String[] target = target(request.uri());
+        counters.computeIfAbsent(new CounterTags(verb(request.method(), target[1] != null, request.uri()), target[0]),
+                key -> Counter.builder(METER)
+                    .description("Requests sent to the Kubernetes API server")
+                    .tags(this.tags)
+                    .tag("verb", key.verb())
+                    .tag("resource", key.resource())
+                    .register(registry))
+            .increment();
+    }
+
+    /**
+     * @return The resource plural and object name addressed by an API path,
+     *         the name being null for collections
+     */
+    static String[] target(URI uri) {
+        String[] segments = uri.getPath().split("/");
+        // Skip "", "api" and the version, or "", "apis", the group and the version
+        int start = segments.length > 1 && segments[1].equals("apis") ? 4 : 3;
+        if (segments.length <= start) {
+            return new String[] {"unknown", null};
+        }
+        if (segments[start].equals("namespaces") && segments.length > start + 2) {
+            start += 2;
+        }
+        return new String[] {segments[start], segments.length > start + 1 ? segments[start + 1] : null};
+    }
+
+    private static String verb(String method, boolean named, URI uri) {
+        switch (method) {
+            case "GET":
+                String query = uri.getQuery();
+                if (query != null && query.contains("watch=true")) {
+                    return "watch";
+                }
+                return named ? "get" : "list";
+            case "POST":
+                return "create";
+            case "PUT":
+                return "update";
+            case "PATCH":
+                return "patch";
+            case "DELETE":
+                return named ? "delete" : "deletecollection";
+            default:
+                return method.toLowerCase(Locale.ROOT);
+        }
+    }
+}
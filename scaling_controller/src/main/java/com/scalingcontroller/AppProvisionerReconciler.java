@@ -22,39 +22,188 @@ import io.fabric8.kubernetes.api.model.OwnerReference;
 import io.fabric8.kubernetes.api.model.OwnerReferenceBuilder;
 import io.fabric8.kubernetes.api.model.apps.StatefulSet;
 import io.fabric8.kubernetes.api.model.apps.StatefulSetBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.javaoperatorsdk.operator.Operator;
+import io.javaoperatorsdk.operator.RegisteredController;
+import io.javaoperatorsdk.operator.api.config.informer.InformerConfiguration;
 import io.javaoperatorsdk.operator.api.reconciler.*;
 import io.javaoperatorsdk.operator.api.reconciler.Context;
+import io.javaoperatorsdk.operator.processing.event.source.EventSource;
+import io.javaoperatorsdk.operator.processing.event.source.informer.InformerEventSource;
+import io.javaoperatorsdk.operator.processing.event.source.informer.Mappers;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
 @ControllerConfiguration
-public class AppProvisionerReconciler implements Reconciler<ApplicationProvisioner> {
+public class AppProvisionerReconciler implements Reconciler<ApplicationProvisioner>,
+        EventSourceInitializer<ApplicationProvisioner> {
     private static final Logger log = LoggerFactory.getLogger(AppProvisionerReconciler.class);
 
+    private static final Duration STATUS_MIN_INTERVAL = Duration.ofSeconds(5);
+
+    private static final int DEFAULT_METRICS_PORT = 8080;
+
+    // Marks the StatefulSets written by this controller, the only ones it watches
+    static final String MANAGED_BY_LABEL = "app.kubernetes.io/managed-by";
+    static final String MANAGED_BY = "scaling-controller";
+
+    // Generation of the ApplicationProvisioner a StatefulSet was last written for
+    static final String GENERATION_ANNOTATION = "scalingcontroller.com/generation";
+
+    private final Predicate<String> namespaceFilter;
+    private final ControllerMetrics metrics;
+    private final StatusUpdater statusUpdater;
+
+    public AppProvisionerReconciler() {
+        this(namespace -> true, new ControllerMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * @param namespaceFilter Accepts the namespaces this replica is responsible for.
+     *                        Resources outside of it are left to their owning shard.
+     * @param metrics         Records API calls and per-service apply latency
+     */
+    public AppProvisionerReconciler(Predicate<String> namespaceFilter, ControllerMetrics metrics) {
+        this(namespaceFilter, metrics, new StatusUpdater(STATUS_MIN_INTERVAL, metrics));
+    }
+
+    AppProvisionerReconciler(Predicate<String> namespaceFilter, ControllerMetrics metrics, StatusUpdater statusUpdater) {
+        this.namespaceFilter = namespaceFilter;
+        this.metrics = metrics;
+        this.statusUpdater = statusUpdater;
+    }
+
+    /**
+     * Watches the owned StatefulSets so that ready replica changes reach the status.
+     * Only StatefulSets labelled as managed by this controller are cached.
+     */
+    @Override
+    public Map<String, EventSource> prepareEventSources(EventSourceContext<ApplicationProvisioner> context) {
+        InformerEventSource<StatefulSet, ApplicationProvisioner> statefulSets = new InformerEventSource<>(
+            InformerConfiguration.from(StatefulSet.class, context)
+                .withLabelSelector(MANAGED_BY_LABEL + "=" + MANAGED_BY)
+                .withSecondaryToPrimaryMapper(Mappers.fromOwnerReference())
+                .build(),
+            context);
+        return EventSourceInitializer.nameEventSources(statefulSets);
+    }
+
     @Override
     public UpdateControl<ApplicationProvisioner> reconcile(
             ApplicationProvisioner resource,
             Context<ApplicationProvisioner> context) {
 
+        if (!namespaceFilter.test(resource.getMetadata().getNamespace())) {
+            log.debug("Skipping ApplicationProvisioner {} owned by another shard", resource.getMetadata().getName());
+            return UpdateControl.noUpdate();
+        }
+
         log.info("Reconciling ApplicationProvisioner: {}", resource.getMetadata().getName());
 
+        Map<String, StatefulSet> existing = new HashMap<>();
+        for (StatefulSet statefulSet : context.getSecondaryResources(StatefulSet.class)) {
+            existing.put(statefulSet.getMetadata().getName(), statefulSet);
+        }
+        Map<String, ServiceStatus> previous = previousServiceStatuses(resource);
+
+        List<ServiceStatus> serviceStatuses = new ArrayList<>();
         for (Service service : resource.getSpec().getServices()) {
-            StatefulSet statefulSet = createStatefulSet(service, resource);
-            
-            context.getClient().apps().statefulSets()
-                .inNamespace(resource.getMetadata().getNamespace())
-                .createOrReplace(statefulSet);
+            StatefulSet statefulSet = existing.get(service.getStatefulSetName());
+            ServiceStatus previousStatus = previous.get(service.getName());
+            int appliedSpecReplicas = previousStatus != null ? previousStatus.getAppliedSpecReplicas() : 0;
+
+            if (!isUpToDate(statefulSet, service, resource)) {
+                StatefulSet desired = createStatefulSet(service, resource);
+                String namespace = resource.getMetadata().getNamespace();
+                statefulSet = metrics.timeServiceApply(service, namespace, () -> metrics.timeApiCall("put", "StatefulSet",
+                    () -> context.getClient().apps().statefulSets()
+                        .inNamespace(namespace)
+                        .createOrReplace(desired)));
+                appliedSpecReplicas = service.getReplicas();
+            }
+
+            serviceStatuses.add(new ServiceStatus(
+                service.getName(),
+                service.getStatefulSetName(),
+                service.getReplicas(),
+                readyReplicas(statefulSet),
+                appliedSpecReplicas));
         }
 
+        metrics.setManagedStatefulSets(resource, (int) serviceStatuses.stream()
+            .map(ServiceStatus::getStatefulSetName)
+            .distinct()
+            .count());
+
+        ApplicationProvisionerStatus status = new ApplicationProvisionerStatus();
+        status.setObservedGeneration(resource.getMetadata().getGeneration());
+        status.setServices(serviceStatuses);
+
+        Optional<Duration> retryAfter = statusUpdater.update(context.getClient(), resource, status);
+        if (retryAfter.isPresent()) {
+            return UpdateControl.<ApplicationProvisioner>noUpdate().rescheduleAfter(retryAfter.get());
+        }
         return UpdateControl.noUpdate();
     }
 
+    // A StatefulSet written for the current generation only needs a new write
+    // when its replicas drifted. The generation is read from the StatefulSet
+    // rather than the status, which lags behind while status writes are throttled.
+    private static boolean isUpToDate(StatefulSet statefulSet, Service service, ApplicationProvisioner resource) {
+        if (statefulSet == null || statefulSet.getMetadata().getAnnotations() == null) {
+            return false;
+        }
+        return Objects.equals(statefulSet.getMetadata().getAnnotations().get(GENERATION_ANNOTATION),
+                String.valueOf(resource.getMetadata().getGeneration()))
+            && Objects.equals(statefulSet.getSpec().getReplicas(), service.getReplicas());
+    }
+
+    private static Map<String, ServiceStatus> previousServiceStatuses(ApplicationProvisioner resource) {
+        Map<String, ServiceStatus> statuses = new HashMap<>();
+        if (resource.getStatus() != null && resource.getStatus().getServices() != null) {
+            for (ServiceStatus status : resource.getStatus().getServices()) {
+                statuses.put(status.getName(), status);
+            }
+        }
+        return statuses;
+    }
+
+    private static int readyReplicas(StatefulSet statefulSet) {
+        if (statefulSet == null || statefulSet.getStatus() == null || statefulSet.getStatus().getReadyReplicas() == null) {
+            return 0;
+        }
+        return statefulSet.getStatus().getReadyReplicas();
+    }
+
     private StatefulSet createStatefulSet(Service service, ApplicationProvisioner resource) {
         return new StatefulSetBuilder()
             .withNewMetadata()
                 .withName(service.getStatefulSetName())
                 .withNamespace(resource.getMetadata().getNamespace())
                 .addToLabels("app", service.getName())
+                .addToLabels(MANAGED_BY_LABEL, MANAGED_BY)
+                .addToAnnotations(GENERATION_ANNOTATION, String.valueOf(resource.getMetadata().getGeneration()))
                 .addToOwnerReferences(createOwnerReference(resource))
             .endMetadata()
             .withNewSpec()
@@ -92,9 +241,133 @@ public class AppProvisionerReconciler implements Reconciler<ApplicationProvision
             .build();
     }
 
-    public static void main(String[] args) {
-        io.javaoperatorsdk.operator.Operator operator = new io.javaoperatorsdk.operator.Operator();
-        operator.register(new AppProvisionerReconciler());
+    public static void main(String[] args) throws IOException {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        ObservationRegistry observations = observations();
+        ControllerMetrics metrics = new ControllerMetrics(registry, observations);
+        int metricsPort = Integer.parseInt(System.getenv().getOrDefault("METRICS_PORT", String.valueOf(DEFAULT_METRICS_PORT)));
+        new MetricsEndpoint(registry, metricsPort).start();
+
+        String kubeconfigs = System.getenv("KUBECONFIGS");
+        if (kubeconfigs != null && !kubeconfigs.isBlank()) {
+            startMultiCluster(kubeconfigs, registry, observations);
+            return;
+        }
+
+        String shardGroup = System.getenv("SHARD_GROUP");
+        if (shardGroup != null && !shardGroup.isBlank()) {
+            startSharded(shardGroup, metrics);
+            return;
+        }
+
+        Operator operator = new Operator(overrider -> overrider
+            .withKubernetesClient(countedClient(metrics))
+            .withMetrics(metrics));
+        operator.register(new AppProvisionerReconciler(namespace -> true, metrics));
+        operator.start();
+    }
+
+    /**
+     * Traces reconciles into TRACE_FILE when set, keeping TRACE_SAMPLE_RATIO of
+     * them and, with TRACE_SLOW_MILLIS, every reconcile taking at least that long.
+     */
+    private static ObservationRegistry observations() throws IOException {
+        String traceFile = System.getenv("TRACE_FILE");
+        if (traceFile == null || traceFile.isBlank()) {
+            return ObservationRegistry.NOOP;
+        }
+        double sampleRatio = Double.parseDouble(System.getenv().getOrDefault("TRACE_SAMPLE_RATIO", "0.01"));
+        String slowMillis = System.getenv("TRACE_SLOW_MILLIS");
+        SpanLogHandler spans = SpanLogHandler.toFile(Path.of(traceFile), sampleRatio,
+            slowMillis != null ? Duration.ofMillis(Long.parseLong(slowMillis)) : null);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                spans.close();
+            } catch (IOException e) {
+                log.warn("Failed to close trace file {}", traceFile, e);
+            }
+        }));
+        ObservationRegistry observations = ObservationRegistry.create();
+        observations.observationConfig().observationHandler(spans);
+        return observations;
+    }
+
+    /**
+     * Reconciles every cluster listed in KUBECONFIGS, a path separated list of
+     * kubeconfig files in the same format as KUBECONFIG. Each file is one cluster
+     * named after the file.
+     */
+    private static void startMultiCluster(String kubeconfigs, MeterRegistry registry,
+            ObservationRegistry observations) {
+        MultiClusterOperator.Builder builder = MultiClusterOperator.builder()
+            .registry(registry)
+            .observations(observations);
+        for (String kubeconfig : kubeconfigs.split(File.pathSeparator)) {
+            if (!kubeconfig.isBlank()) {
+                builder.kubeconfig(Path.of(kubeconfig.trim()));
+            }
+        }
+        MultiClusterOperator operator = builder.build();
+        Runtime.getRuntime().addShutdownHook(new Thread(operator::close));
+        operator.start();
+        log.info("Managing ApplicationProvisioners in clusters {}", operator.getClusters());
+    }
+
+    /**
+     * Starts one replica of a sharded deployment. Replicas sharing SHARD_GROUP
+     * split namespaces between them and only run informers for their own share.
+     */
+    private static void startSharded(String shardGroup, ControllerMetrics metrics) throws IOException {
+        String identity = shardIdentity();
+        KubernetesClient client = countedClient(metrics);
+        String leaseNamespace = System.getenv().getOrDefault("POD_NAMESPACE", "default");
+
+        ShardManager shards = ShardManager.builder()
+            .client(client)
+            .identity(identity)
+            .group(shardGroup)
+            .leaseNamespace(leaseNamespace)
+            .build();
+        shards.refresh();
+
+        Operator operator = new Operator(overrider -> overrider
+            .withKubernetesClient(client)
+            .withMetrics(metrics));
+        RegisteredController<ApplicationProvisioner> controller = operator.register(
+            new AppProvisionerReconciler(shards::owns, metrics),
+            overrider -> overrider.settingNamespaces(watchedNamespaces(shards, shards.getOwnedNamespaces())));
+        shards.setAssignmentListener(owned -> controller.changeNamespaces(watchedNamespaces(shards, owned)));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(shards::close));
         operator.start();
+        shards.start();
+    }
+
+    private static KubernetesClient countedClient(ControllerMetrics metrics) {
+        return new KubernetesClientBuilder()
+            .withHttpClientBuilderConsumer(http -> http
+                .addOrReplaceInterceptor(ApiRequestCounter.NAME, metrics.apiRequestCounter()))
+            .build();
+    }
+
+    // The pod name set through the downward API, else the host name, which is the pod name by default
+    private static String shardIdentity() throws UnknownHostException {
+        for (String variable : List.of("POD_NAME", "HOSTNAME")) {
+            String value = System.getenv(variable);
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        String hostName = InetAddress.getLocalHost().getHostName();
+        if (hostName == null || hostName.isBlank()) {
+            throw new IllegalStateException("Cannot identify this replica for SHARD_GROUP, set POD_NAME");
+        }
+        return hostName;
+    }
+
+    // An empty namespace set means "all namespaces" to the operator, so an idle
+    // shard watches only its lease namespace and the reconcile filter drops the rest
+    private static Set<String> watchedNamespaces(ShardManager shards, Set<String> owned) {
+        return owned.isEmpty() ? Set.of(shards.getLeaseNamespace()) : owned;
     }
 }
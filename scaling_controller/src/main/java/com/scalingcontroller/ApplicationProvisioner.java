@@ -36,7 +36,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 @Group("scalingcontroller.com")
 @Version("v1")
 @ShortNames("appprov")
-public class ApplicationProvisioner extends CustomResource<ApplicationProvisionerSpec, Void> implements Namespaced {
+public class ApplicationProvisioner extends CustomResource<ApplicationProvisionerSpec, ApplicationProvisionerStatus> implements Namespaced {
     
     public ApplicationProvisioner() {
         super();
@@ -53,6 +53,7 @@ public class ApplicationProvisioner extends CustomResource<ApplicationProvisione
                "apiVersion='" + getApiVersion() + "'" +
                ", metadata=" + getMetadata() +
                ", spec=" + getSpec() +
+               ", status=" + getStatus() +
                "}";
     }
 
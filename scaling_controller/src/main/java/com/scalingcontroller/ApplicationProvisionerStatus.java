@@ -0,0 +1,72 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ApplicationProvisionerStatus {
+    private Long observedGeneration;
+    private List<ServiceStatus> services;
+
+    public Long getObservedGeneration() {
+        return observedGeneration;
+    }
+
+    public void setObservedGeneration(Long observedGeneration) {
+        this.observedGeneration = observedGeneration;
+    }
+
+    public List<ServiceStatus> getServices() {
+        return services;
+    }
+
+    public void setServices(List<ServiceStatus> services) {
+        this.services = services;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ApplicationProvisionerStatus that = (ApplicationProvisionerStatus) o;
+        if (observedGeneration != null ? !observedGeneration.equals(that.observedGeneration) : that.observedGeneration != null) return false;
+        return services != null ? services.equals(that.services) : that.services == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = observedGeneration != null ? observedGeneration.hashCode() : 0;
+        result = 31 * result + (services != null ? services.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplicationProvisionerStatus{" +
+               "observedGeneration=" + observedGeneration +
+               ", services=" + services +
+               '}';
+    }
+}
@@ -0,0 +1,255 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.javaoperatorsdk.operator.api.monitoring.Metrics;
+import io.javaoperatorsdk.operator.api.reconciler.RetryInfo;
+import io.javaoperatorsdk.operator.processing.event.Event;
+import io.javaoperatorsdk.operator.processing.event.ResourceID;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Operator instrumentation backed by a Micrometer registry.
+ *
+ * Registered with the operator it records how long resources wait between
+ * being submitted for reconciliation and a worker picking them up, the queue
+ * depth and the reconcile duration per outcome. The reconciler uses it to time
+ * its own writes by verb and each per-service apply, while the interceptor from
+ * {@link #apiRequestCounter()} counts every request its client sends. All timers
+ * publish histogram buckets so latencies can be aggregated across replicas.
+ * When one process manages several clusters every meter carries a
+ * {@code cluster} tag so that their queues and API latencies stay apart.
+ *
+ * With an {@link ObservationRegistry} the reconciles, service applies and API
+ * calls are also observed under the same names, nested in that order, so a
+ * handler such as {@link SpanLogHandler} can trace a single slow reconcile.
+ */
+public class ControllerMetrics implements Metrics {
+    private static final String PREFIX = "appprov.";
+
+    public static final String CLUSTER_TAG = "cluster";
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final ObservationRegistry observations;
+    private final Map<ResourceID, Long> queuedSince = new ConcurrentHashMap<>();
+    private final Map<ResourceID, Integer> managedStatefulSets = new ConcurrentHashMap<>();
+    // Timers by tag values, built once instead of being looked up in the registry per call
+    private final Map<ReconcileTags, Timer> reconcileDurations = new ConcurrentHashMap<>();
+    private final Map<ApiCallTags, Timer> apiRequests = new ConcurrentHashMap<>();
+    private final Timer timeInQueue;
+    private final Timer serviceApply;
+    private final Counter failures;
+
+    private record ReconcileTags(String controller, String execution, String outcome) {
+    }
+
+    private record ApiCallTags(String verb, String kind, String result) {
+    }
+
+    public ControllerMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty(), ObservationRegistry.NOOP);
+    }
+
+    /**
+     * @param cluster Name of the cluster the metered operator reconciles,
+     *                added to every meter as the {@code cluster} tag
+     */
+    public ControllerMetrics(MeterRegistry registry, String cluster) {
+        this(registry, Tags.of(CLUSTER_TAG, cluster), ObservationRegistry.NOOP);
+    }
+
+    /**
+     * @param observations Registry the reconciles, service applies and API calls are observed in
+     */
+    public ControllerMetrics(MeterRegistry registry, ObservationRegistry observations) {
+        this(registry, Tags.empty(), observations);
+    }
+
+    public ControllerMetrics(MeterRegistry registry, String cluster, ObservationRegistry observations) {
+        this(registry, Tags.of(CLUSTER_TAG, cluster), observations);
+    }
+
+    private ControllerMetrics(MeterRegistry registry, Tags tags, ObservationRegistry observations) {
+        this.registry = registry;
+        this.tags = tags;
+        this.observations = observations;
+        this.timeInQueue = Timer.builder(PREFIX + "queue.time")
+            .description("Time between a resource being submitted and its reconcile starting")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(registry);
+        this.serviceApply = Timer.builder(PREFIX + "service.apply")
+            .description("Time spent applying the StatefulSet of one service")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(registry);
+        this.failures = Counter.builder(PREFIX + "reconcile.failures")
+            .tags(tags)
+            .register(registry);
+        Gauge.builder(PREFIX + "queue.depth", queuedSince, Map::size)
+            .description("Resources submitted for reconciliation and not yet started")
+            .tags(tags)
+            .register(registry);
+        Gauge.builder(PREFIX + "managed.statefulsets", managedStatefulSets,
+                counts -> counts.values().stream().mapToInt(Integer::intValue).sum())
+            .tags(tags)
+            .register(registry);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public ObservationRegistry getObservations() {
+        return observations;
+    }
+
+    @Override
+    public void reconcileCustomResource(HasMetadata resource, RetryInfo retryInfo, Map<String, Object> metadata) {
+        queuedSince.putIfAbsent(ResourceID.fromResource(resource), System.nanoTime());
+    }
+
+    @Override
+    public void reconciliationExecutionStarted(HasMetadata resource, Map<String, Object> metadata) {
+        Long submitted = queuedSince.remove(ResourceID.fromResource(resource));
+        if (submitted != null) {
+            timeInQueue.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void failedReconciliation(HasMetadata resource, Exception exception, Map<String, Object> metadata) {
+        failures.increment();
+    }
+
+    @Override
+    public void cleanupDoneFor(ResourceID resourceID, Map<String, Object> metadata) {
+        managedStatefulSets.remove(resourceID);
+        queuedSince.remove(resourceID);
+    }
+
+    @Override
+    public <T> T timeControllerExecution(ControllerExecution<T> execution) throws Exception {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        Observation observation = observation(PREFIX + "reconcile")
+            .lowCardinalityKeyValue("controller", execution.controllerName())
+            .lowCardinalityKeyValue("execution", execution.name())
+            .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            T result = execution.execute();
+            outcome = execution.successTypeName(result);
+            return result;
+        } catch (Exception e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.lowCardinalityKeyValue("outcome", outcome).stop();
+            reconcileDurations.computeIfAbsent(
+                    new ReconcileTags(execution.controllerName(), execution.name(), outcome),
+                    key -> Timer.builder(PREFIX + "reconcile.duration")
+                        .tags(tags)
+                        .tag("controller", key.controller())
+                        .tag("execution", key.execution())
+                        .tag("outcome", key.outcome())
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the number of StatefulSets managed for a primary resource.
+     */
+    public void setManagedStatefulSets(HasMetadata resource, int count) {
+        managedStatefulSets.put(ResourceID.fromResource(resource), count);
+    }
+
+    /**
+     * Times the apply of one service's StatefulSet, observed with the service,
+     * StatefulSet and replicas being applied.
+     */
+    public <T> T timeServiceApply(Service service, String namespace, Supplier<T> apply) {
+        return observation(PREFIX + "service.apply")
+            .highCardinalityKeyValue("namespace", namespace)
+            .highCardinalityKeyValue("service", service.getName())
+            .highCardinalityKeyValue("statefulset", service.getStatefulSetName())
+            .highCardinalityKeyValue("replicas", String.valueOf(service.getReplicas()))
+            .observe(() -> serviceApply.record(apply));
+    }
+
+    /**
+     * Counts the requests of the Kubernetes client it is installed in, with the
+     * same tags as the other meters.
+     */
+    public ApiRequestCounter apiRequestCounter() {
+        return new ApiRequestCounter(registry, tags);
+    }
+
+    /**
+     * Times a Kubernetes API call made by the reconciler, by verb and resource
+     * kind. Requests the operator makes on its own, such as informer lists and
+     * watches, are only counted through {@link #apiRequestCounter()}.
+     */
+    public <T> T timeApiCall(String verb, String kind, Supplier<T> call) {
+        long start = System.nanoTime();
+        String result = "error";
+        Observation observation = observation(PREFIX + "api.request")
+            .lowCardinalityKeyValue("verb", verb)
+            .lowCardinalityKeyValue("kind", kind);
+        try {
+            T value = observation.observe(call);
+            result = "success";
+            return value;
+        } finally {
+            apiRequests.computeIfAbsent(new ApiCallTags(verb, kind, result),
+                    key -> Timer.builder(PREFIX + "api.request")
+                        .tags(tags)
+                        .tag("verb", key.verb())
+                        .tag("kind", key.kind())
+                        .tag("result", key.result())
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Carries the meter tags, e.g. the cluster, as low cardinality key values
+    private Observation observation(String name) {
+        Observation observation = Observation.createNotStarted(name, observations);
+        for (Tag tag : tags) {
+            observation.lowCardinalityKeyValue(tag.getKey(), tag.getValue());
+        }
+        return observation;
+    }
+}
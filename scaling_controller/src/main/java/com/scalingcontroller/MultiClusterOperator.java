@@ -0,0 +1,252 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.javaoperatorsdk.operator.Operator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reconciles ApplicationProvisioner resources in several clusters from one process.
+ *
+ * Every cluster gets its own {@link Operator} with a dedicated Kubernetes
+ * client, informer caches, reconcile worker pool and {@link RequestRateLimiter}.
+ * Nothing on the reconcile path is shared between clusters, so an API server
+ * that is slow or unreachable only backs up the workers and request budget of
+ * its own cluster. Operators are started on separate threads for the same
+ * reason: a cluster whose caches take long to sync does not delay the others.
+ */
+public class MultiClusterOperator implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MultiClusterOperator.class);
+
+    private final Map<String, ClusterOperator> clusters;
+
+    private MultiClusterOperator(Map<String, ClusterOperator> clusters) {
+        this.clusters = clusters;
+    }
+
+    public Set<String> getClusters() {
+        return Collections.unmodifiableSet(clusters.keySet());
+    }
+
+    /**
+     * Starts the operator of every cluster on its own thread and returns
+     * without waiting for their caches to sync. A cluster that fails to start
+     * is logged and left stopped while the others keep running.
+     */
+    public void start() {
+        for (ClusterOperator cluster : clusters.values()) {
+            Thread starter = new Thread(() -> {
+                try {
+                    cluster.operator.start();
+                    log.info("Started operator for cluster {}", cluster.name);
+                } catch (Exception e) {
+                    log.error("Failed to start operator for cluster {}", cluster.name, e);
+                }
+            }, "operator-start-" + cluster.name);
+            starter.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ClusterOperator cluster : clusters.values()) {
+            try {
+                cluster.operator.stop();
+            } catch (Exception e) {
+                log.warn("Failed to stop operator for cluster {}", cluster.name, e);
+            }
+            cluster.workers.shutdownNow();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private record ClusterOperator(String name, Operator operator, ExecutorService workers) {
+    }
+
+    public static class Builder {
+        private final Map<String, Config> configs = new LinkedHashMap<>();
+        private final List<Path> kubeconfigs = new ArrayList<>();
+        private MeterRegistry registry = new SimpleMeterRegistry();
+        private ObservationRegistry observations = ObservationRegistry.NOOP;
+        private int reconcileThreads = 10;
+        private double requestsPerSecond = 50;
+        private int burst = 100;
+        private int maxConcurrentRequests = 32;
+
+        /**
+         * Adds a cluster reached through the given client configuration.
+         */
+        public Builder cluster(String name, Config config) {
+            configs.put(name, config);
+            return this;
+        }
+
+        /**
+         * Adds the current context of a kubeconfig file as a cluster named
+         * after the file, without its extension.
+         */
+        public Builder kubeconfig(Path kubeconfig) {
+            kubeconfigs.add(kubeconfig);
+            return this;
+        }
+
+        /**
+         * Registry for the controller metrics, tagged with the cluster name.
+         */
+        public Builder registry(MeterRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Registry the reconciles of every cluster are observed in, with the
+         * cluster name as a key value.
+         */
+        public Builder observations(ObservationRegistry observations) {
+            this.observations = observations;
+            return this;
+        }
+
+        /**
+         * Reconcile workers per cluster.
+         */
+        public Builder reconcileThreads(int reconcileThreads) {
+            this.reconcileThreads = reconcileThreads;
+            return this;
+        }
+
+        /**
+         * Sustained request rate each cluster's client may send, informers included.
+         */
+        public Builder requestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public Builder burst(int burst) {
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Requests each cluster's client keeps in flight at most.
+         */
+        public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        public MultiClusterOperator build() {
+            Map<String, Config> all = new LinkedHashMap<>(configs);
+            for (Path kubeconfig : kubeconfigs) {
+                String name = clusterName(kubeconfig);
+                if (all.containsKey(name)) {
+                    throw new IllegalStateException("Duplicate cluster name " + name);
+                }
+                try {
+                    all.put(name, Config.fromKubeconfig(Files.readString(kubeconfig)));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot read kubeconfig " + kubeconfig, e);
+                }
+            }
+            if (all.isEmpty()) {
+                throw new IllegalStateException("At least one cluster is required");
+            }
+            if (reconcileThreads < 1 || maxConcurrentRequests < 1) {
+                throw new IllegalStateException("Reconcile threads and concurrent requests must be positive");
+            }
+            if (requestsPerSecond <= 0 || burst < 1) {
+                throw new IllegalStateException("Request rate must be positive and burst at least 1");
+            }
+
+            Map<String, ClusterOperator> clusters = new LinkedHashMap<>();
+            all.forEach((name, config) -> clusters.put(name, createOperator(name, config)));
+            return new MultiClusterOperator(clusters);
+        }
+
+        private ClusterOperator createOperator(String name, Config base) {
+            Config config = new ConfigBuilder(base)
+                .withMaxConcurrentRequests(maxConcurrentRequests)
+                .withMaxConcurrentRequestsPerHost(maxConcurrentRequests)
+                .build();
+            ControllerMetrics metrics = new ControllerMetrics(registry, name, observations);
+            // Only this cluster's reconcile workers wait for tokens, never the client's shared threads
+            ThreadGroup workerGroup = new ThreadGroup("reconcile-" + name);
+            RequestRateLimiter limiter = new RequestRateLimiter(requestsPerSecond, burst,
+                thread -> thread.getThreadGroup() == workerGroup);
+            KubernetesClient client = new KubernetesClientBuilder()
+                .withConfig(config)
+                .withHttpClientBuilderConsumer(http -> http
+                    .addOrReplaceInterceptor(RequestRateLimiter.NAME, limiter)
+                    .addOrReplaceInterceptor(ApiRequestCounter.NAME, metrics.apiRequestCounter()))
+                .build();
+
+            ExecutorService workers = Executors.newFixedThreadPool(reconcileThreads, workerThreads(workerGroup, name));
+            Operator operator = new Operator(overrider -> overrider
+                .withKubernetesClient(client)
+                .withMetrics(metrics)
+                .withConcurrentReconciliationThreads(reconcileThreads)
+                .withExecutorService(workers)
+                .withCloseClientOnStop(true)
+                .withStopOnInformerErrorDuringStartup(false));
+            operator.register(new AppProvisionerReconciler(namespace -> true, metrics));
+            return new ClusterOperator(name, operator, workers);
+        }
+
+        private static String clusterName(Path kubeconfig) {
+            String file = kubeconfig.getFileName().toString();
+            int extension = file.lastIndexOf('.');
+            return extension > 0 ? file.substring(0, extension) : file;
+        }
+
+        private static ThreadFactory workerThreads(ThreadGroup group, String cluster) {
+            AtomicInteger count = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(group, runnable, "reconcile-" + cluster + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+/**
+ * Deterministic replica recommender implementing the solver objective.
+ *
+ * For a candidate replica count r the expected utilization is the predicted
+ * utilization scaled by currentReplicas / r, and the fitness (lower is better) is
+ *
+ *   |expectedCpu - targetCpu| + |expectedMemory - targetMemory| + penalty * r
+ *
+ * The search space is a single bounded integer. Outside the replica counts
+ * between the two that bring CPU and memory to target the fitness is monotone,
+ * so only candidates in that range (clamped to the bounds) are evaluated. Ties
+ * resolve to the smallest replica count, which makes the result reproducible
+ * for identical inputs.
+ *
+ * The metrics tracker carries a copy of the scan for its RecommendReplicas
+ * RPC, in a separate build: keep the scan and validation of both in step.
+ */
+public final class ReplicaOptimizer {
+    public static final double DEFAULT_REPLICA_PENALTY = 0.1;
+
+    // Skipped candidates must be worse by more than rounding in the fitness sums
+    private static final double DESCENT_MARGIN = 1e-9;
+
+    private final double replicaPenalty;
+
+    public ReplicaOptimizer() {
+        this(DEFAULT_REPLICA_PENALTY);
+    }
+
+    /**
+     * @param replicaPenalty Weight of the replica count in the objective, to prefer
+     *                       smaller deployments when utilization allows it
+     */
+    public ReplicaOptimizer(double replicaPenalty) {
+        if (replicaPenalty < 0 || Double.isNaN(replicaPenalty)) {
+            throw new IllegalArgumentException("replicaPenalty must be non-negative");
+        }
+        this.replicaPenalty = replicaPenalty;
+    }
+
+    public double getReplicaPenalty() {
+        return replicaPenalty;
+    }
+
+    /**
+     * Recommends replicas for a service given its predicted average utilization
+     * at the current replica count. As in the solver, a service scaled to zero
+     * has no load to spread and is recommended its minimum replicas.
+     */
+    public Recommendation recommend(Service service, double predictedCpu, double predictedMemory) {
+        return recommend(
+            predictedCpu,
+            predictedMemory,
+            service.getReplicas(),
+            service.getMinReplicas(),
+            service.getMaxReplicas(),
+            service.getTargetCpuUtilization(),
+            service.getTargetMemoryUtilization());
+    }
+
+    public Recommendation recommend(
+            double predictedCpu,
+            double predictedMemory,
+            int currentReplicas,
+            int minReplicas,
+            int maxReplicas,
+            double targetCpuUtilization,
+            double targetMemoryUtilization) {
+
+        validate(currentReplicas, minReplicas, maxReplicas, targetCpuUtilization, targetMemoryUtilization);
+
+        double cpuLoad = predictedCpu * currentReplicas;
+        double memoryLoad = predictedMemory * currentReplicas;
+        int best = scan(cpuLoad, memoryLoad, minReplicas, maxReplicas, targetCpuUtilization, targetMemoryUtilization);
+
+        double expectedCpu = cpuLoad / best;
+        double expectedMemory = memoryLoad / best;
+        return new Recommendation(
+            best,
+            expectedCpu,
+            expectedMemory,
+            fitness(expectedCpu, expectedMemory, best, targetCpuUtilization, targetMemoryUtilization));
+    }
+
+    /**
+     * Computes recommendations for every service of the batch in place. Inputs
+     * are validated up front so that a bad entry fails the whole batch before any
+     * output is written.
+     */
+    public void recommend(Batch batch) {
+        int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            validate(batch.currentReplicas[i], batch.minReplicas[i], batch.maxReplicas[i],
+                batch.targetCpuUtilization[i], batch.targetMemoryUtilization[i]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            double cpuLoad = batch.predictedCpu[i] * batch.currentReplicas[i];
+            double memoryLoad = batch.predictedMemory[i] * batch.currentReplicas[i];
+            int best = scan(cpuLoad, memoryLoad, batch.minReplicas[i], batch.maxReplicas[i],
+                batch.targetCpuUtilization[i], batch.targetMemoryUtilization[i]);
+
+            batch.suggestedReplicas[i] = best;
+            batch.expectedCpu[i] = cpuLoad / best;
+            batch.expectedMemory[i] = memoryLoad / best;
+        }
+    }
+
+    private int scan(double cpuLoad, double memoryLoad, int minReplicas, int maxReplicas,
+                     double targetCpu, double targetMemory) {
+        // Once both expected utilizations are below target every term grows with the
+        // replica count, so no candidate after the first such one can be better.
+        // While both are above target each added replica closes the gaps by more
+        // than its penalty as long as (cpuLoad + memoryLoad) > penalty * r * (r + 1),
+        // so no candidate before the last such one can be better either.
+        int first = minReplicas;
+        int last = maxReplicas;
+        if (cpuLoad >= 0 && memoryLoad >= 0) {
+            double upper = Math.ceil(Math.max(cpuLoad / targetCpu, memoryLoad / targetMemory));
+            last = (int) Math.max(minReplicas, Math.min(maxReplicas, upper));
+            double lower = Math.floor(Math.min(cpuLoad / targetCpu, memoryLoad / targetMemory));
+            int below = (int) Math.min(last, lower);
+            if (below > minReplicas
+                    && (cpuLoad + memoryLoad) / ((double) (below - 1) * below) - replicaPenalty > DESCENT_MARGIN) {
+                first = below;
+            }
+        }
+        int best = first;
+        double bestFitness = Double.POSITIVE_INFINITY;
+        for (int replicas = first; replicas <= last; replicas++) {
+            double value = fitness(cpuLoad / replicas, memoryLoad / replicas, replicas, targetCpu, targetMemory);
+            if (value < bestFitness) {
+                bestFitness = value;
+                best = replicas;
+            }
+        }
+        return best;
+    }
+
+    private double fitness(double expectedCpu, double expectedMemory, int replicas,
+                           double targetCpu, double targetMemory) {
+        return Math.abs(expectedCpu - targetCpu)
+            + Math.abs(expectedMemory - targetMemory)
+            + replicaPenalty * replicas;
+    }
+
+    private static void validate(int currentReplicas, int minReplicas, int maxReplicas,
+                                 double targetCpu, double targetMemory) {
+        if (minReplicas < 1) {
+            throw new IllegalArgumentException("minReplicas must be at least 1");
+        }
+        if (maxReplicas < minReplicas) {
+            throw new IllegalArgumentException("maxReplicas must be greater than or equal to minReplicas");
+        }
+        if (currentReplicas < 0) {
+            throw new IllegalArgumentException("currentReplicas must be non-negative");
+        }
+        if (!(targetCpu > 0 && targetCpu < 100)) {
+            throw new IllegalArgumentException("targetCpuUtilization must be between 0 and 100");
+        }
+        if (!(targetMemory > 0 && targetMemory < 100)) {
+            throw new IllegalArgumentException("targetMemoryUtilization must be between 0 and 100");
+        }
+    }
+
+    /**
+     * Result of a single recommendation.
+     *
+     * @param replicas       Suggested number of replicas
+     * @param expectedCpu    Expected CPU utilization with the suggested replicas
+     * @param expectedMemory Expected memory utilization with the suggested replicas
+     * @param fitness        Objective value of the suggestion
+     */
+    public record Recommendation(int replicas, double expectedCpu, double expectedMemory, double fitness) {
+    }
+
+    /**
+     * Column oriented input and output for recommending many services at once.
+     * Callers fill the input arrays for indexes [0, size) and read the outputs
+     * after {@link ReplicaOptimizer#recommend(Batch)}.
+     */
+    public static final class Batch {
+        public final double[] predictedCpu;
+        public final double[] predictedMemory;
+        public final int[] currentReplicas;
+        public final int[] minReplicas;
+        public final int[] maxReplicas;
+        public final double[] targetCpuUtilization;
+        public final double[] targetMemoryUtilization;
+
+        public final int[] suggestedReplicas;
+        public final double[] expectedCpu;
+        public final double[] expectedMemory;
+
+        private int size;
+
+        public Batch(int capacity) {
+            predictedCpu = new double[capacity];
+            predictedMemory = new double[capacity];
+            currentReplicas = new int[capacity];
+            minReplicas = new int[capacity];
+            maxReplicas = new int[capacity];
+            targetCpuUtilization = new double[capacity];
+            targetMemoryUtilization = new double[capacity];
+            suggestedReplicas = new int[capacity];
+            expectedCpu = new double[capacity];
+            expectedMemory = new double[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int capacity() {
+            return predictedCpu.length;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Appends a service and returns its index in the batch.
+         */
+        public int add(double cpu, double memory, int current, int min, int max,
+                       double targetCpu, double targetMemory) {
+            if (size == capacity()) {
+                throw new IllegalStateException("Batch capacity of " + capacity() + " exceeded");
+            }
+            int index = size++;
+            predictedCpu[index] = cpu;
+            predictedMemory[index] = memory;
+            currentReplicas[index] = current;
+            minReplicas[index] = min;
+            maxReplicas[index] = max;
+            targetCpuUtilization[index] = targetCpu;
+            targetMemoryUtilization[index] = targetMemory;
+            return index;
+        }
+
+        public int add(Service service, double cpu, double memory) {
+            return add(cpu, memory, service.getReplicas(), service.getMinReplicas(), service.getMaxReplicas(),
+                service.getTargetCpuUtilization(), service.getTargetMemoryUtilization());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.client.http.BasicBuilder;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import io.fabric8.kubernetes.client.http.RequestTags;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Token bucket limiting the request rate of one Kubernetes client.
+ *
+ * Installed as an HTTP interceptor it takes a token for every request, informer
+ * list and watch calls included. Tokens refill at {@code requestsPerSecond} up
+ * to {@code burst}. Waiting requests reserve their token up front, so callers
+ * are released in arrival order instead of racing for the next refill.
+ *
+ * Only the threads accepted by {@code waitingThreads}, the reconcile workers,
+ * are put to sleep. Requests issued from the client's shared executor threads,
+ * such as informer relists and retries, must not stall them for everything else
+ * the client runs there: they take their token without waiting, and the debt
+ * they leave delays the next worker request instead.
+ */
+public class RequestRateLimiter implements Interceptor {
+    public static final String NAME = "request-rate-limiter";
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final Predicate<Thread> waitingThreads;
+    private final LongSupplier nanoTime;
+    private final LongConsumer sleep;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param waitingThreads Accepts the threads that wait for their token
+     */
+    public RequestRateLimiter(double requestsPerSecond, int burst, Predicate<Thread> waitingThreads) {
+        this(requestsPerSecond, burst, waitingThreads, System::nanoTime, RequestRateLimiter::sleep);
+    }
+
+    RequestRateLimiter(double requestsPerSecond, int burst, Predicate<Thread> waitingThreads,
+            LongSupplier nanoTime, LongConsumer sleep) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("requestsPerSecond must be positive and burst at least 1");
+        }
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.waitingThreads = waitingThreads;
+        this.nanoTime = nanoTime;
+        this.sleep = sleep;
+        this.tokens = burst;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    @Override
+    public void before(BasicBuilder builder, HttpRequest request, RequestTags tags) {
+        long wait = reserve();
+        if (wait > 0 && waitingThreads.test(Thread.currentThread())) {
+            sleep.accept(wait);
+        }
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes one token, going into debt when the bucket is empty.
+     *
+     * @return Nanoseconds the caller has to wait before sending its request
+     */
+    synchronized long reserve() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+}
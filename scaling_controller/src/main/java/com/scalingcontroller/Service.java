@@ -30,6 +30,10 @@ public class Service {
     private String image;
     private ResourceRequirements resources;
     private int replicas;
+    private int minReplicas = 1;
+    private int maxReplicas = 10;
+    private double targetCpuUtilization = 70.0;
+    private double targetMemoryUtilization = 70.0;
 
     public String getName() {
         return name;
@@ -71,6 +75,38 @@ public class Service {
         this.replicas = replicas;
     }
 
+    public int getMinReplicas() {
+        return minReplicas;
+    }
+
+    public void setMinReplicas(int minReplicas) {
+        this.minReplicas = minReplicas;
+    }
+
+    public int getMaxReplicas() {
+        return maxReplicas;
+    }
+
+    public void setMaxReplicas(int maxReplicas) {
+        this.maxReplicas = maxReplicas;
+    }
+
+    public double getTargetCpuUtilization() {
+        return targetCpuUtilization;
+    }
+
+    public void setTargetCpuUtilization(double targetCpuUtilization) {
+        this.targetCpuUtilization = targetCpuUtilization;
+    }
+
+    public double getTargetMemoryUtilization() {
+        return targetMemoryUtilization;
+    }
+
+    public void setTargetMemoryUtilization(double targetMemoryUtilization) {
+        this.targetMemoryUtilization = targetMemoryUtilization;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -78,6 +114,10 @@ public class Service {
         
         Service service = (Service) o;
         if (replicas != service.replicas) return false;
+        if (minReplicas != service.minReplicas) return false;
+        if (maxReplicas != service.maxReplicas) return false;
+        if (Double.compare(targetCpuUtilization, service.targetCpuUtilization) != 0) return false;
+        if (Double.compare(targetMemoryUtilization, service.targetMemoryUtilization) != 0) return false;
         if (!name.equals(service.name)) return false;
         if (!statefulSetName.equals(service.statefulSetName)) return false;
         if (!image.equals(service.image)) return false;
@@ -91,6 +131,10 @@ public class Service {
         result = 31 * result + image.hashCode();
         result = 31 * result + resources.hashCode();
         result = 31 * result + replicas;
+        result = 31 * result + minReplicas;
+        result = 31 * result + maxReplicas;
+        result = 31 * result + Double.hashCode(targetCpuUtilization);
+        result = 31 * result + Double.hashCode(targetMemoryUtilization);
         return result;
     }
 
@@ -102,6 +146,10 @@ public class Service {
                ", image='" + image + '\'' +
                ", resources=" + resources +
                ", replicas=" + replicas +
+               ", minReplicas=" + minReplicas +
+               ", maxReplicas=" + maxReplicas +
+               ", targetCpuUtilization=" + targetCpuUtilization +
+               ", targetMemoryUtilization=" + targetMemoryUtilization +
                '}';
     }
 }
@@ -0,0 +1,120 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ServiceStatus {
+    private String name;
+    private String statefulSetName;
+    private int desiredReplicas;
+    private int readyReplicas;
+    private int appliedSpecReplicas;
+
+    public ServiceStatus() {
+    }
+
+    public ServiceStatus(String name, String statefulSetName, int desiredReplicas, int readyReplicas, int appliedSpecReplicas) {
+        this.name = name;
+        this.statefulSetName = statefulSetName;
+        this.desiredReplicas = desiredReplicas;
+        this.readyReplicas = readyReplicas;
+        this.appliedSpecReplicas = appliedSpecReplicas;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getStatefulSetName() {
+        return statefulSetName;
+    }
+
+    public void setStatefulSetName(String statefulSetName) {
+        this.statefulSetName = statefulSetName;
+    }
+
+    public int getDesiredReplicas() {
+        return desiredReplicas;
+    }
+
+    public void setDesiredReplicas(int desiredReplicas) {
+        this.desiredReplicas = desiredReplicas;
+    }
+
+    public int getReadyReplicas() {
+        return readyReplicas;
+    }
+
+    public void setReadyReplicas(int readyReplicas) {
+        this.readyReplicas = readyReplicas;
+    }
+
+    /**
+     * Replica count of the spec the controller last wrote to the StatefulSet.
+     * Recommendations are not applied by this controller, so this only differs
+     * from {@code desiredReplicas} until a spec change has been written.
+     */
+    public int getAppliedSpecReplicas() {
+        return appliedSpecReplicas;
+    }
+
+    public void setAppliedSpecReplicas(int appliedSpecReplicas) {
+        this.appliedSpecReplicas = appliedSpecReplicas;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ServiceStatus that = (ServiceStatus) o;
+        if (desiredReplicas != that.desiredReplicas) return false;
+        if (readyReplicas != that.readyReplicas) return false;
+        if (appliedSpecReplicas != that.appliedSpecReplicas) return false;
+        if (name != null ? !name.equals(that.name) : that.name != null) return false;
+        return statefulSetName != null ? statefulSetName.equals(that.statefulSetName) : that.statefulSetName == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name != null ? name.hashCode() : 0;
+        result = 31 * result + (statefulSetName != null ? statefulSetName.hashCode() : 0);
+        result = 31 * result + desiredReplicas;
+        result = 31 * result + readyReplicas;
+        result = 31 * result + appliedSpecReplicas;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceStatus{" +
+               "name='" + name + '\'' +
+               ", statefulSetName='" + statefulSetName + '\'' +
+               ", desiredReplicas=" + desiredReplicas +
+               ", readyReplicas=" + readyReplicas +
+               ", appliedSpecReplicas=" + appliedSpecReplicas +
+               '}';
+    }
+}
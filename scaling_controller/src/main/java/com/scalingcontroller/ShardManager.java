@@ -0,0 +1,267 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseSpec;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Lease based membership for sharded controller replicas.
+ *
+ * Each replica keeps a Lease labelled with its shard group renewed. The set of
+ * non-expired leases in the group forms a {@link ShardRing} and every namespace
+ * is owned by exactly one live member. When a replica joins, stops or misses its
+ * renewals the remaining members pick up its namespaces on their next refresh.
+ */
+public class ShardManager implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ShardManager.class);
+
+    static final String GROUP_LABEL = "scalingcontroller.com/shard-group";
+
+    private final KubernetesClient client;
+    private final String identity;
+    private final String group;
+    private final String leaseNamespace;
+    private final Duration leaseDuration;
+    private final Duration renewInterval;
+    private final Clock clock;
+
+    private volatile ShardRing ring = new ShardRing(List.of());
+    private volatile Set<String> ownedNamespaces = Collections.emptySet();
+    private volatile Consumer<Set<String>> assignmentListener = owned -> { };
+    private ScheduledExecutorService scheduler;
+
+    private ShardManager(Builder builder) {
+        this.client = builder.client;
+        this.identity = builder.identity;
+        this.group = builder.group;
+        this.leaseNamespace = builder.leaseNamespace;
+        this.leaseDuration = builder.leaseDuration;
+        this.renewInterval = builder.renewInterval;
+        this.clock = builder.clock;
+    }
+
+    public String getIdentity() {
+        return identity;
+    }
+
+    public String getLeaseNamespace() {
+        return leaseNamespace;
+    }
+
+    public ShardRing getRing() {
+        return ring;
+    }
+
+    public Set<String> getOwnedNamespaces() {
+        return ownedNamespaces;
+    }
+
+    public boolean owns(String namespace) {
+        return ownedNamespaces.contains(namespace);
+    }
+
+    /**
+     * Registers the callback invoked with the new namespace set whenever the
+     * assignment of this replica changes.
+     */
+    public void setAssignmentListener(Consumer<Set<String>> assignmentListener) {
+        this.assignmentListener = assignmentListener;
+    }
+
+    /**
+     * Renews this replica's lease, reads the live members of the group and
+     * recomputes the namespaces it owns.
+     */
+    public synchronized void refresh() {
+        renewLease();
+
+        ShardRing current = new ShardRing(liveMembers());
+        Set<String> owned = client.namespaces().list().getItems().stream()
+            .map(namespace -> namespace.getMetadata().getName())
+            .filter(name -> identity.equals(current.ownerOf(name)))
+            .collect(Collectors.toCollection(TreeSet::new));
+
+        ring = current;
+        if (!owned.equals(ownedNamespaces)) {
+            ownedNamespaces = Collections.unmodifiableSet(owned);
+            log.info("Shard {} of group {} ({} members) now owns {} namespaces",
+                identity, group, current.getMembers().size(), owned.size());
+            assignmentListener.accept(ownedNamespaces);
+        }
+    }
+
+    public synchronized void start() {
+        refresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.warn("Failed to refresh shard membership for {}", identity, e);
+            }
+        }, renewInterval.toMillis(), renewInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops renewing and deletes the lease so that other members take over
+     * without waiting for it to expire.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        client.coordination().v1().leases()
+            .inNamespace(leaseNamespace)
+            .withName(leaseName())
+            .delete();
+    }
+
+    private void renewLease() {
+        Lease lease = new LeaseBuilder()
+            .withNewMetadata()
+                .withName(leaseName())
+                .withNamespace(leaseNamespace)
+                .addToLabels(GROUP_LABEL, group)
+            .endMetadata()
+            .withNewSpec()
+                .withHolderIdentity(identity)
+                .withLeaseDurationSeconds((int) leaseDuration.toSeconds())
+                .withRenewTime(ZonedDateTime.now(clock))
+            .endSpec()
+            .build();
+
+        client.coordination().v1().leases()
+            .inNamespace(leaseNamespace)
+            .resource(lease)
+            .createOrReplace();
+    }
+
+    private List<String> liveMembers() {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        return client.coordination().v1().leases()
+            .inNamespace(leaseNamespace)
+            .withLabel(GROUP_LABEL, group)
+            .list()
+            .getItems().stream()
+            .map(Lease::getSpec)
+            .filter(spec -> spec != null && spec.getHolderIdentity() != null)
+            .filter(spec -> isLive(spec, now))
+            .map(LeaseSpec::getHolderIdentity)
+            .toList();
+    }
+
+    private boolean isLive(LeaseSpec spec, ZonedDateTime now) {
+        if (identity.equals(spec.getHolderIdentity())) {
+            return true;
+        }
+        if (spec.getRenewTime() == null || spec.getLeaseDurationSeconds() == null) {
+            return false;
+        }
+        return spec.getRenewTime().plusSeconds(spec.getLeaseDurationSeconds()).isAfter(now);
+    }
+
+    private String leaseName() {
+        return group + "-" + identity;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private KubernetesClient client;
+        private String identity;
+        private String group = "appprov";
+        private String leaseNamespace = "default";
+        private Duration leaseDuration = Duration.ofSeconds(15);
+        private Duration renewInterval = Duration.ofSeconds(5);
+        private Clock clock = Clock.systemUTC();
+
+        public Builder client(KubernetesClient client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder identity(String identity) {
+            this.identity = identity;
+            return this;
+        }
+
+        public Builder group(String group) {
+            this.group = group;
+            return this;
+        }
+
+        public Builder leaseNamespace(String leaseNamespace) {
+            this.leaseNamespace = leaseNamespace;
+            return this;
+        }
+
+        public Builder leaseDuration(Duration leaseDuration) {
+            this.leaseDuration = leaseDuration;
+            return this;
+        }
+
+        public Builder renewInterval(Duration renewInterval) {
+            this.renewInterval = renewInterval;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public ShardManager build() {
+            if (client == null) {
+                throw new IllegalStateException("KubernetesClient is required");
+            }
+            if (identity == null || identity.isBlank()) {
+                throw new IllegalStateException("Shard identity is required");
+            }
+            if (!renewInterval.minus(leaseDuration).isNegative()) {
+                throw new IllegalStateException("Renew interval must be shorter than the lease duration");
+            }
+            return new ShardManager(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Assigns keys (namespaces) to shard members using rendezvous hashing.
+ *
+ * Every member scores every key and the highest score wins, so when a member
+ * joins or leaves only the keys it gains or loses change owner. Scores are
+ * computed from the member identity and the key alone, which keeps the
+ * assignment identical across replicas and restarts.
+ */
+public final class ShardRing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<String> members;
+
+    public ShardRing(Collection<String> members) {
+        this.members = members.stream().distinct().sorted().toList();
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Returns the member owning the given key, or null when the ring is empty.
+     */
+    public String ownerOf(String key) {
+        String owner = null;
+        long best = 0;
+        for (String member : members) {
+            long score = score(member, key);
+            if (owner == null || score > best) {
+                owner = member;
+                best = score;
+            }
+        }
+        return owner;
+    }
+
+    static long score(String member, String key) {
+        long hash = FNV_OFFSET;
+        hash = fnv(hash, member);
+        hash = (hash ^ 0xff) * FNV_PRIME;
+        hash = fnv(hash, key);
+        return mix(hash);
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // MurmurHash3 finalizer, spreads FNV output across all 64 bits
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
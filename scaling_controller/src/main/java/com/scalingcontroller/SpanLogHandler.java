@@ -0,0 +1,227 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes observations as spans, one JSON object per line, in the same format
+ * as the metrics tracker's span files so both can be loaded by the same tools.
+ *
+ * An observation without a parent starts a trace, kept for {@code sampleRatio}
+ * of the traces. The decision follows the low 63 bits of the trace id like the
+ * tracker's ratio sampler, so both keep the same traces at the same ratio. With a slow trace threshold the spans of the other traces are
+ * held until their root stops, and the whole trace is written if the root took
+ * at least the threshold, so slow reconciles are kept whatever the ratio.
+ */
+public class SpanLogHandler implements ObservationHandler<Observation.Context>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SpanLogHandler.class);
+
+    // Spans held per trace, beyond which a slow trace is written truncated
+    private static final int MAX_HELD_SPANS = 256;
+
+    private final Writer writer;
+    private final ObjectMapper mapper = new ObjectMapper();
+    // Traces whose id ends in a value below this bound are sampled
+    private final long sampleBound;
+    private final long slowTraceNanos;
+
+    /**
+     * @param slowTraceThreshold Also writes the traces whose root took at
+     *                           least this long, null for sampled traces only
+     */
+    public SpanLogHandler(Writer writer, double sampleRatio, Duration slowTraceThreshold) {
+        if (!(sampleRatio >= 0 && sampleRatio <= 1)) {
+            throw new IllegalArgumentException("sampleRatio must be in [0, 1]");
+        }
+        if (slowTraceThreshold != null && slowTraceThreshold.isNegative()) {
+            throw new IllegalArgumentException("slowTraceThreshold cannot be negative");
+        }
+        this.writer = writer;
+        this.sampleBound = sampleRatio == 1 ? Long.MAX_VALUE : (long) (sampleRatio * Long.MAX_VALUE);
+        this.slowTraceNanos = slowTraceThreshold != null ? slowTraceThreshold.toNanos() : -1;
+    }
+
+    /**
+     * Appends spans to a file, creating it if needed.
+     */
+    public static SpanLogHandler toFile(Path file, double sampleRatio, Duration slowTraceThreshold)
+            throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new SpanLogHandler(writer, sampleRatio, slowTraceThreshold);
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        ObservationView parent = context.getParentObservation();
+        SpanState parentState = parent != null ? parent.getContextView().get(SpanState.class) : null;
+        SpanState state;
+        if (parentState == null) {
+            String traceId = randomId(2);
+            boolean sampled = isSampled(traceId);
+            state = new SpanState(traceId, randomId(1), null, sampled,
+                sampled || slowTraceNanos < 0 ? null : new ArrayList<>());
+        } else {
+            state = new SpanState(parentState.traceId, randomId(1), parentState.spanId, parentState.sampled,
+                parentState.held);
+        }
+        context.put(SpanState.class, state);
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        SpanState state = context.get(SpanState.class);
+        if (state == null || !(state.sampled || state.held != null)) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - state.startNanos;
+        Map<String, Object> span = toSpan(context, state, durationNanos);
+        if (state.sampled) {
+            write(List.of(span));
+        } else if (state.parentSpanId != null) {
+            synchronized (state.held) {
+                if (state.held.size() < MAX_HELD_SPANS) {
+                    state.held.add(span);
+                }
+            }
+        } else if (durationNanos >= slowTraceNanos) {
+            List<Map<String, Object>> trace;
+            synchronized (state.held) {
+                trace = new ArrayList<>(state.held);
+            }
+            trace.add(span);
+            write(trace);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    private static Map<String, Object> toSpan(Observation.Context context, SpanState state, long durationNanos) {
+        Map<String, Object> span = new LinkedHashMap<>();
+        span.put("traceId", state.traceId);
+        span.put("spanId", state.spanId);
+        if (state.parentSpanId != null) {
+            span.put("parentSpanId", state.parentSpanId);
+        }
+        span.put("name", context.getName());
+        span.put("startEpochMicros", state.startEpochMicros);
+        span.put("durationMicros", durationNanos / 1000);
+        Throwable error = context.getError();
+        if (error != null) {
+            span.put("error", error.getClass().getSimpleName()
+                + (error.getMessage() != null ? ": " + error.getMessage() : ""));
+        }
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (KeyValue keyValue : context.getAllKeyValues()) {
+            attributes.put(keyValue.getKey(), keyValue.getValue());
+        }
+        span.put("attributes", attributes);
+        return span;
+    }
+
+    // A failed write loses spans, never a reconcile
+    private void write(List<Map<String, Object>> spans) {
+        try {
+            synchronized (writer) {
+                for (Map<String, Object> span : spans) {
+                    writer.write(mapper.writeValueAsString(span));
+                    writer.write('\n');
+                }
+                writer.flush();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write {} spans", spans.size(), e);
+        }
+    }
+
+    boolean isSampled(String traceId) {
+        if (sampleBound == Long.MAX_VALUE) {
+            return true;
+        }
+        return (Long.parseUnsignedLong(traceId.substring(16), 16) >>> 1) < sampleBound;
+    }
+
+    private static String randomId(int longs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder id = new StringBuilder(16 * longs);
+        for (int i = 0; i < longs; i++) {
+            long value;
+            do {
+                value = random.nextLong();
+            } while (value == 0);
+            id.append(String.format("%016x", value));
+        }
+        return id.toString();
+    }
+
+    // Identity and timing of one observation; held is shared by the spans of an unsampled trace
+    private static final class SpanState {
+        final String traceId;
+        final String spanId;
+        final String parentSpanId;
+        final boolean sampled;
+        final List<Map<String, Object>> held;
+        final long startNanos = System.nanoTime();
+        final long startEpochMicros;
+
+        SpanState(String traceId, String spanId, String parentSpanId, boolean sampled,
+                List<Map<String, Object>> held) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.sampled = sampled;
+            this.held = held;
+            Instant now = Instant.now();
+            this.startEpochMicros = now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Writes ApplicationProvisioner status through JSON merge patches to the status
+ * subresource.
+ *
+ * A patch is only sent when the computed status differs from the one already
+ * stored, and at most once per object every {@code minInterval}, so that ready
+ * replica churn during rollouts does not compete with spec driven writes. A
+ * throttled update reports how long to wait before it can be retried.
+ */
+public class StatusUpdater {
+    private static final Logger log = LoggerFactory.getLogger(StatusUpdater.class);
+
+    // Throttle entries are pruned once the map grows past this size
+    private static final int PRUNE_THRESHOLD = 1024;
+
+    private final long minIntervalNanos;
+    private final ControllerMetrics metrics;
+    private final LongSupplier nanoTime;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public StatusUpdater(Duration minInterval, ControllerMetrics metrics) {
+        this(minInterval, metrics, System::nanoTime);
+    }
+
+    StatusUpdater(Duration minInterval, ControllerMetrics metrics, LongSupplier nanoTime) {
+        this.minIntervalNanos = minInterval.toNanos();
+        this.metrics = metrics;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Patches the status if it changed and the object is not throttled.
+     *
+     * @return The delay after which a throttled update should be retried, or
+     *         empty when the status was written or did not change
+     */
+    public Optional<Duration> update(KubernetesClient client, ApplicationProvisioner resource,
+                                     ApplicationProvisionerStatus status) {
+        if (status.equals(resource.getStatus())) {
+            return Optional.empty();
+        }
+
+        String key = resource.getMetadata().getNamespace() + "/" + resource.getMetadata().getName();
+        long now = nanoTime.getAsLong();
+        Long lastWrite = lastWrites.get(key);
+        if (lastWrite != null && now - lastWrite < minIntervalNanos) {
+            return Optional.of(Duration.ofNanos(minIntervalNanos - (now - lastWrite)));
+        }
+
+        ApplicationProvisioner patch = new ApplicationProvisioner();
+        patch.setMetadata(new ObjectMetaBuilder()
+            .withName(resource.getMetadata().getName())
+            .withNamespace(resource.getMetadata().getNamespace())
+            .build());
+        patch.setStatus(status);
+
+        metrics.timeApiCall("patch", "ApplicationProvisioner", () -> client.resources(ApplicationProvisioner.class)
+            .inNamespace(resource.getMetadata().getNamespace())
+            .resource(patch)
+            .patchStatus());
+        log.debug("Patched status of ApplicationProvisioner {}", key);
+
+        lastWrites.put(key, now);
+        if (lastWrites.size() > PRUNE_THRESHOLD) {
+            lastWrites.values().removeIf(written -> now - written >= minIntervalNanos);
+        }
+        return Optional.empty();
+    }
+}
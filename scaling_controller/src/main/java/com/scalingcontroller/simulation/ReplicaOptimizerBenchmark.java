@@ -0,0 +1,112 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+import com.scalingcontroller.ReplicaOptimizer;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times the {@link ReplicaOptimizer} per decision, one service at a time and
+ * in batches, against evaluating the solver objective at every candidate.
+ *
+ * The solver's genetic algorithm evaluates the objective for each of its 50
+ * individuals per generation, so a single generation costs more than the
+ * exhaustive baseline for any range under 50 replicas. The exhaustive
+ * baseline is also the reference the scan is checked against: every decision
+ * must agree with it.
+ *
+ * Usage: ReplicaOptimizerBenchmark [services] [maxReplicas]
+ */
+public class ReplicaOptimizerBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int services = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int maxReplicas = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Random random = new Random(1);
+        ReplicaOptimizer.Batch batch = new ReplicaOptimizer.Batch(services);
+        for (int i = 0; i < services; i++) {
+            batch.add(random.nextDouble() * 150, random.nextDouble() * 150, 1 + random.nextInt(maxReplicas),
+                1, maxReplicas, 40 + random.nextDouble() * 50, 40 + random.nextDouble() * 50);
+        }
+        ReplicaOptimizer optimizer = new ReplicaOptimizer();
+
+        long single = Long.MAX_VALUE;
+        long batched = Long.MAX_VALUE;
+        long exhaustive = Long.MAX_VALUE;
+        int[] replicas = new int[services];
+        int[] reference = new int[services];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < services; i++) {
+                replicas[i] = optimizer.recommend(batch.predictedCpu[i], batch.predictedMemory[i],
+                    batch.currentReplicas[i], batch.minReplicas[i], batch.maxReplicas[i],
+                    batch.targetCpuUtilization[i], batch.targetMemoryUtilization[i]).replicas();
+            }
+            single = Math.min(single, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            optimizer.recommend(batch);
+            batched = Math.min(batched, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < services; i++) {
+                reference[i] = exhaustive(batch, i);
+            }
+            exhaustive = Math.min(exhaustive, System.nanoTime() - start);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < services; i++) {
+            if (replicas[i] != reference[i] || batch.suggestedReplicas[i] != reference[i]) {
+                mismatches++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d services, replicas in [1, %d], best of %d rounds%n",
+            services, maxReplicas, ROUNDS);
+        System.out.printf(Locale.ROOT, "single      %8.1f ns/decision%n", single / (double) services);
+        System.out.printf(Locale.ROOT, "batch       %8.1f ns/decision%n", batched / (double) services);
+        System.out.printf(Locale.ROOT, "exhaustive  %8.1f ns/decision%n", exhaustive / (double) services);
+        System.out.printf(Locale.ROOT, "decisions differing from exhaustive: %d%n", mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    // The solver objective at every candidate, the lowest count winning ties
+    private static int exhaustive(ReplicaOptimizer.Batch batch, int i) {
+        double cpuLoad = batch.predictedCpu[i] * batch.currentReplicas[i];
+        double memoryLoad = batch.predictedMemory[i] * batch.currentReplicas[i];
+        int best = batch.minReplicas[i];
+        double bestFitness = Double.POSITIVE_INFINITY;
+        for (int replicas = batch.minReplicas[i]; replicas <= batch.maxReplicas[i]; replicas++) {
+            double fitness = Math.abs(cpuLoad / replicas - batch.targetCpuUtilization[i])
+                + Math.abs(memoryLoad / replicas - batch.targetMemoryUtilization[i])
+                + ReplicaOptimizer.DEFAULT_REPLICA_PENALTY * replicas;
+            if (fitness < bestFitness) {
+                bestFitness = fitness;
+                best = replicas;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One combination of scaling knobs to replay a trace with.
+ *
+ * @param targetCpuUtilization    Target of the replica objective, in (0, 100)
+ * @param targetMemoryUtilization Target of the replica objective, in (0, 100)
+ * @param replicaPenalty          Weight of the replica count in the objective
+ * @param decisionInterval        Scrapes between two replica decisions
+ * @param scaleUpDelay            Scrapes until added replicas take load, scale downs are immediate
+ */
+public record ScalingParameters(
+        double targetCpuUtilization,
+        double targetMemoryUtilization,
+        double replicaPenalty,
+        int decisionInterval,
+        int scaleUpDelay) {
+
+    public ScalingParameters {
+        if (!(targetCpuUtilization > 0 && targetCpuUtilization < 100)) {
+            throw new IllegalArgumentException("targetCpuUtilization must be between 0 and 100");
+        }
+        if (!(targetMemoryUtilization > 0 && targetMemoryUtilization < 100)) {
+            throw new IllegalArgumentException("targetMemoryUtilization must be between 0 and 100");
+        }
+        if (!(replicaPenalty >= 0)) {
+            throw new IllegalArgumentException("replicaPenalty must be non-negative");
+        }
+        if (decisionInterval < 1) {
+            throw new IllegalArgumentException("decisionInterval must be at least 1");
+        }
+        if (scaleUpDelay < 0) {
+            throw new IllegalArgumentException("scaleUpDelay cannot be negative");
+        }
+    }
+
+    /**
+     * Every combination of the given values, in row-major order of the arguments.
+     */
+    public static List<ScalingParameters> grid(double[] targetCpuUtilizations, double[] targetMemoryUtilizations,
+                                               double[] replicaPenalties, int[] decisionIntervals,
+                                               int[] scaleUpDelays) {
+        List<ScalingParameters> grid = new ArrayList<>(targetCpuUtilizations.length
+            * targetMemoryUtilizations.length * replicaPenalties.length
+            * decisionIntervals.length * scaleUpDelays.length);
+        for (double cpu : targetCpuUtilizations) {
+            for (double memory : targetMemoryUtilizations) {
+                for (double penalty : replicaPenalties) {
+                    for (int interval : decisionIntervals) {
+                        for (int delay : scaleUpDelays) {
+                            grid.add(new ScalingParameters(cpu, memory, penalty, interval, delay));
+                        }
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+}
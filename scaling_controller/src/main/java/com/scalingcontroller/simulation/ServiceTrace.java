@@ -0,0 +1,91 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+/**
+ * Recorded demand of one service, summed over its pods at every scrape.
+ *
+ * Loads are in units of one pod's utilization: a CPU load of 250 is the work
+ * of 2.5 pods at 100%, or 5 pods at 50%. That is invariant under scaling, so
+ * the same load can be replayed against any replica count.
+ */
+public final class ServiceTrace {
+    private final String name;
+    private final long[] timestamps;
+    private final double[] cpuLoad;
+    private final double[] memoryLoad;
+    private final double[] hitsLoad;
+    private final int initialReplicas;
+
+    /**
+     * @param timestamps      Scrape times in epoch milliseconds, ascending
+     * @param cpuLoad         Sum of the pods' CPU utilization in percent
+     * @param memoryLoad      Sum of the pods' memory utilization in percent
+     * @param hitsLoad        Sum of the pods' request rates
+     * @param initialReplicas Pods at the first scrape
+     */
+    public ServiceTrace(String name, long[] timestamps, double[] cpuLoad, double[] memoryLoad, double[] hitsLoad,
+                        int initialReplicas) {
+        int length = timestamps.length;
+        if (cpuLoad.length != length || memoryLoad.length != length || hitsLoad.length != length) {
+            throw new IllegalArgumentException("Columns of trace " + name + " differ in length");
+        }
+        for (int i = 1; i < length; i++) {
+            if (timestamps[i] <= timestamps[i - 1]) {
+                throw new IllegalArgumentException("Timestamps of trace " + name + " must be ascending");
+            }
+        }
+        this.name = name;
+        this.timestamps = timestamps;
+        this.cpuLoad = cpuLoad;
+        this.memoryLoad = memoryLoad;
+        this.hitsLoad = hitsLoad;
+        this.initialReplicas = Math.max(1, initialReplicas);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int length() {
+        return timestamps.length;
+    }
+
+    public int getInitialReplicas() {
+        return initialReplicas;
+    }
+
+    // Columns are shared with the simulator, which only reads them
+
+    long[] timestamps() {
+        return timestamps;
+    }
+
+    double[] cpuLoad() {
+        return cpuLoad;
+    }
+
+    double[] memoryLoad() {
+        return memoryLoad;
+    }
+
+    double[] hitsLoad() {
+        return hitsLoad;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+/**
+ * Outcome of replaying every trace with one parameter combination.
+ *
+ * @param parameters     Replayed combination
+ * @param scrapes        Scrapes replayed, summed over services
+ * @param sloViolations  Scrapes at which a service exceeded its SLO
+ * @param replicaHours   Replicas provisioned over time, summed over services
+ * @param replicaChanges Decisions that changed a service's replica count
+ * @param replicasMoved  Replicas added or removed by those decisions
+ * @param reversals      Changes in the opposite direction of the service's previous change
+ */
+public record SimulationResult(
+        ScalingParameters parameters,
+        long scrapes,
+        long sloViolations,
+        double replicaHours,
+        long replicaChanges,
+        long replicasMoved,
+        long reversals) {
+
+    public double sloViolationRatio() {
+        return scrapes == 0 ? 0 : (double) sloViolations / scrapes;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+/**
+ * Utilization a service may run at without violating its SLO. A scrape is a
+ * violation when any limit is exceeded by the load per serving replica.
+ *
+ * @param maxCpuUtilization    CPU utilization limit in percent
+ * @param maxMemoryUtilization Memory utilization limit in percent
+ * @param maxHitsPerReplica    Request rate limit per replica, infinite to ignore hits
+ */
+public record SloPolicy(double maxCpuUtilization, double maxMemoryUtilization, double maxHitsPerReplica) {
+    public static final SloPolicy DEFAULT = new SloPolicy(90, 95, Double.POSITIVE_INFINITY);
+
+    public SloPolicy {
+        if (!(maxCpuUtilization > 0) || !(maxMemoryUtilization > 0) || !(maxHitsPerReplica > 0)) {
+            throw new IllegalArgumentException("SLO limits must be positive");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads per-pod traces from CSV rows of
+ *
+ * <pre>
+ * timestamp,service,pod,cpu,memory,hits
+ * </pre>
+ *
+ * with the timestamp in (decimal) epoch seconds as reported by Prometheus,
+ * CPU and memory in percent of the pod's request and hits in requests per
+ * second. A leading header row and lines starting with '#' are skipped. Pod
+ * samples of a service at the same timestamp are summed into its load.
+ */
+public final class TraceLoader {
+
+    private TraceLoader() {
+    }
+
+    public static List<ServiceTrace> load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return load(reader);
+        }
+    }
+
+    public static List<ServiceTrace> load(BufferedReader reader) throws IOException {
+        Map<String, Accumulator> services = new HashMap<>();
+        int[] commas = new int[5];
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#") || (lineNumber == 1 && line.startsWith("timestamp"))) {
+                continue;
+            }
+            int from = 0;
+            for (int i = 0; i < commas.length; i++) {
+                commas[i] = line.indexOf(',', from);
+                if (commas[i] < 0) {
+                    throw new IOException("Line " + lineNumber + ": expected 6 columns");
+                }
+                from = commas[i] + 1;
+            }
+            try {
+                long timestamp = Math.round(Double.parseDouble(line.substring(0, commas[0])) * 1000);
+                String service = line.substring(commas[0] + 1, commas[1]);
+                double cpu = Double.parseDouble(line.substring(commas[2] + 1, commas[3]));
+                double memory = Double.parseDouble(line.substring(commas[3] + 1, commas[4]));
+                double hits = Double.parseDouble(line.substring(commas[4] + 1));
+                services.computeIfAbsent(service, Accumulator::new).add(timestamp, cpu, memory, hits);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        List<ServiceTrace> traces = new ArrayList<>(services.size());
+        for (Accumulator accumulator : services.values()) {
+            traces.add(accumulator.toTrace());
+        }
+        traces.sort(Comparator.comparing(ServiceTrace::getName));
+        return traces;
+    }
+
+    /**
+     * Sums pod samples per timestamp. Rows usually come grouped by scrape, so
+     * the slot of the previous row is tried before the index.
+     */
+    private static final class Accumulator {
+        private final String name;
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private long[] timestamps = new long[64];
+        private double[] cpu = new double[64];
+        private double[] memory = new double[64];
+        private double[] hits = new double[64];
+        private int[] pods = new int[64];
+        private int size;
+        private int lastSlot = -1;
+
+        Accumulator(String name) {
+            this.name = name;
+        }
+
+        void add(long timestamp, double cpuValue, double memoryValue, double hitsValue) {
+            int slot;
+            if (lastSlot >= 0 && timestamps[lastSlot] == timestamp) {
+                slot = lastSlot;
+            } else {
+                slot = slots.computeIfAbsent(timestamp, key -> append(key));
+                lastSlot = slot;
+            }
+            cpu[slot] += cpuValue;
+            memory[slot] += memoryValue;
+            hits[slot] += hitsValue;
+            pods[slot]++;
+        }
+
+        private int append(long timestamp) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                cpu = Arrays.copyOf(cpu, capacity);
+                memory = Arrays.copyOf(memory, capacity);
+                hits = Arrays.copyOf(hits, capacity);
+                pods = Arrays.copyOf(pods, capacity);
+            }
+            timestamps[size] = timestamp;
+            return size++;
+        }
+
+        ServiceTrace toTrace() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> timestamps[i]));
+            long[] sortedTimestamps = new long[size];
+            double[] sortedCpu = new double[size];
+            double[] sortedMemory = new double[size];
+            double[] sortedHits = new double[size];
+            for (int i = 0; i < size; i++) {
+                int slot = order[i];
+                sortedTimestamps[i] = timestamps[slot];
+                sortedCpu[i] = cpu[slot];
+                sortedMemory[i] = memory[slot];
+                sortedHits[i] = hits[slot];
+            }
+            return new ServiceTrace(name, sortedTimestamps, sortedCpu, sortedMemory, sortedHits,
+                size == 0 ? 1 : pods[order[0]]);
+        }
+    }
+}
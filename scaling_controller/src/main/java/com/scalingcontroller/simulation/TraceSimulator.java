@@ -0,0 +1,433 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+import com.scalingcontroller.ReplicaOptimizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays recorded service traces through the {@link ReplicaOptimizer} for
+ * many parameter combinations, much faster than real time.
+ *
+ * Every scrape of a trace is one simulation step. At each decision the
+ * optimizer sees the utilization of the replicas serving at that time, as the
+ * controller would, and the replicas it adds only take load after the scale
+ * up delay.
+ *
+ * The optimizer's answer only depends on the load and the objective, so
+ * combinations are grouped by target utilizations and penalty. Groups are
+ * split across the cores of a fork-join pool; each task computes the
+ * decisions of a service once and replays every timing of its group against
+ * them while the service's columns are in cache.
+ */
+public class TraceSimulator {
+    private static final Logger log = LoggerFactory.getLogger(TraceSimulator.class);
+
+    private final List<ServiceTrace> traces;
+    private final int minReplicas;
+    private final int maxReplicas;
+    private final SloPolicy slo;
+    private final int parallelism;
+
+    private TraceSimulator(Builder builder) {
+        this.traces = List.copyOf(builder.traces);
+        this.minReplicas = builder.minReplicas;
+        this.maxReplicas = builder.maxReplicas;
+        this.slo = builder.slo;
+        this.parallelism = builder.parallelism;
+    }
+
+    /**
+     * Replays every trace with each combination.
+     *
+     * @return Results in the order of the combinations
+     */
+    public List<SimulationResult> run(List<ScalingParameters> parameters) {
+        // The optimizer only sees the load, so combinations that differ in timing
+        // alone share one series of decisions per trace
+        Map<List<Double>, List<Integer>> byObjective = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            ScalingParameters p = parameters.get(i);
+            byObjective.computeIfAbsent(
+                List.of(p.targetCpuUtilization(), p.targetMemoryUtilization(), p.replicaPenalty()),
+                key -> new ArrayList<>()).add(i);
+        }
+        int[][] groups = byObjective.values().stream()
+            .map(group -> group.stream().mapToInt(Integer::intValue).toArray())
+            .toArray(int[][]::new);
+
+        int[][] required = traces.stream().map(this::required).toArray(int[][]::new);
+        SimulationResult[] results = new SimulationResult[parameters.size()];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Sweep(parameters, groups, required, results, 0, groups.length));
+        } finally {
+            pool.shutdown();
+        }
+        return Arrays.asList(results);
+    }
+
+    private final class Sweep extends RecursiveAction {
+        private final List<ScalingParameters> parameters;
+        private final int[][] groups;
+        private final int[][] required;
+        private final SimulationResult[] results;
+        private final int from;
+        private final int to;
+
+        Sweep(List<ScalingParameters> parameters, int[][] groups, int[][] required, SimulationResult[] results,
+              int from, int to) {
+            this.parameters = parameters;
+            this.groups = groups;
+            this.required = required;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (from == to) {
+                return;
+            }
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Sweep(parameters, groups, required, results, from, middle),
+                    new Sweep(parameters, groups, required, results, middle, to));
+                return;
+            }
+            int[] group = groups[from];
+            ScalingParameters objective = parameters.get(group[0]);
+            ReplicaOptimizer optimizer = new ReplicaOptimizer(objective.replicaPenalty());
+            Totals[] totals = new Totals[group.length];
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = new Totals();
+            }
+            int[] decisions = new int[0];
+            for (int s = 0; s < traces.size(); s++) {
+                ServiceTrace trace = traces.get(s);
+                if (decisions.length < trace.length()) {
+                    decisions = new int[trace.length()];
+                }
+                decide(trace, objective, optimizer, decisions);
+                for (int i = 0; i < group.length; i++) {
+                    replay(trace, decisions, required[s], parameters.get(group[i]), totals[i]);
+                }
+            }
+            for (int i = 0; i < group.length; i++) {
+                results[group[i]] = totals[i].toResult(parameters.get(group[i]));
+            }
+        }
+    }
+
+    // Fewest replicas that keep each scrape within the SLO, so replays compare one int per scrape
+    private int[] required(ServiceTrace trace) {
+        double[] cpu = trace.cpuLoad();
+        double[] memory = trace.memoryLoad();
+        double[] hits = trace.hitsLoad();
+        int[] required = new int[trace.length()];
+        for (int t = 0; t < required.length; t++) {
+            double bound = Math.max(cpu[t] / slo.maxCpuUtilization(),
+                Math.max(memory[t] / slo.maxMemoryUtilization(), hits[t] / slo.maxHitsPerReplica()));
+            // Settled with the exact comparison, the division may be off by one
+            int replicas = (int) Math.max(0, Math.min(Integer.MAX_VALUE - 1, Math.ceil(bound)));
+            while (replicas > 0 && !violates(cpu[t], memory[t], hits[t], replicas - 1)) {
+                replicas--;
+            }
+            while (replicas < Integer.MAX_VALUE && violates(cpu[t], memory[t], hits[t], replicas)) {
+                replicas++;
+            }
+            required[t] = replicas;
+        }
+        return required;
+    }
+
+    private boolean violates(double cpu, double memory, double hits, int replicas) {
+        return cpu > slo.maxCpuUtilization() * replicas
+            || memory > slo.maxMemoryUtilization() * replicas
+            || hits > slo.maxHitsPerReplica() * replicas;
+    }
+
+    // Replicas the optimizer asks for at every scrape, given the load of that scrape
+    private void decide(ServiceTrace trace, ScalingParameters objective, ReplicaOptimizer optimizer, int[] decisions) {
+        double[] cpu = trace.cpuLoad();
+        double[] memory = trace.memoryLoad();
+        double targetCpu = objective.targetCpuUtilization();
+        double targetMemory = objective.targetMemoryUtilization();
+        for (int t = 0; t < trace.length(); t++) {
+            decisions[t] = optimizer.recommend(cpu[t], memory[t], 1, minReplicas, maxReplicas,
+                targetCpu, targetMemory).replicas();
+        }
+    }
+
+    // Walks the decision points only; scrapes between them are settled per run of constant replicas
+    private void replay(ServiceTrace trace, int[] decisions, int[] required, ScalingParameters parameters,
+                        Totals totals) {
+        long[] timestamps = trace.timestamps();
+        int length = timestamps.length;
+        int interval = parameters.decisionInterval();
+        int delay = parameters.scaleUpDelay();
+
+        int replicas = Math.max(minReplicas, Math.min(maxReplicas, trace.getInitialReplicas()));
+        int servingSince = 0;
+        int target = replicas;
+        int readyAt = -1;
+        int lastDirection = 0;
+
+        for (int t = 0; t < length; t += interval) {
+            if (readyAt >= 0 && readyAt <= t) {
+                serve(required, timestamps, servingSince, readyAt, replicas, totals);
+                servingSince = readyAt;
+                replicas = target;
+                readyAt = -1;
+            }
+            int next = decisions[t];
+            if (next == target) {
+                continue;
+            }
+            int direction = Integer.signum(next - target);
+            totals.changes++;
+            totals.moved += Math.abs(next - target);
+            if (lastDirection != 0 && direction != lastDirection) {
+                totals.reversals++;
+            }
+            lastDirection = direction;
+            target = next;
+            if (next <= replicas || delay == 0) {
+                if (next != replicas) {
+                    serve(required, timestamps, servingSince, t, replicas, totals);
+                    servingSince = t;
+                    replicas = next;
+                }
+                readyAt = -1;
+            } else if (readyAt < 0) {
+                // Pods already starting keep their start time when the target moves
+                readyAt = t + delay;
+            }
+        }
+        if (readyAt >= 0 && readyAt < length) {
+            serve(required, timestamps, servingSince, readyAt, replicas, totals);
+            servingSince = readyAt;
+            replicas = target;
+        }
+        serve(required, timestamps, servingSince, length, replicas, totals);
+        totals.scrapes += length;
+    }
+
+    // Scrapes [from, to) served by a fixed replica count; the last scrape of a trace has no duration
+    private static void serve(int[] required, long[] timestamps, int from, int to, int replicas, Totals totals) {
+        int violations = 0;
+        for (int t = from; t < to; t++) {
+            // Sign bit of replicas - required, branch free so the loop vectorizes
+            violations += (replicas - required[t]) >>> 31;
+        }
+        totals.violations += violations;
+        int end = Math.min(to, timestamps.length - 1);
+        if (end > from) {
+            totals.replicaMillis += replicas * (timestamps[end] - timestamps[from]);
+        }
+    }
+
+    private static final class Totals {
+        long scrapes;
+        long violations;
+        long replicaMillis;
+        long changes;
+        long moved;
+        long reversals;
+
+        SimulationResult toResult(ScalingParameters parameters) {
+            return new SimulationResult(parameters, scrapes, violations, replicaMillis / 3_600_000.0,
+                changes, moved, reversals);
+        }
+    }
+
+    /**
+     * Sweeps a trace file and prints one CSV row per combination.
+     *
+     * Usage: TraceSimulator trace.csv [cpu=40:90:5] [memory=50:90:10]
+     * [penalty=0:0.2:0.02] [interval=1,2,4,8] [delay=0,2,4,8] [min=1] [max=50]
+     * [slo-cpu=90] [slo-memory=95] [slo-hits=inf]
+     *
+     * Values are comma separated lists or start:end:step ranges. The default
+     * grid holds 9680 combinations.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceSimulator trace.csv [name=values...]");
+            System.exit(2);
+        }
+        String cpu = "40:90:5";
+        String memory = "50:90:10";
+        String penalty = "0:0.2:0.02";
+        String interval = "1,2,4,8";
+        String delay = "0,2,4,8";
+        Builder builder = builder();
+        double sloCpu = SloPolicy.DEFAULT.maxCpuUtilization();
+        double sloMemory = SloPolicy.DEFAULT.maxMemoryUtilization();
+        double sloHits = SloPolicy.DEFAULT.maxHitsPerReplica();
+        for (int i = 1; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected name=values, got " + args[i]);
+            }
+            String value = args[i].substring(equals + 1);
+            switch (args[i].substring(0, equals)) {
+                case "cpu" -> cpu = value;
+                case "memory" -> memory = value;
+                case "penalty" -> penalty = value;
+                case "interval" -> interval = value;
+                case "delay" -> delay = value;
+                case "min" -> builder.minReplicas(Integer.parseInt(value));
+                case "max" -> builder.maxReplicas(Integer.parseInt(value));
+                case "slo-cpu" -> sloCpu = Double.parseDouble(value);
+                case "slo-memory" -> sloMemory = Double.parseDouble(value);
+                case "slo-hits" -> sloHits = value.equals("inf") ? Double.POSITIVE_INFINITY : Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<ServiceTrace> traces = TraceLoader.load(Path.of(args[0]));
+        long scrapes = traces.stream().mapToLong(ServiceTrace::length).sum();
+        log.info("Loaded {} services with {} scrapes in {} ms", traces.size(), scrapes,
+            (System.nanoTime() - start) / 1_000_000);
+
+        List<ScalingParameters> grid = ScalingParameters.grid(values(cpu), values(memory), values(penalty),
+            integers(interval), integers(delay));
+        TraceSimulator simulator = builder
+            .traces(traces)
+            .slo(new SloPolicy(sloCpu, sloMemory, sloHits))
+            .build();
+        start = System.nanoTime();
+        List<SimulationResult> results = simulator.run(grid);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Replayed {} combinations in {} s, {} million scrapes per second", grid.size(),
+            String.format(Locale.ROOT, "%.1f", seconds),
+            String.format(Locale.ROOT, "%.0f", grid.size() * (double) scrapes / seconds / 1e6));
+        print(results, System.out);
+    }
+
+    static void print(List<SimulationResult> results, PrintStream out) {
+        out.println("target_cpu,target_memory,replica_penalty,decision_interval,scale_up_delay,"
+            + "scrapes,slo_violations,slo_violation_ratio,replica_hours,replica_changes,replicas_moved,reversals");
+        for (SimulationResult result : results) {
+            ScalingParameters p = result.parameters();
+            out.println(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%d,%.6f,%.3f,%d,%d,%d",
+                p.targetCpuUtilization(), p.targetMemoryUtilization(), p.replicaPenalty(),
+                p.decisionInterval(), p.scaleUpDelay(), result.scrapes(), result.sloViolations(),
+                result.sloViolationRatio(), result.replicaHours(), result.replicaChanges(),
+                result.replicasMoved(), result.reversals()));
+        }
+    }
+
+    // Either a comma separated list or an inclusive start:end:step range
+    static double[] values(String spec) {
+        String[] range = spec.split(":");
+        if (range.length == 3) {
+            double start = Double.parseDouble(range[0]);
+            double end = Double.parseDouble(range[1]);
+            double step = Double.parseDouble(range[2]);
+            if (!(step > 0)) {
+                throw new IllegalArgumentException("Range step must be positive: " + spec);
+            }
+            int count = (int) Math.floor((end - start) / step + 1e-9) + 1;
+            double[] values = new double[Math.max(0, count)];
+            for (int i = 0; i < values.length; i++) {
+                // Rounded so 0.1 steps print as 0.3, not 0.30000000000000004
+                values[i] = Math.round((start + i * step) * 1e9) / 1e9;
+            }
+            return values;
+        }
+        return Arrays.stream(spec.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    static int[] integers(String spec) {
+        return Arrays.stream(values(spec)).mapToInt(value -> (int) value).toArray();
+    }
+
+    /**
+     * Builder pattern for simulator configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private List<ServiceTrace> traces = List.of();
+        private int minReplicas = 1;
+        private int maxReplicas = 50;
+        private SloPolicy slo = SloPolicy.DEFAULT;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        public Builder traces(List<ServiceTrace> traces) {
+            this.traces = traces;
+            return this;
+        }
+
+        public Builder minReplicas(int minReplicas) {
+            this.minReplicas = minReplicas;
+            return this;
+        }
+
+        public Builder maxReplicas(int maxReplicas) {
+            this.maxReplicas = maxReplicas;
+            return this;
+        }
+
+        public Builder slo(SloPolicy slo) {
+            this.slo = slo;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public TraceSimulator build() {
+            if (traces == null) {
+                throw new IllegalStateException("Traces are required");
+            }
+            if (minReplicas < 1 || maxReplicas < minReplicas) {
+                throw new IllegalStateException("Replica bounds must satisfy 1 <= min <= max");
+            }
+            if (slo == null) {
+                throw new IllegalStateException("SLO policy is required");
+            }
+            if (parallelism < 1) {
+                throw new IllegalStateException("Parallelism must be at least 1");
+            }
+            return new TraceSimulator(this);
+        }
+    }
+}
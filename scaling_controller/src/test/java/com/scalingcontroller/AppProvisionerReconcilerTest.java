@@ -0,0 +1,172 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirementsBuilder;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
+import io.fabric8.kubernetes.api.model.apps.StatefulSetBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.javaoperatorsdk.operator.api.reconciler.Context;
+import io.javaoperatorsdk.operator.api.reconciler.UpdateControl;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@EnableKubernetesMockClient(crud = true)
+class AppProvisionerReconcilerTest {
+    KubernetesClient client;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StatusUpdater statusUpdater = mock(StatusUpdater.class);
+    private final AppProvisionerReconciler reconciler = new AppProvisionerReconciler(
+        namespace -> !namespace.equals("other"), new ControllerMetrics(registry), statusUpdater);
+
+    @SuppressWarnings("unchecked")
+    private final Context<ApplicationProvisioner> context = mock(Context.class);
+
+    @BeforeEach
+    void setUp() {
+        when(context.getClient()).thenReturn(client);
+        // The informer cache holds what the API server has
+        when(context.getSecondaryResources(StatefulSet.class)).thenAnswer(invocation ->
+            new HashSet<>(client.apps().statefulSets().inAnyNamespace().list().getItems()));
+        when(statusUpdater.update(any(), any(), any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void newResource_StatefulSetCreatedAndStatusReported() {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("apps", 1, 2);
+
+        // Act
+        reconciler.reconcile(resource, context);
+
+        // Assert
+        StatefulSet statefulSet = client.apps().statefulSets().inNamespace("apps").withName("web").get();
+        assertEquals(2, statefulSet.getSpec().getReplicas());
+        assertEquals(AppProvisionerReconciler.MANAGED_BY,
+            statefulSet.getMetadata().getLabels().get(AppProvisionerReconciler.MANAGED_BY_LABEL));
+        assertEquals("1", statefulSet.getMetadata().getAnnotations().get(AppProvisionerReconciler.GENERATION_ANNOTATION));
+
+        ArgumentCaptor<ApplicationProvisionerStatus> status = ArgumentCaptor.forClass(ApplicationProvisionerStatus.class);
+        verify(statusUpdater).update(eq(client), eq(resource), status.capture());
+        assertEquals(1L, status.getValue().getObservedGeneration());
+        assertEquals(List.of(new ServiceStatus("web", "web", 2, 0, 2)), status.getValue().getServices());
+    }
+
+    @Test
+    void throttledStatus_RescheduledWithoutRewritingStatefulSets() {
+        // Arrange: the status still reports no generation while its write is throttled
+        when(statusUpdater.update(any(), any(), any())).thenReturn(Optional.of(Duration.ofSeconds(3)));
+        ApplicationProvisioner resource = provisioner("apps", 1, 2);
+        reconciler.reconcile(resource, context);
+
+        // Act
+        UpdateControl<ApplicationProvisioner> control = reconciler.reconcile(resource, context);
+
+        // Assert
+        assertEquals(Optional.of(3000L), control.getScheduleDelay());
+        assertEquals(1, statefulSetWrites());
+    }
+
+    @Test
+    void newGeneration_StatefulSetRewritten() {
+        // Arrange
+        reconciler.reconcile(provisioner("apps", 1, 2), context);
+
+        // Act
+        reconciler.reconcile(provisioner("apps", 2, 4), context);
+
+        // Assert
+        StatefulSet statefulSet = client.apps().statefulSets().inNamespace("apps").withName("web").get();
+        assertEquals(4, statefulSet.getSpec().getReplicas());
+        assertEquals("2", statefulSet.getMetadata().getAnnotations().get(AppProvisionerReconciler.GENERATION_ANNOTATION));
+        assertEquals(2, statefulSetWrites());
+    }
+
+    @Test
+    void driftedReplicas_Restored() {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("apps", 1, 2);
+        reconciler.reconcile(resource, context);
+        client.apps().statefulSets().inNamespace("apps").withName("web")
+            .edit(statefulSet -> new StatefulSetBuilder(statefulSet).editSpec().withReplicas(5).endSpec().build());
+
+        // Act
+        reconciler.reconcile(resource, context);
+
+        // Assert
+        assertEquals(2, client.apps().statefulSets().inNamespace("apps").withName("web").get().getSpec().getReplicas());
+        assertEquals(2, statefulSetWrites());
+    }
+
+    @Test
+    void otherShardsNamespace_Skipped() {
+        // Act
+        reconciler.reconcile(provisioner("other", 1, 2), context);
+
+        // Assert
+        assertTrue(client.apps().statefulSets().inAnyNamespace().list().getItems().isEmpty());
+        verifyNoInteractions(statusUpdater);
+    }
+
+    private long statefulSetWrites() {
+        Timer puts = registry.find("appprov.api.request").tag("verb", "put").tag("kind", "StatefulSet").timer();
+        return puts == null ? 0 : puts.count();
+    }
+
+    private static ApplicationProvisioner provisioner(String namespace, long generation, int replicas) {
+        Service service = new Service();
+        service.setName("web");
+        service.setStatefulSetName("web");
+        service.setImage("registry.local/web:1");
+        service.setReplicas(replicas);
+        service.setResources(new ResourceRequirementsBuilder()
+            .withRequests(Map.of("cpu", new Quantity("100m")))
+            .withLimits(Map.of("cpu", new Quantity("500m")))
+            .build());
+
+        ApplicationProvisionerSpec spec = new ApplicationProvisionerSpec();
+        spec.setServices(List.of(service));
+
+        ApplicationProvisioner resource = new ApplicationProvisioner();
+        resource.setMetadata(new ObjectMetaBuilder()
+            .withName("shop")
+            .withNamespace(namespace)
+            .withUid("uid-shop")
+            .withGeneration(generation)
+            .build());
+        resource.setSpec(spec);
+        return resource;
+    }
+}
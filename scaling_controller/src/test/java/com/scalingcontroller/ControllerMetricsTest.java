@@ -0,0 +1,244 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirementsBuilder;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.javaoperatorsdk.operator.api.monitoring.Metrics.ControllerExecution;
+import io.javaoperatorsdk.operator.api.reconciler.Context;
+import io.javaoperatorsdk.operator.api.reconciler.UpdateControl;
+import io.javaoperatorsdk.operator.processing.event.ResourceID;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@EnableKubernetesMockClient(crud = true)
+class ControllerMetricsTest {
+    KubernetesClient client;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ControllerMetrics metrics = new ControllerMetrics(registry, "east");
+
+    @Test
+    void queuedResource_TimedUntilItsReconcileStarts() {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("shop");
+        metrics.reconcileCustomResource(resource, null, Map.of());
+        metrics.reconcileCustomResource(resource, null, Map.of());
+
+        // Act
+        double queued = registry.get("appprov.queue.depth").gauge().value();
+        metrics.reconciliationExecutionStarted(resource, Map.of());
+
+        // Assert: resubmitting a queued resource keeps its first submission time
+        assertEquals(1, queued);
+        assertEquals(0, registry.get("appprov.queue.depth").gauge().value());
+        assertEquals(1, registry.get("appprov.queue.time").tag(ControllerMetrics.CLUSTER_TAG, "east").timer().count());
+    }
+
+    @Test
+    void failuresAndCleanups_Recorded() {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("shop");
+        metrics.setManagedStatefulSets(resource, 3);
+        metrics.setManagedStatefulSets(provisioner("billing"), 2);
+
+        // Act
+        metrics.failedReconciliation(resource, new IllegalStateException("conflict"), Map.of());
+        metrics.cleanupDoneFor(ResourceID.fromResource(resource), Map.of());
+
+        // Assert
+        assertEquals(1, registry.get("appprov.reconcile.failures").counter().count());
+        assertEquals(2, registry.get("appprov.managed.statefulsets").gauge().value());
+    }
+
+    @Test
+    void controllerExecution_TimedByOutcome() throws Exception {
+        // Arrange
+        ControllerExecution<String> succeeding = execution("reconcile");
+        when(succeeding.execute()).thenReturn("done");
+        ControllerExecution<String> failing = execution("reconcile");
+        when(failing.execute()).thenThrow(new IllegalStateException("conflict"));
+
+        // Act
+        String result = metrics.timeControllerExecution(succeeding);
+        assertThrows(IllegalStateException.class, () -> metrics.timeControllerExecution(failing));
+
+        // Assert
+        assertEquals("done", result);
+        assertEquals(1, registry.get("appprov.reconcile.duration").tag("outcome", "noUpdate").timer().count());
+        assertEquals(1, registry.get("appprov.reconcile.duration").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void repeatedExecutions_RecordedInOneTimerPerOutcome() throws Exception {
+        // Arrange
+        ControllerExecution<String> execution = execution("reconcile");
+        when(execution.execute()).thenReturn("done");
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            metrics.timeControllerExecution(execution);
+        }
+
+        // Assert
+        assertEquals(1, registry.find("appprov.reconcile.duration").timers().size());
+        assertEquals(3, registry.get("appprov.reconcile.duration").timer().count());
+    }
+
+    @Test
+    void apiRequestCounter_CountsEveryClientRequestByVerbAndResource() {
+        // Arrange
+        try (KubernetesClient counted = countedClient(metrics)) {
+            // Act
+            counted.configMaps().inNamespace("apps")
+                .resource(new ConfigMapBuilder().withNewMetadata().withName("settings").endMetadata().build())
+                .create();
+            counted.configMaps().inNamespace("apps").withName("settings").get();
+            counted.configMaps().inNamespace("apps").list();
+            counted.namespaces().list();
+        }
+
+        // Assert
+        assertEquals(1, requests("create", "configmaps"));
+        assertEquals(1, requests("get", "configmaps"));
+        assertEquals(1, requests("list", "configmaps"));
+        assertEquals(1, requests("list", "namespaces"));
+    }
+
+    @Test
+    void metricsEndpoint_ServesReconcileMetrics() throws Exception {
+        // Arrange
+        PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        ControllerMetrics served = new ControllerMetrics(prometheus);
+        try (KubernetesClient counted = countedClient(served);
+             MetricsEndpoint endpoint = new MetricsEndpoint(prometheus, 0)) {
+            endpoint.start();
+            ApplicationProvisioner resource = provisioner("shop");
+            AppProvisionerReconciler reconciler = new AppProvisionerReconciler(namespace -> true, served);
+            @SuppressWarnings("unchecked")
+            Context<ApplicationProvisioner> context = mock(Context.class);
+            when(context.getClient()).thenReturn(counted);
+            when(context.getSecondaryResources(StatefulSet.class)).thenAnswer(invocation -> new HashSet<>());
+            // The status subresource is only served for resources with a CRD declaring it
+            client.apiextensions().v1().customResourceDefinitions()
+                .resource(CustomResourceDefinitionContext.v1CRDFromCustomResourceType(ApplicationProvisioner.class)
+                    .editSpec().editFirstVersion()
+                        .withNewSubresources().withNewStatus().endStatus().endSubresources()
+                    .endVersion().endSpec()
+                    .build())
+                .create();
+            counted.resource(resource).create();
+
+            ControllerExecution<UpdateControl<ApplicationProvisioner>> execution = execution("reconcile");
+            when(execution.execute()).thenAnswer(invocation -> reconciler.reconcile(resource, context));
+
+            // Act
+            served.timeControllerExecution(execution);
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + endpoint.getPort() + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+            // Assert
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            List<String> lines = response.body().lines().toList();
+            assertTrue(hasSample(lines, "appprov_reconcile_duration_seconds_count", "outcome=\"noUpdate\""));
+            assertTrue(hasSample(lines, "appprov_api_request_seconds_count", "verb=\"put\"", "kind=\"StatefulSet\""));
+            assertTrue(hasSample(lines, "appprov_client_requests_total", "verb=\"create\"", "resource=\"statefulsets\""));
+            assertTrue(hasSample(lines, "appprov_client_requests_total", "verb=\"patch\"",
+                "resource=\"applicationprovisioners\""));
+            assertTrue(hasSample(lines, "appprov_managed_statefulsets", ""));
+        }
+    }
+
+    private KubernetesClient countedClient(ControllerMetrics metrics) {
+        return new KubernetesClientBuilder()
+            .withConfig(client.getConfiguration())
+            .withHttpClientBuilderConsumer(http -> http
+                .addOrReplaceInterceptor(ApiRequestCounter.NAME, metrics.apiRequestCounter()))
+            .build();
+    }
+
+    private double requests(String verb, String resource) {
+        return registry.get("appprov.client.requests")
+            .tag(ControllerMetrics.CLUSTER_TAG, "east")
+            .tag("verb", verb)
+            .tag("resource", resource)
+            .counter()
+            .count();
+    }
+
+    private static boolean hasSample(List<String> lines, String name, String... labels) {
+        return lines.stream()
+            .filter(line -> line.startsWith(name + "{") || line.startsWith(name + " "))
+            .anyMatch(line -> List.of(labels).stream().allMatch(line::contains) && !line.endsWith(" 0.0"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ControllerExecution<T> execution(String name) {
+        ControllerExecution<T> execution = mock(ControllerExecution.class);
+        when(execution.name()).thenReturn(name);
+        when(execution.controllerName()).thenReturn("appprovisionerreconciler");
+        when(execution.successTypeName(any())).thenReturn("noUpdate");
+        return execution;
+    }
+
+    private static ApplicationProvisioner provisioner(String name) {
+        Service service = new Service();
+        service.setName(name);
+        service.setStatefulSetName(name);
+        service.setImage("registry.local/" + name + ":1");
+        service.setReplicas(2);
+        service.setResources(new ResourceRequirementsBuilder()
+            .withRequests(Map.of("cpu", new Quantity("100m")))
+            .build());
+
+        ApplicationProvisionerSpec spec = new ApplicationProvisionerSpec();
+        spec.setServices(List.of(service));
+
+        ApplicationProvisioner resource = new ApplicationProvisioner();
+        resource.setMetadata(new ObjectMetaBuilder()
+            .withName(name)
+            .withNamespace("apps")
+            .withGeneration(1L)
+            .build());
+        resource.setSpec(spec);
+        return resource;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirementsBuilder;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.mockwebserver.Context;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiClusterOperatorTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private KubernetesMockServer east;
+    private KubernetesMockServer west;
+    private KubernetesClient eastClient;
+    private KubernetesClient westClient;
+    private MultiClusterOperator operator;
+
+    @BeforeEach
+    void setUp() {
+        east = crudServer();
+        west = crudServer();
+        eastClient = east.createClient();
+        westClient = west.createClient();
+        operator = MultiClusterOperator.builder()
+            .cluster("east", eastClient.getConfiguration())
+            .cluster("west", westClient.getConfiguration())
+            .registry(registry)
+            .reconcileThreads(2)
+            .build();
+        operator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        operator.close();
+        eastClient.close();
+        westClient.close();
+        east.destroy();
+        west.destroy();
+    }
+
+    @Test
+    void resources_ReconciledOnlyInTheirOwnCluster() throws InterruptedException {
+        // Act
+        eastClient.resource(provisioner("shop")).create();
+        westClient.resource(provisioner("billing")).create();
+
+        // Assert
+        assertNotNull(awaitStatefulSet(eastClient, "shop"));
+        assertNotNull(awaitStatefulSet(westClient, "billing"));
+        assertNull(eastClient.apps().statefulSets().inNamespace("apps").withName("billing").get());
+        assertNull(westClient.apps().statefulSets().inNamespace("apps").withName("shop").get());
+        assertNotNull(registry.find("appprov.api.request").tag(ControllerMetrics.CLUSTER_TAG, "east").timer());
+        assertNotNull(registry.find("appprov.api.request").tag(ControllerMetrics.CLUSTER_TAG, "west").timer());
+    }
+
+    @Test
+    void unreachableCluster_OtherClustersKeepReconciling() throws InterruptedException {
+        // Arrange
+        eastClient.resource(provisioner("shop")).create();
+        assertNotNull(awaitStatefulSet(eastClient, "shop"));
+
+        // Act: the east API server goes away while west keeps receiving changes
+        east.destroy();
+        westClient.resource(provisioner("billing")).create();
+
+        // Assert
+        assertNotNull(awaitStatefulSet(westClient, "billing"));
+    }
+
+    private static KubernetesMockServer crudServer() {
+        KubernetesMockServer server = new KubernetesMockServer(
+            new Context(), new MockWebServer(), new HashMap<>(), new KubernetesCrudDispatcher(), false);
+        server.init();
+        return server;
+    }
+
+    private static ApplicationProvisioner provisioner(String name) {
+        Service service = new Service();
+        service.setName(name);
+        service.setStatefulSetName(name);
+        service.setImage("registry.local/" + name + ":1");
+        service.setReplicas(2);
+        service.setResources(new ResourceRequirementsBuilder()
+            .withRequests(Map.of("cpu", new Quantity("100m")))
+            .withLimits(Map.of("cpu", new Quantity("500m")))
+            .build());
+
+        ApplicationProvisionerSpec spec = new ApplicationProvisionerSpec();
+        spec.setServices(List.of(service));
+
+        ApplicationProvisioner resource = new ApplicationProvisioner();
+        resource.setMetadata(new ObjectMetaBuilder()
+            .withName(name)
+            .withNamespace("apps")
+            .withGeneration(1L)
+            .build());
+        resource.setSpec(spec);
+        return resource;
+    }
+
+    private static StatefulSet awaitStatefulSet(KubernetesClient client, String name) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            StatefulSet statefulSet = client.apps().statefulSets().inNamespace("apps").withName(name).get();
+            if (statefulSet != null) {
+                return statefulSet;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaOptimizerTest {
+    private final ReplicaOptimizer optimizer = new ReplicaOptimizer();
+
+    @Test
+    void recommend_MatchesSolverObjective() {
+        // Expected values are the minimum of Solver.jl's calculate_objective over [min, max]
+
+        // Act
+        ReplicaOptimizer.Recommendation scaleUp = optimizer.recommend(90, 80, 2, 1, 10, 70, 70);
+        ReplicaOptimizer.Recommendation scaleDown = optimizer.recommend(30, 20, 6, 2, 10, 60, 50);
+        ReplicaOptimizer.Recommendation mixed = optimizer.recommend(95, 40, 4, 1, 20, 70, 80);
+
+        // Assert
+        assertEquals(3, scaleUp.replicas());
+        assertEquals(60.0, scaleUp.expectedCpu(), 1e-9);
+        assertEquals(160.0 / 3, scaleUp.expectedMemory(), 1e-9);
+        assertEquals(26.966666666666665, scaleUp.fitness(), 1e-9);
+        assertEquals(3, scaleDown.replicas());
+        assertEquals(10.3, scaleDown.fitness(), 1e-9);
+        assertEquals(5, mixed.replicas());
+        assertEquals(54.5, mixed.fitness(), 1e-9);
+    }
+
+    @Test
+    void recommend_ClampsToBounds() {
+        // Act: load for 2 replicas under a minimum of 5
+        ReplicaOptimizer.Recommendation recommendation = optimizer.recommend(50, 50, 3, 5, 8, 70, 70);
+
+        // Assert
+        assertEquals(5, recommendation.replicas());
+        assertEquals(30.0, recommendation.expectedCpu(), 1e-9);
+        assertEquals(80.5, recommendation.fitness(), 1e-9);
+    }
+
+    @Test
+    void ties_ResolveToFewestReplicas() {
+        // Arrange: without a penalty every count putting utilization between the
+        // two targets scores the same
+        ReplicaOptimizer unpenalized = new ReplicaOptimizer(0);
+
+        // Act
+        ReplicaOptimizer.Recommendation recommendation = unpenalized.recommend(120, 120, 1, 1, 10, 60, 20);
+
+        // Assert
+        assertEquals(2, recommendation.replicas());
+        assertEquals(40.0, recommendation.fitness(), 1e-9);
+    }
+
+    @Test
+    void zeroCurrentReplicas_RecommendsMinimum() {
+        // Act
+        ReplicaOptimizer.Recommendation recommendation = optimizer.recommend(0, 0, 0, 2, 10, 70, 70);
+
+        // Assert
+        assertEquals(2, recommendation.replicas());
+        assertEquals(0.0, recommendation.expectedCpu());
+    }
+
+    @Test
+    void invalidInputs_AreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> optimizer.recommend(50, 50, 1, 0, 5, 70, 70));
+        assertThrows(IllegalArgumentException.class, () -> optimizer.recommend(50, 50, 1, 5, 3, 70, 70));
+        assertThrows(IllegalArgumentException.class, () -> optimizer.recommend(50, 50, -1, 1, 5, 70, 70));
+        assertThrows(IllegalArgumentException.class, () -> optimizer.recommend(50, 50, 1, 1, 5, 150, 70));
+        assertThrows(IllegalArgumentException.class, () -> optimizer.recommend(50, 50, 1, 1, 5, 70, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ReplicaOptimizer(-0.1));
+    }
+
+    @Test
+    void scan_MatchesExhaustiveSearch() {
+        // Arrange
+        Random random = new Random(7);
+
+        for (int i = 0; i < 10_000; i++) {
+            double cpu = random.nextDouble() * 150;
+            double memory = random.nextDouble() * 150;
+            int current = random.nextInt(20);
+            int min = 1 + random.nextInt(5);
+            int max = min + random.nextInt(30);
+            double targetCpu = 10 + random.nextDouble() * 80;
+            double targetMemory = 10 + random.nextDouble() * 80;
+
+            // Act
+            ReplicaOptimizer.Recommendation recommendation =
+                optimizer.recommend(cpu, memory, current, min, max, targetCpu, targetMemory);
+
+            // Assert
+            assertEquals(exhaustive(cpu, memory, current, min, max, targetCpu, targetMemory),
+                recommendation.replicas());
+        }
+    }
+
+    @Test
+    void batch_MatchesSingleRecommendations() {
+        // Arrange
+        ReplicaOptimizer.Batch batch = new ReplicaOptimizer.Batch(3);
+        batch.add(90, 80, 2, 1, 10, 70, 70);
+        batch.add(30, 20, 6, 2, 10, 60, 50);
+        batch.add(95, 40, 4, 1, 20, 70, 80);
+
+        // Act
+        optimizer.recommend(batch);
+
+        // Assert
+        assertArrayEquals(new int[] {3, 3, 5}, batch.suggestedReplicas);
+        assertEquals(60.0, batch.expectedCpu[0], 1e-9);
+        assertEquals(32.0, batch.expectedMemory[2], 1e-9);
+        assertThrows(IllegalStateException.class, () -> batch.add(1, 1, 1, 1, 1, 70, 70));
+    }
+
+    @Test
+    void batch_InvalidEntry_LeavesOutputsUntouched() {
+        // Arrange
+        ReplicaOptimizer.Batch batch = new ReplicaOptimizer.Batch(2);
+        batch.add(90, 80, 2, 1, 10, 70, 70);
+        batch.add(90, 80, 2, 0, 10, 70, 70);
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> optimizer.recommend(batch));
+
+        // Assert
+        assertEquals(0, batch.suggestedReplicas[0]);
+    }
+
+    // Solver.jl's objective evaluated at every candidate, the lowest count winning ties
+    private static int exhaustive(double cpu, double memory, int current, int min, int max,
+                                  double targetCpu, double targetMemory) {
+        int best = min;
+        double bestFitness = Double.POSITIVE_INFINITY;
+        for (int replicas = min; replicas <= max; replicas++) {
+            double fitness = Math.abs(cpu * current / replicas - targetCpu)
+                + Math.abs(memory * current / replicas - targetMemory)
+                + ReplicaOptimizer.DEFAULT_REPLICA_PENALTY * replicas;
+            if (fitness < bestFitness) {
+                bestFitness = fitness;
+                best = replicas;
+            }
+        }
+        return best;
+    }
+}
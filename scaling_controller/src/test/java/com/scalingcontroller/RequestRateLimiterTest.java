@@ -0,0 +1,83 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestRateLimiterTest {
+    private long now;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Test
+    void burstExhausted_CallersWaitForRefillInOrder() {
+        // Arrange: 10 requests per second with a burst of 2
+        RequestRateLimiter limiter = new RequestRateLimiter(10, 2, thread -> true, () -> now, sleeps::add);
+
+        // Act
+        long first = limiter.reserve();
+        long second = limiter.reserve();
+        long third = limiter.reserve();
+        long fourth = limiter.reserve();
+
+        // Assert
+        assertEquals(0, first);
+        assertEquals(0, second);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), third);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), fourth);
+    }
+
+    @Test
+    void idle_RefillsUpToBurst() {
+        // Arrange
+        RequestRateLimiter limiter = new RequestRateLimiter(10, 2, thread -> true, () -> now, sleeps::add);
+        limiter.reserve();
+        limiter.reserve();
+
+        // Act
+        now += TimeUnit.SECONDS.toNanos(10);
+
+        // Assert
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertTrue(limiter.reserve() > 0);
+    }
+
+    @Test
+    void sharedClientThread_TakesTokenWithoutSleeping() throws InterruptedException {
+        // Arrange: only reconcile workers wait, the test thread stands in for a client executor thread
+        RequestRateLimiter limiter = new RequestRateLimiter(10, 1,
+            thread -> thread.getName().startsWith("reconcile-"), () -> now, sleeps::add);
+
+        // Act
+        limiter.before(null, null, null);
+        limiter.before(null, null, null);
+        Thread worker = new Thread(() -> limiter.before(null, null, null), "reconcile-east-1");
+        worker.start();
+        worker.join();
+
+        // Assert: the worker also waits out the token the shared thread took on credit
+        assertEquals(List.of(TimeUnit.MILLISECONDS.toNanos(200)), sleeps);
+    }
+}
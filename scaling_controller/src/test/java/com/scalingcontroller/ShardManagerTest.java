@@ -0,0 +1,148 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnableKubernetesMockClient(crud = true)
+class ShardManagerTest {
+    private static final int NAMESPACES = 20;
+
+    KubernetesClient client;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < NAMESPACES; i++) {
+            client.namespaces()
+                .resource(new NamespaceBuilder().withNewMetadata().withName("ns-" + i).endMetadata().build())
+                .createOrReplace();
+        }
+    }
+
+    @Test
+    void replicas_PartitionAllNamespaces() {
+        // Arrange
+        ShardManager first = shard("replica-a");
+        ShardManager second = shard("replica-b");
+
+        // Act
+        first.refresh();
+        second.refresh();
+        first.refresh();
+
+        // Assert
+        Set<String> union = new HashSet<>(first.getOwnedNamespaces());
+        union.addAll(second.getOwnedNamespaces());
+        assertEquals(NAMESPACES, union.size());
+        assertTrue(first.getOwnedNamespaces().stream().noneMatch(second::owns));
+        assertFalse(first.getOwnedNamespaces().isEmpty());
+        assertFalse(second.getOwnedNamespaces().isEmpty());
+    }
+
+    @Test
+    void expiredMember_NamespacesMoveToSurvivor() {
+        // Arrange
+        ShardManager first = shard("replica-a");
+        ShardManager second = shard("replica-b");
+        first.refresh();
+        second.refresh();
+        first.refresh();
+
+        // Act: replica-b stops renewing and its lease runs out
+        clock.advance(Duration.ofSeconds(16));
+        first.refresh();
+
+        // Assert
+        assertEquals(NAMESPACES, first.getOwnedNamespaces().size());
+    }
+
+    @Test
+    void closedMember_NamespacesMoveImmediately() {
+        // Arrange
+        ShardManager first = shard("replica-a");
+        ShardManager second = shard("replica-b");
+        first.refresh();
+        second.refresh();
+        first.refresh();
+        Set<String> previouslyOwned = Set.copyOf(first.getOwnedNamespaces());
+
+        // Act
+        second.close();
+        first.refresh();
+
+        // Assert
+        assertEquals(NAMESPACES, first.getOwnedNamespaces().size());
+        assertTrue(first.getOwnedNamespaces().containsAll(previouslyOwned));
+    }
+
+    private ShardManager shard(String identity) {
+        return ShardManager.builder()
+            .client(client)
+            .identity(identity)
+            .group("test")
+            .leaseNamespace("ns-0")
+            .leaseDuration(Duration.ofSeconds(15))
+            .renewInterval(Duration.ofSeconds(5))
+            .clock(clock)
+            .build();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
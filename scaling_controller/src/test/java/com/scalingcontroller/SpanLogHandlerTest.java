@@ -0,0 +1,129 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpanLogHandlerTest {
+    private final StringWriter out = new StringWriter();
+
+    @Test
+    void sampledTrace_WritesNestedSpansWithKeyValues() throws Exception {
+        // Arrange
+        ObservationRegistry observations = registry(new SpanLogHandler(out, 1, null));
+
+        // Act
+        Observation.createNotStarted("appprov.reconcile", observations).observe(() ->
+            Observation.createNotStarted("appprov.service.apply", observations)
+                .highCardinalityKeyValue("service", "web")
+                .observe(() -> { }));
+
+        // Assert: children stop, and are written, first
+        List<JsonNode> spans = spans();
+        assertEquals(2, spans.size());
+        JsonNode apply = spans.get(0);
+        JsonNode reconcile = spans.get(1);
+        assertEquals("appprov.service.apply", apply.get("name").asText());
+        assertEquals("web", apply.get("attributes").get("service").asText());
+        assertEquals(reconcile.get("traceId").asText(), apply.get("traceId").asText());
+        assertEquals(reconcile.get("spanId").asText(), apply.get("parentSpanId").asText());
+        assertFalse(reconcile.has("parentSpanId"));
+    }
+
+    @Test
+    void unsampledTraces_AreWrittenOnlyWhenSlow() throws Exception {
+        // Arrange
+        ObservationRegistry observations = registry(new SpanLogHandler(out, 0, Duration.ofMillis(20)));
+
+        // Act
+        Observation.createNotStarted("fast", observations).observe(() ->
+            Observation.createNotStarted("api", observations).observe(() -> { }));
+        Observation.createNotStarted("slow", observations).observe(() ->
+            Observation.createNotStarted("api", observations).observe(() -> {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+
+        // Assert: the whole slow trace is kept, nothing of the fast one
+        List<JsonNode> spans = spans();
+        assertEquals(2, spans.size());
+        assertEquals("api", spans.get(0).get("name").asText());
+        assertEquals("slow", spans.get(1).get("name").asText());
+    }
+
+    @Test
+    void failedObservation_RecordsTheError() throws Exception {
+        // Arrange
+        ObservationRegistry observations = registry(new SpanLogHandler(out, 1, null));
+
+        // Act
+        assertThrows(IllegalStateException.class, () ->
+            Observation.createNotStarted("appprov.api.request", observations).observe((Runnable) () -> {
+                throw new IllegalStateException("conflict");
+            }));
+
+        // Assert
+        assertEquals("IllegalStateException: conflict", spans().get(0).get("error").asText());
+    }
+
+    @Test
+    void sampling_FollowsTheLowBitsOfTheTraceIdLikeTheTracker() {
+        // Arrange
+        SpanLogHandler handler = new SpanLogHandler(out, 0.5, null);
+
+        // Act / Assert: the tracker's ratio sampler keeps traces below ratio * 2^63 in the low 63 bits
+        assertTrue(handler.isSampled("ffffffffffffffff" + "0000000000000002"));
+        assertTrue(handler.isSampled("0000000000000001" + "7ffffffffffffffc"));
+        assertFalse(handler.isSampled("0000000000000001" + "8000000000000000"));
+        assertFalse(handler.isSampled("0000000000000001" + "ffffffffffffffff"));
+        assertTrue(new SpanLogHandler(out, 1, null).isSampled("0000000000000001" + "ffffffffffffffff"));
+        assertFalse(new SpanLogHandler(out, 0, null).isSampled("0000000000000001" + "0000000000000002"));
+    }
+
+    private static ObservationRegistry registry(SpanLogHandler handler) {
+        ObservationRegistry observations = ObservationRegistry.create();
+        observations.observationConfig().observationHandler(handler);
+        return observations;
+    }
+
+    private List<JsonNode> spans() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<JsonNode> spans = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                spans.add(mapper.readTree(line));
+            }
+        }
+        return spans;
+    }
+}
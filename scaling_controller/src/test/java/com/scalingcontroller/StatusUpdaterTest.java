@@ -0,0 +1,141 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller;
+
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnableKubernetesMockClient
+class StatusUpdaterTest {
+    private static final Duration MIN_INTERVAL = Duration.ofSeconds(5);
+    private static final String STATUS_PATH = "/apis/scalingcontroller.com/v1/namespaces/apps/applicationprovisioners/%s/status";
+
+    KubernetesMockServer server;
+    KubernetesClient client;
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StatusUpdater updater = new StatusUpdater(MIN_INTERVAL, new ControllerMetrics(registry), nanoTime::get);
+
+    @BeforeEach
+    void setUp() {
+        for (String name : List.of("shop", "billing")) {
+            server.expect().patch().withPath(String.format(STATUS_PATH, name))
+                .andReturn(200, provisioner(name, null))
+                .always();
+        }
+    }
+
+    @Test
+    void unchangedStatus_NotWritten() {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("shop", status(2, 3));
+
+        // Act
+        Optional<Duration> retryAfter = updater.update(client, resource, status(2, 3));
+
+        // Assert
+        assertTrue(retryAfter.isEmpty());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    void changedStatus_SentAsMergePatchToTheStatusSubresource() throws InterruptedException {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("shop", status(1, 2));
+
+        // Act
+        Optional<Duration> retryAfter = updater.update(client, resource, status(2, 3));
+
+        // Assert
+        assertTrue(retryAfter.isEmpty());
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("PATCH", request.getMethod());
+        assertEquals(String.format(STATUS_PATH, "shop"), request.getPath());
+        assertTrue(request.getHeader("Content-Type").startsWith("application/merge-patch+json"));
+        String body = request.getBody().readUtf8();
+        assertTrue(body.contains("\"observedGeneration\":2"));
+        assertTrue(body.contains("\"readyReplicas\":3"));
+        assertEquals(1, registry.find("appprov.api.request").tag("verb", "patch").timer().count());
+    }
+
+    @Test
+    void writesWithinMinInterval_ThrottledUntilItElapses() {
+        // Arrange
+        ApplicationProvisioner resource = provisioner("shop", status(1, 0));
+        updater.update(client, resource, status(1, 1));
+        nanoTime.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        // Act
+        Optional<Duration> throttled = updater.update(client, resource, status(1, 2));
+        nanoTime.addAndGet(Duration.ofSeconds(3).toNanos());
+        Optional<Duration> written = updater.update(client, resource, status(1, 2));
+
+        // Assert
+        assertEquals(Optional.of(Duration.ofSeconds(3)), throttled);
+        assertTrue(written.isEmpty());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    void throttling_IsPerObject() {
+        // Arrange
+        updater.update(client, provisioner("shop", null), status(1, 1));
+
+        // Act
+        Optional<Duration> retryAfter = updater.update(client, provisioner("billing", null), status(1, 1));
+
+        // Assert
+        assertTrue(retryAfter.isEmpty());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private static ApplicationProvisioner provisioner(String name, ApplicationProvisionerStatus status) {
+        ApplicationProvisioner resource = new ApplicationProvisioner();
+        resource.setMetadata(new ObjectMetaBuilder()
+            .withName(name)
+            .withNamespace("apps")
+            .withGeneration(2L)
+            .build());
+        resource.setStatus(status);
+        return resource;
+    }
+
+    private static ApplicationProvisionerStatus status(long observedGeneration, int readyReplicas) {
+        ApplicationProvisionerStatus status = new ApplicationProvisionerStatus();
+        status.setObservedGeneration(observedGeneration);
+        status.setServices(List.of(new ServiceStatus("web", "web", 3, readyReplicas, 3)));
+        return status;
+    }
+}
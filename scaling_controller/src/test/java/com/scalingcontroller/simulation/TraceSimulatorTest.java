@@ -0,0 +1,119 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package com.scalingcontroller.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceSimulatorTest {
+
+    // Two pods of web at 50% CPU, jumping to 200% each at the third scrape
+    private static final String TRACE = """
+        timestamp,service,pod,cpu,memory,hits
+        1700000015,web,web-0,50,10,5
+        1700000015,web,web-1,50,10,5
+        1700000000.000,web,web-0,50,10,5
+        1700000000.000,web,web-1,50,10,5
+        1700000030,web,web-0,200,10,20
+        1700000030,web,web-1,200,10,20
+        1700000045,web,web-0,200,10,20
+        1700000045,web,web-1,200,10,20
+        1700000060,web,web-0,200,10,20
+        1700000060,web,web-1,200,10,20
+        1700000000,api,api-0,10,10,1
+        """;
+
+    @Test
+    void load_PodRows_SumsLoadPerScrapeInTimeOrder() throws Exception {
+        // Act
+        List<ServiceTrace> traces = TraceLoader.load(new BufferedReader(new StringReader(TRACE)));
+
+        // Assert
+        assertEquals(List.of("api", "web"), traces.stream().map(ServiceTrace::getName).toList());
+        ServiceTrace web = traces.get(1);
+        assertEquals(5, web.length());
+        assertEquals(2, web.getInitialReplicas());
+        assertArrayEquals(new long[] {1_700_000_000_000L, 1_700_000_015_000L, 1_700_000_030_000L,
+            1_700_000_045_000L, 1_700_000_060_000L}, web.timestamps());
+        assertArrayEquals(new double[] {100, 100, 400, 400, 400}, web.cpuLoad());
+        assertArrayEquals(new double[] {10, 10, 40, 40, 40}, web.hitsLoad());
+    }
+
+    @Test
+    void run_ScaleUpDelay_CountsViolationsUntilReplicasServe() throws Exception {
+        // Arrange
+        ServiceTrace web = TraceLoader.load(new BufferedReader(new StringReader(TRACE))).get(1);
+        TraceSimulator simulator = TraceSimulator.builder().traces(List.of(web)).build();
+        List<ScalingParameters> parameters = List.of(
+            new ScalingParameters(50, 70, 0, 1, 0),
+            new ScalingParameters(50, 70, 0, 1, 2));
+
+        // Act
+        List<SimulationResult> results = simulator.run(parameters);
+
+        // Assert: 2 replicas at 50% scale to 8 when the load quadruples
+        SimulationResult immediate = results.get(0);
+        assertEquals(parameters.get(0), immediate.parameters());
+        assertEquals(5, immediate.scrapes());
+        assertEquals(0, immediate.sloViolations());
+        assertEquals(1, immediate.replicaChanges());
+        assertEquals(6, immediate.replicasMoved());
+        assertEquals((2 + 2 + 8 + 8) * 15 / 3600.0, immediate.replicaHours(), 1e-9);
+
+        SimulationResult delayed = results.get(1);
+        assertEquals(2, delayed.sloViolations());
+        assertEquals(1, delayed.replicaChanges());
+        assertEquals((2 + 2 + 2 + 2) * 15 / 3600.0, delayed.replicaHours(), 1e-9);
+    }
+
+    @Test
+    void run_Parallel_MatchesSequential() {
+        // Arrange: noisy load around a daily cycle, over a grid of combinations
+        int length = 2_000;
+        long[] timestamps = new long[length];
+        double[] cpu = new double[length];
+        double[] memory = new double[length];
+        double[] hits = new double[length];
+        Random random = new Random(11);
+        for (int t = 0; t < length; t++) {
+            timestamps[t] = 15_000L * t;
+            cpu[t] = 300 * (1.5 + Math.sin(t / 200.0)) * (1 + 0.1 * random.nextGaussian());
+            memory[t] = cpu[t] * 0.6;
+            hits[t] = cpu[t] * 2;
+        }
+        List<ServiceTrace> traces = List.of(new ServiceTrace("svc", timestamps, cpu, memory, hits, 5));
+        List<ScalingParameters> grid = ScalingParameters.grid(new double[] {50, 70}, new double[] {70},
+            new double[] {0, 0.1}, new int[] {1, 4}, new int[] {0, 4});
+
+        // Act
+        List<SimulationResult> sequential = TraceSimulator.builder().traces(traces).parallelism(1).build().run(grid);
+        List<SimulationResult> parallel = TraceSimulator.builder().traces(traces).parallelism(4).build().run(grid);
+
+        // Assert
+        assertEquals(16, sequential.size());
+        assertEquals(sequential, parallel);
+        assertTrue(sequential.stream().anyMatch(result -> result.sloViolations() > 0), "late scale ups violate the SLO");
+    }
+}